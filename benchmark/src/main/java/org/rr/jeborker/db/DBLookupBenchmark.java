@@ -0,0 +1,112 @@
+package org.rr.jeborker.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rr.commons.utils.StringUtil;
+import org.rr.jeborker.db.item.EbookPropertyItem;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.table.TableUtils;
+
+/**
+ * Compares the lookup of an {@link EbookPropertyItem} by file with the cached {@link Dao} and prepared
+ * query of the {@link DefaultDBManager} against the former lookup, which got the {@link Dao} from the
+ * {@link DaoManager} and built and prepared a new query for each invocation. The database is an in memory
+ * H2 database, so the numbers show the overhead of the lookup and not the disk access.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DBLookupBenchmark {
+
+	@Param({"1000", "10000"})
+	private int items;
+
+	private BenchmarkDBManager db;
+
+	private List<String> files;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		db = new BenchmarkDBManager();
+		db.initDatabase();
+
+		files = new ArrayList<>(items);
+		List<EbookPropertyItem> ebooks = new ArrayList<>(items);
+		for (int i = 0; i < items; i++) {
+			EbookPropertyItem item = new EbookPropertyItem();
+			item.setFile("/home/user/ebooks/author " + (i % 100) + "/book's title " + i + ".epub");
+			item.setTitle("book's title " + i);
+			ebooks.add(item);
+			files.add(item.getFile());
+		}
+		db.storeObjects(ebooks);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		db.shutdown();
+	}
+
+	@Benchmark
+	public List<EbookPropertyItem> cachedLookup() {
+		return db.getObject(EbookPropertyItem.class, "file", nextFile());
+	}
+
+	@Benchmark
+	public List<EbookPropertyItem> uncachedLookup() throws SQLException {
+		Dao<EbookPropertyItem, String> dao = DaoManager.createDao(db.getConnectionPool(), EbookPropertyItem.class);
+		QueryBuilder<EbookPropertyItem, String> queryBuilder = dao.queryBuilder();
+		queryBuilder.where().eq("file", StringUtil.escapeSql(nextFile()));
+		return dao.query(queryBuilder.prepare());
+	}
+
+	private String nextFile() {
+		return files.get(ThreadLocalRandom.current().nextInt(files.size()));
+	}
+
+	/**
+	 * {@link H2DBManager} with an in memory database instead of the database in the configuration folder.
+	 */
+	private static class BenchmarkDBManager extends H2DBManager {
+
+		@Override
+		protected JdbcPooledConnectionSource initDatabase() {
+			try {
+				Class.forName("org.h2.Driver");
+				JdbcPooledConnectionSource connection = new JdbcPooledConnectionSource("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;MULTI_THREADED=TRUE");
+				connection.setUsername("sa");
+				connection.setPassword(StringUtil.EMPTY);
+				setConnectionPool(connection);
+				TableUtils.dropTable(connection, EbookPropertyItem.class, true);
+				TableUtils.createTable(connection, EbookPropertyItem.class);
+				return connection;
+			} catch (Exception e) {
+				throw new RuntimeException("could not init the benchmark database", e);
+			}
+		}
+	}
+}
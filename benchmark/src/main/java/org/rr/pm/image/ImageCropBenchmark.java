@@ -0,0 +1,167 @@
+package org.rr.pm.image;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.PixelGrabber;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link ImageUtils#crop(BufferedImage)}, which scans the frame with a FrameScanner on the raster
+ * data, against the former crop, which grabbed all pixels of the image into a new array and redraw the
+ * cropped area into a new image. The images are cover sized with a light frame around a dark content.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageCropBenchmark {
+
+	/** The image types with their own FrameScanner and one type which is read with getRGB. */
+	@Param({"INT_RGB", "3BYTE_BGR", "BYTE_GRAY", "USHORT_565_RGB"})
+	private String imageType;
+
+	@Param({"600", "1600"})
+	private int height;
+
+	private BufferedImage image;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		int width = height * 2 / 3;
+		int frame = height / 20;
+		image = new BufferedImage(width, height, getImageType());
+		Graphics2D g = image.createGraphics();
+		g.setColor(new Color(250, 250, 245));
+		g.fillRect(0, 0, width, height);
+		g.setColor(new Color(40, 60, 90));
+		g.fillRect(frame, frame, width - 2 * frame, height - 2 * frame);
+		g.dispose();
+	}
+
+	private int getImageType() {
+		switch (imageType) {
+		case "INT_RGB":
+			return BufferedImage.TYPE_INT_RGB;
+		case "3BYTE_BGR":
+			return BufferedImage.TYPE_3BYTE_BGR;
+		case "BYTE_GRAY":
+			return BufferedImage.TYPE_BYTE_GRAY;
+		default:
+			return BufferedImage.TYPE_USHORT_565_RGB;
+		}
+	}
+
+	@Benchmark
+	public BufferedImage frameScannerCrop() {
+		return ImageUtils.crop(image);
+	}
+
+	@Benchmark
+	public BufferedImage pixelGrabberCrop() throws InterruptedException {
+		return PixelGrabberCrop.crop(image);
+	}
+
+	/**
+	 * The crop implementation before the FrameScanner was introduced.
+	 */
+	private static class PixelGrabberCrop {
+
+		static BufferedImage crop(BufferedImage image) throws InterruptedException {
+			int minRow = -1;
+			int maxRow = -1;
+
+			int[] imgPixels = new int[image.getHeight() * image.getWidth()];
+			PixelGrabber pg = new PixelGrabber(image, 0, 0, image.getWidth(), image.getHeight(), imgPixels, 0, image.getWidth());
+			pg.grabPixels();
+			for (int row = 0; row < image.getHeight(); ++row) {
+				if (!isRowHomogeneous(imgPixels, image.getWidth() * row, image.getWidth())) {
+					if (minRow < 0) {
+						minRow = row;
+					} else if (row > maxRow) {
+						maxRow = row;
+					}
+				}
+			}
+
+			int minCol = -1;
+			int maxCol = -1;
+			for (int col = 0; col < image.getWidth(); ++col) {
+				if (!isColumnHomogeneous(imgPixels, col, image.getWidth(), minRow, maxRow - minRow)) {
+					if (minCol < 0) {
+						minCol = col;
+					} else if (col > maxCol) {
+						maxCol = col;
+					}
+				}
+			}
+
+			if(minCol > 1 && maxRow > 1) {
+				minCol += 1;
+				minRow += 1;
+				maxCol -= 1;
+				maxRow -= 1;
+				int cropedWidth = maxCol - minCol;
+				int cropedHeight = maxRow - minRow;
+
+				if(cropedWidth < 10 || cropedHeight < 10) {
+					return image;
+				}
+				BufferedImage scaledImage = new BufferedImage(cropedWidth, cropedHeight, image.getType() > 0 ? image.getType() : BufferedImage.TYPE_INT_RGB);
+				Graphics scaledImageGraphics = scaledImage.getGraphics();
+				scaledImageGraphics.drawImage(image, 0, 0, scaledImage.getWidth(), scaledImage.getHeight(), minCol, minRow, maxCol, maxRow, null);
+				scaledImageGraphics.dispose();
+				return scaledImage;
+			}
+			return image;
+		}
+
+		private static boolean isHomogeneousPixel(int pixel) {
+			int red = (pixel >> 16) & 0xff;
+			int green = (pixel >> 8) & 0xff;
+			int blue = (pixel) & 0xff;
+			return (red >= 240 && green >= 240 && blue >= 200);
+		}
+
+		private static boolean isRowHomogeneous(int[] pixels, int off, int len) {
+			int failcount = (int) (((double) len) / 100 * 5);
+			for (int pixel = off; pixel < off + len; ++pixel) {
+				if (!isHomogeneousPixel(pixels[pixel])) {
+					if(failcount-- <= 0) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		private static boolean isColumnHomogeneous(int[] pixels, int col, int rowLength, int rowOffset, int rows) {
+			int failcount = (int) (((double) rowLength) / 100 * 5);
+			for (int row = rowOffset; row < rowOffset + rows; ++row) {
+				int pixel = row * rowLength + col;
+				if (!isHomogeneousPixel(pixels[pixel])) {
+					if(failcount-- <= 0) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+}
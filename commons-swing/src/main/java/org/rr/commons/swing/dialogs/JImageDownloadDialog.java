@@ -376,7 +376,7 @@ public class JImageDownloadDialog extends JDialog {
 				byte[] thumbnailImageBytes = entry.getThumbnailImageBytes();
 				if(thumbnailImageBytes != null && thumbnailImageBytes.length > 0) {
 					IImageProvider imageProvider = ImageProviderFactory.getImageProvider(ResourceHandlerFactory.getResourceHandler(new ByteArrayInputStream(thumbnailImageBytes)));
-					BufferedImage image = imageProvider.getImage();
+					BufferedImage image = imageProvider.getImage(cellSize);
 					if(image != null) {
 						BufferedImage scaleToMatch = ImageUtils.scaleToMatch(image, cellSize, true);
 						if(scaleToMatch != null) {
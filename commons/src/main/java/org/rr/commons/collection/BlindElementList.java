@@ -31,4 +31,16 @@ public class BlindElementList<E> extends AbstractList<E> {
 		return list.size() - 1;
 	}
 
+	@Override
+	public int indexOf(Object o) {
+		int index = list.indexOf(o);
+		if(index < idx) {
+			return index;
+		} else if(index == idx) {
+			// the found element is hidden, a following one could match
+			return super.indexOf(o);
+		}
+		return index - 1;
+	}
+
 }
@@ -35,6 +35,18 @@ public class InsertElementList<E> extends AbstractList<E> {
 		return list.size() + 1;
 	}
 
+	@Override
+	public int indexOf(Object o) {
+		int index = list.indexOf(o);
+		boolean isValue = o == null ? value == null : o.equals(value);
+		if(isValue && (index == -1 || index >= idx)) {
+			return idx;
+		} else if(index == -1 || index < idx) {
+			return index;
+		}
+		return index + 1;
+	}
+
 	@Override
 	public boolean add(E e) {
 		return list.add(e);
@@ -0,0 +1,120 @@
+package org.rr.commons.collection;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * A read only list which fetches it's elements in fixed size pages. Only a limited number
+ * of pages is kept in memory, the least recently used page is dropped if the limit is reached.
+ * The key of the last element of each fetched page is remembered, so the following page can be
+ * fetched with a keyset condition instead of an offset. The number of remembered keys is also limited,
+ * pages whose preceding key was dropped are fetched with their offset.
+ */
+public abstract class PagedList<E> extends AbstractList<E> implements ICloseableList<E> {
+
+	private static final int DEFAULT_MAX_PAGE_KEYS = 1000;
+
+	private final int pageSize;
+
+	private final LRUCacheMap<Integer, List<E>> pages;
+
+	private final LRUCacheMap<Integer, Object> pageKeys;
+
+	private int size = -1;
+
+	/**
+	 * @param pageSize The number of elements fetched with one page.
+	 * @param maxPages The maximum number of pages kept in memory.
+	 */
+	protected PagedList(int pageSize, int maxPages) {
+		this(pageSize, maxPages, DEFAULT_MAX_PAGE_KEYS);
+	}
+
+	/**
+	 * @param pageSize The number of elements fetched with one page.
+	 * @param maxPages The maximum number of pages kept in memory.
+	 * @param maxPageKeys The maximum number of page keys kept in memory.
+	 */
+	protected PagedList(int pageSize, int maxPages, int maxPageKeys) {
+		this.pageSize = pageSize;
+		this.pages = new LRUCacheMap<>(maxPages);
+		this.pageKeys = new LRUCacheMap<>(maxPageKeys);
+	}
+
+	@Override
+	public synchronized E get(int index) {
+		if(index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		List<E> page = getPage(index / pageSize);
+		int pageOffset = index % pageSize;
+		if(pageOffset >= page.size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		return page.get(pageOffset);
+	}
+
+	@Override
+	public synchronized int size() {
+		if(size < 0) {
+			size = fetchSize();
+		}
+		return size;
+	}
+
+	/**
+	 * Does nothing by default. Implementations holding resources should override this method.
+	 */
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * @return The number of pages currently held in memory.
+	 */
+	public synchronized int getLoadedPageCount() {
+		return pages.size();
+	}
+
+	/**
+	 * @return The number of page keys currently held in memory.
+	 */
+	public synchronized int getPageKeyCount() {
+		return pageKeys.size();
+	}
+
+	private List<E> getPage(int pageIndex) {
+		List<E> page = pages.get(pageIndex);
+		if(page == null) {
+			page = fetchPage(pageIndex * pageSize, pageSize, pageKeys.get(pageIndex - 1));
+			pages.put(pageIndex, page);
+			if(!page.isEmpty()) {
+				pageKeys.put(pageIndex, createPageKey(page.get(page.size() - 1)));
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Fetches the number of elements in this list. Invoked only once.
+	 */
+	protected abstract int fetchSize();
+
+	/**
+	 * Fetches one page of elements.
+	 * @param offset The index of the first element of the page.
+	 * @param limit The maximum number of elements to be fetched.
+	 * @param previousPageKey The key created with {@link #createPageKey(Object)} for the last element
+	 * 	of the preceding page or <code>null</code> if the preceding page was not fetched before. If it is not <code>null</code>
+	 *  the page starts with the element following the one the key was created for and the offset can be ignored.
+	 * @return The elements of the page. Never returns <code>null</code>.
+	 */
+	protected abstract List<E> fetchPage(int offset, int limit, Object previousPageKey);
+
+	/**
+	 * Creates the key which identifies the position of the given element in the list.
+	 * @param lastElement The last element of a fetched page.
+	 * @return The desired key. Should be small because the keys of the recently fetched pages are kept.
+	 */
+	protected abstract Object createPageKey(E lastElement);
+}
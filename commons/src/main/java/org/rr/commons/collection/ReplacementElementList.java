@@ -28,4 +28,17 @@ public class ReplacementElementList<E> extends AbstractList<E> {
 		return list.size();
 	}
 
+	@Override
+	public int indexOf(Object o) {
+		int index = list.indexOf(o);
+		boolean isReplacement = o == null ? replacement == null : o.equals(replacement);
+		if(isReplacement && (index == -1 || index > idx)) {
+			return idx;
+		} else if(index == idx && !isReplacement) {
+			// the found element is replaced, a following one could match
+			return super.indexOf(o);
+		}
+		return index;
+	}
+
 }
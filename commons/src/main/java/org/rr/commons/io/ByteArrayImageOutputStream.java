@@ -0,0 +1,116 @@
+package org.rr.commons.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+
+/**
+ * {@link javax.imageio.stream.ImageOutputStream} which writes into a growable byte array. Unlike the
+ * {@link javax.imageio.stream.MemoryCacheImageOutputStream} no target stream is needed and the instance
+ * could be reused with {@link #reset()} without allocating a new buffer.
+ */
+public class ByteArrayImageOutputStream extends ImageOutputStreamImpl {
+
+	private byte[] buf;
+
+	private int length;
+
+	public ByteArrayImageOutputStream() {
+		this(8192);
+	}
+
+	public ByteArrayImageOutputStream(int initialCapacity) {
+		buf = new byte[initialCapacity];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		checkClosed();
+		flushBits();
+		ensureCapacity(streamPos + 1);
+		buf[(int) streamPos++] = (byte) b;
+		length = Math.max(length, (int) streamPos);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkClosed();
+		flushBits();
+		ensureCapacity(streamPos + len);
+		System.arraycopy(b, off, buf, (int) streamPos, len);
+		streamPos += len;
+		length = Math.max(length, (int) streamPos);
+	}
+
+	@Override
+	public int read() throws IOException {
+		checkClosed();
+		bitOffset = 0;
+		if(streamPos >= length) {
+			return -1;
+		}
+		return buf[(int) streamPos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		checkClosed();
+		bitOffset = 0;
+		if(streamPos >= length) {
+			return -1;
+		}
+		len = Math.min(len, length - (int) streamPos);
+		System.arraycopy(buf, (int) streamPos, b, off, len);
+		streamPos += len;
+		return len;
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+
+	@Override
+	public boolean isCached() {
+		return true;
+	}
+
+	@Override
+	public boolean isCachedMemory() {
+		return true;
+	}
+
+	/**
+	 * Discards all written data so the stream could be used again. The buffer is kept.
+	 */
+	public void reset() {
+		streamPos = 0;
+		flushedPos = 0;
+		bitOffset = 0;
+		length = 0;
+	}
+
+	/**
+	 * @return The size of the buffer.
+	 */
+	public int getCapacity() {
+		return buf.length;
+	}
+
+	/**
+	 * @return A copy of the written data.
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buf, length);
+	}
+
+	private void ensureCapacity(long capacity) throws IOException {
+		if(capacity > Integer.MAX_VALUE) {
+			throw new IOException("Buffer size exceeded");
+		}
+		if(capacity > buf.length) {
+			buf = Arrays.copyOf(buf, (int) Math.max(capacity, Math.min((long) buf.length * 2, Integer.MAX_VALUE)));
+		}
+	}
+}
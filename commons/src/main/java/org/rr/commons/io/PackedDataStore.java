@@ -0,0 +1,829 @@
+package org.rr.commons.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.logging.Level;
+
+import org.apache.commons.io.IOUtils;
+import org.rr.commons.log.LoggerFactory;
+
+/**
+ * Stores many small binary values in a few large segment files instead of one file per value.<br>
+ * Values are only appended to the segment files. Replacing, deleting and renaming a key appends a record
+ * which supersedes the previous ones, so each change is committed by a single append. The segments are read
+ * through memory mapped buffers.<br>
+ * The location of the current record for each key is held by an in memory hash index which only stores
+ * a 128 bit hash of the key. The index is written to the store folder by {@link #flush()} and {@link #close()}
+ * and records appended after the last flush are replayed when the store is opened again.
+ * The space of superseded records is reclaimed by {@link #compact()}.<br>
+ * All methods are thread safe.
+ */
+public class PackedDataStore implements Closeable {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String SEGMENT_PREFIX = "segment-";
+
+	private static final String SEGMENT_SUFFIX = ".pack";
+
+	private static final String INDEX_FILE = "index";
+
+	private static final int INDEX_MAGIC = 0x4a504458;
+
+	private static final int INDEX_VERSION = 1;
+
+	private static final byte RECORD_PUT = 1;
+
+	private static final byte RECORD_DELETE = 2;
+
+	/** Stores the value of an existing key under a new key and removes the old key with one record. */
+	private static final byte RECORD_RENAME = 3;
+
+	/** Record type, key length, value length and the length of the old key of a rename record. */
+	private static final int RECORD_HEADER = 13;
+
+	private static final long MAX_SEGMENT_SIZE = 64L * 1024L * 1024L;
+
+	/** Minimum size of superseded records before {@link #isCompactionNeeded()} returns <code>true</code>. */
+	private static final long MIN_COMPACTION_GARBAGE = 4L * 1024L * 1024L;
+
+	private final File folder;
+
+	private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+	private HashIndex index = new HashIndex();
+
+	private Segment activeSegment;
+
+	private long liveBytes = 0;
+
+	private boolean closed = false;
+
+	/**
+	 * Opens the store in the given folder. The folder is created if it did not exist.
+	 * @param folder The folder containing the segment and index files.
+	 */
+	public PackedDataStore(File folder) throws IOException {
+		this.folder = folder;
+		if(!folder.isDirectory() && !folder.mkdirs()) {
+			throw new IOException("Could not create folder " + folder);
+		}
+		open();
+	}
+
+	/**
+	 * @return The folder of this store.
+	 */
+	public File getFolder() {
+		return folder;
+	}
+
+	/**
+	 * Get the value stored for the given key.
+	 * @return The value or <code>null</code> if no value is stored for the key.
+	 */
+	public synchronized byte[] get(String key) throws IOException {
+		ensureOpen();
+		UUID hash = hash(key);
+		long location = index.get(hash.getMostSignificantBits(), hash.getLeastSignificantBits());
+		if(location == HashIndex.EMPTY) {
+			return null;
+		}
+		Segment segment = getSegment(location);
+		long offset = getOffset(location);
+		ByteBuffer header = segment.read(offset, RECORD_HEADER);
+		header.get();
+		int keyLength = header.getInt();
+		int valueLength = header.getInt();
+		int oldKeyLength = header.getInt();
+		ByteBuffer value = segment.read(offset + RECORD_HEADER + keyLength + oldKeyLength, valueLength);
+		byte[] result = new byte[valueLength];
+		value.get(result);
+		return result;
+	}
+
+	/**
+	 * Tells if there is a value stored for the given key.
+	 */
+	public synchronized boolean contains(String key) throws IOException {
+		ensureOpen();
+		UUID hash = hash(key);
+		return index.get(hash.getMostSignificantBits(), hash.getLeastSignificantBits()) != HashIndex.EMPTY;
+	}
+
+	/**
+	 * Stores the given value for the given key. A previously stored value for the key is replaced.
+	 */
+	public synchronized void put(String key, byte[] value) throws IOException {
+		ensureOpen();
+		byte[] keyBytes = key.getBytes(UTF_8);
+		long recordSize = RECORD_HEADER + keyBytes.length + value.length;
+		Segment segment = getAppendSegment(recordSize);
+		long offset = segment.append(createHeader(RECORD_PUT, keyBytes.length, value.length, 0), ByteBuffer.wrap(keyBytes), ByteBuffer.wrap(value));
+		putLocation(hash(key), toLocation(segment.id, offset), recordSize);
+	}
+
+	/**
+	 * Removes the value stored for the given key.
+	 * @return <code>true</code> if there was a value for the key.
+	 */
+	public synchronized boolean delete(String key) throws IOException {
+		ensureOpen();
+		if(!contains(key)) {
+			return false;
+		}
+		byte[] keyBytes = key.getBytes(UTF_8);
+		Segment segment = getAppendSegment(RECORD_HEADER + keyBytes.length);
+		segment.append(createHeader(RECORD_DELETE, keyBytes.length, 0, 0), ByteBuffer.wrap(keyBytes));
+		removeLocation(hash(key));
+		return true;
+	}
+
+	/**
+	 * Moves the value stored for the given key to the new key. A value stored for the new key is replaced.
+	 * The rename is written with one record, so either the old or the new key exists after a crash.
+	 * @return <code>true</code> if there was a value for the key.
+	 */
+	public synchronized boolean rename(String key, String newKey) throws IOException {
+		ensureOpen();
+		byte[] value = get(key);
+		if(value == null) {
+			return false;
+		} else if(key.equals(newKey)) {
+			return true;
+		}
+		byte[] keyBytes = newKey.getBytes(UTF_8);
+		byte[] oldKeyBytes = key.getBytes(UTF_8);
+		long recordSize = RECORD_HEADER + keyBytes.length + oldKeyBytes.length + value.length;
+		Segment segment = getAppendSegment(recordSize);
+		long offset = segment.append(createHeader(RECORD_RENAME, keyBytes.length, value.length, oldKeyBytes.length),
+				ByteBuffer.wrap(keyBytes), ByteBuffer.wrap(oldKeyBytes), ByteBuffer.wrap(value));
+		removeLocation(hash(key));
+		putLocation(hash(newKey), toLocation(segment.id, offset), recordSize);
+		return true;
+	}
+
+	/**
+	 * Removes the values of all keys starting with the given prefix.
+	 * @return The number of removed values.
+	 */
+	public synchronized int deleteByPrefix(String prefix) throws IOException {
+		ensureOpen();
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i < index.capacity(); i++) {
+			long location = index.locationAt(i);
+			if(location != HashIndex.EMPTY) {
+				String key = readKey(location);
+				if(key.startsWith(prefix)) {
+					keys.add(key);
+				}
+			}
+		}
+		for (String key : keys) {
+			delete(key);
+		}
+		return keys.size();
+	}
+
+	/**
+	 * @return The number of stored values.
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * @return The size of all segment files.
+	 */
+	public synchronized long getTotalBytes() {
+		long result = 0;
+		for (Segment segment : segments.values()) {
+			result += segment.size;
+		}
+		return result;
+	}
+
+	/**
+	 * @return The size of all records in the segment files which are superseded by later records.
+	 */
+	public synchronized long getGarbageBytes() {
+		return getTotalBytes() - liveBytes;
+	}
+
+	/**
+	 * Tells if more than the half of the segment files is used by superseded records.
+	 */
+	public synchronized boolean isCompactionNeeded() {
+		long garbageBytes = getGarbageBytes();
+		return garbageBytes > MIN_COMPACTION_GARBAGE && garbageBytes > liveBytes;
+	}
+
+	/**
+	 * Copies all current records into new segment files and deletes the old ones.
+	 */
+	public synchronized void compact() throws IOException {
+		ensureOpen();
+		final List<Segment> oldSegments = new ArrayList<>(segments.values());
+		final HashIndex newIndex = new HashIndex();
+		final TreeMap<Integer, Segment> newSegments = new TreeMap<>();
+		Segment target = openSegment(activeSegment.id + 1);
+		newSegments.put(target.id, target);
+		long newLiveBytes = 0;
+		try {
+			for (int i = 0; i < index.capacity(); i++) {
+				long location = index.locationAt(i);
+				if(location != HashIndex.EMPTY) {
+					Segment segment = getSegment(location);
+					long offset = getOffset(location);
+					ByteBuffer header = segment.read(offset, RECORD_HEADER);
+					header.get();
+					int keyLength = header.getInt();
+					int valueLength = header.getInt();
+					int oldKeyLength = header.getInt();
+					long recordSize = RECORD_HEADER + keyLength + valueLength;
+					if(target.size > 0 && target.size + recordSize > MAX_SEGMENT_SIZE) {
+						target = openSegment(target.id + 1);
+						newSegments.put(target.id, target);
+					}
+
+					// renamed records are written as simple put records.
+					long newOffset = target.append(createHeader(RECORD_PUT, keyLength, valueLength, 0),
+							segment.read(offset + RECORD_HEADER, keyLength),
+							segment.read(offset + RECORD_HEADER + keyLength + oldKeyLength, valueLength));
+					newIndex.put(index.msbAt(i), index.lsbAt(i), toLocation(target.id, newOffset));
+					newLiveBytes += recordSize;
+				}
+			}
+		} catch(IOException | RuntimeException e) {
+			for (Segment segment : newSegments.values()) {
+				segment.close();
+				segment.file.delete();
+			}
+			throw e;
+		}
+
+		segments.clear();
+		segments.putAll(newSegments);
+		activeSegment = target;
+		index = newIndex;
+		liveBytes = newLiveBytes;
+		flush();
+
+		for (Segment segment : oldSegments) {
+			segment.close();
+			if(!segment.file.delete()) {
+				// segments which could not be unmapped could not be deleted on some systems. They're deleted the next time the store is opened.
+				LoggerFactory.log(Level.INFO, this, "Could not delete segment " + segment.file);
+			}
+		}
+	}
+
+	/**
+	 * Writes the index, so the segments have not to be read the next time the store is opened.
+	 */
+	public synchronized void flush() throws IOException {
+		ensureOpen();
+		activeSegment.force();
+		File indexFile = new File(folder, INDEX_FILE);
+		File tmpIndexFile = new File(folder, INDEX_FILE + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpIndexFile)));
+		try {
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(INDEX_VERSION);
+			out.writeLong(liveBytes);
+			out.writeInt(segments.size());
+			for (Segment segment : segments.values()) {
+				out.writeInt(segment.id);
+				out.writeLong(segment.size);
+			}
+			out.writeInt(index.size());
+			for (int i = 0; i < index.capacity(); i++) {
+				long location = index.locationAt(i);
+				if(location != HashIndex.EMPTY) {
+					out.writeLong(index.msbAt(i));
+					out.writeLong(index.lsbAt(i));
+					out.writeLong(location);
+				}
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(tmpIndexFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Writes the index and closes all segment files.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if(!closed) {
+			try {
+				flush();
+			} finally {
+				for (Segment segment : segments.values()) {
+					segment.close();
+				}
+				closed = true;
+			}
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if(closed) {
+			throw new IOException("Store " + folder + " is closed");
+		}
+	}
+
+	/**
+	 * Reads the index and replays all records which are appended after the index was written. Segments
+	 * not listed in the index, which are older than the indexed ones, are left over by a compaction and deleted.
+	 */
+	private void open() throws IOException {
+		final Map<Integer, Long> indexedSegments = readIndex();
+		final int lastIndexedSegment = indexedSegments.isEmpty() ? -1 : Collections.max(indexedSegments.keySet());
+		for (Integer id : listSegmentIds()) {
+			Long indexedSize = indexedSegments.get(id);
+			if(indexedSize == null && id.intValue() < lastIndexedSegment) {
+				new File(folder, getSegmentFileName(id.intValue())).delete();
+				continue;
+			}
+			Segment segment = openSegment(id.intValue());
+			segments.put(segment.id, segment);
+			replay(segment, indexedSize != null ? Math.min(indexedSize.longValue(), segment.size) : 0);
+		}
+
+		if(segments.isEmpty()) {
+			Segment segment = openSegment(0);
+			segments.put(segment.id, segment);
+		}
+		activeSegment = segments.lastEntry().getValue();
+	}
+
+	/**
+	 * Reads the index file.
+	 * @return The indexed segments and their size at the time the index was written.
+	 */
+	private Map<Integer, Long> readIndex() {
+		final File indexFile = new File(folder, INDEX_FILE);
+		final Map<Integer, Long> result = new HashMap<>();
+		if(indexFile.isFile()) {
+			DataInputStream in = null;
+			try {
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+				if(in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+					throw new IOException("Unknown index format");
+				}
+				long indexedLiveBytes = in.readLong();
+				int segmentCount = in.readInt();
+				for (int i = 0; i < segmentCount; i++) {
+					result.put(Integer.valueOf(in.readInt()), Long.valueOf(in.readLong()));
+				}
+				HashIndex indexed = new HashIndex();
+				int entryCount = in.readInt();
+				for (int i = 0; i < entryCount; i++) {
+					indexed.put(in.readLong(), in.readLong(), in.readLong());
+				}
+				for (Integer id : result.keySet()) {
+					if(!new File(folder, getSegmentFileName(id.intValue())).isFile()) {
+						throw new IOException("Missing segment " + id);
+					}
+				}
+				index = indexed;
+				liveBytes = indexedLiveBytes;
+			} catch(IOException e) {
+				// the segments contain all records, so the index could be rebuilt.
+				LoggerFactory.log(Level.WARNING, this, "Failed to read index " + indexFile + ", rebuilding it.", e);
+				result.clear();
+				index = new HashIndex();
+				liveBytes = 0;
+			} finally {
+				IOUtils.closeQuietly(in);
+			}
+		}
+		return result;
+	}
+
+	private List<Integer> listSegmentIds() {
+		final List<Integer> result = new ArrayList<>();
+		final String[] names = folder.list();
+		if(names != null) {
+			for (String name : names) {
+				if(name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+					try {
+						result.add(Integer.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+					} catch(NumberFormatException e) {
+						LoggerFactory.log(Level.WARNING, this, "Unknown segment file " + name);
+					}
+				}
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Applies all records of the given segment starting at the given position to the index. An incomplete
+	 * record at the end of the segment, for example after a crash, is cut off.
+	 */
+	private void replay(Segment segment, long position) throws IOException {
+		while(position + RECORD_HEADER <= segment.size) {
+			ByteBuffer header = segment.read(position, RECORD_HEADER);
+			byte type = header.get();
+			int keyLength = header.getInt();
+			int valueLength = header.getInt();
+			int oldKeyLength = header.getInt();
+			long recordSize = (long) RECORD_HEADER + keyLength + valueLength + oldKeyLength;
+			if(type < RECORD_PUT || type > RECORD_RENAME || keyLength < 0 || valueLength < 0 || oldKeyLength < 0 || position + recordSize > segment.size) {
+				break;
+			}
+
+			UUID hash = hash(readString(segment, position + RECORD_HEADER, keyLength));
+			if(type == RECORD_PUT) {
+				putLocation(hash, toLocation(segment.id, position), recordSize);
+			} else if(type == RECORD_DELETE) {
+				removeLocation(hash);
+			} else if(type == RECORD_RENAME) {
+				removeLocation(hash(readString(segment, position + RECORD_HEADER + keyLength, oldKeyLength)));
+				putLocation(hash, toLocation(segment.id, position), recordSize);
+			}
+			position += recordSize;
+		}
+
+		if(position < segment.size) {
+			LoggerFactory.log(Level.WARNING, this, "Cutting off " + (segment.size - position) + " invalid bytes from " + segment.file);
+			segment.truncate(position);
+		}
+	}
+
+	private void putLocation(UUID hash, long location, long recordSize) throws IOException {
+		long previous = index.put(hash.getMostSignificantBits(), hash.getLeastSignificantBits(), location);
+		if(previous != HashIndex.EMPTY) {
+			liveBytes -= getRecordSize(previous);
+		}
+		liveBytes += recordSize;
+	}
+
+	private void removeLocation(UUID hash) throws IOException {
+		long previous = index.remove(hash.getMostSignificantBits(), hash.getLeastSignificantBits());
+		if(previous != HashIndex.EMPTY) {
+			liveBytes -= getRecordSize(previous);
+		}
+	}
+
+	private long getRecordSize(long location) throws IOException {
+		ByteBuffer header = getSegment(location).read(getOffset(location), RECORD_HEADER);
+		header.get();
+		return (long) RECORD_HEADER + header.getInt() + header.getInt() + header.getInt();
+	}
+
+	private String readKey(long location) throws IOException {
+		Segment segment = getSegment(location);
+		long offset = getOffset(location);
+		ByteBuffer header = segment.read(offset, RECORD_HEADER);
+		header.get();
+		return readString(segment, offset + RECORD_HEADER, header.getInt());
+	}
+
+	private static String readString(Segment segment, long offset, int length) throws IOException {
+		byte[] bytes = new byte[length];
+		segment.read(offset, length).get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static ByteBuffer createHeader(byte type, int keyLength, int valueLength, int oldKeyLength) {
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+		header.put(type).putInt(keyLength).putInt(valueLength).putInt(oldKeyLength);
+		header.flip();
+		return header;
+	}
+
+	/**
+	 * Get the segment where a record with the given size should be appended. A new segment is started if
+	 * the active one would exceed the maximum segment size.
+	 */
+	private Segment getAppendSegment(long recordSize) throws IOException {
+		if(activeSegment.size > 0 && activeSegment.size + recordSize > MAX_SEGMENT_SIZE) {
+			activeSegment.force();
+			activeSegment = openSegment(activeSegment.id + 1);
+			segments.put(activeSegment.id, activeSegment);
+		}
+		return activeSegment;
+	}
+
+	private Segment getSegment(long location) throws IOException {
+		Segment segment = segments.get(Integer.valueOf((int) (location >>> 32)));
+		if(segment == null) {
+			throw new IOException("Missing segment " + (location >>> 32) + " in " + folder);
+		}
+		return segment;
+	}
+
+	private Segment openSegment(int id) throws IOException {
+		return new Segment(id, new File(folder, getSegmentFileName(id)));
+	}
+
+	private static String getSegmentFileName(int id) {
+		return SEGMENT_PREFIX + id + SEGMENT_SUFFIX;
+	}
+
+	private static long toLocation(int segmentId, long offset) {
+		return ((long) segmentId << 32) | offset;
+	}
+
+	private static long getOffset(long location) {
+		return location & 0xFFFFFFFFL;
+	}
+
+	private static UUID hash(String key) {
+		return UUID.nameUUIDFromBytes(key.getBytes(UTF_8));
+	}
+
+	/**
+	 * One segment file. Records are appended with the file channel and read from a memory mapped buffer.
+	 * Records behind the mapped part are read with the file channel until the segment has doubled its size
+	 * since the last mapping, so a growing segment is only mapped again a few times.
+	 */
+	private static class Segment {
+
+		private final int id;
+
+		private final File file;
+
+		private final RandomAccessFile randomAccessFile;
+
+		private final FileChannel channel;
+
+		private long size;
+
+		private MappedByteBuffer mapped;
+
+		private Segment(int id, File file) throws IOException {
+			this.id = id;
+			this.file = file;
+			this.randomAccessFile = new RandomAccessFile(file, "rw");
+			this.channel = randomAccessFile.getChannel();
+			this.size = channel.size();
+		}
+
+		private ByteBuffer read(long position, int length) throws IOException {
+			if(position < 0 || length < 0 || position + length > size) {
+				throw new EOFException("Invalid position " + position + " in " + file);
+			}
+			if(mapped == null || position + length > mapped.capacity()) {
+				if(mapped != null && size < mapped.capacity() * 2L) {
+					return readChannel(position, length);
+				}
+				// the previous mapping may still be referenced by a buffer returned before, so it's released by the gc.
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+			ByteBuffer result = mapped.duplicate();
+			result.position((int) position);
+			result.limit((int) position + length);
+			return result.slice();
+		}
+
+		private ByteBuffer readChannel(long position, int length) throws IOException {
+			ByteBuffer result = ByteBuffer.allocate(length);
+			while(result.hasRemaining()) {
+				if(channel.read(result, position + result.position()) < 0) {
+					throw new EOFException("Invalid position " + position + " in " + file);
+				}
+			}
+			result.flip();
+			return result;
+		}
+
+		/**
+		 * Appends the given buffers at the end of the segment.
+		 * @return The position of the appended data.
+		 */
+		private long append(ByteBuffer ... buffers) throws IOException {
+			final long position = size;
+			long length = 0;
+			for (ByteBuffer buffer : buffers) {
+				length += buffer.remaining();
+			}
+			channel.position(position);
+			long written = 0;
+			while(written < length) {
+				written += channel.write(buffers);
+			}
+			size += length;
+			return position;
+		}
+
+		private void truncate(long newSize) throws IOException {
+			unmap();
+			channel.truncate(newSize);
+			size = newSize;
+		}
+
+		private void force() throws IOException {
+			channel.force(false);
+		}
+
+		private void close() {
+			unmap();
+			IOUtils.closeQuietly(randomAccessFile);
+		}
+
+		/**
+		 * Releases the mapped buffer immediately instead of waiting for the gc. Mapped files could not be
+		 * truncated or deleted on windows as long as they're mapped. No buffer returned by {@link #read(long, int)}
+		 * must be used after the segment was unmapped.
+		 */
+		private void unmap() {
+			final MappedByteBuffer buffer = mapped;
+			mapped = null;
+			if(buffer == null) {
+				return;
+			}
+			try {
+				// java 9 and later
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			} catch (NoSuchMethodException e) {
+				try {
+					// java 7 and 8
+					Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+					cleanerMethod.setAccessible(true);
+					Object cleaner = cleanerMethod.invoke(buffer);
+					if(cleaner != null) {
+						cleaner.getClass().getMethod("clean").invoke(cleaner);
+					}
+				} catch (Exception e1) {
+					LoggerFactory.log(Level.FINE, Segment.class, "Could not unmap segment " + file, e1);
+				}
+			} catch (Exception e) {
+				LoggerFactory.log(Level.FINE, Segment.class, "Could not unmap segment " + file, e);
+			}
+		}
+	}
+
+	/**
+	 * Open addressing hash table which maps a 128 bit key hash to a record location. The table only consists of three
+	 * <code>long</code> arrays, so it needs 24 bytes per slot and no object per entry.
+	 */
+	private static class HashIndex {
+
+		private static final long EMPTY = -1;
+
+		private long[] msb;
+
+		private long[] lsb;
+
+		private long[] locations;
+
+		private int size = 0;
+
+		private HashIndex() {
+			allocate(1024);
+		}
+
+		private void allocate(int capacity) {
+			msb = new long[capacity];
+			lsb = new long[capacity];
+			locations = new long[capacity];
+			Arrays.fill(locations, EMPTY);
+		}
+
+		private int capacity() {
+			return locations.length;
+		}
+
+		private int size() {
+			return size;
+		}
+
+		private long msbAt(int slot) {
+			return msb[slot];
+		}
+
+		private long lsbAt(int slot) {
+			return lsb[slot];
+		}
+
+		private long locationAt(int slot) {
+			return locations[slot];
+		}
+
+		private int home(long hashMsb, long hashLsb) {
+			long h = hashMsb ^ hashLsb;
+			return (int) (h ^ (h >>> 32)) & (locations.length - 1);
+		}
+
+		private int find(long hashMsb, long hashLsb) {
+			int mask = locations.length - 1;
+			int slot = home(hashMsb, hashLsb);
+			while(locations[slot] != EMPTY) {
+				if(msb[slot] == hashMsb && lsb[slot] == hashLsb) {
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -slot - 1;
+		}
+
+		private long get(long hashMsb, long hashLsb) {
+			int slot = find(hashMsb, hashLsb);
+			return slot >= 0 ? locations[slot] : EMPTY;
+		}
+
+		/**
+		 * @return The previous location for the key or {@link #EMPTY}.
+		 */
+		private long put(long hashMsb, long hashLsb, long location) {
+			int slot = find(hashMsb, hashLsb);
+			if(slot >= 0) {
+				long previous = locations[slot];
+				locations[slot] = location;
+				return previous;
+			}
+			if((size + 1) * 4 > locations.length * 3) {
+				grow();
+				slot = find(hashMsb, hashLsb);
+			}
+			slot = -slot - 1;
+			msb[slot] = hashMsb;
+			lsb[slot] = hashLsb;
+			locations[slot] = location;
+			size++;
+			return EMPTY;
+		}
+
+		/**
+		 * Removes the key and moves the following entries of the probe sequence back, so no deleted markers are needed.
+		 * @return The previous location for the key or {@link #EMPTY}.
+		 */
+		private long remove(long hashMsb, long hashLsb) {
+			int slot = find(hashMsb, hashLsb);
+			if(slot < 0) {
+				return EMPTY;
+			}
+			final long previous = locations[slot];
+			final int mask = locations.length - 1;
+			locations[slot] = EMPTY;
+			size--;
+
+			int free = slot;
+			int next = slot;
+			while(true) {
+				next = (next + 1) & mask;
+				if(locations[next] == EMPTY) {
+					break;
+				}
+				int home = home(msb[next], lsb[next]);
+				boolean reachable = free <= next ? (free < home && home <= next) : (free < home || home <= next);
+				if(!reachable) {
+					msb[free] = msb[next];
+					lsb[free] = lsb[next];
+					locations[free] = locations[next];
+					locations[next] = EMPTY;
+					free = next;
+				}
+			}
+			return previous;
+		}
+
+		private void grow() {
+			long[] oldMsb = msb;
+			long[] oldLsb = lsb;
+			long[] oldLocations = locations;
+			allocate(oldLocations.length * 2);
+			size = 0;
+			for (int i = 0; i < oldLocations.length; i++) {
+				if(oldLocations[i] != EMPTY) {
+					put(oldMsb[i], oldLsb[i], oldLocations[i]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package org.rr.commons.utils.compression;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.rr.commons.collection.LRUCacheMap;
+import org.rr.commons.mufs.IResourceHandler;
+
+/**
+ * Shared cache for the entry index of archive files. An index is the list of entries read from an
+ * archive, for example the central directory of a zip file, and is kept together with the size and
+ * modification time the archive had when the index was read. A cached index is only returned as long
+ * as the archive file still has the same size and modification time.<br>
+ * Only the least recently used indices are kept. All methods are thread safe.
+ */
+public class ArchiveIndexCache {
+
+	private static final int MAX_ENTRIES = 64;
+
+	private static final ArchiveIndexCache INSTANCE = new ArchiveIndexCache(MAX_ENTRIES);
+
+	private final LRUCacheMap<String, ArchiveIndex> indices;
+
+	private long hitCount = 0;
+
+	private long missCount = 0;
+
+	private static class ArchiveIndex {
+
+		private final long length;
+
+		private final long lastModified;
+
+		private final Class<?> type;
+
+		private final List<?> entries;
+
+		private ArchiveIndex(long length, long lastModified, Class<?> type, List<?> entries) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.type = type;
+			this.entries = entries;
+		}
+	}
+
+	/**
+	 * @param maxEntries The maximum number of archive indices kept in the cache.
+	 */
+	ArchiveIndexCache(int maxEntries) {
+		this.indices = new LRUCacheMap<>(maxEntries);
+	}
+
+	/**
+	 * @return The cache shared by all archive utilities.
+	 */
+	public static ArchiveIndexCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Get the file for the given resource if it's index could be cached.
+	 * @return The file or <code>null</code> if the resource is not a file in the local file system.
+	 */
+	public static File getCacheableFile(IResourceHandler archive) {
+		if(archive.getType() == IResourceHandler.RESOURCE_HANDLER_USER_TYPES.FILESYSTEM && archive.isFileResource()) {
+			return archive.toFile();
+		}
+		return null;
+	}
+
+	/**
+	 * Get the cached index for the given archive file.
+	 * @param archive The archive file.
+	 * @param type The type of the index entries.
+	 * @return The unmodifiable index or <code>null</code> if there is no index with entries of the given type
+	 * 	or the archive has been changed since the index was stored.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <T> List<T> get(File archive, Class<T> type) {
+		String key = archive.getAbsolutePath();
+		ArchiveIndex index = indices.get(key);
+		if(index != null && index.type == type && index.length == archive.length() && index.lastModified == archive.lastModified()) {
+			hitCount++;
+			return (List<T>) index.entries;
+		}
+		if(index != null) {
+			indices.remove(key);
+		}
+		missCount++;
+		return null;
+	}
+
+	/**
+	 * Stores the index for the given archive file.
+	 * @param archive The archive file.
+	 * @param length The size of the archive file before the index was read.
+	 * @param lastModified The modification time of the archive file before the index was read.
+	 * @param type The type of the index entries.
+	 * @param entries The index entries. The list and the entries must not be changed after they are stored.
+	 */
+	public synchronized <T> void put(File archive, long length, long lastModified, Class<T> type, List<T> entries) {
+		indices.put(archive.getAbsolutePath(), new ArchiveIndex(length, lastModified, type, Collections.unmodifiableList(entries)));
+	}
+
+	/**
+	 * Removes the index for the given archive file. Should be invoked after the archive was changed
+	 * because the modification time may not change with each write.
+	 */
+	public synchronized void invalidate(File archive) {
+		indices.remove(archive.getAbsolutePath());
+	}
+
+	/**
+	 * Removes the index for the given archive resource.
+	 */
+	public void invalidate(IResourceHandler archive) {
+		File file = getCacheableFile(archive);
+		if(file != null) {
+			invalidate(file);
+		}
+	}
+
+	/**
+	 * Removes all cached indices and resets the statistics.
+	 */
+	public synchronized void clear() {
+		indices.clear();
+		hitCount = 0;
+		missCount = 0;
+	}
+
+	/**
+	 * @return The number of archive indices currently held by the cache.
+	 */
+	public synchronized int size() {
+		return indices.size();
+	}
+
+	/**
+	 * @return The number of requests answered from the cache.
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return The number of requests which had to read the index from the archive.
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return The ratio of hits to all requests or <code>0</code> if there was no request.
+	 */
+	public synchronized double getHitRatio() {
+		long requests = hitCount + missCount;
+		return requests > 0 ? (double) hitCount / requests : 0d;
+	}
+}
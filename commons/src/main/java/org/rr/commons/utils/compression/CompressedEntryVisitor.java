@@ -0,0 +1,18 @@
+package org.rr.commons.utils.compression;
+
+import java.io.IOException;
+
+/**
+ * Receives the entries of an archive read by {@link CompressionUtils#forEachEntry(org.rr.commons.mufs.IResourceHandler, FileEntryFilter, CompressedEntryVisitor)}.
+ */
+public interface CompressedEntryVisitor {
+
+	/**
+	 * Invoked for each accepted entry of the archive.
+	 * @param name The name of the entry.
+	 * @param data The uncompressed entry data. The array is reused for the next entry, so it's content
+	 *  must be copied if it's needed after this method returns.
+	 * @param length The number of valid bytes in the data array.
+	 */
+	public void visit(String name, byte[] data, int length) throws IOException;
+}
@@ -1,7 +1,44 @@
 package org.rr.commons.utils.compression;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.rr.commons.mufs.IResourceHandler;
+import org.rr.commons.utils.compression.rar.RarUtils;
+import org.rr.commons.utils.compression.zip.ZipUtils;
+
 public class CompressionUtils {
 	
+	private static final byte[] RAR_SIGNATURE = new byte[] {0x52, 0x61, 0x72, 0x21};
+	
+	/**
+	 * Reads all entries of the given zip (cbz, epub) or rar (cbr) archive which are accepted by the given filter
+	 * with one pass over the archive. Each entry is handed to the visitor as soon as it's read, so the archive
+	 * is never read more than once and only one entry is hold in memory.
+	 * @param archive The archive to be read. The archive type is detected from it's content.
+	 * @param filter The filter for the entries to be read or <code>null</code> for all entries.
+	 * @param visitor The visitor which gets the entry data.
+	 */
+	public static void forEachEntry(IResourceHandler archive, FileEntryFilter filter, CompressedEntryVisitor visitor) throws IOException {
+		if(isRar(archive)) {
+			RarUtils.forEachEntry(archive, filter, visitor);
+		} else {
+			ZipUtils.forEachEntry(archive, filter, visitor);
+		}
+	}
+	
+	private static boolean isRar(IResourceHandler archive) throws IOException {
+		byte[] signature = new byte[RAR_SIGNATURE.length];
+		InputStream in = archive.getContentInputStream();
+		try {
+			return IOUtils.read(in, signature) == signature.length && Arrays.equals(signature, RAR_SIGNATURE);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+	
 	/**
 	 * Tells if the zip data should only be stored and not be compressed.
 	 * @param name The name of the zip entry
@@ -0,0 +1,72 @@
+package org.rr.commons.utils.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Growing buffer which is reused to read the entries of an archive one after another.
+ */
+public class EntryBuffer {
+
+	private static final int INITIAL_SIZE = 64 * 1024;
+
+	private byte[] data = new byte[INITIAL_SIZE];
+
+	private int length;
+
+	/**
+	 * Reads the given stream until it's end into this buffer. The previous content of the buffer is discarded.
+	 * @param size The expected number of bytes or <code>-1</code> if the size is unknown.
+	 */
+	public void read(InputStream in, long size) throws IOException {
+		if(size > Integer.MAX_VALUE - 8) {
+			throw new IOException("Entry with " + size + " bytes is too large");
+		} else if(size >= 0) {
+			ensureCapacity((int) size + 1);
+		}
+
+		length = 0;
+		int read;
+		while((read = in.read(data, length, data.length - length)) != -1) {
+			length += read;
+			if(length == data.length) {
+				ensureCapacity(length + 1);
+			}
+		}
+	}
+
+	/**
+	 * Makes sure that the buffer is able to take at least the given number of bytes.
+	 */
+	public void ensureCapacity(int capacity) throws IOException {
+		if(capacity > data.length) {
+			long newSize = Math.max(capacity, (long) data.length * 2);
+			if(newSize > Integer.MAX_VALUE - 8) {
+				if(capacity > Integer.MAX_VALUE - 8) {
+					throw new IOException("Entry is too large");
+				}
+				newSize = Integer.MAX_VALUE - 8;
+			}
+			data = Arrays.copyOf(data, (int) newSize);
+		}
+	}
+
+	/**
+	 * Sets the number of valid bytes after the buffer was filled with {@link #getData()}.
+	 */
+	public void setLength(int length) {
+		this.length = length;
+	}
+
+	/**
+	 * @return The buffer array. Only the first {@link #getLength()} bytes are valid.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	public int getLength() {
+		return length;
+	}
+}
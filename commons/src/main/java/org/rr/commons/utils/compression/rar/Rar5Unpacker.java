@@ -0,0 +1,748 @@
+package org.rr.commons.utils.compression.rar;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Decompresses the data of rar 5 entries, which is also used by rar 7 with the version 1 of the algorithm. The
+ * data is a sequence of blocks with huffman coded literals, matches and filters, the filters are applied to the
+ * decompressed data before it's written.<br>
+ * The entries of a solid archive share the window and the tables, so they must be decompressed one after
+ * another with the same instance.
+ */
+class Rar5Unpacker {
+
+	/** Number of main codes, the literals, the filter code, the four repeat codes and the length slots. */
+	private static final int NC = 306;
+
+	/** Number of distance codes of the version 0 algorithm. */
+	private static final int DC = 64;
+
+	/** Number of distance codes of the version 1 algorithm which supports larger dictionaries. */
+	private static final int DCX = 80;
+
+	/** Number of low distance codes. */
+	private static final int LDC = 16;
+
+	/** Number of repeat length codes. */
+	private static final int RC = 44;
+
+	/** Number of bit length codes which are used to transfer the other tables. */
+	private static final int BC = 20;
+
+	private static final int MAX_FILTER_BLOCK_SIZE = 0x400000;
+
+	private static final int MAX_FILTERS = 8192;
+
+	/** The longest match is slot 43 with 4097 bytes plus 3 bytes for a long distance. */
+	private static final int MAX_MATCH_LENGTH = 0x1004;
+
+	private static final int MIN_WINDOW_SIZE = 0x40000;
+
+	private static final int MAX_WINDOW_SIZE = 0x40000000;
+
+	private static final int FILTER_DELTA = 0;
+
+	private static final int FILTER_E8 = 1;
+
+	private static final int FILTER_E8E9 = 2;
+
+	private static final int FILTER_ARM = 3;
+
+	private final byte[] window;
+
+	private final int windowMask;
+
+	private final DecodeTable bitLengthTable = new DecodeTable(BC, 7);
+
+	private final DecodeTable literalTable = new DecodeTable(NC, 10);
+
+	private final DecodeTable distanceTable = new DecodeTable(DCX, 7);
+
+	private final DecodeTable lowDistanceTable = new DecodeTable(LDC, 7);
+
+	private final DecodeTable lengthTable = new DecodeTable(RC, 7);
+
+	private final byte[] tableLengths = new byte[NC + DCX + LDC + RC];
+
+	private final long[] oldDistances = new long[4];
+
+	private final Deque<Filter> filters = new ArrayDeque<>();
+
+	private boolean tablesRead;
+
+	private int lastLength;
+
+	private int distanceCodes;
+
+	/** The number of bytes decompressed since the instance was created. Used as absolute position in the window. */
+	private long position;
+
+	/** The position of the first byte which is not written to the output. */
+	private long written;
+
+	/** The position of the first byte of the current entry. */
+	private long fileStart;
+
+	/** The position behind the last byte of the current entry, the output is truncated there. */
+	private long fileEnd;
+
+	/** The bit position of the end of the current block. */
+	private long blockEnd;
+
+	private boolean lastBlock;
+
+	private boolean tablePresent;
+
+	/**
+	 * @param windowSize The size of the window which must be a power of two. Use {@link #getWindowSize(long, long)} to get it.
+	 */
+	Rar5Unpacker(int windowSize) {
+		this.window = new byte[windowSize];
+		this.windowMask = windowSize - 1;
+	}
+
+	/**
+	 * Gets the window size which is needed to decompress the given number of bytes with the given dictionary. The
+	 * window is never larger than the data, for larger data it holds the dictionary and the pending filter blocks.
+	 * @param size The number of bytes of all entries decompressed with the window or <code>-1</code> if it's not known.
+	 * @throws IOException if the window would be too large.
+	 */
+	static int getWindowSize(long dictionarySize, long size) throws IOException {
+		long windowSize;
+		if(size >= 0 && size <= dictionarySize) {
+			windowSize = size;
+		} else {
+			windowSize = Math.max(dictionarySize, 2 * MAX_FILTER_BLOCK_SIZE);
+		}
+		windowSize = Math.max(windowSize, MIN_WINDOW_SIZE);
+		if(windowSize > MAX_WINDOW_SIZE) {
+			throw new IOException("Dictionary with " + dictionarySize + " bytes is too large");
+		}
+		return Integer.highestOneBit((int) windowSize - 1) << 1;
+	}
+
+	/**
+	 * @return The size of the window given with the constructor.
+	 */
+	int getWindowSize() {
+		return window.length;
+	}
+
+	/**
+	 * Decompresses the data of one entry.
+	 * @param in The compressed data of the entry which is read until it's last block.
+	 * @param size The uncompressed size or <code>-1</code> if it's not known.
+	 * @param solid <code>true</code> if the entry continues the data of the entry decompressed before.
+	 * @param version The version of the algorithm, 0 for rar 5 and 1 for rar 7.
+	 * @param out Receives the decompressed data.
+	 * @throws IOException if the data is corrupted or the output could not be written.
+	 */
+	void unpack(InputStream in, long size, boolean solid, int version, OutputStream out) throws IOException {
+		if(version > 1) {
+			throw new IOException("Unsupported compression version " + version);
+		}
+		if(!solid) {
+			tablesRead = false;
+			lastLength = 0;
+			Arrays.fill(oldDistances, 0);
+		}
+		distanceCodes = version == 0 ? DC : DCX;
+		filters.clear();
+		fileStart = position;
+		fileEnd = size >= 0 ? position + size : Long.MAX_VALUE;
+		written = position;
+		if(size == 0) {
+			return;
+		}
+
+		BitInput input = new BitInput(in);
+		input.fill();
+		readBlockHeader(input);
+		readTables(input);
+		while(true) {
+			input.fill();
+			if(input.isOverrun()) {
+				throw new EOFException("Unexpected end of the compressed data");
+			} else if(input.getPosition() >= blockEnd) {
+				if(lastBlock) {
+					break;
+				}
+				readBlockHeader(input);
+				readTables(input);
+				continue;
+			}
+			if(position - written >= window.length - MAX_MATCH_LENGTH) {
+				flush(out);
+			}
+
+			int symbol = literalTable.decode(input);
+			if(symbol < 256) {
+				window[(int) position & windowMask] = (byte) symbol;
+				position++;
+			} else if(symbol >= 262) {
+				int length = slotToLength(input, symbol - 262);
+				long distance = readDistance(input);
+				if(distance > 0x100) {
+					length++;
+					if(distance > 0x2000) {
+						length++;
+						if(distance > 0x40000) {
+							length++;
+						}
+					}
+				}
+				insertOldDistance(distance);
+				lastLength = length;
+				copyString(length, distance);
+			} else if(symbol == 256) {
+				readFilter(input, out);
+			} else if(symbol == 257) {
+				if(lastLength != 0) {
+					copyString(lastLength, oldDistances[0]);
+				}
+			} else {
+				int index = symbol - 258;
+				long distance = oldDistances[index];
+				System.arraycopy(oldDistances, 0, oldDistances, 1, index);
+				oldDistances[0] = distance;
+				int length = slotToLength(input, lengthTable.decode(input));
+				lastLength = length;
+				copyString(length, distance);
+			}
+		}
+
+		flush(out);
+		// filters whose block exceeds the data are not applied.
+		filters.clear();
+		write(out, written, position);
+		written = position;
+		if(size >= 0 && position - fileStart < size) {
+			throw new EOFException("Decompressed " + (position - fileStart) + " of " + size + " bytes");
+		}
+	}
+
+	private void readBlockHeader(BitInput input) throws IOException {
+		input.alignToByte();
+		int flags = input.getBits() >>> 8;
+		input.addBits(8);
+		int byteCount = ((flags >>> 3) & 3) + 1;
+		if(byteCount == 4) {
+			throw new IOException("Invalid block header");
+		}
+		int checksum = input.getBits() >>> 8;
+		input.addBits(8);
+		int blockSize = 0;
+		for (int i = 0; i < byteCount; i++) {
+			blockSize += (input.getBits() >>> 8) << (i * 8);
+			input.addBits(8);
+		}
+		if(checksum != ((0x5a ^ flags ^ blockSize ^ (blockSize >>> 8) ^ (blockSize >>> 16)) & 0xff)) {
+			throw new IOException("Invalid block header checksum");
+		}
+		blockEnd = (input.getPosition() / 8 + blockSize - 1) * 8 + (flags & 7) + 1;
+		lastBlock = (flags & 0x40) != 0;
+		tablePresent = (flags & 0x80) != 0;
+	}
+
+	private void readTables(BitInput input) throws IOException {
+		if(!tablePresent) {
+			if(!tablesRead) {
+				throw new IOException("Missing huffman tables");
+			}
+			return;
+		}
+
+		byte[] bitLengths = new byte[BC];
+		for (int i = 0; i < BC; i++) {
+			int length = input.getBits() >>> 12;
+			input.addBits(4);
+			if(length == 15) {
+				int zeroCount = input.getBits() >>> 12;
+				input.addBits(4);
+				if(zeroCount == 0) {
+					bitLengths[i] = 15;
+				} else {
+					for (zeroCount += 2; zeroCount > 0 && i < BC; zeroCount--) {
+						bitLengths[i++] = 0;
+					}
+					i--;
+				}
+			} else {
+				bitLengths[i] = (byte) length;
+			}
+		}
+		bitLengthTable.build(bitLengths, 0, BC);
+
+		int tableSize = NC + distanceCodes + LDC + RC;
+		for (int i = 0; i < tableSize;) {
+			input.fill();
+			if(input.isOverrun()) {
+				throw new EOFException("Unexpected end of the compressed data");
+			}
+			int number = bitLengthTable.decode(input);
+			if(number < 16) {
+				tableLengths[i++] = (byte) number;
+			} else if(number < 18) {
+				if(i == 0) {
+					throw new IOException("Invalid huffman table");
+				}
+				int count;
+				if(number == 16) {
+					count = (input.getBits() >>> 13) + 3;
+					input.addBits(3);
+				} else {
+					count = (input.getBits() >>> 9) + 11;
+					input.addBits(7);
+				}
+				for (; count > 0 && i < tableSize; count--, i++) {
+					tableLengths[i] = tableLengths[i - 1];
+				}
+			} else {
+				int count;
+				if(number == 18) {
+					count = (input.getBits() >>> 13) + 3;
+					input.addBits(3);
+				} else {
+					count = (input.getBits() >>> 9) + 11;
+					input.addBits(7);
+				}
+				for (; count > 0 && i < tableSize; count--) {
+					tableLengths[i++] = 0;
+				}
+			}
+		}
+		literalTable.build(tableLengths, 0, NC);
+		distanceTable.build(tableLengths, NC, distanceCodes);
+		lowDistanceTable.build(tableLengths, NC + distanceCodes, LDC);
+		lengthTable.build(tableLengths, NC + distanceCodes + LDC, RC);
+		tablesRead = true;
+	}
+
+	private static int slotToLength(BitInput input, int slot) {
+		int bits;
+		int length = 2;
+		if(slot < 8) {
+			bits = 0;
+			length += slot;
+		} else {
+			bits = slot / 4 - 1;
+			length += (4 | (slot & 3)) << bits;
+		}
+		if(bits > 0) {
+			length += input.getBits() >>> (16 - bits);
+			input.addBits(bits);
+		}
+		return length;
+	}
+
+	private long readDistance(BitInput input) {
+		int slot = distanceTable.decode(input);
+		if(slot < 4) {
+			return 1 + slot;
+		}
+		int bits = slot / 2 - 1;
+		long distance = 1 + ((long) (2 | (slot & 1)) << bits);
+		if(bits >= 4) {
+			if(bits > 4) {
+				distance += (input.getBits64() >>> (68 - bits)) << 4;
+				input.addBits(bits - 4);
+			}
+			distance += lowDistanceTable.decode(input);
+		} else {
+			distance += input.getBits32() >>> (32 - bits);
+			input.addBits(bits);
+		}
+		return distance;
+	}
+
+	private void insertOldDistance(long distance) {
+		System.arraycopy(oldDistances, 0, oldDistances, 1, oldDistances.length - 1);
+		oldDistances[0] = distance;
+	}
+
+	private void copyString(int length, long distance) throws IOException {
+		if(distance > window.length || distance > position) {
+			throw new IOException("Invalid distance " + distance);
+		}
+		int destination = (int) position & windowMask;
+		int source = (int) (position - distance) & windowMask;
+		if(distance >= length && source + length <= window.length && destination + length <= window.length) {
+			System.arraycopy(window, source, window, destination, length);
+		} else {
+			for (int i = 0; i < length; i++) {
+				window[(destination + i) & windowMask] = window[(source + i) & windowMask];
+			}
+		}
+		position += length;
+	}
+
+	private void readFilter(BitInput input, OutputStream out) throws IOException {
+		long blockStart = position + readFilterData(input);
+		long blockLength = readFilterData(input);
+		if(blockLength > MAX_FILTER_BLOCK_SIZE) {
+			blockLength = 0;
+		}
+		int type = input.getBits() >>> 13;
+		input.addBits(3);
+		int channels = 0;
+		if(type == FILTER_DELTA) {
+			channels = (input.getBits() >>> 11) + 1;
+			input.addBits(5);
+		} else if(type > FILTER_ARM) {
+			throw new IOException("Unsupported filter " + type);
+		}
+
+		if(filters.size() >= MAX_FILTERS) {
+			flush(out);
+			if(filters.size() >= MAX_FILTERS) {
+				// too many filters with data not decompressed yet, the data is corrupted.
+				filters.clear();
+			}
+		}
+		filters.add(new Filter(blockStart, (int) blockLength, type, channels));
+	}
+
+	private static long readFilterData(BitInput input) {
+		int byteCount = (input.getBits() >>> 14) + 1;
+		input.addBits(2);
+		long data = 0;
+		for (int i = 0; i < byteCount; i++) {
+			data += (long) (input.getBits() >>> 8) << (i * 8);
+			input.addBits(8);
+		}
+		return data;
+	}
+
+	/**
+	 * Writes all decompressed data up to the first filter whose block is not complete yet.
+	 */
+	private void flush(OutputStream out) throws IOException {
+		while(!filters.isEmpty()) {
+			Filter filter = filters.peekFirst();
+			if(filter.blockStart < written || filter.blockLength == 0) {
+				filters.removeFirst();
+				continue;
+			} else if(filter.blockStart >= position) {
+				break;
+			}
+			write(out, written, filter.blockStart);
+			written = filter.blockStart;
+			if(filter.blockStart + filter.blockLength > position) {
+				return;
+			}
+
+			byte[] data = new byte[filter.blockLength];
+			int start = (int) filter.blockStart & windowMask;
+			int firstPart = Math.min(data.length, window.length - start);
+			System.arraycopy(window, start, data, 0, firstPart);
+			System.arraycopy(window, 0, data, firstPart, data.length - firstPart);
+			data = applyFilter(filter, data, filter.blockStart - fileStart);
+			long end = Math.min(fileEnd, written + data.length);
+			if(end > written) {
+				out.write(data, 0, (int) (end - written));
+			}
+			written += data.length;
+			filters.removeFirst();
+		}
+		write(out, written, position);
+		written = position;
+	}
+
+	/**
+	 * Writes the given range of the window up to the end of the current entry.
+	 */
+	private void write(OutputStream out, long from, long to) throws IOException {
+		to = Math.min(to, fileEnd);
+		while(from < to) {
+			int start = (int) from & windowMask;
+			int length = (int) Math.min(to - from, window.length - start);
+			out.write(window, start, length);
+			from += length;
+		}
+	}
+
+	/**
+	 * Applies the given filter to the data of it's block.
+	 * @param offset The position of the block in the entry.
+	 */
+	private static byte[] applyFilter(Filter filter, byte[] data, long offset) {
+		final int length = data.length;
+		switch(filter.type) {
+			case FILTER_E8:
+			case FILTER_E8E9: {
+				final int fileSize = 0x1000000;
+				final int secondByte = filter.type == FILTER_E8E9 ? 0xe9 : 0xe8;
+				for (int pos = 0; pos + 4 < length;) {
+					int b = data[pos++] & 0xff;
+					if(b == 0xe8 || b == secondByte) {
+						int relative = (int) ((pos + offset) & (fileSize - 1));
+						int address = get32(data, pos);
+						if(address < 0) {
+							if(address + relative >= 0) {
+								put32(data, pos, address + fileSize);
+							}
+						} else if(address - fileSize < 0) {
+							put32(data, pos, address - relative);
+						}
+						pos += 4;
+					}
+				}
+				return data;
+			}
+			case FILTER_ARM: {
+				for (int pos = 0; pos + 3 < length; pos += 4) {
+					if((data[pos + 3] & 0xff) == 0xeb) {
+						int address = (data[pos] & 0xff) | (data[pos + 1] & 0xff) << 8 | (data[pos + 2] & 0xff) << 16;
+						address -= (int) (((offset + pos) & 0xffffffffL) / 4);
+						data[pos] = (byte) address;
+						data[pos + 1] = (byte) (address >>> 8);
+						data[pos + 2] = (byte) (address >>> 16);
+					}
+				}
+				return data;
+			}
+			default: {
+				byte[] result = new byte[length];
+				int source = 0;
+				for (int channel = 0; channel < filter.channels; channel++) {
+					byte previous = 0;
+					for (int destination = channel; destination < length; destination += filter.channels) {
+						previous -= data[source++];
+						result[destination] = previous;
+					}
+				}
+				return result;
+			}
+		}
+	}
+
+	private static int get32(byte[] b, int off) {
+		return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+	}
+
+	private static void put32(byte[] b, int off, int value) {
+		b[off] = (byte) value;
+		b[off + 1] = (byte) (value >>> 8);
+		b[off + 2] = (byte) (value >>> 16);
+		b[off + 3] = (byte) (value >>> 24);
+	}
+
+	private static class Filter {
+
+		private final long blockStart;
+
+		private final int blockLength;
+
+		private final int type;
+
+		private final int channels;
+
+		private Filter(long blockStart, int blockLength, int type, int channels) {
+			this.blockStart = blockStart;
+			this.blockLength = blockLength;
+			this.type = type;
+			this.channels = channels;
+		}
+	}
+
+	/**
+	 * Canonical huffman table which decodes the short codes with a lookup in a quick table and the longer ones
+	 * with the limits of the code lengths.
+	 */
+	private static class DecodeTable {
+
+		/** Left aligned upper limit of the codes with the length given by the index. */
+		private final int[] decodeLength = new int[16];
+
+		/** Index of the first symbol with the length given by the index in {@link #decodeNumber}. */
+		private final int[] decodePosition = new int[16];
+
+		/** The symbols sorted by their code length. */
+		private final int[] decodeNumber;
+
+		private final int quickBits;
+
+		private final int[] quickLength;
+
+		private final int[] quickNumber;
+
+		private int size;
+
+		private DecodeTable(int maxSize, int quickBits) {
+			this.decodeNumber = new int[maxSize];
+			this.quickBits = quickBits;
+			this.quickLength = new int[1 << quickBits];
+			this.quickNumber = new int[1 << quickBits];
+		}
+
+		private void build(byte[] lengths, int offset, int size) {
+			int[] lengthCount = new int[16];
+			for (int i = 0; i < size; i++) {
+				lengthCount[lengths[offset + i] & 0xf]++;
+			}
+			lengthCount[0] = 0;
+
+			Arrays.fill(decodeNumber, 0);
+			decodePosition[0] = 0;
+			decodeLength[0] = 0;
+			int upperLimit = 0;
+			for (int i = 1; i < 16; i++) {
+				upperLimit += lengthCount[i];
+				decodeLength[i] = upperLimit << (16 - i);
+				upperLimit *= 2;
+				decodePosition[i] = decodePosition[i - 1] + lengthCount[i - 1];
+			}
+
+			int[] copyPosition = decodePosition.clone();
+			for (int i = 0; i < size; i++) {
+				int length = lengths[offset + i] & 0xf;
+				if(length != 0) {
+					decodeNumber[copyPosition[length]++] = i;
+				}
+			}
+			this.size = size;
+
+			int length = 1;
+			for (int code = 0; code < quickLength.length; code++) {
+				int bitField = code << (16 - quickBits);
+				while(length < 16 && bitField >= decodeLength[length]) {
+					length++;
+				}
+				quickLength[code] = length;
+				int position = length < 16 ? decodePosition[length] + ((bitField - decodeLength[length - 1]) >>> (16 - length)) : size;
+				quickNumber[code] = position < size ? decodeNumber[position] : 0;
+			}
+		}
+
+		private int decode(BitInput input) {
+			int bitField = input.getBits() & 0xfffe;
+			if(bitField < decodeLength[quickBits]) {
+				int code = bitField >>> (16 - quickBits);
+				input.addBits(quickLength[code]);
+				return quickNumber[code];
+			}
+
+			int bits = 15;
+			for (int i = quickBits + 1; i < 15; i++) {
+				if(bitField < decodeLength[i]) {
+					bits = i;
+					break;
+				}
+			}
+			input.addBits(bits);
+			int distance = (bitField - decodeLength[bits - 1]) >>> (16 - bits);
+			int position = decodePosition[bits] + distance;
+			return position < size ? decodeNumber[position] : 0;
+		}
+	}
+
+	/**
+	 * Reads the compressed data bitwise with the most significant bit first. The buffer is refilled by
+	 * {@link #fill()} which must be invoked before each symbol, bytes behind the end of the data are read as zero.
+	 */
+	private static class BitInput {
+
+		private static final int BUFFER_SIZE = 0x10000;
+
+		/** Number of bytes which are always available after {@link #fill()} as long as the data does not end. */
+		private static final int READ_AHEAD = 0x100;
+
+		private static final int PADDING = 0x40;
+
+		private final InputStream in;
+
+		private final byte[] buffer = new byte[BUFFER_SIZE + PADDING];
+
+		/** Position of the first byte in the buffer within the data. */
+		private long offset;
+
+		private int limit;
+
+		private int address;
+
+		private int bit;
+
+		private boolean eof;
+
+		private BitInput(InputStream in) {
+			this.in = in;
+		}
+
+		private void fill() throws IOException {
+			if(eof || limit - address >= READ_AHEAD) {
+				return;
+			}
+			int remaining = Math.max(limit - address, 0);
+			System.arraycopy(buffer, address, buffer, 0, remaining);
+			offset += address;
+			address = 0;
+			limit = remaining;
+			while(limit < BUFFER_SIZE) {
+				int read = in.read(buffer, limit, BUFFER_SIZE - limit);
+				if(read < 0) {
+					eof = true;
+					break;
+				}
+				limit += read;
+			}
+			Arrays.fill(buffer, limit, buffer.length, (byte) 0);
+		}
+
+		/**
+		 * @return <code>true</code> if more bits are read than the data contains.
+		 */
+		private boolean isOverrun() {
+			return eof && address > limit;
+		}
+
+		/**
+		 * @return The number of bits read so far.
+		 */
+		private long getPosition() {
+			return (offset + address) * 8 + bit;
+		}
+
+		private void addBits(int bits) {
+			bits += bit;
+			address += bits >>> 3;
+			bit = bits & 7;
+		}
+
+		private void alignToByte() {
+			addBits((8 - bit) & 7);
+		}
+
+		/**
+		 * @return The next 16 bits.
+		 */
+		private int getBits() {
+			int bits = (buffer[address] & 0xff) << 16 | (buffer[address + 1] & 0xff) << 8 | (buffer[address + 2] & 0xff);
+			return (bits >>> (8 - bit)) & 0xffff;
+		}
+
+		/**
+		 * @return The next 32 bits.
+		 */
+		private int getBits32() {
+			int bits = (buffer[address] & 0xff) << 24 | (buffer[address + 1] & 0xff) << 16 | (buffer[address + 2] & 0xff) << 8 | (buffer[address + 3] & 0xff);
+			return bits << bit | (buffer[address + 4] & 0xff) >>> (8 - bit);
+		}
+
+		/**
+		 * @return The next 64 bits.
+		 */
+		private long getBits64() {
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits = bits << 8 | (buffer[address + i] & 0xff);
+			}
+			return bits << bit | (buffer[address + 8] & 0xff) >>> (8 - bit);
+		}
+	}
+}
@@ -0,0 +1,745 @@
+package org.rr.commons.utils.compression.rar;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.rr.commons.log.LoggerFactory;
+import org.rr.commons.utils.compression.CompressedEntryVisitor;
+import org.rr.commons.utils.compression.EntryBuffer;
+
+import com.github.junrar.Archive;
+import com.github.junrar.exception.RarException;
+import com.github.junrar.rarfile.FileHeader;
+
+/**
+ * Reads rar archives in the version 4 and 5 format without any external program. The data of stored entries is
+ * read directly from the archive, compressed rar 4 entries are decompressed with junrar and compressed rar 5
+ * entries with the {@link Rar5Unpacker}.<br>
+ * Self extracting, multi volume archives and archives with encrypted headers or entries are not supported.
+ */
+public class RarArchive implements Closeable {
+
+	private static final byte[] RAR4_SIGNATURE = new byte[] {0x52, 0x61, 0x72, 0x21, 0x1A, 0x07, 0x00};
+
+	private static final byte[] RAR5_SIGNATURE = new byte[] {0x52, 0x61, 0x72, 0x21, 0x1A, 0x07, 0x01, 0x00};
+
+	private static final int RAR4_BASE_HEADER = 7;
+
+	private static final int RAR4_MAIN_HEADER = 0x73;
+
+	private static final int RAR4_FILE_HEADER = 0x74;
+
+	private static final int RAR4_SUB_HEADER = 0x7a;
+
+	private static final int RAR4_END_HEADER = 0x7b;
+
+	private static final int RAR4_METHOD_STORE = 0x30;
+
+	/** The unpack versions of the rar 4 entries which could be decompressed with junrar. */
+	private static final Set<Integer> RAR4_VERSIONS = new HashSet<>(Arrays.asList(15, 20, 26, 29, 36));
+
+	private static final int RAR5_FILE_HEADER = 2;
+
+	private static final int RAR5_ENCRYPTION_HEADER = 4;
+
+	private static final int RAR5_END_HEADER = 5;
+
+	private static final int RAR5_EXTRA_ENCRYPTION = 1;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final File file;
+
+	private final RandomAccessFile randomAccessFile;
+
+	private final boolean rar5;
+
+	private final List<RarEntry> entries;
+
+	private final Map<String, RarEntry> entriesByName;
+
+	/** Decompresses the rar 4 entries, opened with the first compressed entry. */
+	private Archive rar4Archive;
+
+	private Map<Long, FileHeader> rar4Headers;
+
+	private Rar5Unpacker rar5Unpacker;
+
+	/**
+	 * Opens the given rar archive and reads all it's file headers.
+	 * @throws IOException if the file is no supported rar archive.
+	 */
+	public RarArchive(File file) throws IOException {
+		this.file = file;
+		this.randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			this.rar5 = isRar5();
+			this.entries = Collections.unmodifiableList(rar5 ? readRar5Entries(RAR5_SIGNATURE.length) : readRar4Entries(RAR4_SIGNATURE.length));
+		} catch(IOException | RuntimeException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+		this.entriesByName = createEntriesByName(entries);
+	}
+
+	/**
+	 * Opens the given rar archive with entries read before from it.
+	 */
+	RarArchive(File file, List<RarEntry> entries) throws IOException {
+		this.file = file;
+		this.randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			this.rar5 = isRar5();
+		} catch(IOException | RuntimeException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+		this.entries = Collections.unmodifiableList(entries);
+		this.entriesByName = createEntriesByName(entries);
+	}
+
+	private static Map<String, RarEntry> createEntriesByName(List<RarEntry> entries) {
+		Map<String, RarEntry> entriesByName = new LinkedHashMap<>(entries.size() * 2);
+		for (RarEntry entry : entries) {
+			entriesByName.put(entry.getName(), entry);
+		}
+		return entriesByName;
+	}
+
+	/**
+	 * @return The archive file read by this instance.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return All entries in the order of the archive.
+	 */
+	public List<RarEntry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @return The entry with the given name or <code>null</code> if there is no such entry.
+	 */
+	public RarEntry getEntry(String name) {
+		return entriesByName.get(name);
+	}
+
+	/**
+	 * Reads the data of the given entry.
+	 * @param entry An entry of this archive which is {@link RarEntry#isDirectlyReadable() directly readable}.
+	 */
+	public byte[] getBytes(RarEntry entry) throws IOException {
+		if(!entry.isDirectlyReadable()) {
+			throw new IOException("Entry " + entry.getName() + " is not stored");
+		} else if(entry.getSize() > Integer.MAX_VALUE) {
+			throw new IOException("Entry " + entry.getName() + " is too large");
+		}
+		byte[] result = new byte[(int) entry.getSize()];
+		readFully(entry.getDataOffset(), result, 0, result.length);
+		return result;
+	}
+
+	/**
+	 * Reads the data of the given entry into the given buffer.
+	 * @param entry An entry of this archive which is {@link RarEntry#isDirectlyReadable() directly readable}.
+	 */
+	public void read(RarEntry entry, EntryBuffer buffer) throws IOException {
+		if(!entry.isDirectlyReadable()) {
+			throw new IOException("Entry " + entry.getName() + " is not stored");
+		} else if(entry.getSize() > Integer.MAX_VALUE) {
+			throw new IOException("Entry " + entry.getName() + " is too large");
+		}
+		buffer.ensureCapacity((int) entry.getSize());
+		readFully(entry.getDataOffset(), buffer.getData(), 0, (int) entry.getSize());
+		buffer.setLength((int) entry.getSize());
+	}
+
+	/**
+	 * Reads the data of the given entries with one pass over the archive and hands each of them to the visitor. The
+	 * entries are visited in the order of the archive. Compressed entries of a solid archive need all compressed entries
+	 * before them up to the first non solid one, these are decompressed too but not visited. All entries are read into
+	 * the same buffer. Exceptions thrown by the visitor are passed through.
+	 * @param entries Entries of this archive.
+	 * @return The entries which could not be read, for example because they are encrypted or their data is corrupted.
+	 */
+	public List<RarEntry> read(Collection<RarEntry> entries, CompressedEntryVisitor visitor) throws IOException {
+		final Set<RarEntry> requested = new HashSet<>(entries);
+		final List<RarEntry> unread = new ArrayList<>();
+
+		// a compressed entry is needed if it's requested or if a needed solid entry continues it's data. Stored
+		// entries are not part of the solid data.
+		final boolean[] needed = new boolean[this.entries.size()];
+		boolean continued = false;
+		for (int i = this.entries.size() - 1; i >= 0; i--) {
+			RarEntry entry = this.entries.get(i);
+			if(entry.isStored() || entry.isDirectory()) {
+				needed[i] = requested.contains(entry);
+			} else {
+				needed[i] = requested.contains(entry) || continued;
+				continued = needed[i] && entry.isSolid();
+			}
+		}
+
+		final EntryBuffer buffer = new EntryBuffer();
+		boolean broken = false;
+		for (int i = 0; i < needed.length; i++) {
+			RarEntry entry = this.entries.get(i);
+			boolean visit = requested.contains(entry);
+			if(!needed[i] || entry.isDirectory()) {
+				continue;
+			} else if(entry.isDirectlyReadable()) {
+				read(entry, buffer);
+				visitor.visit(entry.getName(), buffer.getData(), buffer.getLength());
+				continue;
+			} else if(entry.isStored()) {
+				unread.add(entry);
+				continue;
+			}
+
+			// the data of a solid entry could not be decompressed if the previous entry has failed.
+			broken &= entry.isSolid();
+			if(!broken && isDecompressible(entry, visit)) {
+				try {
+					decompress(entry, visit ? buffer : null);
+				} catch (IOException e) {
+					LoggerFactory.logInfo(RarArchive.class, "Could not decompress " + entry + " from rar " + file, e);
+					broken = true;
+				}
+			} else {
+				broken = true;
+			}
+
+			if(!visit) {
+				continue;
+			} else if(broken) {
+				unread.add(entry);
+			} else {
+				visitor.visit(entry.getName(), buffer.getData(), buffer.getLength());
+			}
+		}
+		return unread;
+	}
+
+	/**
+	 * @param visit <code>true</code> if the data is needed and not only decompressed for the following solid entries.
+	 */
+	private boolean isDecompressible(RarEntry entry, boolean visit) {
+		if(entry.isEncrypted() || entry.isSplit() || (visit && entry.getSize() > Integer.MAX_VALUE - 8)) {
+			return false;
+		}
+		return rar5 ? entry.getVersion() <= 1 : RAR4_VERSIONS.contains(entry.getVersion());
+	}
+
+	/**
+	 * Decompresses the given entry into the given buffer.
+	 * @param buffer The buffer for the data or <code>null</code> if the data is not needed.
+	 */
+	private void decompress(RarEntry entry, EntryBuffer buffer) throws IOException {
+		OutputStream out;
+		if(buffer != null) {
+			buffer.ensureCapacity((int) Math.max(entry.getSize(), 0));
+			buffer.setLength(0);
+			out = new EntryBufferOutputStream(buffer);
+		} else {
+			out = new NullOutputStream();
+		}
+
+		if(!rar5) {
+			decompressRar4(entry, out);
+		} else if(buffer != null && entry.getCrc() != -1) {
+			CheckedOutputStream checkedOut = new CheckedOutputStream(out, new CRC32());
+			decompressRar5(entry, checkedOut);
+			if(checkedOut.getChecksum().getValue() != entry.getCrc()) {
+				throw new IOException("CRC error");
+			}
+		} else {
+			decompressRar5(entry, out);
+		}
+	}
+
+	private void decompressRar4(RarEntry entry, OutputStream out) throws IOException {
+		try {
+			if(rar4Archive == null) {
+				rar4Archive = new Archive(file, null);
+				rar4Headers = new HashMap<>();
+				for (FileHeader header : rar4Archive.getFileHeaders()) {
+					rar4Headers.put(header.getPositionInFile() + (header.getHeaderSize() & 0xffff), header);
+				}
+			}
+			FileHeader header = rar4Headers.get(entry.getDataOffset());
+			if(header == null) {
+				throw new IOException("No junrar header for " + entry);
+			}
+			// junrar checks the crc
+			rar4Archive.extractFile(header, out);
+		} catch (RarException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private void decompressRar5(RarEntry entry, OutputStream out) throws IOException {
+		if(!entry.isSolid() || rar5Unpacker == null) {
+			int windowSize = Rar5Unpacker.getWindowSize(entry.getDictionarySize(), getSolidSize(entry));
+			if(rar5Unpacker == null || rar5Unpacker.getWindowSize() < windowSize) {
+				rar5Unpacker = new Rar5Unpacker(windowSize);
+			}
+		}
+		try (InputStream in = new EntryDataInputStream(entry)) {
+			rar5Unpacker.unpack(in, entry.getSize(), entry.isSolid(), entry.getVersion(), out);
+		} catch (IOException | RuntimeException e) {
+			// a failed solid stream could not be continued.
+			rar5Unpacker = null;
+			throw e instanceof IOException ? (IOException) e : new IOException(e);
+		}
+	}
+
+	/**
+	 * @return The uncompressed size of the given entry and the solid entries which continue it's data or <code>-1</code>
+	 * if the size of one of them is unknown.
+	 */
+	private long getSolidSize(RarEntry first) {
+		long size = 0;
+		for (int i = entries.indexOf(first); i < entries.size(); i++) {
+			RarEntry entry = entries.get(i);
+			if(entry.isDirectory() || entry.isStored()) {
+				continue;
+			} else if(entry != first && !entry.isSolid()) {
+				break;
+			} else if(entry.getSize() < 0) {
+				return -1;
+			}
+			size += entry.getSize();
+		}
+		return size;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if(rar4Archive != null) {
+				rar4Archive.close();
+			}
+		} finally {
+			rar5Unpacker = null;
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> for the rar 5 format and <code>false</code> for the rar 4 format.
+	 * @throws IOException if the file is no rar archive.
+	 */
+	private boolean isRar5() throws IOException {
+		byte[] signature = new byte[RAR5_SIGNATURE.length];
+		int read = readAvailable(0, signature);
+		if(startsWith(signature, read, RAR5_SIGNATURE)) {
+			return true;
+		} else if(startsWith(signature, read, RAR4_SIGNATURE)) {
+			return false;
+		}
+		throw new IOException("No rar archive " + file);
+	}
+
+	private List<RarEntry> readRar4Entries(long position) throws IOException {
+		final List<RarEntry> result = new ArrayList<>();
+		final long length = randomAccessFile.length();
+		while(position + RAR4_BASE_HEADER <= length) {
+			byte[] base = new byte[RAR4_BASE_HEADER];
+			readFully(position, base, 0, base.length);
+			int type = base[2] & 0xff;
+			int flags = get16(base, 3);
+			int headerSize = get16(base, 5);
+			if(headerSize < RAR4_BASE_HEADER) {
+				throw new IOException("Invalid header at " + position + " in " + file);
+			}
+			byte[] header = new byte[headerSize];
+			readFully(position, header, 0, headerSize);
+
+			long dataSize = 0;
+			if(type == RAR4_MAIN_HEADER && (flags & 0x0080) != 0) {
+				throw new IOException("Encrypted headers are not supported " + file);
+			} else if(type == RAR4_FILE_HEADER || type == RAR4_SUB_HEADER) {
+				if(headerSize < 32) {
+					throw new IOException("Invalid file header at " + position + " in " + file);
+				}
+				long packedSize = get32(header, 7);
+				long size = get32(header, 11);
+				int method = header[25] & 0xff;
+				int nameSize = get16(header, 26);
+				int nameOffset = 32;
+				if((flags & 0x0100) != 0) {
+					packedSize |= get32(header, 32) << 32;
+					size |= get32(header, 36) << 32;
+					nameOffset = 40;
+				}
+				if(nameOffset + nameSize > headerSize) {
+					throw new IOException("Invalid file name at " + position + " in " + file);
+				}
+				dataSize = packedSize;
+
+				if(type == RAR4_FILE_HEADER) {
+					String name = decodeRar4Name(header, nameOffset, nameSize, (flags & 0x0200) != 0).replace('\\', '/');
+					boolean directory = (flags & 0x00E0) == 0x00E0;
+					boolean encrypted = (flags & 0x0004) != 0;
+					boolean split = (flags & 0x0003) != 0;
+					boolean solid = (flags & 0x0010) != 0;
+					long dictionarySize = directory ? 0 : 0x10000L << ((flags >> 5) & 0x07);
+					result.add(new RarEntry(name, size, packedSize, position + headerSize, directory, method == RAR4_METHOD_STORE, encrypted, split,
+							solid, header[24] & 0xff, dictionarySize, get32(header, 16)));
+				}
+			} else if((flags & 0x8000) != 0) {
+				if(headerSize < 11) {
+					throw new IOException("Invalid header at " + position + " in " + file);
+				}
+				dataSize = get32(header, 7);
+			}
+
+			if(type == RAR4_END_HEADER) {
+				break;
+			}
+			position += headerSize + dataSize;
+		}
+		return result;
+	}
+
+	/**
+	 * Decodes a rar 4 file name. Names with non ascii characters are stored in a compressed form of UTF-16 behind the
+	 * ascii name or, if the archive was created on unix, as UTF-8.
+	 */
+	private static String decodeRar4Name(byte[] header, int offset, int length, boolean unicode) {
+		int zero = -1;
+		for (int i = offset; i < offset + length; i++) {
+			if(header[i] == 0) {
+				zero = i;
+				break;
+			}
+		}
+		if(!unicode) {
+			return new String(header, offset, length, Charset.defaultCharset());
+		} else if(zero == -1) {
+			return new String(header, offset, length, UTF_8);
+		}
+
+		final int asciiLength = zero - offset;
+		final int end = offset + length;
+		final char[] result = new char[asciiLength + 1024];
+		int encPos = zero + 1;
+		int decPos = 0;
+		int highByte = encPos < end ? header[encPos++] & 0xff : 0;
+		int flags = 0;
+		int flagBits = 0;
+		while(encPos < end && decPos < result.length) {
+			if(flagBits == 0) {
+				flags = header[encPos++] & 0xff;
+				flagBits = 8;
+			}
+			switch(flags >> 6) {
+				case 0:
+					if(encPos >= end) {
+						break;
+					}
+					result[decPos++] = (char) (header[encPos++] & 0xff);
+					break;
+				case 1:
+					if(encPos >= end) {
+						break;
+					}
+					result[decPos++] = (char) ((header[encPos++] & 0xff) + (highByte << 8));
+					break;
+				case 2:
+					if(encPos + 1 >= end) {
+						encPos = end;
+						break;
+					}
+					result[decPos++] = (char) ((header[encPos] & 0xff) + ((header[encPos + 1] & 0xff) << 8));
+					encPos += 2;
+					break;
+				default:
+					if(encPos >= end) {
+						break;
+					}
+					int count = header[encPos++] & 0xff;
+					if((count & 0x80) != 0) {
+						if(encPos >= end) {
+							break;
+						}
+						int correction = header[encPos++] & 0xff;
+						for (count = (count & 0x7f) + 2; count > 0 && decPos < asciiLength && decPos < result.length; count--, decPos++) {
+							result[decPos] = (char) ((((header[offset + decPos] & 0xff) + correction) & 0xff) + (highByte << 8));
+						}
+					} else {
+						for (count += 2; count > 0 && decPos < asciiLength && decPos < result.length; count--, decPos++) {
+							result[decPos] = (char) (header[offset + decPos] & 0xff);
+						}
+					}
+			}
+			flags = (flags << 2) & 0xff;
+			flagBits -= 2;
+		}
+		return new String(result, 0, decPos);
+	}
+
+	private List<RarEntry> readRar5Entries(long position) throws IOException {
+		final List<RarEntry> result = new ArrayList<>();
+		final long length = randomAccessFile.length();
+		while(position + 5 < length) {
+			// header crc followed by the header size which is a vint of up to 3 bytes.
+			byte[] prefix = new byte[7];
+			int prefixLength = readAvailable(position, prefix);
+			HeaderReader sizeReader = new HeaderReader(prefix, 4, prefixLength);
+			long headerSize = sizeReader.readVint();
+			if(headerSize <= 0 || headerSize > 0x200000) {
+				throw new IOException("Invalid header at " + position + " in " + file);
+			}
+			long headerStart = position + sizeReader.position;
+			byte[] header = new byte[(int) headerSize];
+			readFully(headerStart, header, 0, header.length);
+
+			HeaderReader reader = new HeaderReader(header, 0, header.length);
+			int type = (int) reader.readVint();
+			long flags = reader.readVint();
+			long extraSize = (flags & 0x0001) != 0 ? reader.readVint() : 0;
+			long dataSize = (flags & 0x0002) != 0 ? reader.readVint() : 0;
+			long dataOffset = headerStart + headerSize;
+
+			if(type == RAR5_ENCRYPTION_HEADER) {
+				throw new IOException("Encrypted headers are not supported " + file);
+			} else if(type == RAR5_FILE_HEADER) {
+				long fileFlags = reader.readVint();
+				long size = reader.readVint();
+				reader.readVint(); // attributes
+				if((fileFlags & 0x0002) != 0) {
+					reader.skip(4); // modification time
+				}
+				long crc = -1;
+				if((fileFlags & 0x0004) != 0) {
+					crc = reader.readInt();
+				}
+				long compressionInfo = reader.readVint();
+				reader.readVint(); // host os
+				int nameLength = (int) reader.readVint();
+				String name = reader.readString(nameLength);
+				boolean encrypted = isRar5Encrypted(header, extraSize);
+
+				boolean directory = (fileFlags & 0x0001) != 0;
+				boolean stored = ((compressionInfo >> 7) & 0x07) == 0;
+				boolean split = (flags & 0x0018) != 0;
+				boolean solid = (compressionInfo & 0x0040) != 0;
+				int version = (int) (compressionInfo & 0x3f);
+				long dictionarySize = 0x20000L << ((compressionInfo >> 10) & 0x1f);
+				if(version > 0) {
+					// rar 7 adds a fraction of 1/32 of the dictionary size
+					dictionarySize += dictionarySize / 32 * ((compressionInfo >> 15) & 0x1f);
+				}
+				if((fileFlags & 0x0008) != 0) {
+					size = -1;
+				}
+				result.add(new RarEntry(name, size, dataSize, dataOffset, directory, stored, encrypted, split, solid, version, dictionarySize, crc));
+			} else if(type == RAR5_END_HEADER) {
+				break;
+			}
+			position = dataOffset + dataSize;
+		}
+		return result;
+	}
+
+	/**
+	 * Looks for a file encryption record in the extra area at the end of a rar 5 header.
+	 */
+	private static boolean isRar5Encrypted(byte[] header, long extraSize) throws IOException {
+		if(extraSize <= 0 || extraSize > header.length) {
+			return false;
+		}
+		HeaderReader reader = new HeaderReader(header, header.length - (int) extraSize, header.length);
+		while(reader.position < header.length) {
+			long recordSize = reader.readVint();
+			int recordStart = reader.position;
+			long recordType = reader.readVint();
+			if(recordType == RAR5_EXTRA_ENCRYPTION) {
+				return true;
+			}
+			if(recordSize <= 0 || recordStart + recordSize > header.length) {
+				break;
+			}
+			reader.position = recordStart + (int) recordSize;
+		}
+		return false;
+	}
+
+	private static boolean startsWith(byte[] data, int length, byte[] prefix) {
+		if(length < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if(data[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void readFully(long position, byte[] b, int off, int len) throws IOException {
+		randomAccessFile.seek(position);
+		randomAccessFile.readFully(b, off, len);
+	}
+
+	private int readAvailable(long position, byte[] b) throws IOException {
+		randomAccessFile.seek(position);
+		int read = 0;
+		while(read < b.length) {
+			int r = randomAccessFile.read(b, read, b.length - read);
+			if(r < 0) {
+				break;
+			}
+			read += r;
+		}
+		return read;
+	}
+
+	private static final int get16(byte b[], int off) {
+		return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+	}
+
+	private static final long get32(byte b[], int off) {
+		return (get16(b, off) | ((long) get16(b, off + 2) << 16)) & 0xffffffffL;
+	}
+
+	/**
+	 * Appends the written data to an {@link EntryBuffer}.
+	 */
+	private static class EntryBufferOutputStream extends OutputStream {
+
+		private final EntryBuffer buffer;
+
+		private EntryBufferOutputStream(EntryBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			int length = buffer.getLength();
+			if((long) length + len > Integer.MAX_VALUE - 8) {
+				throw new IOException("Entry is too large");
+			}
+			buffer.ensureCapacity(length + len);
+			System.arraycopy(b, off, buffer.getData(), length, len);
+			buffer.setLength(length + len);
+		}
+	}
+
+	/**
+	 * Reads the data area of an entry from the archive file.
+	 */
+	private class EntryDataInputStream extends InputStream {
+
+		private long position;
+
+		private long remaining;
+
+		private EntryDataInputStream(RarEntry entry) {
+			this.position = entry.getDataOffset();
+			this.remaining = entry.getPackedSize();
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(remaining <= 0) {
+				return -1;
+			}
+			randomAccessFile.seek(position);
+			int read = randomAccessFile.read(b, off, (int) Math.min(len, remaining));
+			if(read > 0) {
+				position += read;
+				remaining -= read;
+			}
+			return read;
+		}
+	}
+
+	/**
+	 * Reads the variable length integers and strings of a rar 5 header.
+	 */
+	private static class HeaderReader {
+
+		private final byte[] data;
+
+		private final int end;
+
+		private int position;
+
+		private HeaderReader(byte[] data, int position, int end) {
+			this.data = data;
+			this.position = position;
+			this.end = end;
+		}
+
+		private long readVint() throws IOException {
+			long result = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				if(position >= end) {
+					throw new EOFException("Unexpected end of header");
+				}
+				int b = data[position++] & 0xff;
+				result |= (long) (b & 0x7f) << shift;
+				if((b & 0x80) == 0) {
+					return result;
+				}
+			}
+			throw new IOException("Invalid variable length integer");
+		}
+
+		private void skip(int length) throws IOException {
+			if(position + length > end) {
+				throw new EOFException("Unexpected end of header");
+			}
+			position += length;
+		}
+
+		private long readInt() throws IOException {
+			skip(4);
+			return get32(data, position - 4);
+		}
+
+		private String readString(int length) throws IOException {
+			if(length < 0 || position + length > end) {
+				throw new EOFException("Unexpected end of header");
+			}
+			String result = new String(data, position, length, UTF_8);
+			position += length;
+			return result;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package org.rr.commons.utils.compression.rar;
+
+/**
+ * One entry of a rar archive as it's described by it's file header.
+ */
+public class RarEntry {
+
+	private final String name;
+
+	private final long size;
+
+	private final long packedSize;
+
+	private final long dataOffset;
+
+	private final boolean directory;
+
+	private final boolean stored;
+
+	private final boolean encrypted;
+
+	private final boolean split;
+
+	private final boolean solid;
+
+	private final int version;
+
+	private final long dictionarySize;
+
+	private final long crc;
+
+	RarEntry(String name, long size, long packedSize, long dataOffset, boolean directory, boolean stored, boolean encrypted, boolean split,
+			boolean solid, int version, long dictionarySize, long crc) {
+		this.name = name;
+		this.size = size;
+		this.packedSize = packedSize;
+		this.dataOffset = dataOffset;
+		this.directory = directory;
+		this.stored = stored;
+		this.encrypted = encrypted;
+		this.split = split;
+		this.solid = solid;
+		this.version = version;
+		this.dictionarySize = dictionarySize;
+		this.crc = crc;
+	}
+
+	/**
+	 * @return The path of the entry with <code>/</code> as separator.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The uncompressed size or <code>-1</code> if the size is unknown.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return The size of the entry data in the archive.
+	 */
+	public long getPackedSize() {
+		return packedSize;
+	}
+
+	/**
+	 * @return The position of the entry data in the archive.
+	 */
+	long getDataOffset() {
+		return dataOffset;
+	}
+
+	public boolean isDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return <code>true</code> if the entry data is stored without compression.
+	 */
+	public boolean isStored() {
+		return stored;
+	}
+
+	public boolean isEncrypted() {
+		return encrypted;
+	}
+
+	/**
+	 * @return <code>true</code> if the entry data is continued in another volume.
+	 */
+	public boolean isSplit() {
+		return split;
+	}
+
+	/**
+	 * @return <code>true</code> if the entry is compressed with the dictionary of the previous entry, so all
+	 * previous entries up to the first non solid one must be decompressed before.
+	 */
+	public boolean isSolid() {
+		return solid;
+	}
+
+	/**
+	 * @return The version of the compression algorithm. The rar 4 unpack version, for example 29 for rar 2.9
+	 * to 4, or the algorithm version of rar 5 which is 0 for rar 5 and 1 for rar 7.
+	 */
+	int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return The size of the dictionary the entry is compressed with.
+	 */
+	long getDictionarySize() {
+		return dictionarySize;
+	}
+
+	/**
+	 * @return The CRC32 of the uncompressed data or <code>-1</code> if it's not known.
+	 */
+	long getCrc() {
+		return crc;
+	}
+
+	/**
+	 * @return <code>true</code> if the entry data could be read directly from the archive file.
+	 */
+	public boolean isDirectlyReadable() {
+		return stored && !encrypted && !split && !directory && size == packedSize;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
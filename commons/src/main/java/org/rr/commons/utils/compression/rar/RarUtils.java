@@ -1,10 +1,14 @@
 package org.rr.commons.utils.compression.rar;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 
@@ -17,17 +21,22 @@ import org.rr.commons.utils.ProcessExecutor;
 import org.rr.commons.utils.ProcessExecutorHandler;
 import org.rr.commons.utils.ReflectionUtils;
 import org.rr.commons.utils.StringUtil;
+import org.rr.commons.utils.compression.ArchiveIndexCache;
 import org.rr.commons.utils.compression.CompressedDataEntry;
+import org.rr.commons.utils.compression.CompressedEntryVisitor;
 import org.rr.commons.utils.compression.CompressionUtils;
 import org.rr.commons.utils.compression.EmptyFileEntryFilter;
 import org.rr.commons.utils.compression.FileEntryFilter;
 
+/**
+ * Reads rar archives with the {@link RarArchive} and adds entries to them with the rar executable.
+ */
 public class RarUtils {
 	
 	private static String rarExecFolder;
 	
 	/**
-	 * Set the folder where the rar executables could be found.
+	 * Set the folder where the rar executable could be found.
 	 */
 	public static void setRarExecFolder(String rarExecF) {
 		rarExecFolder = rarExecF;
@@ -35,15 +44,27 @@ public class RarUtils {
 	
 	/**
 	 * Extracts all entries from a rar file that are accepted by the given {@link FileEntryFilter}.
+	 * All accepted entries are read with one pass over the archive.
 	 * @param rarFileHandler The rar file in the file system.
 	 * @param path qualified rar path of the entry to be extracted.
 	 * @return The desired extracted entries.
 	 */
 	public static List<CompressedDataEntry> extract(IResourceHandler rarFileHandler, FileEntryFilter rarFileFilter) {
 		ArrayList<CompressedDataEntry> result = new ArrayList<>();
-		List<String> list = list(rarFileHandler, rarFileFilter);
-		for(String entry : list) {
-			result.add(extract(rarFileHandler, entry));
+		List<RarEntry> index = readIndex(rarFileHandler);
+		if(index != null) {
+			List<RarEntry> accepted = getAcceptedEntries(index, rarFileFilter);
+			Map<String, byte[]> data = readEntries(rarFileHandler, index, accepted);
+			for(RarEntry entry : accepted) {
+				String name = entry.getName();
+				byte[] bytes = data.get(name);
+				if(bytes != null) {
+					result.add(new CompressedDataEntry(name, name.getBytes(), bytes));
+				} else {
+					result.add(new LazyRarDataEntry(rarFileHandler, name));
+				}
+			}
+			Collections.sort(result);
 		}
 		return result;
 	}
@@ -67,71 +88,107 @@ public class RarUtils {
 		return result;
 	}
 	
-	private static void removeDirectoryEntries(List<String> files) {
-		//need to sort previous because the dir path is always directly before
-		//the file entry.
-		Collections.sort(files);
-		ArrayList<String> toRemove = new ArrayList<>();
-		for(int i = 0; i < files.size(); i++) {
-			String current = files.get(i);
-			if(files.size() > i + 1) {
-				String next = files.get(i + 1);
-				if(next.startsWith(current + "/")) {
-					toRemove.add(current);
-				}
-			}
+	/**
+	 * List all entries of the rar file allowed by the given {@link ZipFileFilter} instance. The entry names
+	 * are read from the archive headers and cached by the {@link ArchiveIndexCache}.
+	 */
+	public static List<String> list(final IResourceHandler rarFileHandler, final FileEntryFilter rarFileFilter) {
+		List<RarEntry> index = readIndex(rarFileHandler);
+		if(index == null) {
+			return new ArrayList<>();
+		}
+		List<String> result = new ArrayList<>(index.size());
+		for(RarEntry entry : getAcceptedEntries(index, rarFileFilter)) {
+			result.add(entry.getName());
 		}
-		files.removeAll(toRemove);
+		Collections.sort(result);
+		return result;
 	}
 	
-	private static List<String> processFileEntryFilter(List<String> files, FileEntryFilter filter) {
-		ArrayList<String> result = new ArrayList<>(files.size());
-		for(String file: files) {
-			if(filter == null || filter.accept(file, file.getBytes())) {
-				result.add(file);
+	private static List<RarEntry> getAcceptedEntries(List<RarEntry> index, FileEntryFilter filter) {
+		List<RarEntry> accepted = new ArrayList<>();
+		for(RarEntry entry : index) {
+			String name = entry.getName();
+			if(!entry.isDirectory() && (filter == null || filter.accept(name, name.getBytes()))) {
+				accepted.add(entry);
 			}
 		}
-		return result;
+		return accepted;
 	}
 	
 	/**
-	 * List all entries of the rar file allowed by the given {@link ZipFileFilter} instance.
+	 * Reads the file headers of the given rar file. The result is cached by the {@link ArchiveIndexCache}
+	 * if the rar file is a local file.
+	 * @return The entries in the order of the archive or <code>null</code> if the headers could not be read.
 	 */
-	public static List<String> list(final IResourceHandler rarFileHandler, final FileEntryFilter rarFileFilter) {
-		final List<String> result = new ArrayList<>();
-		final CommandLine cl = new CommandLine(getUnRarExecutable());
-		
-		cl.addArgument("vb");
-		cl.addArgument("\"" + rarFileHandler.toFile().getPath() + "\"", false);
+	static List<RarEntry> readIndex(IResourceHandler rarFileHandler) {
+		final File rarFile = ArchiveIndexCache.getCacheableFile(rarFileHandler);
+		if(rarFile == null) {
+			try (RarArchive archive = new RarArchive(rarFileHandler.toFile())) {
+				return archive.getEntries();
+			} catch (IOException | RuntimeException e) {
+				LoggerFactory.logInfo(RarUtils.class, "Could not read the headers of rar " + rarFileHandler, e);
+				return null;
+			}
+		}
+		List<RarEntry> cached = ArchiveIndexCache.getInstance().get(rarFile, RarEntry.class);
+		if(cached != null) {
+			return cached;
+		}
 		
-		try {
-			ProcessExecutor.runProcessAsScript(cl, new ProcessExecutorHandler() {
-				
-				@Override
-				public void onStandardOutput(String msg) {
-					if(msg.trim().isEmpty()) {
-						return;
-					} else if(msg.indexOf(cl.toString()) != -1) {
-						return;
-					} else {
-						msg = StringUtil.replace(msg, "\\", "/");
-						result.add(msg);
-					}
-				}
+		long length = rarFile.length();
+		long lastModified = rarFile.lastModified();
+		try (RarArchive archive = new RarArchive(rarFile)) {
+			List<RarEntry> entries = archive.getEntries();
+			ArchiveIndexCache.getInstance().put(rarFile, length, lastModified, RarEntry.class, entries);
+			return entries;
+		} catch (IOException e) {
+			LoggerFactory.logInfo(RarUtils.class, "Could not read the headers of rar " + rarFileHandler, e);
+		}
+		return null;
+	}
+	
+	/**
+	 * Reads the data of the given entries.
+	 * @param index All entries of the rar file as returned by {@link #readIndex(IResourceHandler)}.
+	 * @param entries The entries to be read.
+	 * @return The data of the entries mapped to their names. Entries which could not be read are missing.
+	 */
+	static Map<String, byte[]> readEntries(IResourceHandler rarFileHandler, List<RarEntry> index, List<RarEntry> entries) {
+		final Map<String, byte[]> result = new HashMap<>(entries.size() * 2);
+		try (RarArchive archive = new RarArchive(rarFileHandler.toFile(), index)) {
+			archive.read(entries, new CompressedEntryVisitor() {
 				
 				@Override
-				public void onStandardError(String msg) {
+				public void visit(String name, byte[] data, int length) {
+					result.put(name, Arrays.copyOf(data, length));
 				}
-			}, 100000);
-		} catch (Exception e) {
-			LoggerFactory.getLogger().log(Level.SEVERE, "To list files in rar " + rarFileHandler, e);
+			});
+		} catch (IOException e) {
+			LoggerFactory.logInfo(RarUtils.class, "Could not read entries from rar " + rarFileHandler, e);
+		}
+		return result;
+	}
+	
+	/**
+	 * Reads all entries of the given rar file accepted by the given filter with one pass over the archive
+	 * and hands them to the visitor. All entries are read into the same buffer. Entries which could not be
+	 * read, for example encrypted ones, are skipped.
+	 * @param filter The filter for the entries to be read or <code>null</code> for all entries.
+	 */
+	public static void forEachEntry(IResourceHandler rarFileHandler, FileEntryFilter filter, CompressedEntryVisitor visitor) throws IOException {
+		List<RarEntry> index = readIndex(rarFileHandler);
+		if(index == null) {
+			return;
 		}
 		
-		//remove dirs
-		removeDirectoryEntries(result);
-		
-		//apply filter
-		return processFileEntryFilter(result, rarFileFilter);
+		List<RarEntry> unread;
+		try (RarArchive archive = new RarArchive(rarFileHandler.toFile(), index)) {
+			unread = archive.read(getAcceptedEntries(index, filter), visitor);
+		}
+		if(!unread.isEmpty()) {
+			LoggerFactory.log(Level.WARNING, RarUtils.class, "Could not read " + unread + " from rar " + rarFileHandler);
+		}
 	}
 	
 	/**
@@ -189,6 +246,7 @@ public class RarUtils {
 			if(in != null) {
 				FileUtils.deleteQuietly(in.getParentFile());
 			}
+			ArchiveIndexCache.getInstance().invalidate(rarFileHandler);
 		}
 		return false;
 	}
@@ -204,16 +262,4 @@ public class RarUtils {
 		}
 		throw new RuntimeException("No rar executable!");
 	}
-	
-	/**
-	 * Get the rar executable.
-	 */
-	static String getUnRarExecutable() {
-		if(ReflectionUtils.getOS() == ReflectionUtils.OS_WINDOWS) {
-			return rarExecFolder + File.separator + "UnRAR.exe";
-		} else if(ReflectionUtils.getOS() == ReflectionUtils.OS_LINUX) {
-			return rarExecFolder + File.separator + "unrar";
-		}
-		throw new RuntimeException("No rar executable!");
-	}
 }
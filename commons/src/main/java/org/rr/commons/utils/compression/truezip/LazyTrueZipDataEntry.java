@@ -6,7 +6,9 @@ import java.util.logging.Level;
 import org.apache.commons.io.IOUtils;
 import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.mufs.IResourceHandler;
+import org.rr.commons.utils.compression.ArchiveIndexCache;
 import org.rr.commons.utils.compression.CompressedDataEntry;
+import org.rr.commons.utils.compression.zip.ZipUtils;
 
 import de.schlichtherle.truezip.file.TFile;
 import de.schlichtherle.truezip.file.TFileInputStream;
@@ -22,6 +24,17 @@ class LazyTrueZipDataEntry extends CompressedDataEntry {
 
 	@Override
 	public byte[] getBytes() {
+		if(ArchiveIndexCache.getCacheableFile(zipFileHandler) != null) {
+			try {
+				CompressedDataEntry entry = ZipUtils.extract(zipFileHandler, path);
+				if(entry != null) {
+					return entry.getBytes();
+				}
+			} catch(Exception e) {
+				LoggerFactory.logInfo(this, "Failed to read " + path + " from archive " + zipFileHandler, e);
+			}
+		}
+		
 		File zipFile = zipFileHandler.toFile();
 		zipFile = new TFile(zipFile + "/" + path);
 		TFileInputStream in = null;
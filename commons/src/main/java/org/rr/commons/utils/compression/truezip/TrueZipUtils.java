@@ -1,6 +1,7 @@
 package org.rr.commons.utils.compression.truezip;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -13,10 +14,13 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.mufs.IResourceHandler;
+import org.rr.commons.utils.compression.ArchiveIndexCache;
 import org.rr.commons.utils.compression.CompressedDataEntry;
+import org.rr.commons.utils.compression.CompressedEntryVisitor;
 import org.rr.commons.utils.compression.CompressionUtils;
 import org.rr.commons.utils.compression.EmptyFileEntryFilter;
 import org.rr.commons.utils.compression.FileEntryFilter;
+import org.rr.commons.utils.compression.zip.ZipUtils;
 
 import de.schlichtherle.truezip.file.TArchiveDetector;
 import de.schlichtherle.truezip.file.TConfig;
@@ -38,7 +42,9 @@ public class TrueZipUtils {
 	}
 	
 	/**
-	 * Extracts all entries from a zip file that are accepted by the given {@link ZipFileFilter}.
+	 * Extracts all entries from a zip file that are accepted by the given {@link ZipFileFilter}. The entries
+	 * are lazy and read their data on demand, use {@link CompressionUtils#forEachEntry(IResourceHandler, FileEntryFilter, CompressedEntryVisitor)}
+	 * to read all entries with one pass.
 	 * @param zipFile The zip file in the file system.
 	 * @param path qualified zip path of the entry to be extracted.
 	 * @return The desired extracted entries.
@@ -73,9 +79,26 @@ public class TrueZipUtils {
 	}
 	
 	/**
-	 * List all entries of the zip file allowed by the given {@link ZipFileFilter} instance.
+	 * List all entries of the zip file allowed by the given {@link ZipFileFilter} instance. Local zip files
+	 * are listed from their central directory which is cached by the {@link ArchiveIndexCache}.
 	 */	
-	public static List<String> list(IResourceHandler zipFileHandler, FileEntryFilter zipFileFilter) {
+	public static List<String> list(IResourceHandler zipFileHandler, final FileEntryFilter zipFileFilter) {
+		if(ArchiveIndexCache.getCacheableFile(zipFileHandler) != null) {
+			try {
+				List<String> result = ZipUtils.list(zipFileHandler, new FileEntryFilter() {
+					
+					@Override
+					public boolean accept(String entry, byte[] rawEntry) {
+						return !entry.endsWith("/") && zipFileFilter.accept(entry, entry.getBytes());
+					}
+				});
+				Collections.sort(result);
+				return result;
+			} catch (IOException e) {
+				LoggerFactory.logInfo(TrueZipUtils.class, "Failed to list " + zipFileHandler, e);
+			}
+		}
+		
 		File zipFile = zipFileHandler.toFile();
 		TFile archive = new TFile(zipFile.toString());
 		Collection<File> listFiles = FileUtils.listFiles(archive, null, true);
@@ -129,6 +152,7 @@ public class TrueZipUtils {
 		    // Pop the current configuration off the inheritable thread local stack.
 		    config.close();
 		    unmout();
+		    ArchiveIndexCache.getInstance().invalidate(zipFileHandler);
 		}
 		return isDeleted;
 	}
@@ -0,0 +1,341 @@
+package org.rr.commons.utils.compression.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes zip files like the {@link ZipOutputStream} but compresses the entries in parallel. The data of
+ * each entry is collected until the entry is closed and then deflated by a worker thread which also
+ * calculates the crc. The compressed entries are written in the order they were added. If the data of
+ * the entries waiting to be written exceeds a limit, adding the next entry waits for the oldest ones,
+ * so the memory used for the pending entries is limited.<br>
+ * Instances are not thread-safe and must be used by one thread like the {@link ZipOutputStream}.
+ */
+public class ParallelZipOutputStream extends OutputStream {
+
+	private static final int WORKER_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+	/** Uncompressed bytes per worker of the compressed or compressing entries which are not written yet. */
+	private static final long PENDING_BYTES_PER_WORKER = 4 * 1024 * 1024;
+
+	private static final ExecutorService pool = Executors.newFixedThreadPool(WORKER_COUNT, new ThreadFactory() {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "ParallelZipOutputStream-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+
+		@Override
+		protected Deflater initialValue() {
+			return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		}
+	};
+
+	private final OutputStream out;
+
+	private final ZipOutputStream zipOut;
+
+	private final Deque<PendingEntry> pendingEntries = new ArrayDeque<>();
+
+	private final Set<String> names = new HashSet<>();
+
+	private final long maxPendingBytes;
+
+	private long pendingBytes;
+
+	private ZipEntry current;
+
+	private EntryData currentData;
+
+	private int method = ZipEntry.DEFLATED;
+
+	private int level = Deflater.DEFAULT_COMPRESSION;
+
+	private boolean finished;
+
+	private boolean closed;
+
+	public ParallelZipOutputStream(OutputStream out) {
+		this(out, WORKER_COUNT * PENDING_BYTES_PER_WORKER);
+	}
+
+	/**
+	 * @param out The target for the zip data.
+	 * @param maxPendingBytes The maximum number of uncompressed bytes of the entries which are compressed or
+	 *    waiting to be written. An entry which is larger than this limit is compressed after all previous entries are written.
+	 */
+	public ParallelZipOutputStream(OutputStream out, long maxPendingBytes) {
+		this.out = out;
+		this.zipOut = new ZipOutputStream(out);
+		this.maxPendingBytes = Math.max(1, maxPendingBytes);
+	}
+
+	/**
+	 * Sets the default compression method for entries without a compression method.
+	 * @see ZipOutputStream#setMethod(int)
+	 */
+	public void setMethod(int method) {
+		if (method != ZipEntry.DEFLATED && method != ZipEntry.STORED) {
+			throw new IllegalArgumentException("invalid compression method");
+		}
+		this.method = method;
+	}
+
+	/**
+	 * Sets the compression level for the following deflated entries.
+	 * @see ZipOutputStream#setLevel(int)
+	 */
+	public void setLevel(int level) {
+		if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("invalid compression level");
+		}
+		this.level = level;
+	}
+
+	/**
+	 * Begins a new entry. Closes the current entry if still active. The size, compressed size
+	 * and crc of the entry are calculated when the entry is compressed.
+	 */
+	public void putNextEntry(ZipEntry e) throws IOException {
+		ensureOpen();
+		if (current != null) {
+			closeEntry();
+		}
+		if (e.getMethod() == -1) {
+			e.setMethod(method);
+		}
+		if (!names.add(e.getName())) {
+			throw new ZipException("duplicate entry: " + e.getName());
+		}
+		current = e;
+		currentData = new EntryData(e.getSize() > 0 && e.getSize() < Integer.MAX_VALUE - 8 ? (int) e.getSize() : 8192);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureEntry();
+		currentData.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureEntry();
+		currentData.write(b, off, len);
+	}
+
+	/**
+	 * Closes the current entry and passes it's data to a worker for compression. Finished entries
+	 * are written to the target stream.
+	 */
+	public void closeEntry() throws IOException {
+		ensureOpen();
+		if (current == null) {
+			return;
+		}
+		final ZipEntry entry = current;
+		final EntryData data = currentData;
+		final int entryLevel = level;
+		current = null;
+		currentData = null;
+
+		while (!pendingEntries.isEmpty() && pendingBytes + data.size() > maxPendingBytes) {
+			writeEntry(pendingEntries.poll());
+		}
+		pendingEntries.add(new PendingEntry(pool.submit(new Callable<CompressedEntry>() {
+
+			@Override
+			public CompressedEntry call() throws Exception {
+				return compress(entry, data, entryLevel);
+			}
+		}), data.size()));
+		pendingBytes += data.size();
+		while (!pendingEntries.isEmpty() && pendingEntries.peek().future.isDone()) {
+			writeEntry(pendingEntries.poll());
+		}
+	}
+
+	/**
+	 * Writes all pending entries and the central directory without closing the target stream.
+	 */
+	public void finish() throws IOException {
+		ensureOpen();
+		if (finished) {
+			return;
+		}
+		closeEntry();
+		while (!pendingEntries.isEmpty()) {
+			writeEntry(pendingEntries.poll());
+		}
+		zipOut.finish();
+		finished = true;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		zipOut.flush();
+	}
+
+	/**
+	 * Finishes the zip and closes the target stream. Pending entries are discarded if the zip could not be finished.
+	 * The target stream is also closed in this case.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			finish();
+		} finally {
+			closed = true;
+			for (PendingEntry pendingEntry : pendingEntries) {
+				pendingEntry.future.cancel(false);
+			}
+			pendingEntries.clear();
+			pendingBytes = 0;
+			if (finished) {
+				zipOut.close();
+			} else {
+				// the zip stream could not be closed because it would try to finish the incomplete zip again.
+				out.close();
+			}
+		}
+	}
+
+	private void writeEntry(PendingEntry pendingEntry) throws IOException {
+		pendingBytes -= pendingEntry.size;
+		final CompressedEntry compressedEntry;
+		try {
+			compressedEntry = pendingEntry.future.get();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while compressing zip entries");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		OutputStream rawOut = zipOut.putNextRawEntry(compressedEntry.entry);
+		rawOut.write(compressedEntry.data.getBuffer(), 0, compressedEntry.data.size());
+		zipOut.closeRawEntry();
+	}
+
+	private static CompressedEntry compress(ZipEntry entry, EntryData data, int level) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(data.getBuffer(), 0, data.size());
+		if (entry.getMethod() == ZipEntry.STORED) {
+			checkEntry(entry, "size", entry.getSize(), data.size());
+			checkEntry(entry, "crc-32", entry.getCrc(), crc.getValue());
+			entry.setSize(data.size());
+			entry.setCompressedSize(data.size());
+			entry.setCrc(crc.getValue());
+			return new CompressedEntry(entry, data);
+		}
+
+		Deflater deflater = deflaters.get();
+		try {
+			deflater.setLevel(level);
+			deflater.setInput(data.getBuffer(), 0, data.size());
+			deflater.finish();
+			EntryData compressed = new EntryData(Math.max(64, data.size() / 2));
+			byte[] buf = new byte[8192];
+			while (!deflater.finished()) {
+				int len = deflater.deflate(buf, 0, buf.length);
+				compressed.write(buf, 0, len);
+			}
+			checkEntry(entry, "size", entry.getSize(), data.size());
+			checkEntry(entry, "crc-32", entry.getCrc(), crc.getValue());
+			entry.setSize(data.size());
+			entry.setCompressedSize(compressed.size());
+			entry.setCrc(crc.getValue());
+			return new CompressedEntry(entry, compressed);
+		} finally {
+			deflater.reset();
+		}
+	}
+
+	/**
+	 * Tests if a value which was already set to the entry matches the calculated one.
+	 */
+	private static void checkEntry(ZipEntry entry, String name, long expected, long actual) throws ZipException {
+		if (expected != -1 && expected != actual) {
+			throw new ZipException("invalid entry " + name + " for " + entry.getName() + " (expected " + expected + " but got " + actual + ")");
+		}
+	}
+
+	private void ensureEntry() throws IOException {
+		ensureOpen();
+		if (current == null) {
+			throw new ZipException("no current ZIP entry");
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	private static class PendingEntry {
+
+		private final Future<CompressedEntry> future;
+
+		/** The uncompressed size of the entry. */
+		private final int size;
+
+		private PendingEntry(Future<CompressedEntry> future, int size) {
+			this.future = future;
+			this.size = size;
+		}
+	}
+
+	private static class CompressedEntry {
+
+		private final ZipEntry entry;
+
+		private final EntryData data;
+
+		private CompressedEntry(ZipEntry entry, EntryData data) {
+			this.entry = entry;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * Byte array stream which provides it's buffer without copying it.
+	 */
+	private static class EntryData extends ByteArrayOutputStream {
+
+		private EntryData(int size) {
+			super(size);
+		}
+
+		private byte[] getBuffer() {
+			return buf;
+		}
+	}
+}
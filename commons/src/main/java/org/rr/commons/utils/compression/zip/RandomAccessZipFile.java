@@ -0,0 +1,415 @@
+package org.rr.commons.utils.compression.zip;
+
+import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_ENDHDR;
+import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_ENDOFF;
+import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_ENDSIG;
+import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_ENDSIZ;
+import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_ENDTOT;
+import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_EXTID;
+import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_LOCHDR;
+import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_LOCOFF;
+import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_LOCSIG;
+import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_MAGICCOUNT;
+import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_MAGICVAL;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads zip files with random access. The central directory is parsed once when the file is opened,
+ * so each entry can be read by seeking directly to it's local header. The file is read with positional
+ * {@link FileChannel} reads, so the streams of several entries can be used at the same time.<br>
+ * Entry names are decoded like the {@link ZipInputStream} does it. If the names could not be decoded
+ * with the given charset, <code>ibm437</code> is used.
+ */
+public class RandomAccessZipFile implements Closeable, ZipConstants {
+
+	/** Maximum size of the end of central directory record including the zip file comment. */
+	private static final int END_MAXLEN = 0xFFFF + ENDHDR;
+
+	private final File file;
+
+	private final RandomAccessFile randomAccessFile;
+
+	private final FileChannel channel;
+
+	private final List<ZipEntry> entries;
+
+	private final Map<String, ZipEntry> entriesByName;
+
+	/**
+	 * Opens the given zip file and reads the entry names as UTF-8.
+	 */
+	public RandomAccessZipFile(File file) throws IOException {
+		this(file, Charset.forName("UTF-8"));
+	}
+
+	/**
+	 * Opens the given zip file.
+	 * @param file The zip file to be read.
+	 * @param charset The charset of the entry names.
+	 * @throws ZipException if the central directory could not be read.
+	 */
+	public RandomAccessZipFile(File file, Charset charset) throws IOException {
+		this.file = file;
+		this.randomAccessFile = new RandomAccessFile(file, "r");
+		this.channel = randomAccessFile.getChannel();
+		try {
+			this.entries = Collections.unmodifiableList(readCentralDirectory(charset));
+		} catch(IOException | RuntimeException e) {
+			IOUtils.closeQuietly(randomAccessFile);
+			throw e;
+		}
+		this.entriesByName = createEntriesByName(entries);
+	}
+
+	/**
+	 * Opens the given zip file with entries read before from it's central directory,
+	 * so the central directory has not to be read again.
+	 * @param file The zip file to be read.
+	 * @param entries The entries of the zip file with their local header offsets.
+	 */
+	RandomAccessZipFile(File file, List<ZipEntry> entries) throws IOException {
+		this.file = file;
+		this.randomAccessFile = new RandomAccessFile(file, "r");
+		this.channel = randomAccessFile.getChannel();
+		this.entries = Collections.unmodifiableList(entries);
+		this.entriesByName = createEntriesByName(entries);
+	}
+
+	private static Map<String, ZipEntry> createEntriesByName(List<ZipEntry> entries) {
+		Map<String, ZipEntry> entriesByName = new LinkedHashMap<>(entries.size() * 2);
+		for (ZipEntry entry : entries) {
+			if(!entriesByName.containsKey(entry.getName())) {
+				entriesByName.put(entry.getName(), entry);
+			}
+		}
+		return entriesByName;
+	}
+
+	/**
+	 * @return The zip file read by this instance.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return All entries in the order of the central directory.
+	 */
+	public List<ZipEntry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @return The entry with the given name or <code>null</code> if there is no such entry.
+	 */
+	public ZipEntry getEntry(String name) {
+		return entriesByName.get(name);
+	}
+
+	/**
+	 * Opens a stream which provides the uncompressed data of the given entry.
+	 * @param entry An entry of this zip file.
+	 */
+	public InputStream getInputStream(ZipEntry entry) throws IOException {
+		final long dataOffset = getDataOffset(entry);
+		final InputStream in = new ChannelInputStream(dataOffset, entry.csize);
+		if(entry.method == ZipEntry.STORED) {
+			return in;
+		} else if(entry.method == ZipEntry.DEFLATED) {
+			return new EntryInflaterInputStream(in, entry.size);
+		}
+		throw new ZipException("invalid compression method " + entry.method + " for " + entry.getName());
+	}
+
+	/**
+	 * Opens a stream which provides the data of the given entry as it's stored in the zip file,
+	 * so deflated entries are not inflated.
+	 * @param entry An entry of this zip file.
+	 */
+	public InputStream getRawInputStream(ZipEntry entry) throws IOException {
+		return new ChannelInputStream(getDataOffset(entry), entry.csize);
+	}
+
+	/**
+	 * Reads the uncompressed data of the given entry.
+	 * @param entry An entry of this zip file.
+	 */
+	public byte[] getBytes(ZipEntry entry) throws IOException {
+		InputStream in = getInputStream(entry);
+		try {
+			if(entry.size >= 0 && entry.size <= Integer.MAX_VALUE) {
+				byte[] result = new byte[(int) entry.size];
+				IOUtils.readFully(in, result);
+				return result;
+			}
+			return IOUtils.toByteArray(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		randomAccessFile.close();
+	}
+
+	/**
+	 * Reads the local header of the given entry to get the position where the entry data starts.
+	 * The name and extra field length of the local header may differ from the central directory.
+	 */
+	private long getDataOffset(ZipEntry entry) throws IOException {
+		byte[] loc = new byte[LOCHDR];
+		readFully(entry.offset, loc, 0, LOCHDR);
+		if(get32(loc, 0) != LOCSIG) {
+			throw new ZipException("invalid local header for " + entry.getName());
+		}
+		return entry.offset + LOCHDR + get16(loc, LOCNAM) + get16(loc, LOCEXT);
+	}
+
+	private List<ZipEntry> readCentralDirectory(Charset charset) throws IOException {
+		final long fileLength = channel.size();
+		final int endLength = (int) Math.min(fileLength, END_MAXLEN);
+		final byte[] end = new byte[endLength];
+		readFully(fileLength - endLength, end, 0, endLength);
+
+		int endOffset = -1;
+		for (int i = endLength - ENDHDR; i >= 0; i--) {
+			if(get32(end, i) == ENDSIG) {
+				endOffset = i;
+				break;
+			}
+		}
+		if(endOffset < 0) {
+			throw new ZipException("end of central directory not found in " + file);
+		}
+
+		long total = get16(end, endOffset + ENDTOT);
+		long censize = get32(end, endOffset + ENDSIZ);
+		long cenoffset = get32(end, endOffset + ENDOFF);
+		if(total == ZIP64_MAGICCOUNT || censize == ZIP64_MAGICVAL || cenoffset == ZIP64_MAGICVAL) {
+			long locatorPosition = fileLength - endLength + endOffset - ZIP64_LOCHDR;
+			if(locatorPosition >= 0) {
+				byte[] locator = new byte[ZIP64_LOCHDR];
+				readFully(locatorPosition, locator, 0, ZIP64_LOCHDR);
+				if(get32(locator, 0) == ZIP64_LOCSIG) {
+					byte[] end64 = new byte[ZIP64_ENDHDR];
+					readFully(get64(locator, ZIP64_LOCOFF), end64, 0, ZIP64_ENDHDR);
+					if(get32(end64, 0) != ZIP64_ENDSIG) {
+						throw new ZipException("invalid zip64 end of central directory in " + file);
+					}
+					total = get64(end64, ZIP64_ENDTOT);
+					cenoffset = get64(end64, ZIP64_ENDOFF);
+					censize = get64(end64, ZIP64_ENDSIZ);
+				}
+			}
+		}
+		if(censize > Integer.MAX_VALUE || cenoffset + censize > fileLength) {
+			throw new ZipException("invalid central directory in " + file);
+		}
+
+		final byte[] cen = new byte[(int) censize];
+		readFully(cenoffset, cen, 0, cen.length);
+		final List<ZipEntry> result = new ArrayList<>((int) Math.min(total, 0xFFFF));
+		ZipCoder zc = ZipCoder.get(charset);
+		int pos = 0;
+		while(pos + CENHDR <= cen.length) {
+			if(get32(cen, pos) != CENSIG) {
+				throw new ZipException("invalid central directory header in " + file);
+			}
+			int nameLength = get16(cen, pos + CENNAM);
+			int extraLength = get16(cen, pos + CENEXT);
+			int commentLength = get16(cen, pos + CENCOM);
+			byte[] rawName = new byte[nameLength];
+			System.arraycopy(cen, pos + CENHDR, rawName, 0, nameLength);
+			String name;
+			try {
+				name = zc.toString(rawName, nameLength);
+			} catch (IllegalArgumentException ex) {
+				//fallback - switch zip coder if decoding file name/path fails.
+				zc = ZipCoder.get(Charset.forName("ibm437"));
+				name = zc.toString(rawName, nameLength);
+			}
+
+			ZipEntry e = new ZipEntry(name, rawName);
+			e.flag = get16(cen, pos + CENFLG);
+			e.method = get16(cen, pos + CENHOW);
+			e.time = get32(cen, pos + CENTIM);
+			e.crc = get32(cen, pos + CENCRC);
+			e.csize = get32(cen, pos + CENSIZ);
+			e.size = get32(cen, pos + CENLEN);
+			e.offset = get32(cen, pos + CENOFF);
+			if(extraLength > 0) {
+				byte[] extra = new byte[extraLength];
+				System.arraycopy(cen, pos + CENHDR + nameLength, extra, 0, extraLength);
+				e.setExtra(extra);
+				readZip64Extra(e, extra);
+			}
+			result.add(e);
+			pos += CENHDR + nameLength + extraLength + commentLength;
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the sizes and the offset from the zip64 extra field which are marked with the zip64 magic value.
+	 */
+	private static void readZip64Extra(ZipEntry e, byte[] extra) {
+		int off = 0;
+		while(off + 4 <= extra.length) {
+			int id = get16(extra, off);
+			int size = get16(extra, off + 2);
+			off += 4;
+			if(id == ZIP64_EXTID) {
+				int end = Math.min(off + size, extra.length);
+				if(e.size == ZIP64_MAGICVAL && off + 8 <= end) {
+					e.size = get64(extra, off);
+					off += 8;
+				}
+				if(e.csize == ZIP64_MAGICVAL && off + 8 <= end) {
+					e.csize = get64(extra, off);
+					off += 8;
+				}
+				if(e.offset == ZIP64_MAGICVAL && off + 8 <= end) {
+					e.offset = get64(extra, off);
+				}
+				return;
+			}
+			off += size;
+		}
+	}
+
+	private void readFully(long position, byte[] b, int off, int len) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+		while(buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position() - off);
+			if(read < 0) {
+				throw new EOFException("Unexpected end of " + file);
+			}
+		}
+	}
+
+	private static final int get16(byte b[], int off) {
+		return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+	}
+
+	private static final long get32(byte b[], int off) {
+		return (get16(b, off) | ((long) get16(b, off + 2) << 16)) & 0xffffffffL;
+	}
+
+	private static final long get64(byte b[], int off) {
+		return get32(b, off) | (get32(b, off + 4) << 32);
+	}
+
+	/**
+	 * Reads a section of the file with positional reads, so it did not change or depend on the channel position.
+	 */
+	private class ChannelInputStream extends InputStream {
+
+		private long position;
+
+		private long remaining;
+
+		private ChannelInputStream(long position, long length) {
+			this.position = position;
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(remaining <= 0) {
+				return -1;
+			}
+			int length = (int) Math.min(len, remaining);
+			int read = channel.read(ByteBuffer.wrap(b, off, length), position);
+			if(read > 0) {
+				position += read;
+				remaining -= read;
+			}
+			return read;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(remaining, Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Inflates the raw deflate data of an entry. Provides the additional dummy byte the {@link Inflater}
+	 * needs with the <code>nowrap</code> option at the end of the input.
+	 */
+	private static class EntryInflaterInputStream extends java.util.zip.InflaterInputStream {
+
+		private final long size;
+
+		private boolean eof = false;
+
+		private long read = 0;
+
+		private EntryInflaterInputStream(InputStream in, long size) {
+			super(in, new Inflater(true), (int) Math.max(512, Math.min(size, 8192)));
+			this.size = size;
+		}
+
+		@Override
+		protected void fill() throws IOException {
+			if(eof) {
+				throw new EOFException("Unexpected end of ZLIB input stream");
+			}
+			len = in.read(buf, 0, buf.length);
+			if(len == -1) {
+				buf[0] = 0;
+				len = 1;
+				eof = true;
+			}
+			inf.setInput(buf, 0, len);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int result = super.read(b, off, len);
+			if(result > 0) {
+				read += result;
+			}
+			return result;
+		}
+
+		@Override
+		public int available() throws IOException {
+			if(size < 0) {
+				return super.available();
+			}
+			return (int) Math.min(Math.max(size - read, 0), Integer.MAX_VALUE);
+		}
+
+		@Override
+		public void close() throws IOException {
+			super.close();
+			inf.end();
+		}
+	}
+}
@@ -47,6 +47,7 @@ public class ZipEntry implements ZipConstants, Cloneable {
     int flag = 0;       // general purpose flag
     byte[] extra;       // optional extra field data for entry
     String comment;     // optional comment string for entry
+    long offset = -1;   // offset of the local file header, only known if read from the central directory
 
     /**
      * Compression method for uncompressed entries.
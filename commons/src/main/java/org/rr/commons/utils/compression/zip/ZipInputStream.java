@@ -35,6 +35,7 @@ import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_MAGICVAL
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PushbackInputStream;
 import java.nio.charset.Charset;
 import java.util.zip.CRC32;
@@ -66,6 +67,10 @@ class ZipInputStream extends InflaterInputStream implements ZipConstants {
 
     private ZipCoder zc;
 
+    // receives the compressed data while an entry is transferred raw
+    private OutputStream rawOut;
+    private int rawLen;
+
     /**
      * Check to make sure that this stream has not been closed
      */
@@ -148,6 +153,68 @@ class ZipInputStream extends InflaterInputStream implements ZipConstants {
         entryEOF = true;
     }
 
+    /**
+     * Writes the current entry to the given zip output stream with it's
+     * compressed data, so the data is not inflated and deflated again.
+     * Entries with sizes and crc-32 in the local header are copied without
+     * inflating them. Entries with a data descriptor must be inflated to
+     * find the end of their data but the compressed data is still copied
+     * as it is. Must be invoked before any data of the entry has been read.
+     * @param zipOut the stream where the entry should be written to
+     * @exception ZipException if a ZIP file error has occurred
+     * @exception IOException if an I/O error has occurred
+     */
+    public void transferRawEntry(ZipOutputStream zipOut) throws IOException {
+        ensureOpen();
+        if (entry == null || entryEOF) {
+            throw new ZipException("no current ZIP entry");
+        }
+        if ((entry.method == STORED && remaining != entry.size) ||
+            (entry.method == DEFLATED && inf.getBytesRead() > 0)) {
+            throw new ZipException("entry data already read: " + entry.name);
+        }
+        ZipEntry e = entry;
+        ZipEntry rawEntry = new ZipEntry(e);
+        OutputStream out = zipOut.putNextRawEntry(rawEntry);
+        if ((flag & 8) == 0) {
+            long n = e.csize;
+            while (n > 0) {
+                int len = in.read(tmpbuf, 0, (int) Math.min(tmpbuf.length, n));
+                if (len == -1) {
+                    throw new EOFException();
+                }
+                out.write(tmpbuf, 0, len);
+                n -= len;
+            }
+            entry = null;
+        } else {
+            rawOut = out;
+            rawLen = 0;
+            try {
+                while (read(tmpbuf, 0, tmpbuf.length) != -1) ;
+            } finally {
+                rawOut = null;
+            }
+            rawEntry.crc = e.crc;
+            rawEntry.size = e.size;
+        }
+        entryEOF = true;
+        zipOut.closeRawEntry();
+    }
+
+    /**
+     * Fills the input buffer with more data to decompress. The previous
+     * content of the buffer has been consumed completely by the inflater.
+     * @exception IOException if an I/O error has occurred
+     */
+    protected void fill() throws IOException {
+        if (rawOut != null && rawLen > 0) {
+            rawOut.write(buf, 0, rawLen);
+        }
+        super.fill();
+        rawLen = len;
+    }
+
     /**
      * Returns 0 after EOF has reached for the current entry data,
      * otherwise always return 1.
@@ -375,6 +442,9 @@ class ZipInputStream extends InflaterInputStream implements ZipConstants {
      */
     private void readEnd(ZipEntry e) throws IOException {
         int n = inf.getRemaining();
+        if (rawOut != null) {
+            rawOut.write(buf, 0, rawLen - n);
+        }
         if (n > 0) {
             ((PushbackInputStream)in).unread(buf, len - n, n);
         }
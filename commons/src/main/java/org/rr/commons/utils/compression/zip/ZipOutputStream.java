@@ -32,7 +32,9 @@ import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_LOCSIG;
 import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_MAGICCOUNT;
 import static org.rr.commons.utils.compression.zip.ZipConstants64.ZIP64_MAGICVAL;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.HashSet;
@@ -61,6 +63,7 @@ class ZipOutputStream extends DeflaterOutputStream implements ZipConstants {
     }
 
     private XEntry current;
+    private XEntry raw;
     private Vector<XEntry> xentries = new Vector<>();
     private HashSet<String> names = new HashSet<>();
     private CRC32 crc = new CRC32();
@@ -184,6 +187,9 @@ class ZipOutputStream extends DeflaterOutputStream implements ZipConstants {
         if (current != null) {
             closeEntry();       // close previous entry
         }
+        if (raw != null) {
+            throw new ZipException("raw entry not closed: " + raw.entry.name);
+        }
         if (e.time == -1) {
             e.setTime(System.currentTimeMillis());
         }
@@ -227,6 +233,136 @@ class ZipOutputStream extends DeflaterOutputStream implements ZipConstants {
         writeLOC(current);
     }
 
+    /**
+     * Writes an entry with data which is already compressed with the
+     * compression method of the entry, for example the raw data of an entry
+     * read from another zip file. The data is copied without inflating and
+     * deflating it again. Closes the current entry if still active.
+     * @param e the ZIP entry to be written. The size, compressed size and
+     *          crc-32 must be set.
+     * @param compressedData the compressed entry data
+     * @exception ZipException if a ZIP format error has occurred
+     * @exception IOException if an I/O error has occurred
+     */
+    public void writeRawEntry(ZipEntry e, InputStream compressedData) throws IOException {
+        if (e.size == -1 || e.csize == -1 || e.crc == -1) {
+            throw new ZipException(
+                "raw entry missing size, compressed size, or crc-32");
+        }
+        OutputStream rawOut = putNextRawEntry(e);
+        byte[] buf = new byte[(int) Math.max(1, Math.min(e.csize, 65536))];
+        long remaining = e.csize;
+        while (remaining > 0) {
+            int len = compressedData.read(buf, 0, (int) Math.min(buf.length, remaining));
+            if (len < 0) {
+                throw new ZipException("invalid entry compressed size (expected " +
+                    e.csize + " but got " + (e.csize - remaining) + " bytes)");
+            }
+            rawOut.write(buf, 0, len);
+            remaining -= len;
+        }
+        closeRawEntry();
+    }
+
+    /*
+     * Begins writing an entry whose already compressed data is written to
+     * the returned stream. If the size, compressed size or crc-32 of the
+     * entry is not known, a data descriptor is written by closeRawEntry and
+     * the size and crc-32 must be set to the entry before.
+     */
+    OutputStream putNextRawEntry(ZipEntry e) throws IOException {
+        ensureOpen();
+        if (current != null) {
+            closeEntry();       // close previous entry
+        }
+        if (raw != null) {
+            throw new ZipException("raw entry not closed: " + raw.entry.name);
+        }
+        if (e.time == -1) {
+            e.setTime(System.currentTimeMillis());
+        }
+        if (e.method != DEFLATED && e.method != STORED) {
+            throw new ZipException("unsupported compression method");
+        }
+        if (e.size == -1 || e.csize == -1 || e.crc == -1) {
+            if (e.method != DEFLATED) {
+                throw new ZipException(
+                    "STORED entry missing size, compressed size, or crc-32");
+            }
+            // store size, compressed size, and crc-32 in data descriptor
+            e.flag |= 8;
+        } else {
+            e.flag &= ~8;
+        }
+        e.extra = removeZip64Extra(e.extra);
+        if (! names.add(e.name)) {
+            throw new ZipException("duplicate entry: " + e.name);
+        }
+        raw = new XEntry(e, written);
+        xentries.add(raw);
+        writeLOC(raw);
+        return new OutputStream() {
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                written += len;
+            }
+        };
+    }
+
+    /*
+     * Closes the entry started with putNextRawEntry.
+     */
+    void closeRawEntry() throws IOException {
+        ensureOpen();
+        if (raw == null) {
+            throw new ZipException("no current raw ZIP entry");
+        }
+        ZipEntry e = raw.entry;
+        long csize = written - locoff;
+        if ((e.flag & 8) == 8) {
+            if (e.size == -1 || e.crc == -1) {
+                throw new ZipException(
+                    "raw entry missing size or crc-32");
+            }
+            e.csize = csize;
+            writeEXT(e);
+        } else if (e.csize != csize) {
+            throw new ZipException("invalid entry compressed size (expected " +
+                e.csize + " but got " + csize + " bytes)");
+        }
+        raw = null;
+    }
+
+    /*
+     * Removes the zip64 extended information from the given extra field data. It's
+     * written again by the LOC and CEN headers if it's needed.
+     */
+    private static byte[] removeZip64Extra(byte[] extra) {
+        if (extra == null) {
+            return null;
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream(extra.length);
+        int off = 0;
+        while (off + 4 <= extra.length) {
+            int id = (extra[off] & 0xff) | ((extra[off + 1] & 0xff) << 8);
+            int size = (extra[off + 2] & 0xff) | ((extra[off + 3] & 0xff) << 8);
+            int end = Math.min(off + 4 + size, extra.length);
+            if (id != ZIP64_EXTID) {
+                result.write(extra, off, end - off);
+            }
+            off = end;
+        }
+        return result.size() > 0 ? result.toByteArray() : null;
+    }
+
     /**
      * Closes the current ZIP entry and positions the stream for writing
      * the next entry.
@@ -348,6 +484,9 @@ class ZipOutputStream extends DeflaterOutputStream implements ZipConstants {
         if (current != null) {
             closeEntry();
         }
+        if (raw != null) {
+            throw new ZipException("raw entry not closed: " + raw.entry.name);
+        }
         // write central directory
         long off = written;
         for (XEntry xentry : xentries)
@@ -2,19 +2,29 @@ package org.rr.commons.utils.compression.zip;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
 import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.mufs.IResourceHandler;
 import org.rr.commons.mufs.ResourceHandlerInputStream;
 import org.rr.commons.utils.CommonUtils;
+import org.rr.commons.utils.compression.ArchiveIndexCache;
 import org.rr.commons.utils.compression.CompressedDataEntry;
+import org.rr.commons.utils.compression.CompressedEntryVisitor;
+import org.rr.commons.utils.compression.EntryBuffer;
 import org.rr.commons.utils.compression.FileEntryFilter;
 
 public class ZipUtils {
@@ -117,7 +127,27 @@ public class ZipUtils {
 		return extract(new ByteArrayInputStream(zipData), entry);
 	}
 
+	/**
+	 * Extracts the entry specified with the entry parameter. Local zip files are read with the {@link RandomAccessZipFile}
+	 * so only the requested entry is read.
+	 * @param zipData The zip file containing the file to be extracted.
+	 * @param entry The entry to be extracted. for example 'META-INF/container.xml'
+	 * @return The desired entry or <code>null</code> if the entry is not in the zip.
+	 */
 	public static CompressedDataEntry extract(IResourceHandler zipData, String entry) throws IOException {
+		RandomAccessZipFile zipFile = openRandomAccessZipFile(zipData);
+		if(zipFile != null) {
+			try {
+				ZipEntry zipEntry = zipFile.getEntry(entry);
+				if(zipEntry != null && !zipEntry.isDirectory()) {
+					return new CompressedDataEntry(zipEntry.getName(), zipEntry.getRawName(), zipFile.getBytes(zipEntry));
+				}
+				return null;
+			} finally {
+				IOUtils.closeQuietly(zipFile);
+			}
+		}
+
 		ResourceHandlerInputStream contentInputStream = zipData.getContentInputStream();
 		try {
 			return extract(contentInputStream, entry);
@@ -127,6 +157,21 @@ public class ZipUtils {
 	}
 	
 	public static List<CompressedDataEntry> extract(IResourceHandler zipData, FileEntryFilter filter) throws IOException {
+		RandomAccessZipFile zipFile = openRandomAccessZipFile(zipData);
+		if(zipFile != null) {
+			try {
+				final ArrayList<CompressedDataEntry> result = new ArrayList<>();
+				for (ZipEntry zipEntry : zipFile.getEntries()) {
+					if(!zipEntry.isDirectory() && (filter == null || filter.accept(zipEntry.getName(), zipEntry.getRawName()))) {
+						result.add(new CompressedDataEntry(zipEntry.getName(), zipEntry.getRawName(), zipFile.getBytes(zipEntry)));
+					}
+				}
+				return result;
+			} finally {
+				IOUtils.closeQuietly(zipFile);
+			}
+		}
+
 		ResourceHandlerInputStream contentInputStream = zipData.getContentInputStream();
 		try {
 			return extract(contentInputStream, filter, Integer.MAX_VALUE);
@@ -135,6 +180,117 @@ public class ZipUtils {
 		}
 	}
 
+	/**
+	 * Reads all entries of the given zip file accepted by the given filter with one pass over the zip and
+	 * hands them to the visitor. Local zip files are read in the order of their entry data, other resources
+	 * in the order of their stream. All entries are read into the same buffer.
+	 * @param filter The filter for the entries to be read or <code>null</code> for all entries.
+	 */
+	public static void forEachEntry(IResourceHandler zipData, FileEntryFilter filter, CompressedEntryVisitor visitor) throws IOException {
+		final EntryBuffer buffer = new EntryBuffer();
+		RandomAccessZipFile zipFile = openRandomAccessZipFile(zipData);
+		if(zipFile != null) {
+			try {
+				final List<ZipEntry> accepted = new ArrayList<>();
+				for (ZipEntry zipEntry : zipFile.getEntries()) {
+					if(!zipEntry.isDirectory() && (filter == null || filter.accept(zipEntry.getName(), zipEntry.getRawName()))) {
+						accepted.add(zipEntry);
+					}
+				}
+				Collections.sort(accepted, new Comparator<ZipEntry>() {
+
+					@Override
+					public int compare(ZipEntry o1, ZipEntry o2) {
+						return Long.compare(o1.offset, o2.offset);
+					}
+				});
+				for (ZipEntry zipEntry : accepted) {
+					InputStream in = zipFile.getInputStream(zipEntry);
+					try {
+						buffer.read(in, zipEntry.getSize());
+					} finally {
+						in.close();
+					}
+					visitor.visit(zipEntry.getName(), buffer.getData(), buffer.getLength());
+				}
+			} finally {
+				IOUtils.closeQuietly(zipFile);
+			}
+			return;
+		}
+
+		ResourceHandlerInputStream contentInputStream = zipData.getContentInputStream();
+		ZipInputStream zipIn = null;
+		try {
+			zipIn = new ZipInputStream(contentInputStream, Charset.forName("UTF-8"));
+			ZipEntry nextEntry;
+			while ((nextEntry = zipIn.getNextEntry()) != null) {
+				if(!nextEntry.isDirectory() && (filter == null || filter.accept(nextEntry.getName(), nextEntry.getRawName()))) {
+					buffer.read(zipIn, -1);
+					visitor.visit(nextEntry.getName(), buffer.getData(), buffer.getLength());
+				}
+			}
+		} finally {
+			IOUtils.closeQuietly(zipIn);
+			IOUtils.closeQuietly(contentInputStream);
+		}
+	}
+
+	/**
+	 * Lists the entries of the given zip file. Local zip files are listed from their central directory
+	 * without reading the entry data.
+	 */
+	public static List<String> list(IResourceHandler zipData, FileEntryFilter filter) throws IOException {
+		RandomAccessZipFile zipFile = openRandomAccessZipFile(zipData);
+		if(zipFile != null) {
+			try {
+				final ArrayList<String> result = new ArrayList<>();
+				for (ZipEntry zipEntry : zipFile.getEntries()) {
+					if(filter == null || filter.accept(zipEntry.getName(), zipEntry.getRawName())) {
+						result.add(zipEntry.getName());
+					}
+				}
+				return result;
+			} finally {
+				IOUtils.closeQuietly(zipFile);
+			}
+		}
+
+		ResourceHandlerInputStream contentInputStream = zipData.getContentInputStream();
+		try {
+			return list(contentInputStream, filter);
+		} finally {
+			IOUtils.closeQuietly(contentInputStream);
+		}
+	}
+
+	/**
+	 * Opens the given resource with random access if it's a file in the local file system. The central
+	 * directory is taken from the {@link ArchiveIndexCache} if the file has not been changed since it was read.
+	 * @return The opened zip file or <code>null</code> if the resource is no local file or it's central
+	 *  directory could not be read. The zip must be read sequentially in that case.
+	 */
+	private static RandomAccessZipFile openRandomAccessZipFile(IResourceHandler zipData) {
+		File file = ArchiveIndexCache.getCacheableFile(zipData);
+		if(file != null) {
+			try {
+				ArchiveIndexCache cache = ArchiveIndexCache.getInstance();
+				List<ZipEntry> entries = cache.get(file, ZipEntry.class);
+				if(entries != null) {
+					return new RandomAccessZipFile(file, entries);
+				}
+				long length = file.length();
+				long lastModified = file.lastModified();
+				RandomAccessZipFile zipFile = new RandomAccessZipFile(file);
+				cache.put(file, length, lastModified, ZipEntry.class, zipFile.getEntries());
+				return zipFile;
+			} catch (IOException e) {
+				LoggerFactory.logInfo(ZipUtils.class, "Failed to read central directory of " + zipData, e);
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Extracts the entry specified with the entry parameter and returns it.
 	 * @param zipData The zip data containing the file to be extracted.
@@ -165,7 +321,7 @@ public class ZipUtils {
 	 */	
 	public static byte[] add(byte[] zipData, CompressedDataEntry entry) {
 		ByteArrayInputStream in = new ByteArrayInputStream(zipData);
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(zipData.length + 8192);
 		add(in, out, entry);
 		return out.toByteArray();
 	}
@@ -212,50 +368,23 @@ public class ZipUtils {
 	    	boolean replaceSuccess = false;
 		    ZipEntry zipEntryIn;
 		    while ((zipEntryIn = zipInputStream.getNextEntry()) != null) {
-		    	ZipEntry out;
-		    	InputStream read;
 		    	if(zipEntryIn.getName().equals(entry.path)) {
 		    		//replace
-		    		out = new ZipEntry(zipEntryIn.getName(), zipEntryIn.getRawName());
-		    		read = entry.data;
+		    		putEntry(zipOutputStream, new ZipEntry(zipEntryIn.getName(), zipEntryIn.getRawName()), entry.data, storeOnly);
 		    		replaceSuccess = true;
+		    	} else if(storeOnly && zipEntryIn.getMethod() != ZipEntry.STORED) {
+		    		//must be stored without compression
+		    		putEntry(zipOutputStream, new ZipEntry(zipEntryIn.getName(), zipEntryIn.getRawName()), zipInputStream, storeOnly);
 		    	} else {
-		    		//add
-		    		out = new ZipEntry(zipEntryIn.getName(), zipEntryIn.getRawName());
-		    		read = zipInputStream;
-		    	}
-		    	byte[] readBytes = IOUtils.toByteArray(read);
-		    	if(storeOnly) {
-		    		//no need with compression
-			    	out.setSize(readBytes.length);
-			    	long crc = CommonUtils.calculateCrc(readBytes);
-			    	out.setCrc(crc);
+		    		//copy the compressed data as it is
+		    		zipInputStream.transferRawEntry(zipOutputStream);
 		    	}
-	            zipOutputStream.putNextEntry(out);
-	            IOUtils.copy(new ByteArrayInputStream(readBytes), zipOutputStream);
-	            zipOutputStream.flush();
-	            
-	            
 		        zipInputStream.closeEntry();
-		        zipOutputStream.closeEntry();
 		    }
 		    
 		    if(!replaceSuccess) {
 		    	//new entry must be added
-		    	ZipEntry out = new ZipEntry(entry.path, entry.rawPath);
-		    	if(storeOnly) {
-		    		//no need with compression
-		    		byte[] bytes = entry.getBytes();
-			    	out.setSize(bytes.length);
-			    	long crc = CommonUtils.calculateCrc(bytes);
-			    	out.setCrc(crc);
-		    	}		    	
-		    	InputStream read = entry.data;
-		    	zipOutputStream.putNextEntry(out);
-		    	IOUtils.copy(read, zipOutputStream);
-		    	zipOutputStream.flush();
-		        zipInputStream.closeEntry();
-		        zipOutputStream.closeEntry();
+		    	putEntry(zipOutputStream, new ZipEntry(entry.path, entry.rawPath), entry.data, storeOnly);
 		    }
 		    success = true;
 		} catch(Throwable e) {
@@ -268,4 +397,80 @@ public class ZipUtils {
 		return success;
 	}
 
+	/**
+	 * Writes the data of the given stream as new entry. Stored entries must be buffered because
+	 * their size and crc is needed before the data is written.
+	 */
+	private static void putEntry(ZipOutputStream zipOutputStream, ZipEntry out, InputStream data, boolean storeOnly) throws IOException {
+		if(storeOnly) {
+			byte[] bytes = IOUtils.toByteArray(data);
+			out.setSize(bytes.length);
+			out.setCrc(CommonUtils.calculateCrc(bytes));
+			zipOutputStream.putNextEntry(out);
+			zipOutputStream.write(bytes);
+		} else {
+			zipOutputStream.putNextEntry(out);
+			IOUtils.copy(data, zipOutputStream);
+		}
+		zipOutputStream.closeEntry();
+	}
+
+	/**
+	 * Copies the zip file of the given resource and replaces or adds the given entries. All other entries are copied
+	 * with their compressed data and crc from the central directory, so they're not inflated and deflated again.
+	 * The new entries are deflated, only an entry named <code>mimetype</code> is stored like epub files need it.
+	 * Replaced entries keep their position, new entries are added at the end.
+	 *
+	 * @param zipData The zip file to be copied. Must be a file in the local file system.
+	 * @param zipDataOutputStream The target for the new zip data. The stream is finished but not closed.
+	 * @param entries The data of the entries to be replaced or added, mapped by their names.
+	 * @return <code>true</code> if the zip was copied or <code>false</code> if the zip can not be read with random
+	 *  access. Nothing was written to the given stream in that case.
+	 * @throws IOException if the zip could not be copied.
+	 */
+	public static boolean copyAndReplace(IResourceHandler zipData, OutputStream zipDataOutputStream, Map<String, byte[]> entries) throws IOException {
+		RandomAccessZipFile zipFile = openRandomAccessZipFile(zipData);
+		if(zipFile == null) {
+			return false;
+		}
+
+		try {
+			Map<String, byte[]> remainingEntries = new LinkedHashMap<>(entries);
+			Set<String> names = new HashSet<>();
+			ZipOutputStream zipOutputStream = new ZipOutputStream(zipDataOutputStream);
+			for (ZipEntry entry : zipFile.getEntries()) {
+				if(!names.add(entry.getName())) {
+					LoggerFactory.logInfo(ZipUtils.class, "Skipped duplicate entry " + entry.getName() + " in " + zipData, null);
+				} else if(remainingEntries.containsKey(entry.getName())) {
+					putEntry(zipOutputStream, entry.getName(), remainingEntries.remove(entry.getName()));
+				} else {
+					try (InputStream in = zipFile.getRawInputStream(entry)) {
+						zipOutputStream.writeRawEntry(new ZipEntry(entry), in);
+					}
+				}
+			}
+			for (Map.Entry<String, byte[]> entry : remainingEntries.entrySet()) {
+				putEntry(zipOutputStream, entry.getKey(), entry.getValue());
+			}
+			zipOutputStream.finish();
+			zipOutputStream.flush();
+		} finally {
+			IOUtils.closeQuietly(zipFile);
+		}
+		return true;
+	}
+
+	private static void putEntry(ZipOutputStream zipOutputStream, String name, byte[] data) throws IOException {
+		ZipEntry entry = new ZipEntry(name, null);
+		if("mimetype".equals(name)) {
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(data.length);
+			entry.setCompressedSize(data.length);
+			entry.setCrc(CommonUtils.calculateCrc(data));
+		}
+		zipOutputStream.putNextEntry(entry);
+		zipOutputStream.write(data);
+		zipOutputStream.closeEntry();
+	}
+
 }
@@ -0,0 +1,538 @@
+package org.rr.commons.utils.mobi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.rr.commons.utils.StringUtil;
+import org.rr.mobi4java.EXTHRecord;
+import org.rr.mobi4java.EXTHRecord.RECORD_TYPE;
+import org.rr.mobi4java.EXTHRecordFactory;
+
+/**
+ * Reads the headers of a mobi file without reading the text records. The palm database header, the
+ * mobi header and the EXTH records are read with positional reads from the file and the cover image
+ * is read from it's record only if it is requested. The records which are not changed are copied
+ * without decoding them if the EXTH records are written.
+ */
+public class MobiHeader {
+
+	private static final int PDB_HEADER_LENGTH = 78;
+
+	/** The zero terminated database name at the start of the palm database header. */
+	private static final int PDB_NAME_LENGTH = 32;
+
+	private static final int PDB_RECORD_COUNT_OFFSET = 76;
+
+	private static final int PDB_RECORD_INFO_LENGTH = 8;
+
+	/** The mobi header starts after the 16 bytes of the palm doc header in record 0. */
+	private static final int MOBI_HEADER_OFFSET = 16;
+
+	private static final int MOBI_HEADER_LENGTH_OFFSET = 20;
+
+	private static final int TEXT_ENCODING_OFFSET = 28;
+
+	private static final int FULL_NAME_OFFSET = 84;
+
+	private static final int FULL_NAME_LENGTH_OFFSET = 88;
+
+	private static final int FIRST_IMAGE_INDEX_OFFSET = 108;
+
+	private static final int EXTH_FLAGS_OFFSET = 128;
+
+	private static final int EXTH_FLAG = 0x40;
+
+	private static final int DRM_OFFSET_OFFSET = 168;
+
+	private static final int EXTH_KF8_BOUNDARY_OFFSET = 121;
+
+	private static final int EXTH_COVER_OFFSET = 201;
+
+	private static final int EXTH_THUMB_OFFSET = 202;
+
+	private static final int ENCODING_UTF_8 = 65001;
+
+	private static final int NO_INDEX = 0xFFFFFFFF;
+
+	private static final Map<Integer, RECORD_TYPE> recordTypes = new HashMap<>();
+
+	static {
+		for(RECORD_TYPE recordType : RECORD_TYPE.values()) {
+			recordTypes.put(recordType.getType(), recordType);
+		}
+	}
+
+	private final File file;
+
+	private final long fileSize;
+
+	private final byte[] pdbHeader;
+
+	private final long[] recordOffsets;
+
+	private final byte[] record0;
+
+	private final int mobiHeaderEnd;
+
+	/** The end of the EXTH block or the end of the mobi header if there is no EXTH block. */
+	private int exthEnd;
+
+	private final String characterEncoding;
+
+	private final String fullName;
+
+	private final int firstImageIndex;
+
+	private final List<RawRecord> exthRecords = new ArrayList<>();
+
+	private MobiHeader(File file, FileChannel channel) throws IOException {
+		this.file = file;
+		this.fileSize = channel.size();
+
+		byte[] header = read(channel, 0, PDB_HEADER_LENGTH);
+		int recordCount = getShort(header, PDB_RECORD_COUNT_OFFSET);
+		if(recordCount < 1) {
+			throw new IOException("No records in " + file);
+		}
+
+		byte[] recordInfos = read(channel, PDB_HEADER_LENGTH, recordCount * PDB_RECORD_INFO_LENGTH);
+		recordOffsets = new long[recordCount];
+		for(int i = 0; i < recordCount; i++) {
+			recordOffsets[i] = getInt(recordInfos, i * PDB_RECORD_INFO_LENGTH) & 0xFFFFFFFFL;
+			if(recordOffsets[i] > fileSize || (i > 0 && recordOffsets[i] < recordOffsets[i - 1])) {
+				throw new IOException("Invalid record offset " + recordOffsets[i] + " in " + file);
+			}
+		}
+		if(recordOffsets[0] < PDB_HEADER_LENGTH + recordCount * PDB_RECORD_INFO_LENGTH) {
+			throw new IOException("Invalid first record offset in " + file);
+		}
+
+		// the header with the record list and the gap bytes in front of the first record.
+		pdbHeader = read(channel, 0, (int) recordOffsets[0]);
+		record0 = readRecord(channel, 0);
+		if(record0.length < MOBI_HEADER_OFFSET + 8 || !"MOBI".equals(new String(record0, MOBI_HEADER_OFFSET, 4, "ISO-8859-1"))) {
+			throw new IOException("No mobi header in " + file);
+		}
+
+		mobiHeaderEnd = MOBI_HEADER_OFFSET + getInt(record0, MOBI_HEADER_LENGTH_OFFSET);
+		if(mobiHeaderEnd > record0.length || mobiHeaderEnd < FIRST_IMAGE_INDEX_OFFSET + 4) {
+			throw new IOException("Invalid mobi header length in " + file);
+		}
+		characterEncoding = getInt(record0, TEXT_ENCODING_OFFSET) == ENCODING_UTF_8 ? StringUtil.UTF_8 : "windows-1252";
+		firstImageIndex = getInt(record0, FIRST_IMAGE_INDEX_OFFSET);
+		fullName = readFullName();
+		readEXTHRecords();
+	}
+
+	/**
+	 * Reads the headers of the given mobi file.
+	 * @throws IOException if the file could not be read or is not a mobi file.
+	 */
+	public static MobiHeader read(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return new MobiHeader(file, channel);
+		}
+	}
+
+	private String readFullName() throws UnsupportedEncodingException {
+		int offset = getInt(record0, FULL_NAME_OFFSET);
+		int length = getInt(record0, FULL_NAME_LENGTH_OFFSET);
+		if(offset > 0 && length > 0 && offset + length <= record0.length) {
+			return new String(record0, offset, length, characterEncoding);
+		}
+		return null;
+	}
+
+	private void readEXTHRecords() throws IOException {
+		exthEnd = mobiHeaderEnd;
+		if(!hasEXTH()) {
+			return;
+		}
+		int offset = mobiHeaderEnd;
+		if(offset + 12 > record0.length || !"EXTH".equals(new String(record0, offset, 4, "ISO-8859-1"))) {
+			throw new IOException("Invalid EXTH header in " + file);
+		}
+		int count = getInt(record0, offset + 8);
+		offset += 12;
+		for(int i = 0; i < count; i++) {
+			if(offset + 8 > record0.length) {
+				throw new IOException("Invalid EXTH record in " + file);
+			}
+			int type = getInt(record0, offset);
+			int length = getInt(record0, offset + 4);
+			if(length < 8 || offset + length > record0.length) {
+				throw new IOException("Invalid EXTH record length in " + file);
+			}
+			exthRecords.add(new RawRecord(type, Arrays.copyOfRange(record0, offset + 8, offset + length)));
+			offset += length;
+		}
+		exthEnd = offset;
+	}
+
+	private boolean hasEXTH() {
+		return mobiHeaderEnd >= EXTH_FLAGS_OFFSET + 4 && (getInt(record0, EXTH_FLAGS_OFFSET) & EXTH_FLAG) != 0;
+	}
+
+	private boolean hasDRM() {
+		return mobiHeaderEnd >= DRM_OFFSET_OFFSET + 4 && getInt(record0, DRM_OFFSET_OFFSET) != NO_INDEX;
+	}
+
+	/**
+	 * Tells if the file contains a KF8 part behind the mobi part. The KF8 part has it's own record 0
+	 * with a copy of the EXTH records.
+	 */
+	private boolean hasKF8Boundary() {
+		return getEXTHValue(EXTH_KF8_BOUNDARY_OFFSET) != NO_INDEX;
+	}
+
+	/**
+	 * Gets the full name of the book which is the title.
+	 * @return The full name or <code>null</code> if there is no full name.
+	 */
+	public String getFullName() {
+		return fullName;
+	}
+
+	/**
+	 * Gets the java name of the text encoding.
+	 */
+	public String getCharacterEncoding() {
+		return characterEncoding;
+	}
+
+	/**
+	 * Gets the EXTH records in the order they are stored. Records with a type that is not known
+	 * by {@link RECORD_TYPE} are not returned but kept if the header is written.
+	 */
+	public List<EXTHRecord> getEXTHRecords() {
+		List<EXTHRecord> result = new ArrayList<>(exthRecords.size());
+		for(RawRecord rawRecord : exthRecords) {
+			RECORD_TYPE recordType = recordTypes.get(rawRecord.type);
+			if(recordType != null) {
+				EXTHRecord record = EXTHRecordFactory.createEXTHRecord(recordType);
+				record.setData(rawRecord.data);
+				result.add(record);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the cover image record. The thumbnail or the first image is used if the book did not define
+	 * a cover.
+	 * @return The cover image bytes or <code>null</code> if there is no image.
+	 */
+	public byte[] getCover() throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			int index = getCoverRecordIndex();
+			if(index != -1) {
+				return readRecord(channel, index);
+			}
+			index = getImageRecordIndex(getEXTHValue(EXTH_THUMB_OFFSET));
+			if(index != -1) {
+				return readRecord(channel, index);
+			}
+			index = getImageRecordIndex(0);
+			if(index != -1) {
+				byte[] image = readRecord(channel, index);
+				if(isImage(image)) {
+					return image;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Tells if the given cover can be written by {@link #write(OutputStream, String, List, byte[])}. A new cover
+	 * can only replace an existing cover record. Mobi headers which are too short for the EXTH flags are not written.
+	 * Combined mobi and KF8 files are not written because only the record 0 of the mobi part is rewritten and the
+	 * record 0 of the KF8 part would keep the old EXTH records.
+	 */
+	public boolean isWritable(byte[] cover) {
+		return mobiHeaderEnd >= EXTH_FLAGS_OFFSET + 4 && !hasDRM() && !hasKF8Boundary() && (cover == null || getCoverRecordIndex() != -1);
+	}
+
+	/**
+	 * Writes the mobi file with the given full name, EXTH records and cover. Only record 0 and the cover record are
+	 * changed and the offsets of the following records are shifted. All other records are copied from the origin file.
+	 * The palm database name is created from the full name if the full name is changed.
+	 * If the cover is changed, the thumbnail EXTH record is pointed to the new cover because the old thumbnail record
+	 * still shows the previous cover.
+	 * @param out The target for the new mobi file.
+	 * @param fullName The new full name. The current one is used if <code>null</code>.
+	 * @param records The new EXTH records. Records with a type that is unknown to {@link RECORD_TYPE} are also written.
+	 * @param cover The new cover image or <code>null</code> if the cover is not changed.
+	 * @throws IOException if the file could not be written or {@link #isWritable(byte[])} is <code>false</code>.
+	 */
+	public void write(OutputStream out, String fullName, List<EXTHRecord> records, byte[] cover) throws IOException {
+		if(!isWritable(cover)) {
+			throw new IOException("Could not write the headers of " + file);
+		}
+		final Map<Integer, byte[]> replacements = new HashMap<>();
+		replacements.put(0, createRecord0(fullName != null ? fullName : StringUtil.toString(this.fullName), records, cover != null));
+		if(cover != null) {
+			replacements.put(getCoverRecordIndex(), cover);
+		}
+
+		final long[] newRecordOffsets = new long[recordOffsets.length];
+		newRecordOffsets[0] = recordOffsets[0];
+		for(int i = 1; i < recordOffsets.length; i++) {
+			byte[] replacement = replacements.get(i - 1);
+			newRecordOffsets[i] = newRecordOffsets[i - 1] + (replacement != null ? replacement.length : getRecordLength(i - 1));
+		}
+
+		final byte[] header = pdbHeader.clone();
+		if(fullName != null && !fullName.equals(this.fullName)) {
+			putPdbName(header, fullName);
+		}
+		for(int i = 0; i < newRecordOffsets.length; i++) {
+			putInt(header, PDB_HEADER_LENGTH + i * PDB_RECORD_INFO_LENGTH, (int) newRecordOffsets[i]);
+		}
+		out.write(header);
+
+		final WritableByteChannel target = Channels.newChannel(out);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			int index = 0;
+			while(index < recordOffsets.length) {
+				byte[] replacement = replacements.get(index);
+				if(replacement != null) {
+					out.write(replacement);
+					index++;
+				} else {
+					// copy all unchanged records until the next replacement at once.
+					int end = index + 1;
+					while(end < recordOffsets.length && !replacements.containsKey(end)) {
+						end++;
+					}
+					long start = recordOffsets[index];
+					transfer(channel, start, (end < recordOffsets.length ? recordOffsets[end] : fileSize) - start, target);
+					index = end;
+				}
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Creates record 0 with the palm doc and mobi header from the origin record 0 followed by the EXTH block and the full name.
+	 * The bytes behind the origin full name are kept.
+	 * @param coverChanged <code>true</code> if the thumbnail record should point to the cover image.
+	 */
+	private byte[] createRecord0(String fullName, List<EXTHRecord> records, boolean coverChanged) throws IOException {
+		final byte[] thumbnailData = coverChanged ? toBytes(getEXTHValue(EXTH_COVER_OFFSET)) : null;
+		final ByteArrayOutputStream exth = new ByteArrayOutputStream();
+		int count = 0;
+		for(EXTHRecord record : records) {
+			writeEXTHRecord(exth, record.getRecordType().getType(), record.getData() != null ? record.getData() : new byte[0], thumbnailData);
+			count++;
+		}
+		for(RawRecord rawRecord : exthRecords) {
+			if(!recordTypes.containsKey(rawRecord.type)) {
+				writeEXTHRecord(exth, rawRecord.type, rawRecord.data, thumbnailData);
+				count++;
+			}
+		}
+
+		final byte[] fullNameBytes = fullName.getBytes(characterEncoding);
+		final ByteArrayOutputStream result = new ByteArrayOutputStream(mobiHeaderEnd + exth.size() + fullNameBytes.length + 20);
+		result.write(record0, 0, mobiHeaderEnd);
+		result.write("EXTH".getBytes("ISO-8859-1"));
+		writeInt(result, exth.size() + 12);
+		writeInt(result, count);
+		exth.writeTo(result);
+		writePadding(result);
+
+		final int fullNameOffset = result.size();
+		final byte[] trailingBytes = getTrailingBytes();
+		result.write(fullNameBytes);
+		result.write(trailingBytes);
+		for(int i = trailingBytes.length; i < 2; i++) {
+			result.write(0);
+		}
+		writePadding(result);
+
+		final byte[] newRecord0 = result.toByteArray();
+		putInt(newRecord0, FULL_NAME_OFFSET, fullNameOffset);
+		putInt(newRecord0, FULL_NAME_LENGTH_OFFSET, fullNameBytes.length);
+		putInt(newRecord0, EXTH_FLAGS_OFFSET, getInt(newRecord0, EXTH_FLAGS_OFFSET) | EXTH_FLAG);
+		return newRecord0;
+	}
+
+	/**
+	 * Gets the bytes of record 0 behind the full name. These are the terminating zeros of the full name and
+	 * possibly some padding which kindlegen adds for later changes of record 0.
+	 */
+	private byte[] getTrailingBytes() {
+		final int offset = getInt(record0, FULL_NAME_OFFSET);
+		if(fullName != null && offset >= exthEnd) {
+			return Arrays.copyOfRange(record0, offset + getInt(record0, FULL_NAME_LENGTH_OFFSET), record0.length);
+		}
+		return new byte[0];
+	}
+
+	/**
+	 * Puts the palm database name for the given full name to the given header. Like kindlegen, all characters
+	 * which are not ascii letters or digits are replaced by an underscore and the name is cut to 31 characters.
+	 */
+	private static void putPdbName(byte[] header, String fullName) {
+		final StringBuilder name = new StringBuilder(PDB_NAME_LENGTH);
+		for(int i = 0; i < fullName.length() && name.length() < PDB_NAME_LENGTH - 1; i++) {
+			char c = fullName.charAt(i);
+			if((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-') {
+				name.append(c);
+			} else if(name.length() == 0 || name.charAt(name.length() - 1) != '_') {
+				name.append('_');
+			}
+		}
+		Arrays.fill(header, 0, PDB_NAME_LENGTH, (byte) 0);
+		for(int i = 0; i < name.length(); i++) {
+			header[i] = (byte) name.charAt(i);
+		}
+	}
+
+	/**
+	 * Writes the EXTH record with the given type and data. The data of a thumbnail record is replaced
+	 * by the given thumbnail data if it is not <code>null</code>.
+	 */
+	private static void writeEXTHRecord(OutputStream out, int type, byte[] data, byte[] thumbnailData) throws IOException {
+		if(type == EXTH_THUMB_OFFSET && thumbnailData != null) {
+			data = thumbnailData;
+		}
+		writeInt(out, type);
+		writeInt(out, data.length + 8);
+		out.write(data);
+	}
+
+	private int getCoverRecordIndex() {
+		return getImageRecordIndex(getEXTHValue(EXTH_COVER_OFFSET));
+	}
+
+	/**
+	 * Gets the record index of the image with the given index.
+	 * @return The record index or <code>-1</code> if there is no such image record.
+	 */
+	private int getImageRecordIndex(int imageIndex) {
+		if(imageIndex < 0 || imageIndex == NO_INDEX || firstImageIndex <= 0 || firstImageIndex == NO_INDEX) {
+			return -1;
+		}
+		long index = (long) firstImageIndex + imageIndex;
+		return index < recordOffsets.length ? (int) index : -1;
+	}
+
+	/**
+	 * Gets the int value of the first EXTH record with the given type.
+	 * @return The value or <code>-1</code> if there is no such record.
+	 */
+	private int getEXTHValue(int type) {
+		for(RawRecord rawRecord : exthRecords) {
+			if(rawRecord.type == type && rawRecord.data.length == 4) {
+				return getInt(rawRecord.data, 0);
+			}
+		}
+		return -1;
+	}
+
+	private long getRecordLength(int index) {
+		return (index + 1 < recordOffsets.length ? recordOffsets[index + 1] : fileSize) - recordOffsets[index];
+	}
+
+	private byte[] readRecord(FileChannel channel, int index) throws IOException {
+		long length = getRecordLength(index);
+		if(length > Integer.MAX_VALUE) {
+			throw new IOException("Record " + index + " too large in " + file);
+		}
+		return read(channel, recordOffsets[index], (int) length);
+	}
+
+	private static boolean isImage(byte[] data) {
+		if(data.length < 4) {
+			return false;
+		}
+		return (data[0] == (byte) 0xFF && data[1] == (byte) 0xD8) // jpeg
+				|| (data[0] == (byte) 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G')
+				|| (data[0] == 'G' && data[1] == 'I' && data[2] == 'F')
+				|| (data[0] == 'B' && data[1] == 'M');
+	}
+
+	private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		return buffer.array();
+	}
+
+	private static void transfer(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+		long transferred = 0;
+		while(transferred < count) {
+			long len = channel.transferTo(position + transferred, count - transferred, target);
+			if(len <= 0) {
+				throw new EOFException();
+			}
+			transferred += len;
+		}
+	}
+
+	private static void writePadding(ByteArrayOutputStream out) {
+		while(out.size() % 4 != 0) {
+			out.write(0);
+		}
+	}
+
+	private static void writeInt(OutputStream out, int value) throws IOException {
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	private static byte[] toBytes(int value) {
+		byte[] result = new byte[4];
+		putInt(result, 0, value);
+		return result;
+	}
+
+	private static void putInt(byte[] data, int offset, int value) {
+		data[offset] = (byte) (value >>> 24);
+		data[offset + 1] = (byte) (value >>> 16);
+		data[offset + 2] = (byte) (value >>> 8);
+		data[offset + 3] = (byte) value;
+	}
+
+	private static int getInt(byte[] data, int offset) {
+		return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+	}
+
+	private static int getShort(byte[] data, int offset) {
+		return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+	}
+
+	private static class RawRecord {
+
+		private final int type;
+
+		private final byte[] data;
+
+		private RawRecord(int type, byte[] data) {
+			this.type = type;
+			this.data = data;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.rr.pm.image;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 
@@ -63,6 +64,11 @@ class DefaultImageProvider extends AImageProvider implements IImageProvider {
 	 * @return a BufferedImage representing the current JpgImage
 	 */
 	public BufferedImage getImage() {
-		return ImageUtils.decodeImage(this.resourceLoader, mime);	
+		return ImageUtils.decodeImage(this.resourceLoader, mime, null);	
+	}
+	
+	@Override
+	public BufferedImage getImage(Dimension targetSize) {
+		return ImageUtils.decodeImage(this.resourceLoader, mime, targetSize);
 	}
 }
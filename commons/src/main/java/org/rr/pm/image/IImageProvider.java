@@ -1,5 +1,6 @@
 package org.rr.pm.image;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 
 import org.rr.commons.mufs.IResourceHandler;
@@ -11,6 +12,14 @@ public interface IImageProvider {
 	 * @return The desired {@link BufferedImage}.
 	 */
 	public BufferedImage getImage();
+	
+	/**
+	 * Gets the {@link BufferedImage} for the image provided by this {@link IImageProvider} instance in a
+	 * reduced resolution which is still large enough to be scaled to the given size.
+	 * @param targetSize The size the image will be scaled to. A width or height less than one is not taken into account.
+	 * @return The desired {@link BufferedImage}.
+	 */
+	public BufferedImage getImage(Dimension targetSize);
 
 	/**
 	 * Gets the height of the image provided by this {@link IImageProvider} instance.
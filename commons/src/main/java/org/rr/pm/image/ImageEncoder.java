@@ -0,0 +1,191 @@
+package org.rr.pm.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+
+import org.rr.commons.io.ByteArrayImageOutputStream;
+import org.rr.commons.log.LoggerFactory;
+import org.w3c.dom.NodeList;
+
+/**
+ * Encodes images with {@link ImageWriter} instances which are kept for each thread and format. The
+ * output buffer is also kept for each thread, so encoding many images like thumbnails or converted
+ * pages does not need a writer lookup and new buffers for each image.
+ */
+public class ImageEncoder {
+
+	/** The quality used by the jpeg writer if no other quality is requested. */
+	public static final float DEFAULT_JPEG_QUALITY = 0.75f;
+
+	/** Quality value telling that the default compression of the writer should be used. */
+	private static final float WRITER_DEFAULT_QUALITY = -1f;
+
+	private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+	/** Output buffers larger than this are not kept after encoding. */
+	private static final int MAX_POOLED_BUFFER_SIZE = 4 * 1024 * 1024;
+
+	private static final ThreadLocal<ImageEncoder> encoders = new ThreadLocal<ImageEncoder>() {
+
+		@Override
+		protected ImageEncoder initialValue() {
+			return new ImageEncoder();
+		}
+	};
+
+	private final Map<String, ImageWriter> writers = new HashMap<>();
+
+	private ByteArrayImageOutputStream output;
+
+	private ImageEncoder() {
+	}
+
+	/**
+	 * Encodes the given image with the default compression of the writer.
+	 * @param image The image to be encoded.
+	 * @param mime The mime type of the format, for example <code>image/jpeg</code>.
+	 * @return The encoded image or <code>null</code> if the image could not be encoded.
+	 */
+	public static byte[] encode(BufferedImage image, String mime) {
+		return encode(image, mime, WRITER_DEFAULT_QUALITY, true);
+	}
+
+	/**
+	 * Encodes the given image.
+	 * @param image The image to be encoded.
+	 * @param mime The mime type of the format, for example <code>image/jpeg</code>.
+	 * @param quality The compression quality between <code>0</code> and <code>1</code>. Only used for formats with a lossy compression.
+	 * @param chromaSubsampling <code>false</code> if jpeg images should be written without reducing the color resolution.
+	 * @return The encoded image or <code>null</code> if the image could not be encoded.
+	 */
+	public static byte[] encode(BufferedImage image, String mime, float quality, boolean chromaSubsampling) {
+		if (image == null) {
+			return null;
+		}
+
+		//image/jpg did not always work with ImageIO.getImageWritersByMIMEType
+		if(mime.equals("image/jpg")) {
+			mime = "image/jpeg";
+		}
+		return encoders.get().write(image, mime, quality, chromaSubsampling);
+	}
+
+	private byte[] write(BufferedImage image, String mime, float quality, boolean chromaSubsampling) {
+		final ImageWriter writer = getWriter(mime);
+		if(writer == null) {
+			return null;
+		}
+
+		final ByteArrayImageOutputStream output = getOutput();
+		try {
+			writer.setOutput(output);
+			ImageWriteParam param = getWriteParam(writer, quality);
+			writer.write(null, new IIOImage(image, null, getMetadata(writer, image, param, chromaSubsampling)), param);
+			return output.toByteArray();
+		} catch (IOException | RuntimeException e) {
+			LoggerFactory.logInfo(ImageEncoder.class, "could not encode image to " + mime, e);
+
+			//the writer state is unknown after a failure
+			writers.remove(mime);
+			writer.dispose();
+			return null;
+		} finally {
+			try {writer.setOutput(null);} catch(Exception e) {}
+			if(output.getCapacity() > MAX_POOLED_BUFFER_SIZE) {
+				this.output = null;
+			}
+		}
+	}
+
+	private ByteArrayImageOutputStream getOutput() {
+		if(output == null) {
+			output = new ByteArrayImageOutputStream();
+		}
+		output.reset();
+		return output;
+	}
+
+	private ImageWriter getWriter(String mime) {
+		ImageWriter writer = writers.get(mime);
+		if(writer == null) {
+			writer = createWriter(mime);
+			if(writer != null) {
+				writers.put(mime, writer);
+			}
+		}
+		return writer;
+	}
+
+	private static ImageWriter createWriter(String mime) {
+		ImageWriter writer = null;
+		Iterator<ImageWriter> imageWritersByFormatName = ImageIO.getImageWritersByMIMEType(mime);
+		while(imageWritersByFormatName.hasNext()) {
+			ImageWriter next = imageWritersByFormatName.next();
+			if(writer == null && next.getClass().getName().equals("com.sun.media.imageioimpl.plugins.jpeg.CLibJPEGImageWriter")) {
+				writer = next;
+				break;
+			} else {
+				writer = next;
+			}
+		}
+		return writer;
+	}
+
+	private static ImageWriteParam getWriteParam(ImageWriter writer, float quality) {
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		if(quality != WRITER_DEFAULT_QUALITY && param.canWriteCompressed() && param.getCompressionTypes() != null && param.getCompressionTypes().length == 1) {
+			int defaultMode = param.getCompressionMode();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionType(param.getCompressionTypes()[0]);
+			if(param.isCompressionLossless()) {
+				// the quality of lossless formats like png only changes the compression level
+				param.setCompressionMode(defaultMode);
+			} else {
+				param.setCompressionQuality(Math.max(0f, Math.min(1f, quality)));
+			}
+		}
+		return param;
+	}
+
+	/**
+	 * Creates jpeg metadata where all color components have the same sampling factor if no chroma subsampling is requested.
+	 * @return The metadata or <code>null</code> if the default metadata of the writer should be used.
+	 */
+	private static IIOMetadata getMetadata(ImageWriter writer, BufferedImage image, ImageWriteParam param, boolean chromaSubsampling) {
+		if(chromaSubsampling) {
+			return null;
+		}
+
+		IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+		if(metadata == null || !JPEG_METADATA_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+			return null;
+		}
+
+		IIOMetadataNode tree = (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA_FORMAT);
+		NodeList components = tree.getElementsByTagName("componentSpec");
+		for (int i = 0; i < components.getLength(); i++) {
+			IIOMetadataNode component = (IIOMetadataNode) components.item(i);
+			component.setAttribute("HsamplingFactor", "1");
+			component.setAttribute("VsamplingFactor", "1");
+		}
+		try {
+			metadata.setFromTree(JPEG_METADATA_FORMAT, tree);
+			return metadata;
+		} catch (IIOInvalidTreeException e) {
+			LoggerFactory.logInfo(ImageEncoder.class, "could not disable chroma subsampling", e);
+			return null;
+		}
+	}
+}
@@ -18,6 +18,7 @@ package org.rr.pm.image;
 import java.io.DataInput;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Vector;
 import java.util.logging.Level;
 
@@ -180,6 +181,9 @@ public class ImageInfo {
 	private static final String[] MIME_TYPE_STRINGS = { "image/jpeg", "image/gif", "image/png", "image/bmp", "image/pcx", "image/iff", "image/ras",
 			"image/x-portable-bitmap", "image/x-portable-graymap", "image/x-portable-pixmap", "image/psd", "application/x-shockwave-flash" };
 
+	private static final byte[] EXIF_ID = { 0x45, 0x78, 0x69, 0x66, 0x00, 0x00 };
+	private static final byte[] JFXX_ID = { 0x4a, 0x46, 0x58, 0x58, 0x00 };
+
 	private int width;
 	private int height;
 	private int bitsPerPixel;
@@ -192,6 +196,8 @@ public class ImageInfo {
 	private int numberOfImages;
 	private int physicalHeightDpi;
 	private int physicalWidthDpi;
+	private boolean readEmbeddedThumbnail;
+	private byte[] embeddedThumbnail;
 	private int bitBuf;
 	private int bitPos;
 	private String encoding = "iso-8859-1";
@@ -223,6 +229,7 @@ public class ImageInfo {
 		numberOfImages = 1;
 		physicalHeightDpi = -1;
 		physicalWidthDpi = -1;
+		embeddedThumbnail = null;
 		comments = null;
 		try {
 			int b1 = read() & 0xff;
@@ -451,8 +458,32 @@ public class ImageInfo {
 						setPhysicalWidthDpi((int) (x * 2.54f));
 						setPhysicalHeightDpi((int) (y * 2.54f));
 					}
+				} else if (readEmbeddedThumbnail && equals(JFXX_ID, 0, data, 0, 5) && data[5] == 0x10 && embeddedThumbnail == null) {
+					// JFIF extension with a jpeg thumbnail
+					byte[] thumbnail = new byte[size - 8];
+					System.arraycopy(data, 6, thumbnail, 0, 6);
+					if (readFully(thumbnail, 6, size - 14) != size - 14) {
+						return false;
+					}
+					embeddedThumbnail = thumbnail;
+					continue;
 				}
 				skip(size - 14);
+			} else if (marker == 0xffe1 && readEmbeddedThumbnail && embeddedThumbnail == null && size > 2 + EXIF_ID.length) { // APP1
+				if (read(data, 0, EXIF_ID.length) != EXIF_ID.length) {
+					return false;
+				}
+				if (equals(EXIF_ID, 0, data, 0, EXIF_ID.length)) {
+					// only the exif segment is read completely, xmp and other APP1 segments are skipped
+					byte[] app1 = new byte[size - 2];
+					System.arraycopy(data, 0, app1, 0, EXIF_ID.length);
+					if (readFully(app1, EXIF_ID.length, app1.length - EXIF_ID.length) != app1.length - EXIF_ID.length) {
+						return false;
+					}
+					embeddedThumbnail = getExifThumbnail(app1, EXIF_ID.length);
+				} else {
+					skip(size - 2 - EXIF_ID.length);
+				}
 			} else if (collectComments && size > 2 && marker == 0xfffe) { // comment
 				size -= 2;
 				byte[] chars = new byte[size];
@@ -661,6 +692,78 @@ public class ImageInfo {
 		return (width > 0 && height > 0);
 	}
 
+	/**
+	 * Gets the jpeg thumbnail from the IFD1 of the exif data.
+	 * @param a The APP1 segment containing the exif data.
+	 * @param tiff The offset of the tiff header in the APP1 segment. All exif offsets are relative to this position.
+	 * @return The thumbnail data or <code>null</code> if there is no jpeg thumbnail.
+	 */
+	private byte[] getExifThumbnail(byte[] a, int tiff) {
+		if (a.length < tiff + 8) {
+			return null;
+		}
+		boolean littleEndian;
+		if (a[tiff] == 0x49 && a[tiff + 1] == 0x49) {
+			littleEndian = true;
+		} else if (a[tiff] == 0x4d && a[tiff + 1] == 0x4d) {
+			littleEndian = false;
+		} else {
+			return null;
+		}
+
+		long ifd0 = tiff + (getTiffInt(a, tiff + 4, littleEndian) & 0xffffffffL);
+		if (ifd0 + 2 > a.length) {
+			return null;
+		}
+		long next = ifd0 + 2 + getTiffShort(a, (int) ifd0, littleEndian) * 12;
+		if (next + 4 > a.length) {
+			return null;
+		}
+		long ifd1 = getTiffInt(a, (int) next, littleEndian) & 0xffffffffL;
+		if (ifd1 == 0 || tiff + ifd1 + 2 > a.length) {
+			return null;
+		}
+		ifd1 += tiff;
+
+		int compression = -1;
+		long offset = -1;
+		long length = -1;
+		int entries = getTiffShort(a, (int) ifd1, littleEndian);
+		for (int i = 0; i < entries; i++) {
+			int entry = (int) ifd1 + 2 + i * 12;
+			if (entry + 12 > a.length) {
+				break;
+			}
+			int tag = getTiffShort(a, entry, littleEndian);
+			int type = getTiffShort(a, entry + 2, littleEndian);
+			long value = type == 3 ? getTiffShort(a, entry + 8, littleEndian) : getTiffInt(a, entry + 8, littleEndian) & 0xffffffffL;
+			if (tag == 0x0103) {
+				compression = (int) value;
+			} else if (tag == 0x0201) {
+				offset = value;
+			} else if (tag == 0x0202) {
+				length = value;
+			}
+		}
+
+		if ((compression != -1 && compression != 6) || offset <= 0 || length <= 2 || tiff + offset + length > a.length) {
+			return null; // no jpeg thumbnail
+		}
+		int start = (int) (tiff + offset);
+		if ((a[start] & 0xff) != 0xff || (a[start + 1] & 0xff) != 0xd8) {
+			return null;
+		}
+		return Arrays.copyOfRange(a, start, start + (int) length);
+	}
+
+	private int getTiffShort(byte[] a, int offs, boolean littleEndian) {
+		return littleEndian ? getShortLittleEndian(a, offs) : getShortBigEndian(a, offs);
+	}
+
+	private int getTiffInt(byte[] a, int offs, boolean littleEndian) {
+		return littleEndian ? getIntLittleEndian(a, offs) : getIntBigEndian(a, offs);
+	}
+
 	private boolean equals(byte[] a1, int offs1, byte[] a2, int offs2, int num) {
 		while (num-- > 0) {
 			if (a1[offs1++] != a2[offs2++]) {
@@ -716,6 +819,17 @@ public class ImageInfo {
 		}
 	}
 
+	/**
+	 * If {@link #check()} was successful, returns the jpeg thumbnail which is embedded in the exif or jfif header
+	 * of a jpeg image. The thumbnail is only read if {@link #setReadEmbeddedThumbnail(boolean)} was called with
+	 * <code>true</code> before.
+	 * 
+	 * @return the jpeg data of the thumbnail or <code>null</code> if the image has no embedded jpeg thumbnail
+	 */
+	public byte[] getEmbeddedThumbnail() {
+		return embeddedThumbnail;
+	}
+
 	/**
 	 * If {@link #check()} was successful, returns one the image's vertical resolution in pixels.
 	 * 
@@ -872,6 +986,14 @@ public class ImageInfo {
 		return -1;
 	}
 
+	private int readFully(byte[] a, int offset, int num) throws IOException {
+		final InputStream in = getInputStream();
+		if (in != null) {
+			return IOUtils.read(in, a, offset, num);
+		}
+		return -1;
+	}
+
 	private String readLine() throws IOException {
 		return readLine(new StringBuffer());
 	}
@@ -966,6 +1088,27 @@ public class ImageInfo {
 		collectComments = newValue;
 	}
 
+	/**
+	 * Specify whether the jpeg thumbnail embedded in the exif or jfif header is to be read - default is <code>false</code>. Reading the
+	 * exif header of a jpeg image needs to read the whole APP1 segment which could be up to 64 KB.
+	 * 
+	 * @param newValue
+	 *            if <code>true</code>, the embedded thumbnail is read by {@link #check()}
+	 * @see #getEmbeddedThumbnail()
+	 */
+	public void setReadEmbeddedThumbnail(boolean newValue) {
+		readEmbeddedThumbnail = newValue;
+	}
+
+	/**
+	 * Tells if the embedded thumbnail is read by {@link #check()}.
+	 * 
+	 * @see #setReadEmbeddedThumbnail(boolean)
+	 */
+	public boolean isReadEmbeddedThumbnail() {
+		return readEmbeddedThumbnail;
+	}
+
 	/**
 	 * Specify whether the number of images in a file is to be determined - default is <code>false</code>. This is a special option because some file formats
 	 * require running over the entire file to find out the number of images, a rather time-consuming task. Not all file formats support more than one image. If
@@ -16,11 +16,17 @@ import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
 import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
 import java.awt.image.LookupOp;
 import java.awt.image.PixelGrabber;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
 import java.awt.image.ShortLookupTable;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -29,8 +35,9 @@ import java.util.Iterator;
 import java.util.List;
 
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.MemoryCacheImageOutputStream;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.ImageIcon;
 
 import org.apache.commons.io.IOUtils;
@@ -57,57 +64,22 @@ public class ImageUtils {
 	 * @return The converted bytes or <code>null</code> if something went wrong with the conversion.
 	 */
 	public static byte[] getImageBytes(final BufferedImage image, String mime) {
-		if (image == null) {
-			return null;
-		}
-
-		//image/jpg did not always work with ImageIO.getImageWritersByMIMEType
-		if(mime.equals("image/jpg")) {
-			mime = "image/jpeg";
-		}
-
-		ImageWriter writer = null;
-        Iterator<ImageWriter> imageWritersByFormatName = ImageIO.getImageWritersByMIMEType(mime);
-        while(imageWritersByFormatName.hasNext()) {
-        	ImageWriter next = imageWritersByFormatName.next();
-        	if(writer == null && next.getClass().getName().equals("com.sun.media.imageioimpl.plugins.jpeg.CLibJPEGImageWriter")) {
-        		writer = next;
-        		break;
-        	} else {
-        		writer = next;
-        	}
-        }
-
-        if(writer != null) {
-			ByteArrayOutputStream output = new ByteArrayOutputStream();
-			MemoryCacheImageOutputStream mem = new MemoryCacheImageOutputStream(output);
-			writer.setOutput(mem);
-			try {
-				writer.write(image);
-			} catch (IOException e) {
-				LoggerFactory.logInfo(ImageUtils.class, "could not create thumbnail", e);
-			} finally {
-				try {mem.flush();} catch (Exception e) {}
-				try {mem.close();} catch (Exception e) {}
-				try {writer.setOutput(null);} catch(Exception e) {}
-				try {writer.dispose();} catch(Exception e) {}
-			}
-			return output.toByteArray();
-        }
-        return null;
+		return ImageEncoder.encode(image, mime);
 	}
 
 	/**
 	 * Loaded the given jpg file and decodes it.
 	 * @param resourceLoader The jpeg resource to be loaded.
+	 * @param targetSize The size the image should be scaled to after decoding or <code>null</code> to decode the image with it's full resolution.
 	 * @return The {@link BufferedImage} for the given file or <code>null</code> if the image could not be loaded.
+	 * @see #decodeImage(InputStream, Dimension)
 	 */
-	static BufferedImage decodeImage(IResourceHandler resourceLoader, String mime) {
+	static BufferedImage decodeImage(IResourceHandler resourceLoader, String mime, Dimension targetSize) {
 		BufferedImage bi = null;
 		InputStream bin = null;
 		try {
 			bin = resourceLoader.getContentInputStream();
-			bi = ImageIO.read(bin);
+			bi = decodeImage(bin, targetSize);
 		} catch (Exception e) {
 			//LoggerFactory.getLogger().log(Level.WARNING, "Could not decode image " + resourceLoader, e);
 		} finally {
@@ -118,6 +90,67 @@ public class ImageUtils {
 		return bi;
 	}
 
+	/**
+	 * Decodes the image from the given stream. If a target size is given, the image dimension is read from the image
+	 * header first and only every n-th pixel is decoded, so the image gets not much larger than needed for the target size.
+	 * The decoded image keeps at least the double target resolution, so it could still be scaled smoothly.
+	 * If the subsampled decoding fails, the whole image is decoded.
+	 * @param in The stream providing the image data.
+	 * @param targetSize The size the image should be scaled to after decoding or <code>null</code> to decode the image
+	 *  with it's full resolution. A width or height less than one is not taken into account.
+	 * @return The decoded image or <code>null</code> if the image format is not supported.
+	 */
+	public static BufferedImage decodeImage(InputStream in, Dimension targetSize) throws IOException {
+		final ImageInputStream imageIn = ImageIO.createImageInputStream(in);
+		if(imageIn == null) {
+			return null;
+		}
+		try {
+			if(targetSize != null) {
+				Iterator<ImageReader> readers = ImageIO.getImageReaders(imageIn);
+				if(readers.hasNext()) {
+					ImageReader reader = readers.next();
+					try {
+						reader.setInput(imageIn, false, true);
+						ImageReadParam param = reader.getDefaultReadParam();
+						int subsampling = getSubsampling(reader.getWidth(0), reader.getHeight(0), targetSize);
+						if(subsampling > 1) {
+							param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+						}
+						return reader.read(0, param);
+					} catch (IOException | RuntimeException e) {
+						LoggerFactory.logInfo(ImageUtils.class, "Subsampled image decoding has failed.", e);
+						imageIn.seek(0);
+					} finally {
+						reader.dispose();
+					}
+				}
+			}
+			return ImageIO.read(imageIn);
+		} finally {
+			IOUtils.closeQuietly(imageIn);
+		}
+	}
+
+	/**
+	 * Gets the source subsampling factor for decoding an image with the given dimension which should be
+	 * scaled to the given target size.
+	 * @return The number of pixels the decoder could skip in each direction. <code>1</code> means no subsampling.
+	 */
+	static int getSubsampling(int width, int height, Dimension targetSize) {
+		double ratio = Double.MAX_VALUE;
+		if(targetSize.width > 0) {
+			ratio = Math.min(ratio, (double) width / targetSize.width);
+		}
+		if(targetSize.height > 0) {
+			ratio = Math.min(ratio, (double) height / targetSize.height);
+		}
+		if(ratio == Double.MAX_VALUE) {
+			return 1;
+		}
+		return Math.max(1, (int) (ratio / 2));
+	}
+
 	/**
 	 * Scales the given image to the maximum fitting into the given frame
 	 * dimension without loosing the proportions.
@@ -311,9 +344,10 @@ public class ImageUtils {
 	}
 
 	/**
-	 * Detect and crop a white / light gray frame around the given image.
+	 * Detect and crop a white / light gray frame around the given image. The image data is scanned from each
+	 * edge inward until a line is found where more than 5% of the pixels are not part of the frame.
 	 * @param image The image to be croped.
-	 * @return The croped image or the given one if no crop is needed.
+	 * @return A sub image view of the given image without the frame or the given one if no crop is needed.
 	 */
 	public static BufferedImage crop(BufferedImage image) {
 		if(image == null) {
@@ -321,56 +355,42 @@ public class ImageUtils {
 		}
 
 		try {
-			int minRow = -1;
-			int maxRow = -1;
-
-			int[] img_pixels = new int[image.getHeight() * image.getWidth()];
-			// ...grab this images's pixels
-			PixelGrabber pg = new PixelGrabber(image, 0, 0, image.getWidth(), image.getHeight(), img_pixels, 0, image.getWidth());
-			pg.grabPixels();
-			for (int row = 0; row < image.getHeight(); ++row) {
-				if (!isRowHomogeneous(img_pixels, image.getWidth() * row, image.getWidth())) {
-					if (minRow < 0) {
-						minRow = row;
-					} else if (row > maxRow) {
-						maxRow = row;
-					}
-				}
-			}
+			final int width = image.getWidth();
+			final int height = image.getHeight();
+			final FrameScanner scanner = FrameScanner.getInstance(image);
 
-			// ...how about column-based cropping?
-			int minCol = -1;
-			int maxCol = -1;
-			for (int col = 0; col < image.getWidth(); ++col) {
-				if (!isColumnHomogeneous(img_pixels, col, image.getWidth(), minRow, maxRow - minRow)) {
-					if (minCol < 0) {
-						minCol = col;
-					} else if (col > maxCol) {
-						maxCol = col;
-					}
-				}
+			int minRow = 0;
+			while(minRow < height && scanner.isHomogeneous(0, minRow, 1, 0, width)) {
+				minRow++;
+			}
+			if(minRow == height) {
+				return image;
+			}
+			int maxRow = height - 1;
+			while(maxRow > minRow && scanner.isHomogeneous(0, maxRow, 1, 0, width)) {
+				maxRow--;
 			}
 
-			if(minCol > 1 && maxRow > 1) {
-				minCol+=1;
-				minRow+=1;
-				maxCol-=1;
-				maxRow-=1;
-				int cropedWidth = maxCol - minCol;
-				int cropedHeight = maxRow - minRow;
-
-				if(cropedWidth < 10 || cropedHeight < 10) {
-					return image;
-				}
-				BufferedImage scaledImage = new BufferedImage(cropedWidth, cropedHeight, image.getType() > 0 ? image.getType() : BufferedImage.TYPE_INT_RGB);
-				Graphics scaledImageGraphics = scaledImage.getGraphics();
-				scaledImageGraphics.drawImage(image, 0, 0, scaledImage.getWidth(), scaledImage.getHeight(), minCol, minRow, maxCol, maxRow, null);
-				scaledImageGraphics.dispose();
+			final int rows = maxRow - minRow + 1;
+			int minCol = 0;
+			while(minCol < width && scanner.isHomogeneous(minCol, minRow, 0, 1, rows)) {
+				minCol++;
+			}
+			if(minCol <= 1) {
+				return image;
+			}
+			int maxCol = width - 1;
+			while(maxCol > minCol && scanner.isHomogeneous(maxCol, minRow, 0, 1, rows)) {
+				maxCol--;
+			}
 
-				return scaledImage;
-			} else {
+			// leave out the first line behind the frame which is often blurred into the frame color.
+			int cropedWidth = maxCol - minCol - 2;
+			int cropedHeight = maxRow - minRow - 2;
+			if(cropedWidth < 10 || cropedHeight < 10) {
 				return image;
 			}
+			return image.getSubimage(minCol + 1, minRow + 1, cropedWidth, cropedHeight);
 		} catch(Exception e) {
 			LoggerFactory.logWarning(ImageUtils.class, "image crop has failed", e);
 		}
@@ -378,51 +398,166 @@ public class ImageUtils {
 	}
 
 	/**
-	 * Tests if the given pixel is in the color area for cropping.
-	 * @param pixel The pixel to be tested.
-	 * @return <code>true</code> if the pixel is in the crop color area als <code>false</code> otherwise.
+	 * Tests if the given color is in the color area for cropping.
+	 * @return <code>true</code> if the color is in the crop color area als <code>false</code> otherwise.
 	 */
-	private static boolean isHomogeneousPixel(int pixel) {
-		//int alpha = (pixel >> 24) & 0xff;
-		int red = (pixel >> 16) & 0xff;
-		int green = (pixel >> 8) & 0xff;
-		int blue = (pixel) & 0xff;
-
+	private static boolean isHomogeneousPixel(int red, int green, int blue) {
 		return (red >=240 && green >=240 && blue>=200);
 	}
 
 	/**
-	 * Tests if the given pixels in the specified range are in the cropping color area.
-	 * @param pixels The pixels contains the row to be tested.
-	 * @param off The start offset for the pixels to be tested.
-	 * @param len The amount of pixels to be tested starting with the off parameter.
-	 * @return <code>true</code> if the row should be cropped and <code>false</code> otherwise.
+	 * Tests lines of an image if they're part of the frame detected by {@link ImageUtils#crop(BufferedImage)}.
+	 * The common image types are read directly from the {@link DataBuffer} of the image without copying
+	 * the pixels.
 	 */
-	private static boolean isRowHomogeneous(int[] pixels, int off, int len) {
-		//5% of pixels must noch match
-		int failcount = (int) (((double)len)/100*5);
-		for (int pixel = off; pixel < off + len; ++pixel) {
-			if (!isHomogeneousPixel(pixels[pixel])) {
-				if(failcount-- <= 0) {
+	private static abstract class FrameScanner {
+
+		static FrameScanner getInstance(BufferedImage image) {
+			final WritableRaster raster = image.getRaster();
+			final DataBuffer dataBuffer = raster.getDataBuffer();
+			final SampleModel sampleModel = raster.getSampleModel();
+			if(dataBuffer.getNumBanks() == 1) {
+				switch(image.getType()) {
+				case BufferedImage.TYPE_INT_RGB:
+				case BufferedImage.TYPE_INT_ARGB:
+					if(sampleModel instanceof SinglePixelPackedSampleModel && dataBuffer instanceof DataBufferInt) {
+						return new IntRgbFrameScanner(raster, ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride(), ((DataBufferInt) dataBuffer).getData());
+					}
+					break;
+				case BufferedImage.TYPE_3BYTE_BGR:
+				case BufferedImage.TYPE_BYTE_GRAY:
+					if(sampleModel instanceof ComponentSampleModel && dataBuffer instanceof DataBufferByte) {
+						ComponentSampleModel componentSampleModel = (ComponentSampleModel) sampleModel;
+						return new ByteFrameScanner(raster, componentSampleModel.getScanlineStride(), componentSampleModel.getPixelStride(),
+								componentSampleModel.getBandOffsets(), ((DataBufferByte) dataBuffer).getData());
+					}
+					break;
+				}
+			}
+			return new RgbFrameScanner(image);
+		}
+
+		/**
+		 * Tests the line starting at the given position.
+		 * @param dx The horizontal step between the pixels. <code>1</code> for a row and <code>0</code> for a column.
+		 * @param dy The vertical step between the pixels. <code>0</code> for a row and <code>1</code> for a column.
+		 * @param length The number of pixels to be tested.
+		 * @return <code>true</code> if the line should be cropped and <code>false</code> otherwise.
+		 */
+		abstract boolean isHomogeneous(int x, int y, int dx, int dy, int length);
+
+		/**
+		 * @return The number of pixels in a line of the given length which must not match.
+		 */
+		static int getFailCount(int length) {
+			return (int) (((double)length)/100*5);
+		}
+	}
+
+	/**
+	 * Scans images where each pixel is packed into one int value of the data buffer.
+	 */
+	private static class IntRgbFrameScanner extends FrameScanner {
+
+		private final int[] data;
+
+		private final int offset;
+
+		private final int scanlineStride;
+
+		IntRgbFrameScanner(Raster raster, int scanlineStride, int[] data) {
+			this.data = data;
+			this.scanlineStride = scanlineStride;
+			this.offset = raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * scanlineStride - raster.getSampleModelTranslateX();
+		}
+
+		@Override
+		boolean isHomogeneous(int x, int y, int dx, int dy, int length) {
+			final int[] data = this.data;
+			final int step = dx + dy * scanlineStride;
+			int failcount = getFailCount(length);
+			for (int i = 0, index = offset + y * scanlineStride + x; i < length; i++, index += step) {
+				final int pixel = data[index];
+				if (!isHomogeneousPixel((pixel >> 16) & 0xff, (pixel >> 8) & 0xff, pixel & 0xff) && failcount-- <= 0) {
 					return false;
 				}
 			}
+			return true;
 		}
-		return true;
 	}
 
-	private static boolean isColumnHomogeneous(int[] pixels, int col, int row_len, int row_offset, int rows) {
-		//5% of pixels must noch match
-		int failcount = (int) (((double)row_len)/100*5);
-		for (int row = row_offset; row < row_offset + rows; ++row) {
-			int pixel = row * row_len + col;
-			if (!isHomogeneousPixel(pixels[pixel])) {
-				if(failcount-- <= 0) {
+	/**
+	 * Scans images where each color component is stored in one byte of the data buffer. Images having only one band
+	 * are handled as gray images.
+	 */
+	private static class ByteFrameScanner extends FrameScanner {
+
+		private final byte[] data;
+
+		private final int offset;
+
+		private final int scanlineStride;
+
+		private final int pixelStride;
+
+		private final int redOffset;
+
+		private final int greenOffset;
+
+		private final int blueOffset;
+
+		ByteFrameScanner(Raster raster, int scanlineStride, int pixelStride, int[] bandOffsets, byte[] data) {
+			this.data = data;
+			this.scanlineStride = scanlineStride;
+			this.pixelStride = pixelStride;
+			this.offset = raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * scanlineStride - raster.getSampleModelTranslateX() * pixelStride;
+			this.redOffset = bandOffsets[0];
+			this.greenOffset = bandOffsets.length > 1 ? bandOffsets[1] : bandOffsets[0];
+			this.blueOffset = bandOffsets.length > 2 ? bandOffsets[2] : bandOffsets[0];
+		}
+
+		@Override
+		boolean isHomogeneous(int x, int y, int dx, int dy, int length) {
+			final byte[] data = this.data;
+			final int step = dx * pixelStride + dy * scanlineStride;
+			int failcount = getFailCount(length);
+			for (int i = 0, index = offset + y * scanlineStride + x * pixelStride; i < length; i++, index += step) {
+				if (!isHomogeneousPixel(data[index + redOffset] & 0xff, data[index + greenOffset] & 0xff, data[index + blueOffset] & 0xff) && failcount-- <= 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Scans all other images by converting the tested lines to the default rgb color model.
+	 */
+	private static class RgbFrameScanner extends FrameScanner {
+
+		private final BufferedImage image;
+
+		private int[] line = new int[0];
+
+		RgbFrameScanner(BufferedImage image) {
+			this.image = image;
+		}
+
+		@Override
+		boolean isHomogeneous(int x, int y, int dx, int dy, int length) {
+			if(line.length < length) {
+				line = new int[length];
+			}
+			final int[] pixels = image.getRGB(x, y, dx * (length - 1) + 1, dy * (length - 1) + 1, line, 0, dx + dy);
+			int failcount = getFailCount(length);
+			for (int i = 0; i < length; i++) {
+				final int pixel = pixels[i];
+				if (!isHomogeneousPixel((pixel >> 16) & 0xff, (pixel >> 8) & 0xff, pixel & 0xff) && failcount-- <= 0) {
 					return false;
 				}
 			}
+			return true;
 		}
-		return true;
 	}
 
 	public static BufferedImage toBufferedImage(Image image) {
@@ -0,0 +1,119 @@
+package org.rr.pm.image;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.rr.commons.log.LoggerFactory;
+
+/**
+ * Decodes images which are shown as thumbnails. Many jpeg images contain a small preview in their exif or jfif header.
+ * This preview is used instead of decoding the whole image if it's large enough for the thumbnail.<br>
+ * How often the embedded preview could be used is counted and logged from time to time.
+ */
+public class ThumbnailDecoder {
+
+	/** Number of decoded thumbnails after which the statistics are logged. */
+	private static final int LOG_INTERVAL = 500;
+
+	/**
+	 * Maximum relative difference between the aspect ratio of the embedded preview and the image. Previews with
+	 * another aspect ratio are often padded with black bars and not used.
+	 */
+	private static final double MAX_ASPECT_RATIO_DIFFERENCE = 0.02;
+
+	private static final AtomicLong embeddedThumbnailCount = new AtomicLong();
+
+	private static final AtomicLong decodedImageCount = new AtomicLong();
+
+	/**
+	 * Gets the image provided by the given {@link IImageProvider} in a resolution which is large enough
+	 * to be scaled to the given size.
+	 * @param targetSize The size the image will be scaled to. A width or height less than one is not taken into account.
+	 * @return The embedded preview or the decoded image. <code>null</code> if the image could not be decoded.
+	 */
+	public static BufferedImage decode(IImageProvider imageProvider, Dimension targetSize) {
+		BufferedImage thumbnail = getEmbeddedThumbnail(imageProvider, targetSize);
+		if(thumbnail != null) {
+			count(embeddedThumbnailCount);
+			return thumbnail;
+		}
+		count(decodedImageCount);
+		return imageProvider.getImage(targetSize);
+	}
+
+	/**
+	 * Gets the preview embedded in the image header if it's at least as large as the given target size and has the
+	 * same aspect ratio as the image. The header of jpeg images is read again to get the preview if the {@link ImageInfo}
+	 * of the given {@link IImageProvider} did not read it before.
+	 * @return The embedded preview or <code>null</code> if there is no preview which could be used.
+	 */
+	static BufferedImage getEmbeddedThumbnail(IImageProvider imageProvider, Dimension targetSize) {
+		final ImageInfo imageInfo = imageProvider.getImageInfo();
+		if(imageInfo == null || imageInfo.getFormat() != ImageInfo.FORMAT_JPEG || imageInfo.getWidth() <= 0 || imageInfo.getHeight() <= 0) {
+			return null;
+		}
+		if(!imageInfo.isReadEmbeddedThumbnail()) {
+			imageInfo.setReadEmbeddedThumbnail(true);
+			imageInfo.check();
+		}
+		if(imageInfo.getEmbeddedThumbnail() == null) {
+			return null;
+		}
+
+		try {
+			BufferedImage thumbnail = ImageUtils.decodeImage(new ByteArrayInputStream(imageInfo.getEmbeddedThumbnail()), null);
+			if(thumbnail != null && isLargeEnough(thumbnail, targetSize)
+					&& hasSameAspectRatio(thumbnail.getWidth(), thumbnail.getHeight(), imageInfo.getWidth(), imageInfo.getHeight())) {
+				return thumbnail;
+			}
+		} catch (IOException e) {
+			LoggerFactory.logInfo(ThumbnailDecoder.class, "Could not decode embedded thumbnail of " + imageProvider.getResourceHandler(), e);
+		}
+		return null;
+	}
+
+	private static boolean isLargeEnough(BufferedImage thumbnail, Dimension targetSize) {
+		return thumbnail.getWidth() >= targetSize.width && thumbnail.getHeight() >= targetSize.height;
+	}
+
+	private static boolean hasSameAspectRatio(int width1, int height1, int width2, int height2) {
+		double ratio1 = (double) width1 / height1;
+		double ratio2 = (double) width2 / height2;
+		return Math.abs(ratio1 - ratio2) / ratio2 <= MAX_ASPECT_RATIO_DIFFERENCE;
+	}
+
+	private static void count(AtomicLong counter) {
+		counter.incrementAndGet();
+		if((embeddedThumbnailCount.get() + decodedImageCount.get()) % LOG_INTERVAL == 0) {
+			LoggerFactory.log(Level.INFO, ThumbnailDecoder.class, "Embedded thumbnails used for " + embeddedThumbnailCount.get() + " of "
+					+ (embeddedThumbnailCount.get() + decodedImageCount.get()) + " images.");
+		}
+	}
+
+	/**
+	 * @return The number of images where the embedded preview was used.
+	 */
+	public static long getEmbeddedThumbnailCount() {
+		return embeddedThumbnailCount.get();
+	}
+
+	/**
+	 * @return The number of images which had to be decoded because there was no usable embedded preview.
+	 */
+	public static long getDecodedImageCount() {
+		return decodedImageCount.get();
+	}
+
+	/**
+	 * @return The ratio of images where the embedded preview was used.
+	 */
+	public static double getEmbeddedThumbnailRatio() {
+		long embedded = embeddedThumbnailCount.get();
+		long total = embedded + decodedImageCount.get();
+		return total == 0 ? 0d : (double) embedded / total;
+	}
+}
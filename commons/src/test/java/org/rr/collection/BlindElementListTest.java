@@ -36,6 +36,14 @@ public class BlindElementListTest extends TestCase {
 
 		printList(insertList);		
 	}
+
+	public void testIndexOf() {
+		BlindElementList<String> blindList = new BlindElementList<>(defaultList, 3);
+		assertEquals(2, blindList.indexOf("2"));
+		assertEquals(-1, blindList.indexOf("3"));
+		assertEquals(3, blindList.indexOf("4"));
+		assertEquals(-1, blindList.indexOf("8"));
+	}
 	
 	private void printList(List<String> list) {
 		for(String s : list) {
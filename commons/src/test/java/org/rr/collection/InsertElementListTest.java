@@ -53,6 +53,14 @@ public class InsertElementListTest extends TestCase {
 		assertEquals(5, insertList.indexOf("i5"));
 		printList(insertList);
 	}
+
+	public void testIndexOf() {
+		InsertElementList<String> insertList = new InsertElementList<>(defaultList, "99", 3);
+		assertEquals(2, insertList.indexOf("2"));
+		assertEquals(3, insertList.indexOf("99"));
+		assertEquals(4, insertList.indexOf("3"));
+		assertEquals(-1, insertList.indexOf("8"));
+	}
 	
 	private void printList(List<String> list) {
 		int count = 0;
@@ -0,0 +1,124 @@
+package org.rr.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.rr.commons.collection.PagedList;
+
+import junit.framework.TestCase;
+
+public class PagedListTest extends TestCase {
+
+	private static class TestPagedList extends PagedList<Integer> {
+
+		private final List<Integer> data;
+
+		private int fetchCount = 0;
+
+		private int keysetFetchCount = 0;
+
+		TestPagedList(List<Integer> data, int pageSize, int maxPages) {
+			super(pageSize, maxPages);
+			this.data = data;
+		}
+
+		TestPagedList(List<Integer> data, int pageSize, int maxPages, int maxPageKeys) {
+			super(pageSize, maxPages, maxPageKeys);
+			this.data = data;
+		}
+
+		@Override
+		protected int fetchSize() {
+			return data.size();
+		}
+
+		@Override
+		protected List<Integer> fetchPage(int offset, int limit, Object previousPageKey) {
+			fetchCount++;
+			int start = offset;
+			if(previousPageKey != null) {
+				keysetFetchCount++;
+				start = data.indexOf(previousPageKey) + 1;
+			}
+			return new ArrayList<>(data.subList(start, Math.min(start + limit, data.size())));
+		}
+
+		@Override
+		protected Object createPageKey(Integer lastElement) {
+			return lastElement;
+		}
+	}
+
+	private static List<Integer> createData(int size) {
+		List<Integer> data = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			data.add(Integer.valueOf(i * 2));
+		}
+		return data;
+	}
+
+	public void testGet() {
+		TestPagedList list = new TestPagedList(createData(95), 10, 3);
+		assertEquals(95, list.size());
+		for (int i = 0; i < 95; i++) {
+			assertEquals(Integer.valueOf(i * 2), list.get(i));
+		}
+		assertEquals(10, list.fetchCount);
+		assertEquals(9, list.keysetFetchCount);
+		assertEquals(3, list.getLoadedPageCount());
+	}
+
+	public void testRandomAccess() {
+		TestPagedList list = new TestPagedList(createData(100), 10, 2);
+		assertEquals(Integer.valueOf(180), list.get(90));
+		assertEquals(Integer.valueOf(0), list.get(0));
+		assertEquals(Integer.valueOf(20), list.get(10));
+		assertEquals(Integer.valueOf(2), list.get(1));
+		assertEquals(3, list.fetchCount);
+		assertEquals(1, list.keysetFetchCount);
+
+		// the last page was evicted and has to be fetched again
+		assertEquals(Integer.valueOf(182), list.get(91));
+		assertEquals(4, list.fetchCount);
+	}
+
+	public void testOutOfBounds() {
+		TestPagedList list = new TestPagedList(createData(5), 10, 2);
+		try {
+			list.get(5);
+			fail();
+		} catch(IndexOutOfBoundsException e) {
+			// expected
+		}
+		assertEquals(0, list.fetchCount);
+	}
+
+	public void testPageKeyLimit() {
+		TestPagedList list = new TestPagedList(createData(100), 10, 1, 3);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(Integer.valueOf(i * 2), list.get(i));
+		}
+		assertEquals(3, list.getPageKeyCount());
+		assertEquals(9, list.keysetFetchCount);
+
+		// the key of the first page was dropped, so the second page is fetched with it's offset
+		assertEquals(Integer.valueOf(20), list.get(10));
+		assertEquals(11, list.fetchCount);
+		assertEquals(9, list.keysetFetchCount);
+
+		// the key of the ninth page is still known
+		assertEquals(Integer.valueOf(180), list.get(90));
+		assertEquals(10, list.keysetFetchCount);
+	}
+
+	public void testIterator() {
+		TestPagedList list = new TestPagedList(createData(25), 10, 1);
+		int count = 0;
+		for (Integer value : list) {
+			assertEquals(Integer.valueOf(count * 2), value);
+			count++;
+		}
+		assertEquals(25, count);
+		assertEquals(1, list.getLoadedPageCount());
+	}
+}
@@ -0,0 +1,204 @@
+package org.rr.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.rr.commons.utils.zip.ZipTestUtils;
+
+public class PackedDataStoreTest extends TestCase {
+
+	private File folder;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("PackedDataStoreTest", "");
+		folder.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = folder.listFiles();
+		if(files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		folder.delete();
+	}
+
+	public void testPutGetDelete() throws IOException {
+		PackedDataStore store = new PackedDataStore(folder);
+		try {
+			assertNull(store.get("/books/a.epub"));
+			store.put("/books/a.epub", ZipTestUtils.createData(1, 100));
+			store.put("/books/b.epub", ZipTestUtils.createData(2, 200));
+			assertTrue(Arrays.equals(ZipTestUtils.createData(1, 100), store.get("/books/a.epub")));
+			assertTrue(Arrays.equals(ZipTestUtils.createData(2, 200), store.get("/books/b.epub")));
+
+			store.put("/books/a.epub", ZipTestUtils.createData(3, 50));
+			assertTrue(Arrays.equals(ZipTestUtils.createData(3, 50), store.get("/books/a.epub")));
+			assertEquals(2, store.size());
+
+			assertTrue(store.delete("/books/a.epub"));
+			assertFalse(store.delete("/books/a.epub"));
+			assertNull(store.get("/books/a.epub"));
+			assertEquals(1, store.size());
+		} finally {
+			store.close();
+		}
+	}
+
+	public void testRename() throws IOException {
+		PackedDataStore store = new PackedDataStore(folder);
+		try {
+			store.put("/books/a.epub", ZipTestUtils.createData(1, 100));
+			store.put("/books/b.epub", ZipTestUtils.createData(2, 100));
+			assertTrue(store.rename("/books/a.epub", "/books/b.epub"));
+			assertFalse(store.rename("/books/a.epub", "/books/c.epub"));
+			assertNull(store.get("/books/a.epub"));
+			assertTrue(Arrays.equals(ZipTestUtils.createData(1, 100), store.get("/books/b.epub")));
+			assertEquals(1, store.size());
+		} finally {
+			store.close();
+		}
+	}
+
+	public void testDeleteByPrefix() throws IOException {
+		PackedDataStore store = new PackedDataStore(folder);
+		try {
+			for (int i = 0; i < 50; i++) {
+				store.put("/books/" + i + ".epub", ZipTestUtils.createData(i, 10));
+				store.put("/comics/" + i + ".cbz", ZipTestUtils.createData(100 + i, 10));
+			}
+			assertEquals(50, store.deleteByPrefix("/books/"));
+			assertEquals(50, store.size());
+			assertNull(store.get("/books/1.epub"));
+			assertNotNull(store.get("/comics/1.cbz"));
+		} finally {
+			store.close();
+		}
+	}
+
+	public void testReopen() throws IOException {
+		PackedDataStore store = new PackedDataStore(folder);
+		store.put("/books/a.epub", ZipTestUtils.createData(1, 100));
+		store.put("/books/b.epub", ZipTestUtils.createData(2, 100));
+		store.close();
+
+		// records appended after the index was written
+		store = new PackedDataStore(folder);
+		store.rename("/books/a.epub", "/books/c.epub");
+		store.delete("/books/b.epub");
+		store.put("/books/d.epub", ZipTestUtils.createData(5, 100));
+		store.flush();
+		store.put("/books/e.epub", ZipTestUtils.createData(6, 100));
+		store = reopenWithoutClose(store);
+
+		assertNull(store.get("/books/a.epub"));
+		assertNull(store.get("/books/b.epub"));
+		assertTrue(Arrays.equals(ZipTestUtils.createData(1, 100), store.get("/books/c.epub")));
+		assertTrue(Arrays.equals(ZipTestUtils.createData(5, 100), store.get("/books/d.epub")));
+		assertTrue(Arrays.equals(ZipTestUtils.createData(6, 100), store.get("/books/e.epub")));
+		assertEquals(3, store.size());
+		store.close();
+
+		// rebuild the index from the segments
+		assertTrue(new File(folder, "index").delete());
+		store = new PackedDataStore(folder);
+		assertTrue(Arrays.equals(ZipTestUtils.createData(1, 100), store.get("/books/c.epub")));
+		assertEquals(3, store.size());
+		store.close();
+	}
+
+	public void testClosed() throws IOException {
+		PackedDataStore store = new PackedDataStore(folder);
+		store.put("/books/a.epub", ZipTestUtils.createData(1, 100));
+		assertTrue(store.contains("/books/a.epub"));
+		store.close();
+		try {
+			store.contains("/books/a.epub");
+			fail();
+		} catch (IOException e) {
+		}
+	}
+
+	public void testReadWhileGrowing() throws IOException {
+		PackedDataStore store = new PackedDataStore(folder);
+		try {
+			// each value is read right after it was appended behind the mapped part of the segment
+			for (int i = 0; i < 500; i++) {
+				store.put("/books/" + i + ".epub", ZipTestUtils.createData(i, 1000 + i));
+				assertTrue(Arrays.equals(ZipTestUtils.createData(i, 1000 + i), store.get("/books/" + i + ".epub")));
+			}
+			for (int i = 0; i < 500; i++) {
+				assertTrue(Arrays.equals(ZipTestUtils.createData(i, 1000 + i), store.get("/books/" + i + ".epub")));
+			}
+		} finally {
+			store.close();
+		}
+		assertTrue(new File(folder, "segment-0.pack").delete());
+	}
+
+	public void testIncompleteRecord() throws IOException {
+		PackedDataStore store = new PackedDataStore(folder);
+		store.put("/books/a.epub", ZipTestUtils.createData(1, 100));
+		store.put("/books/b.epub", ZipTestUtils.createData(2, 100));
+		store.close();
+		new File(folder, "index").delete();
+
+		RandomAccessFile segment = new RandomAccessFile(new File(folder, "segment-0.pack"), "rw");
+		try {
+			segment.setLength(segment.length() - 10);
+		} finally {
+			segment.close();
+		}
+
+		store = new PackedDataStore(folder);
+		try {
+			assertTrue(Arrays.equals(ZipTestUtils.createData(1, 100), store.get("/books/a.epub")));
+			assertNull(store.get("/books/b.epub"));
+			store.put("/books/c.epub", ZipTestUtils.createData(4, 100));
+			assertTrue(Arrays.equals(ZipTestUtils.createData(4, 100), store.get("/books/c.epub")));
+		} finally {
+			store.close();
+		}
+	}
+
+	public void testCompact() throws IOException {
+		PackedDataStore store = new PackedDataStore(folder);
+		for (int i = 0; i < 1000; i++) {
+			store.put("/books/" + i + ".epub", ZipTestUtils.createData(i, 10000));
+		}
+		store.rename("/books/0.epub", "/other/0.epub");
+		store.deleteByPrefix("/books/");
+		store.put("/books/1.epub", ZipTestUtils.createData(-1, 10000));
+		assertTrue(store.isCompactionNeeded());
+
+		store.compact();
+		assertEquals(0, store.getGarbageBytes());
+		assertFalse(store.isCompactionNeeded());
+		assertEquals(2, store.size());
+		assertFalse(new File(folder, "segment-0.pack").exists());
+		store.close();
+
+		store = new PackedDataStore(folder);
+		try {
+			assertTrue(Arrays.equals(ZipTestUtils.createData(0, 10000), store.get("/other/0.epub")));
+			assertTrue(Arrays.equals(ZipTestUtils.createData(-1, 10000), store.get("/books/1.epub")));
+			assertEquals(1, store.deleteByPrefix("/other/"));
+		} finally {
+			store.close();
+		}
+	}
+
+	/**
+	 * Simulates a crash by opening the store again without writing the index.
+	 */
+	private PackedDataStore reopenWithoutClose(PackedDataStore store) throws IOException {
+		return new PackedDataStore(folder);
+	}
+}
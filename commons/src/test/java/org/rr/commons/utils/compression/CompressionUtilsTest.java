@@ -0,0 +1,77 @@
+package org.rr.commons.utils.compression;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.rr.commons.mufs.IResourceHandler;
+import org.rr.commons.mufs.ResourceHandlerFactory;
+import org.rr.commons.utils.zip.ZipTestUtils;
+
+public class CompressionUtilsTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		entries.put("pages/", null);
+		for (int i = 0; i < 5; i++) {
+			entries.put("pages/page" + i + ".jpg", ZipTestUtils.createData(i, 200000 + i));
+		}
+		entries.put("ComicInfo.xml", "<ComicInfo/>".getBytes("UTF-8"));
+		file = ZipTestUtils.createZipFile("CompressionUtilsTest", ".cbz", entries);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	public void testForEachEntry() throws IOException {
+		IResourceHandler resource = ResourceHandlerFactory.getResourceHandler(file);
+		final List<String> names = new ArrayList<>();
+		final List<byte[]> contents = new ArrayList<>();
+		CompressionUtils.forEachEntry(resource, new FileEntryFilter() {
+
+			@Override
+			public boolean accept(String entry, byte[] rawEntry) {
+				return entry.endsWith(".jpg");
+			}
+		}, new CompressedEntryVisitor() {
+
+			@Override
+			public void visit(String name, byte[] data, int length) {
+				names.add(name);
+				contents.add(Arrays.copyOf(data, length));
+			}
+		});
+
+		assertEquals(5, names.size());
+		for (int i = 0; i < 5; i++) {
+			assertEquals("pages/page" + i + ".jpg", names.get(i));
+			assertTrue(Arrays.equals(ZipTestUtils.createData(i, 200000 + i), contents.get(i)));
+		}
+	}
+
+	public void testForEachEntryWithoutFilter() throws IOException {
+		IResourceHandler resource = ResourceHandlerFactory.getResourceHandler(file);
+		final List<String> names = new ArrayList<>();
+		CompressionUtils.forEachEntry(resource, null, new CompressedEntryVisitor() {
+
+			@Override
+			public void visit(String name, byte[] data, int length) {
+				names.add(name);
+			}
+		});
+
+		assertEquals(6, names.size());
+		assertEquals("ComicInfo.xml", names.get(5));
+	}
+}
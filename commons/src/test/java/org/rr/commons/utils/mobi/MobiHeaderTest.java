@@ -0,0 +1,306 @@
+package org.rr.commons.utils.mobi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.rr.mobi4java.EXTHRecord;
+import org.rr.mobi4java.EXTHRecord.RECORD_TYPE;
+import org.rr.mobi4java.EXTHRecordFactory;
+
+public class MobiHeaderTest extends TestCase {
+
+	private static final int AUTHOR = 100;
+
+	private static final int COVER_OFFSET = 201;
+
+	private static final int THUMB_OFFSET = 202;
+
+	private static final int UNKNOWN = 999;
+
+	private static final int KF8_BOUNDARY = 121;
+
+	private static final byte[] COVER = new byte[] {(byte) 0xFF, (byte) 0xD8, 1, 1, 1};
+
+	private static final byte[] THUMBNAIL = new byte[] {(byte) 0xFF, (byte) 0xD8, 2, 2};
+
+	private final List<File> files = new ArrayList<>();
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	private File createTempFile() throws IOException {
+		File file = File.createTempFile("MobiHeaderTest", ".mobi");
+		files.add(file);
+		return file;
+	}
+
+	/**
+	 * Creates a palm database with record 0, two text records, the cover and the thumbnail image record and a trailing record.
+	 * @param mobiHeaderLength The length of the mobi header. The EXTH block is only written if the header contains the EXTH flags.
+	 */
+	private File createMobiFile(String fullName, int mobiHeaderLength) throws IOException {
+		return createMobiFile(fullName, mobiHeaderLength, new byte[2], false);
+	}
+
+	/**
+	 * @param trailingBytes The bytes behind the full name in record 0.
+	 * @param kf8 <code>true</code> to add the EXTH record with the KF8 boundary.
+	 * @see #createMobiFile(String, int)
+	 */
+	private File createMobiFile(String fullName, int mobiHeaderLength, byte[] trailingBytes, boolean kf8) throws IOException {
+		List<byte[]> records = new ArrayList<>();
+		records.add(createRecord0(fullName, mobiHeaderLength, trailingBytes, kf8));
+		records.add("text record one".getBytes("UTF-8"));
+		records.add("text record two".getBytes("UTF-8"));
+		records.add(COVER);
+		records.add(THUMBNAIL);
+		records.add("tail".getBytes("UTF-8"));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] header = new byte[78];
+		header[77] = (byte) records.size();
+		out.write(header);
+		int offset = 78 + records.size() * 8 + 2;
+		for (byte[] record : records) {
+			writeInt(out, offset);
+			writeInt(out, 0);
+			offset += record.length;
+		}
+		out.write(new byte[2]);
+		for (byte[] record : records) {
+			out.write(record);
+		}
+
+		File file = createTempFile();
+		try (FileOutputStream fileOut = new FileOutputStream(file)) {
+			out.writeTo(fileOut);
+		}
+		return file;
+	}
+
+	private static byte[] createRecord0(String fullName, int mobiHeaderLength, byte[] trailingBytes, boolean kf8) throws IOException {
+		byte[] headers = new byte[16 + mobiHeaderLength];
+		System.arraycopy("MOBI".getBytes("ISO-8859-1"), 0, headers, 16, 4);
+		putInt(headers, 20, mobiHeaderLength);
+		putInt(headers, 28, 65001);
+		putInt(headers, 108, 3);
+		boolean exth = 16 + mobiHeaderLength >= 132;
+		if(exth) {
+			putInt(headers, 128, 0x40);
+		}
+		if(16 + mobiHeaderLength >= 172) {
+			putInt(headers, 168, 0xFFFFFFFF);
+		}
+
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		result.write(headers);
+		if(exth) {
+			ByteArrayOutputStream exthRecords = new ByteArrayOutputStream();
+			writeEXTHRecord(exthRecords, AUTHOR, "Jane Doe".getBytes("UTF-8"));
+			writeEXTHRecord(exthRecords, COVER_OFFSET, toBytes(0));
+			writeEXTHRecord(exthRecords, THUMB_OFFSET, toBytes(1));
+			writeEXTHRecord(exthRecords, UNKNOWN, new byte[] {1, 2, 3});
+			if(kf8) {
+				writeEXTHRecord(exthRecords, KF8_BOUNDARY, toBytes(5));
+			}
+			result.write("EXTH".getBytes("ISO-8859-1"));
+			writeInt(result, exthRecords.size() + 12);
+			writeInt(result, kf8 ? 5 : 4);
+			exthRecords.writeTo(result);
+		}
+		int fullNameOffset = result.size();
+		byte[] fullNameBytes = fullName.getBytes("UTF-8");
+		result.write(fullNameBytes);
+		result.write(trailingBytes);
+
+		byte[] record0 = result.toByteArray();
+		putInt(record0, 84, fullNameOffset);
+		putInt(record0, 88, fullNameBytes.length);
+		return record0;
+	}
+
+	public void testRead() throws IOException {
+		MobiHeader header = MobiHeader.read(createMobiFile("Title äö", 232));
+		assertEquals("Title äö", header.getFullName());
+		assertEquals("UTF-8", header.getCharacterEncoding());
+		assertTrue(Arrays.equals(COVER, header.getCover()));
+		assertEquals("Jane Doe", new String(getRecord(header.getEXTHRecords(), AUTHOR).getData(), "UTF-8"));
+		assertTrue(header.isWritable(COVER));
+	}
+
+	public void testWrite() throws IOException {
+		File file = createMobiFile("Title", 232);
+		MobiHeader header = MobiHeader.read(file);
+		List<EXTHRecord> records = new ArrayList<>(header.getEXTHRecords());
+		EXTHRecord publisher = EXTHRecordFactory.createEXTHRecord(RECORD_TYPE.PUBLISHER);
+		publisher.setData("A publisher with a long name".getBytes("UTF-8"));
+		records.add(publisher);
+		byte[] cover = new byte[] {(byte) 0xFF, (byte) 0xD8, 9, 9, 9, 9, 9, 9, 9};
+
+		File target = createTempFile();
+		try (OutputStream out = new FileOutputStream(target)) {
+			header.write(out, "New Title", records, cover);
+		}
+
+		MobiHeader written = MobiHeader.read(target);
+		assertEquals("New Title", written.getFullName());
+		assertTrue(Arrays.equals(cover, written.getCover()));
+		assertEquals("Jane Doe", new String(getRecord(written.getEXTHRecords(), AUTHOR).getData(), "UTF-8"));
+		assertEquals("A publisher with a long name", new String(getRecord(written.getEXTHRecords(), RECORD_TYPE.PUBLISHER.getType()).getData(), "UTF-8"));
+
+		byte[] record0 = readRecord(target, 0);
+		assertTrue(Arrays.equals(new byte[] {1, 2, 3}, getEXTHData(record0, UNKNOWN)));
+		// the thumbnail points to the new cover
+		assertTrue(Arrays.equals(toBytes(0), getEXTHData(record0, THUMB_OFFSET)));
+
+		// all other records are copied
+		for (int i = 1; i < 6; i++) {
+			if(i != 3) {
+				assertTrue(Arrays.equals(readRecord(file, i), readRecord(target, i)));
+			}
+		}
+	}
+
+	public void testWriteWithoutCover() throws IOException {
+		File file = createMobiFile("Title", 232);
+		MobiHeader header = MobiHeader.read(file);
+		File target = createTempFile();
+		try (OutputStream out = new FileOutputStream(target)) {
+			header.write(out, null, header.getEXTHRecords(), null);
+		}
+
+		MobiHeader written = MobiHeader.read(target);
+		assertEquals("Title", written.getFullName());
+		assertTrue(Arrays.equals(COVER, written.getCover()));
+		assertTrue(Arrays.equals(toBytes(1), getEXTHData(readRecord(target, 0), THUMB_OFFSET)));
+		assertTrue(Arrays.equals(THUMBNAIL, readRecord(target, 4)));
+	}
+
+	public void testWritePdbName() throws IOException {
+		MobiHeader header = MobiHeader.read(createMobiFile("Title", 232));
+		File target = createTempFile();
+		try (OutputStream out = new FileOutputStream(target)) {
+			header.write(out, "A new title: äö with a very long name", header.getEXTHRecords(), null);
+		}
+
+		byte[] pdbName = new byte[32];
+		try (RandomAccessFile in = new RandomAccessFile(target, "r")) {
+			in.readFully(pdbName);
+		}
+		byte[] expected = Arrays.copyOf("A_new_title_with_a_very_long_na".getBytes("ISO-8859-1"), 32);
+		assertTrue(Arrays.equals(expected, pdbName));
+	}
+
+	public void testWriteKeepsTrailingBytes() throws IOException {
+		byte[] trailingBytes = new byte[] {0, 0, 7, 7, 7, 7, 7, 7};
+		MobiHeader header = MobiHeader.read(createMobiFile("Title", 232, trailingBytes, false));
+		File target = createTempFile();
+		try (OutputStream out = new FileOutputStream(target)) {
+			header.write(out, "New Title", header.getEXTHRecords(), null);
+		}
+
+		assertEquals("New Title", MobiHeader.read(target).getFullName());
+		byte[] record0 = readRecord(target, 0);
+		int fullNameEnd = getInt(record0, 84) + getInt(record0, 88);
+		assertTrue(Arrays.equals(trailingBytes, Arrays.copyOfRange(record0, fullNameEnd, fullNameEnd + trailingBytes.length)));
+	}
+
+	public void testKF8NotWritable() throws IOException {
+		MobiHeader header = MobiHeader.read(createMobiFile("Title", 232, new byte[2], true));
+		assertEquals("Title", header.getFullName());
+		assertFalse(header.isWritable(null));
+	}
+
+	public void testShortHeaderNotWritable() throws IOException {
+		MobiHeader header = MobiHeader.read(createMobiFile("Title", 112));
+		assertEquals("Title", header.getFullName());
+		assertTrue(header.getEXTHRecords().isEmpty());
+		assertFalse(header.isWritable(null));
+	}
+
+	private static EXTHRecord getRecord(List<EXTHRecord> records, int type) {
+		for (EXTHRecord record : records) {
+			if(record.getRecordType().getType() == type) {
+				return record;
+			}
+		}
+		fail("no EXTH record " + type);
+		return null;
+	}
+
+	/**
+	 * Gets the data of the EXTH record with the given type from the given record 0.
+	 */
+	private static byte[] getEXTHData(byte[] record0, int type) {
+		int offset = 16 + getInt(record0, 20);
+		assertEquals("EXTH", new String(record0, offset, 4));
+		int count = getInt(record0, offset + 8);
+		offset += 12;
+		for (int i = 0; i < count; i++) {
+			int length = getInt(record0, offset + 4);
+			if(getInt(record0, offset) == type) {
+				return Arrays.copyOfRange(record0, offset + 8, offset + length);
+			}
+			offset += length;
+		}
+		return null;
+	}
+
+	private static byte[] readRecord(File file, int index) throws IOException {
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			in.seek(76);
+			int count = in.readUnsignedShort();
+			in.seek(78 + index * 8);
+			long start = in.readInt();
+			long end = file.length();
+			if(index + 1 < count) {
+				in.seek(78 + (index + 1) * 8);
+				end = in.readInt();
+			}
+			byte[] result = new byte[(int) (end - start)];
+			in.seek(start);
+			in.readFully(result);
+			return result;
+		}
+	}
+
+	private static void writeEXTHRecord(OutputStream out, int type, byte[] data) throws IOException {
+		writeInt(out, type);
+		writeInt(out, data.length + 8);
+		out.write(data);
+	}
+
+	private static byte[] toBytes(int value) {
+		byte[] result = new byte[4];
+		putInt(result, 0, value);
+		return result;
+	}
+
+	private static void writeInt(OutputStream out, int value) throws IOException {
+		out.write(toBytes(value));
+	}
+
+	private static void putInt(byte[] data, int offset, int value) {
+		data[offset] = (byte) (value >>> 24);
+		data[offset + 1] = (byte) (value >>> 16);
+		data[offset + 2] = (byte) (value >>> 8);
+		data[offset + 3] = (byte) value;
+	}
+
+	private static int getInt(byte[] data, int offset) {
+		return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+	}
+}
@@ -0,0 +1,413 @@
+package org.rr.commons.utils.rar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import junit.framework.TestCase;
+
+import org.rr.commons.utils.compression.CompressedEntryVisitor;
+import org.rr.commons.utils.compression.rar.RarArchive;
+import org.rr.commons.utils.compression.rar.RarEntry;
+import org.rr.commons.utils.rar.RarTestUtils.Rar29Encoder;
+import org.rr.commons.utils.rar.RarTestUtils.Rar5Encoder;
+
+public class RarArchiveTest extends TestCase {
+
+	private static final int METHOD_STORE = 0x30;
+
+	private static final int METHOD_NORMAL = 0x33;
+
+	private static final int RAR5_COMPRESSED = 3 << 7;
+
+	private static final int RAR5_SOLID = 0x40;
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("RarArchiveTest", ".rar");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	public void testStoredRar4Entries() throws IOException {
+		writeRar4(new String[] {"dir\\file 1.jpg", "file 2.jpg"}, new byte[][] {"content 1".getBytes(), "second content".getBytes()}, null, METHOD_STORE, false);
+
+		RarArchive archive = new RarArchive(file);
+		try {
+			List<RarEntry> entries = archive.getEntries();
+			assertEquals(2, entries.size());
+			assertEquals("dir/file 1.jpg", entries.get(0).getName());
+			assertEquals("file 2.jpg", entries.get(1).getName());
+
+			RarEntry entry = archive.getEntry("file 2.jpg");
+			assertTrue(entry.isDirectlyReadable());
+			assertEquals(14, entry.getSize());
+			assertEquals("second content", new String(archive.getBytes(entry)));
+			assertEquals("content 1", new String(archive.getBytes(entries.get(0))));
+			assertNull(archive.getEntry("file 3.jpg"));
+		} finally {
+			archive.close();
+		}
+	}
+
+	public void testCompressedRar4Entry() throws IOException {
+		byte[] packed = new Rar29Encoder(true).literals("content abc".getBytes()).match(6, 3).literals("!".getBytes()).finish();
+		writeRar4(new String[] {"file 1.jpg"}, new byte[][] {"content abcabcabc!".getBytes()}, new byte[][] {packed}, METHOD_NORMAL, false);
+
+		RarArchive archive = new RarArchive(file);
+		try {
+			RarEntry entry = archive.getEntry("file 1.jpg");
+			assertFalse(entry.isStored());
+			assertFalse(entry.isDirectlyReadable());
+			try {
+				archive.getBytes(entry);
+				fail();
+			} catch (IOException e) {
+			}
+
+			Map<String, byte[]> result = new LinkedHashMap<>();
+			assertTrue(archive.read(archive.getEntries(), collect(result)).isEmpty());
+			assertEquals("content abcabcabc!", new String(result.get("file 1.jpg")));
+		} finally {
+			archive.close();
+		}
+	}
+
+	public void testSolidRar4Entries() throws IOException {
+		byte[] packed1 = new Rar29Encoder(true).literals("first abcd".getBytes()).finish();
+		byte[] packed2 = new Rar29Encoder(false).match(3, 4).literals(" second".getBytes()).finish();
+		writeRar4(new String[] {"file 1.jpg", "file 2.jpg"}, new byte[][] {"first abcd".getBytes(), "abc second".getBytes()},
+				new byte[][] {packed1, packed2}, METHOD_NORMAL, true);
+
+		RarArchive archive = new RarArchive(file);
+		try {
+			RarEntry second = archive.getEntry("file 2.jpg");
+			assertTrue(second.isSolid());
+			assertFalse(archive.getEntry("file 1.jpg").isSolid());
+
+			// the first entry is decompressed for the second one but not visited.
+			Map<String, byte[]> result = new LinkedHashMap<>();
+			assertTrue(archive.read(Collections.singletonList(second), collect(result)).isEmpty());
+			assertEquals(Collections.singleton("file 2.jpg"), result.keySet());
+			assertEquals("abc second", new String(result.get("file 2.jpg")));
+		} finally {
+			archive.close();
+		}
+	}
+
+	public void testRar4CrcError() throws IOException {
+		byte[] packed = new Rar29Encoder(true).literals("content".getBytes()).finish();
+		writeRar4(new String[] {"file 1.jpg"}, new byte[][] {"other content".getBytes()}, new byte[][] {packed}, METHOD_NORMAL, false);
+
+		RarArchive archive = new RarArchive(file);
+		try {
+			Map<String, byte[]> result = new LinkedHashMap<>();
+			assertEquals(archive.getEntries(), archive.read(archive.getEntries(), collect(result)));
+			assertTrue(result.isEmpty());
+		} finally {
+			archive.close();
+		}
+	}
+
+	public void testRar5Entries() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] {0x52, 0x61, 0x72, 0x21, 0x1a, 0x07, 0x01, 0x00});
+		writeRar5Header(out, 1, 0, new byte[] {0}, null); // main header
+		writeRar5File(out, "dir", null, null, 0, true);
+		writeRar5File(out, "dir/file 1.jpg", "content 1".getBytes(), null, 0, false);
+		byte[] packed = new Rar5Encoder(0, true).literals("compressed content ".getBytes()).match(8, 19).repeatLast()
+				.repeatDistance(0, 3).literals("!".getBytes()).finish();
+		writeRar5File(out, "dir/file 2.jpg", "compressed content compressed content !".getBytes(), packed, RAR5_COMPRESSED, false);
+		writeRar5Header(out, 5, 0, new byte[] {0}, null); // end header
+		writeFile(out);
+
+		RarArchive archive = new RarArchive(file);
+		try {
+			List<RarEntry> entries = archive.getEntries();
+			assertEquals(3, entries.size());
+			assertTrue(entries.get(0).isDirectory());
+
+			RarEntry stored = archive.getEntry("dir/file 1.jpg");
+			assertTrue(stored.isDirectlyReadable());
+			assertEquals(9, stored.getSize());
+			assertEquals("content 1", new String(archive.getBytes(stored)));
+
+			RarEntry compressed = archive.getEntry("dir/file 2.jpg");
+			assertFalse(compressed.isDirectlyReadable());
+			assertEquals(39, compressed.getSize());
+
+			Map<String, byte[]> result = new LinkedHashMap<>();
+			assertTrue(archive.read(archive.getEntries(), collect(result)).isEmpty());
+			assertEquals(Arrays.asList("dir/file 1.jpg", "dir/file 2.jpg"), Arrays.asList(result.keySet().toArray()));
+			assertEquals("content 1", new String(result.get("dir/file 1.jpg")));
+			assertEquals("compressed content compressed content !", new String(result.get("dir/file 2.jpg")));
+		} finally {
+			archive.close();
+		}
+	}
+
+	public void testRar5Filters() throws IOException {
+		byte[] data = new byte[] {(byte) 0xe8, 0x00, 0x10, 0x00, 0x00, 'x', 'x', 'x', 'x', 1, 2, 3, 4};
+		byte[] packed = new Rar5Encoder(0, true).filter(0, 9, Rar5Encoder.FILTER_E8, 0).literals(Arrays.copyOf(data, 9))
+				.filter(0, 4, Rar5Encoder.FILTER_DELTA, 2).literals(Arrays.copyOfRange(data, 9, 13)).finish();
+		// the call address is made relative to the position behind the e8 byte, the delta filter subtracts the bytes of each channel.
+		byte[] expected = new byte[] {(byte) 0xe8, (byte) 0xff, 0x0f, 0x00, 0x00, 'x', 'x', 'x', 'x', (byte) 0xff, (byte) 0xfd, (byte) 0xfd, (byte) 0xf9};
+		// the arm branch offset is made relative to it's position divided by four, e9 jumps are handled like e8 calls.
+		byte[] armData = new byte[] {0x10, 0, 0, (byte) 0xeb, 0, 0, 0, (byte) 0xeb, (byte) 0xe9, 0, 0x10, 0, 0, 'x', 'x', 'x', 'x'};
+		byte[] armPacked = new Rar5Encoder(0, true).filter(0, 8, Rar5Encoder.FILTER_ARM, 0).literals(Arrays.copyOf(armData, 8))
+				.filter(0, 9, Rar5Encoder.FILTER_E8E9, 0).literals(Arrays.copyOfRange(armData, 8, 17)).finish();
+		byte[] armExpected = new byte[] {0x10, 0, 0, (byte) 0xeb, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xeb, (byte) 0xe9, (byte) 0xf7, 0x0f, 0, 0, 'x', 'x', 'x', 'x'};
+		writeRar5(new String[] {"file.exe", "file.arm"}, new byte[][] {expected, armExpected}, new byte[][] {packed, armPacked},
+				new int[] {RAR5_COMPRESSED, RAR5_COMPRESSED});
+
+		RarArchive archive = new RarArchive(file);
+		try {
+			Map<String, byte[]> result = new LinkedHashMap<>();
+			assertTrue(archive.read(archive.getEntries(), collect(result)).isEmpty());
+			assertTrue(Arrays.equals(expected, result.get("file.exe")));
+			assertTrue(Arrays.equals(armExpected, result.get("file.arm")));
+		} finally {
+			archive.close();
+		}
+	}
+
+	public void testSolidRar5Entries() throws IOException {
+		byte[] packed1 = new Rar5Encoder(0, true).literals("first entry".getBytes()).finish();
+		byte[] packed2 = new Rar5Encoder(0, false).match(5, 11).literals(" second".getBytes()).match(6, 18).finish();
+		writeRar5(new String[] {"file 1.jpg", "file 2.jpg"}, new byte[][] {"first entry".getBytes(), "first second entry".getBytes()},
+				new byte[][] {packed1, packed2}, new int[] {RAR5_COMPRESSED, RAR5_COMPRESSED | RAR5_SOLID});
+
+		RarArchive archive = new RarArchive(file);
+		try {
+			RarEntry second = archive.getEntry("file 2.jpg");
+			assertTrue(second.isSolid());
+
+			Map<String, byte[]> result = new LinkedHashMap<>();
+			assertTrue(archive.read(Collections.singletonList(second), collect(result)).isEmpty());
+			assertEquals(Collections.singleton("file 2.jpg"), result.keySet());
+			assertEquals("first second entry", new String(result.get("file 2.jpg")));
+		} finally {
+			archive.close();
+		}
+	}
+
+	public void testLargeRar5Entries() throws IOException {
+		// a dictionary of 128 KB, so the window of 8 MB is used as ring buffer by the 10 MB entry.
+		byte[] data1 = RarTestUtils.createText(1, 10 * 1024 * 1024);
+		// a dictionary of 4 MB with matches which are 2 MB away.
+		byte[] data2 = new byte[3 * 1024 * 1024];
+		new Random(2).nextBytes(data2);
+		System.arraycopy(data2, 0, data2, 2 * 1024 * 1024, 1024 * 1024);
+		writeRar5(new String[] {"file 1.txt", "file 2.txt"}, new byte[][] {data1, data2},
+				new byte[][] {Rar5Encoder.compress(data1, 1, 0x20000), Rar5Encoder.compress(data2, 0, 0x400000)},
+				new int[] {RAR5_COMPRESSED | 1, RAR5_COMPRESSED | 5 << 10});
+
+		RarArchive archive = new RarArchive(file);
+		try {
+			Map<String, byte[]> result = new LinkedHashMap<>();
+			assertTrue(archive.read(archive.getEntries(), collect(result)).isEmpty());
+			assertTrue(Arrays.equals(data1, result.get("file 1.txt")));
+			assertTrue(Arrays.equals(data2, result.get("file 2.txt")));
+		} finally {
+			archive.close();
+		}
+	}
+
+	public void testRar5CrcError() throws IOException {
+		byte[] packed1 = new Rar5Encoder(0, true).literals("first".getBytes()).finish();
+		byte[] packed2 = new Rar5Encoder(0, false).literals("second".getBytes()).finish();
+		byte[] packed3 = new Rar5Encoder(0, true).literals("third".getBytes()).finish();
+		writeRar5(new String[] {"file 1.jpg", "file 2.jpg", "file 3.jpg"}, new byte[][] {"other".getBytes(), "second".getBytes(), "third".getBytes()},
+				new byte[][] {packed1, packed2, packed3}, new int[] {RAR5_COMPRESSED, RAR5_COMPRESSED | RAR5_SOLID, RAR5_COMPRESSED});
+
+		RarArchive archive = new RarArchive(file);
+		try {
+			// the solid entry could not be trusted after the crc error of the previous one.
+			Map<String, byte[]> result = new LinkedHashMap<>();
+			List<RarEntry> unread = archive.read(archive.getEntries(), collect(result));
+			assertEquals(archive.getEntries().subList(0, 2), unread);
+			assertEquals(Collections.singleton("file 3.jpg"), result.keySet());
+			assertEquals("third", new String(result.get("file 3.jpg")));
+		} finally {
+			archive.close();
+		}
+	}
+
+	public void testNoRar() throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write("no rar archive".getBytes());
+		} finally {
+			out.close();
+		}
+
+		try {
+			new RarArchive(file).close();
+			fail();
+		} catch (IOException e) {
+		}
+	}
+
+	private static CompressedEntryVisitor collect(final Map<String, byte[]> result) {
+		return new CompressedEntryVisitor() {
+
+			@Override
+			public void visit(String name, byte[] data, int length) {
+				result.put(name, Arrays.copyOf(data, length));
+			}
+		};
+	}
+
+	/**
+	 * Writes a rar 4 archive with the given entries.
+	 * @param packed The compressed data of the entries or <code>null</code> to write the contents as they are.
+	 * @param solid <code>true</code> to mark all entries behind the first one as solid.
+	 */
+	private void writeRar4(String[] names, byte[][] contents, byte[][] packed, int method, boolean solid) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] {0x52, 0x61, 0x72, 0x21, 0x1a, 0x07, 0x00});
+
+		// main header
+		write16(out, 0);
+		out.write(0x73);
+		write16(out, 0);
+		write16(out, 13);
+		out.write(new byte[6]);
+
+		for (int i = 0; i < names.length; i++) {
+			byte[] name = names[i].getBytes("US-ASCII");
+			byte[] data = packed != null ? packed[i] : contents[i];
+			write16(out, 0);
+			out.write(0x74);
+			write16(out, 0x8000 | (solid && i > 0 ? 0x0010 : 0));
+			write16(out, 32 + name.length);
+			write32(out, data.length); // packed size
+			write32(out, contents[i].length); // size
+			out.write(3); // host os
+			write32(out, crc(contents[i]));
+			write32(out, 0); // time
+			out.write(29); // version
+			out.write(method);
+			write16(out, name.length);
+			write32(out, 0); // attributes
+			out.write(name);
+			out.write(data);
+		}
+
+		// end header
+		write16(out, 0);
+		out.write(0x7b);
+		write16(out, 0);
+		write16(out, 7);
+		writeFile(out);
+	}
+
+	/**
+	 * Writes a rar 5 archive with the given entries.
+	 * @param packed The compressed data of the entries.
+	 * @param compressionInfos The compression info fields of the entries.
+	 */
+	private void writeRar5(String[] names, byte[][] contents, byte[][] packed, int[] compressionInfos) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] {0x52, 0x61, 0x72, 0x21, 0x1a, 0x07, 0x01, 0x00});
+		writeRar5Header(out, 1, 0, new byte[] {0}, null); // main header
+		for (int i = 0; i < names.length; i++) {
+			writeRar5File(out, names[i], contents[i], packed[i], compressionInfos[i], false);
+		}
+		writeRar5Header(out, 5, 0, new byte[] {0}, null); // end header
+		writeFile(out);
+	}
+
+	/**
+	 * Writes a rar 5 file header followed by the given data.
+	 * @param packed The compressed content or <code>null</code> to write the content as it is.
+	 */
+	private static void writeRar5File(ByteArrayOutputStream out, String name, byte[] content, byte[] packed, int compressionInfo, boolean directory) throws IOException {
+		byte[] nameBytes = name.getBytes("UTF-8");
+		byte[] data = packed != null ? packed : (content != null ? content : new byte[0]);
+		ByteArrayOutputStream fields = new ByteArrayOutputStream();
+		writeVint(fields, directory ? 0x0001 : 0x0004); // file flags
+		writeVint(fields, content != null ? content.length : 0); // size
+		writeVint(fields, 0); // attributes
+		if(!directory) {
+			write32(fields, crc(content));
+		}
+		writeVint(fields, compressionInfo);
+		writeVint(fields, 1); // host os
+		writeVint(fields, nameBytes.length);
+		fields.write(nameBytes);
+		writeRar5Header(out, 2, 0x0002, fields.toByteArray(), data);
+	}
+
+	/**
+	 * Writes a rar 5 header with the given type specific fields followed by the data area, if any.
+	 */
+	private static void writeRar5Header(ByteArrayOutputStream out, int type, int flags, byte[] fields, byte[] data) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		writeVint(header, type);
+		writeVint(header, flags);
+		if(data != null) {
+			writeVint(header, data.length);
+		}
+		header.write(fields);
+
+		ByteArrayOutputStream block = new ByteArrayOutputStream();
+		writeVint(block, header.size());
+		header.writeTo(block);
+		CRC32 crc = new CRC32();
+		crc.update(block.toByteArray());
+		write32(out, crc.getValue());
+		block.writeTo(out);
+		if(data != null) {
+			out.write(data);
+		}
+	}
+
+	private static long crc(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return crc.getValue();
+	}
+
+	private void writeFile(ByteArrayOutputStream out) throws IOException {
+		FileOutputStream fileOut = new FileOutputStream(file);
+		try {
+			fileOut.write(out.toByteArray());
+		} finally {
+			fileOut.close();
+		}
+	}
+
+	private static void writeVint(OutputStream out, long value) throws IOException {
+		while(value >= 0x80) {
+			out.write((int) (value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static void write16(OutputStream out, int value) throws IOException {
+		out.write(value);
+		out.write(value >> 8);
+	}
+
+	private static void write32(OutputStream out, long value) throws IOException {
+		for (int i = 0; i < 4; i++) {
+			out.write((int) (value >> (8 * i)));
+		}
+	}
+}
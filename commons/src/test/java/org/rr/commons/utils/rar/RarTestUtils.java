@@ -0,0 +1,336 @@
+package org.rr.commons.utils.rar;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Creates compressed rar data for the archive tests. The encoders use fixed huffman tables where all codes of a table
+ * have the same length, so the code of a symbol is it's number and the data is created without any rar executable.
+ */
+public class RarTestUtils {
+
+	/**
+	 * Creates compressible text which differs for each seed.
+	 */
+	public static byte[] createText(int seed, int length) {
+		String[] words = new String[] {"comic", "book", "page", "panel", "the", "a", "hero", "said", "and", "night", "city", "\n"};
+		Random random = new Random(seed);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(length + 16);
+		while(out.size() < length) {
+			if(random.nextInt(20) == 0) {
+				out.write(random.nextInt(256));
+			} else {
+				byte[] word = words[random.nextInt(words.length)].getBytes();
+				out.write(word, 0, word.length);
+				out.write(' ');
+			}
+		}
+		return Arrays.copyOf(out.toByteArray(), length);
+	}
+
+	/**
+	 * Encodes data with the rar 2.9 algorithm. Only literals and matches with a length of 3 to 10 bytes and
+	 * a distance of 1 to 4 bytes are supported.
+	 */
+	public static class Rar29Encoder {
+
+		private final BitWriter bits = new BitWriter();
+
+		/**
+		 * @param tables <code>true</code> to write the tables which is needed by all non solid entries.
+		 */
+		public Rar29Encoder(boolean tables) {
+			if(tables) {
+				bits.write(0, 2); // no ppm, no old table
+				for (int i = 0; i < 20; i++) {
+					bits.write(5, 4);
+				}
+				writeLengths(299, 9);
+				writeLengths(60, 6);
+				writeLengths(17, 5);
+				writeLengths(28, 5);
+			}
+		}
+
+		private void writeLengths(int count, int length) {
+			for (int i = 0; i < count; i++) {
+				bits.write(length, 5);
+			}
+		}
+
+		public Rar29Encoder literals(byte[] data) {
+			for (byte b : data) {
+				bits.write(b & 0xff, 9);
+			}
+			return this;
+		}
+
+		public Rar29Encoder match(int length, int distance) {
+			bits.write(271 + length - 3, 9);
+			bits.write(distance - 1, 6);
+			return this;
+		}
+
+		/**
+		 * Writes the end of the entry.
+		 */
+		public byte[] finish() {
+			bits.write(256, 9);
+			bits.write(0, 2); // new file, keep the tables
+			return bits.toByteArray();
+		}
+	}
+
+	/**
+	 * Encodes data with the rar 5 algorithm.
+	 */
+	public static class Rar5Encoder {
+
+		public static final int FILTER_DELTA = 0;
+
+		public static final int FILTER_E8 = 1;
+
+		public static final int FILTER_E8E9 = 2;
+
+		public static final int FILTER_ARM = 3;
+
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		private final int distanceCodes;
+
+		private BitWriter block;
+
+		private boolean tables;
+
+		/**
+		 * @param version The version of the algorithm, 0 for rar 5 and 1 for rar 7.
+		 * @param tables <code>true</code> to write the tables which is needed by all non solid entries.
+		 */
+		public Rar5Encoder(int version, boolean tables) {
+			this.distanceCodes = version == 0 ? 64 : 80;
+			startBlock(tables);
+		}
+
+		/**
+		 * Compresses the given data with matches of the last occurrence of each three bytes. A new block is started
+		 * after each 0x8000 symbols.
+		 * @param maxDistance The largest distance of a match which must not exceed the dictionary size.
+		 */
+		public static byte[] compress(byte[] data, int version, int maxDistance) {
+			Rar5Encoder encoder = new Rar5Encoder(version, true);
+			int[] last = new int[1 << 16];
+			Arrays.fill(last, -1);
+			int symbols = 0;
+			for (int pos = 0; pos < data.length; symbols++) {
+				if(symbols % 0x8000 == 0x7fff) {
+					encoder.endBlock();
+				}
+				int length = 0;
+				int candidate = -1;
+				if(pos + 3 <= data.length) {
+					int hash = ((data[pos] & 0xff) << 8 ^ (data[pos + 1] & 0xff) << 4 ^ (data[pos + 2] & 0xff)) & 0xffff;
+					candidate = last[hash];
+					last[hash] = pos;
+				}
+				if(candidate >= 0 && pos - candidate <= maxDistance) {
+					while(pos + length < data.length && length < 4000 && data[candidate + length] == data[pos + length]) {
+						length++;
+					}
+				}
+				if(length >= 6) {
+					encoder.match(length, pos - candidate);
+					pos += length;
+				} else {
+					encoder.literals(new byte[] {data[pos]});
+					pos++;
+				}
+			}
+			return encoder.finish();
+		}
+
+		private void startBlock(boolean tables) {
+			this.block = new BitWriter();
+			this.tables = tables;
+			if(tables) {
+				for (int i = 0; i < 20; i++) {
+					block.write(5, 4);
+				}
+				writeLengths(306, 9);
+				writeLengths(distanceCodes, 6);
+				writeLengths(16, 4);
+				writeLengths(44, 6);
+			}
+		}
+
+		private void writeLengths(int count, int length) {
+			for (int i = 0; i < count; i++) {
+				block.write(length, 5);
+			}
+		}
+
+		public Rar5Encoder literals(byte[] data) {
+			for (byte b : data) {
+				block.write(b & 0xff, 9);
+			}
+			return this;
+		}
+
+		public Rar5Encoder match(int length, long distance) {
+			if(distance > 0x100) {
+				length--;
+				if(distance > 0x2000) {
+					length--;
+					if(distance > 0x40000) {
+						length--;
+					}
+				}
+			}
+			writeLength(262, 9, length);
+
+			long value = distance - 1;
+			if(value < 4) {
+				block.write(value, 6);
+				return this;
+			}
+			for (int slot = 4; slot < distanceCodes; slot++) {
+				int bits = slot / 2 - 1;
+				long start = (long) (2 | (slot & 1)) << bits;
+				if(value >= start && value < start + (1L << bits)) {
+					block.write(slot, 6);
+					long extra = value - start;
+					if(bits >= 4) {
+						block.write(extra >>> 4, bits - 4);
+						block.write(extra & 0xf, 4);
+					} else {
+						block.write(extra, bits);
+					}
+					return this;
+				}
+			}
+			throw new IllegalArgumentException("distance " + distance);
+		}
+
+		/**
+		 * Repeats the last match at the last distance.
+		 */
+		public Rar5Encoder repeatLast() {
+			block.write(257, 9);
+			return this;
+		}
+
+		/**
+		 * Writes a match with one of the last four distances.
+		 */
+		public Rar5Encoder repeatDistance(int index, int length) {
+			block.write(258 + index, 9);
+			writeLength(0, 6, length);
+			return this;
+		}
+
+		/**
+		 * @param start The start of the filter block relative to the current position.
+		 */
+		public Rar5Encoder filter(int start, int length, int type, int channels) {
+			block.write(256, 9);
+			writeFilterData(start);
+			writeFilterData(length);
+			block.write(type, 3);
+			if(type == FILTER_DELTA) {
+				block.write(channels - 1, 5);
+			}
+			return this;
+		}
+
+		private void writeFilterData(int value) {
+			block.write(3, 2);
+			for (int i = 0; i < 4; i++) {
+				block.write((value >>> (8 * i)) & 0xff, 8);
+			}
+		}
+
+		private void writeLength(int firstSymbol, int codeLength, int length) {
+			int value = length - 2;
+			if(value < 8) {
+				block.write(firstSymbol + value, codeLength);
+				return;
+			}
+			for (int slot = 8; slot < 44; slot++) {
+				int bits = slot / 4 - 1;
+				int start = (4 | (slot & 3)) << bits;
+				if(value >= start && value < start + (1 << bits)) {
+					block.write(firstSymbol + slot, codeLength);
+					block.write(value - start, bits);
+					return;
+				}
+			}
+			throw new IllegalArgumentException("length " + length);
+		}
+
+		/**
+		 * Ends the current block and starts a new one which uses the same tables.
+		 */
+		public Rar5Encoder endBlock() {
+			writeBlock(false);
+			startBlock(false);
+			return this;
+		}
+
+		/**
+		 * Writes the last block of the entry.
+		 */
+		public byte[] finish() {
+			writeBlock(true);
+			return out.toByteArray();
+		}
+
+		private void writeBlock(boolean last) {
+			byte[] data = block.toByteArray();
+			int size = data.length;
+			int bitSize = (int) (block.getBitCount() - (size - 1) * 8L);
+			int flags = (bitSize - 1) | (2 << 3) | (last ? 0x40 : 0) | (tables ? 0x80 : 0);
+			out.write(flags);
+			out.write((0x5a ^ flags ^ size ^ (size >>> 8) ^ (size >>> 16)) & 0xff);
+			out.write(size);
+			out.write(size >>> 8);
+			out.write(size >>> 16);
+			out.write(data, 0, data.length);
+		}
+	}
+
+	/**
+	 * Writes bits with the most significant bit first like the rar decoders read them.
+	 */
+	private static class BitWriter {
+
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		private int current;
+
+		private long bitCount;
+
+		private void write(long value, int bits) {
+			for (int i = bits - 1; i >= 0; i--) {
+				current = current << 1 | (int) (value >>> i) & 1;
+				if(++bitCount % 8 == 0) {
+					out.write(current);
+					current = 0;
+				}
+			}
+		}
+
+		private long getBitCount() {
+			return bitCount;
+		}
+
+		private byte[] toByteArray() {
+			int remaining = (int) (bitCount % 8);
+			if(remaining == 0) {
+				return out.toByteArray();
+			}
+			byte[] result = Arrays.copyOf(out.toByteArray(), out.size() + 1);
+			result[result.length - 1] = (byte) (current << (8 - remaining));
+			return result;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package org.rr.commons.utils.zip;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.rr.commons.utils.compression.ArchiveIndexCache;
+
+public class ArchiveIndexCacheTest extends TestCase {
+
+	private File file;
+
+	private ArchiveIndexCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("ArchiveIndexCacheTest", ".cbz");
+		cache = ArchiveIndexCache.getInstance();
+		cache.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		cache.clear();
+		file.delete();
+	}
+
+	public void testHitAndMiss() {
+		assertNull(cache.get(file, String.class));
+		cache.put(file, file.length(), file.lastModified(), String.class, Arrays.asList("a.jpg", "b.jpg"));
+
+		List<String> entries = cache.get(file, String.class);
+		assertEquals(Arrays.asList("a.jpg", "b.jpg"), entries);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0.5d, cache.getHitRatio(), 0.0001d);
+	}
+
+	public void testModifiedArchive() {
+		cache.put(file, file.length(), file.lastModified(), String.class, Arrays.asList("a.jpg"));
+		assertTrue(file.setLastModified(file.lastModified() - 10000));
+		assertNull(cache.get(file, String.class));
+		assertEquals(0, cache.size());
+	}
+
+	public void testOtherType() {
+		cache.put(file, file.length(), file.lastModified(), String.class, Arrays.asList("a.jpg"));
+		assertNull(cache.get(file, Integer.class));
+	}
+
+	public void testInvalidate() {
+		cache.put(file, file.length(), file.lastModified(), String.class, Arrays.asList("a.jpg"));
+		cache.invalidate(file);
+		assertNull(cache.get(file, String.class));
+		assertEquals(0, cache.getHitCount());
+	}
+}
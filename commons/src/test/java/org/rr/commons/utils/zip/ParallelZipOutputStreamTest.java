@@ -0,0 +1,137 @@
+package org.rr.commons.utils.zip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import junit.framework.TestCase;
+
+import org.rr.commons.utils.compression.CompressionUtils;
+import org.rr.commons.utils.compression.zip.ParallelZipOutputStream;
+import org.rr.commons.utils.compression.zip.ZipEntry;
+
+public class ParallelZipOutputStreamTest extends TestCase {
+
+	private static byte[] readEntry(java.util.zip.ZipInputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[4096];
+		int len;
+		while ((len = in.read(buf)) != -1) {
+			out.write(buf, 0, len);
+		}
+		return out.toByteArray();
+	}
+
+	private static String getPageName(int i) {
+		return "pages/page" + i + (i % 2 == 0 ? ".jpg" : ".xhtml");
+	}
+
+	public void testEntryOrderAndContent() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ParallelZipOutputStream zipOut = new ParallelZipOutputStream(out, 20000);
+		byte[] mimetype = "application/epub+zip".getBytes("UTF-8");
+		ZipEntry mimetypeEntry = new ZipEntry("mimetype", null);
+		mimetypeEntry.setMethod(ZipEntry.STORED);
+		mimetypeEntry.setSize(mimetype.length);
+		CRC32 crc = new CRC32();
+		crc.update(mimetype);
+		mimetypeEntry.setCrc(crc.getValue());
+		zipOut.putNextEntry(mimetypeEntry);
+		zipOut.write(mimetype);
+		zipOut.putNextEntry(new ZipEntry("pages/", null));
+		for (int i = 0; i < 50; i++) {
+			ZipEntry pageEntry = new ZipEntry(getPageName(i), null);
+			if (CompressionUtils.isStoreOnlyFile(pageEntry.getName())) {
+				// size and crc are calculated by the stream
+				pageEntry.setMethod(ZipEntry.STORED);
+			}
+			zipOut.putNextEntry(pageEntry);
+			zipOut.write(ZipTestUtils.createData(i, 1000 * i));
+			zipOut.closeEntry();
+		}
+		zipOut.close();
+
+		java.util.zip.ZipInputStream in = new java.util.zip.ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+		try {
+			java.util.zip.ZipEntry entry = in.getNextEntry();
+			assertEquals("mimetype", entry.getName());
+			assertEquals(ZipEntry.STORED, entry.getMethod());
+			assertTrue(Arrays.equals(mimetype, readEntry(in)));
+			assertEquals("pages/", in.getNextEntry().getName());
+			for (int i = 0; i < 50; i++) {
+				entry = in.getNextEntry();
+				assertEquals(getPageName(i), entry.getName());
+				assertEquals(i % 2 == 0 ? ZipEntry.STORED : ZipEntry.DEFLATED, entry.getMethod());
+				assertTrue(Arrays.equals(ZipTestUtils.createData(i, 1000 * i), readEntry(in)));
+			}
+			assertNull(in.getNextEntry());
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testInvalidStoredEntry() throws IOException {
+		CloseTrackingOutputStream out = new CloseTrackingOutputStream(Integer.MAX_VALUE);
+		ParallelZipOutputStream zipOut = new ParallelZipOutputStream(out);
+		ZipEntry entry = new ZipEntry("stored", null);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(3);
+		zipOut.putNextEntry(entry);
+		zipOut.write(new byte[5]);
+		try {
+			zipOut.close();
+			fail("wrong size not detected");
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(out.closed);
+	}
+
+	public void testCloseAfterWriteFailure() throws IOException {
+		CloseTrackingOutputStream out = new CloseTrackingOutputStream(10000);
+		ParallelZipOutputStream zipOut = new ParallelZipOutputStream(out);
+		try {
+			for (int i = 0; i < 10; i++) {
+				zipOut.putNextEntry(new ZipEntry("entry" + i, null));
+				zipOut.write(ZipTestUtils.createData(i, 5000));
+			}
+			zipOut.close();
+			fail("write failure not detected");
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(out.closed);
+	}
+
+	/**
+	 * Fails after the given number of bytes and remembers if it was closed.
+	 */
+	private static class CloseTrackingOutputStream extends OutputStream {
+
+		private final int maxSize;
+
+		private int size;
+
+		private boolean closed;
+
+		private CloseTrackingOutputStream(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (size >= maxSize) {
+				throw new IOException("disk full");
+			}
+			size++;
+		}
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+		}
+	}
+}
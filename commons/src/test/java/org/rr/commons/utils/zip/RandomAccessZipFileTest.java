@@ -0,0 +1,89 @@
+package org.rr.commons.utils.zip;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.rr.commons.utils.compression.zip.RandomAccessZipFile;
+import org.rr.commons.utils.compression.zip.ZipEntry;
+
+public class RandomAccessZipFileTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		entries.put("mimetype", "application/epub+zip".getBytes("UTF-8"));
+		entries.put("OEBPS/stored.txt", "stored content".getBytes("UTF-8"));
+		entries.put("OEBPS/eintragPÄ.txt", ZipTestUtils.createData(0, 100000));
+		file = ZipTestUtils.createZipFile("RandomAccessZipFileTest", ".zip", entries, "OEBPS/stored.txt");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	public void testEntries() throws IOException {
+		RandomAccessZipFile zipFile = new RandomAccessZipFile(file);
+		try {
+			List<ZipEntry> entries = zipFile.getEntries();
+			assertEquals(3, entries.size());
+			assertEquals("mimetype", entries.get(0).getName());
+			assertEquals("OEBPS/stored.txt", entries.get(1).getName());
+			assertEquals("OEBPS/eintragPÄ.txt", entries.get(2).getName());
+			assertTrue(Arrays.equals("OEBPS/eintragPÄ.txt".getBytes("UTF-8"), entries.get(2).getRawName()));
+			assertNull(zipFile.getEntry("missing"));
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	public void testRead() throws IOException {
+		RandomAccessZipFile zipFile = new RandomAccessZipFile(file);
+		try {
+			assertEquals("application/epub+zip", new String(zipFile.getBytes(zipFile.getEntry("mimetype")), "UTF-8"));
+			assertEquals("stored content", new String(zipFile.getBytes(zipFile.getEntry("OEBPS/stored.txt")), "UTF-8"));
+			assertTrue(Arrays.equals(ZipTestUtils.createData(0, 100000), zipFile.getBytes(zipFile.getEntry("OEBPS/eintragPÄ.txt"))));
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	public void testConcurrentStreams() throws IOException {
+		RandomAccessZipFile zipFile = new RandomAccessZipFile(file);
+		try {
+			InputStream first = zipFile.getInputStream(zipFile.getEntry("OEBPS/eintragPÄ.txt"));
+			InputStream second = zipFile.getInputStream(zipFile.getEntry("OEBPS/stored.txt"));
+			byte[] expected = ZipTestUtils.createData(0, 100000);
+			assertEquals(expected[0] & 0xff, first.read());
+			assertEquals('s', second.read());
+			assertEquals(expected[1] & 0xff, first.read());
+			assertEquals('t', second.read());
+			first.close();
+			second.close();
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	public void testNoZip() throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(ZipTestUtils.createData(0, 100));
+		out.close();
+		try {
+			new RandomAccessZipFile(file).close();
+			fail();
+		} catch(java.util.zip.ZipException e) {
+			// expected
+		}
+	}
+}
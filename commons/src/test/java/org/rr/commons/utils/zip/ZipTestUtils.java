@@ -0,0 +1,58 @@
+package org.rr.commons.utils.zip;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Creates the test data and the zip files used by the archive tests.
+ */
+public class ZipTestUtils {
+
+	/**
+	 * Creates compressible data which differs for each seed.
+	 */
+	public static byte[] createData(int seed, int length) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) (i % 7 == 0 ? i + seed : 'a' + i % 13);
+		}
+		return data;
+	}
+
+	/**
+	 * Creates a temporary zip file with the given entries in their iteration order. The entries are written
+	 * with the {@link java.util.zip.ZipOutputStream} so the tested classes read a zip they did not write.
+	 * @param entries The entry names mapped to their data. Entries with <code>null</code> data are written without data, for example directories.
+	 * @param storedEntries The names of the entries which are stored instead of deflated.
+	 */
+	public static File createZipFile(String prefix, String suffix, Map<String, byte[]> entries, String... storedEntries) throws IOException {
+		File file = File.createTempFile(prefix, suffix);
+		List<String> stored = Arrays.asList(storedEntries);
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				ZipEntry zipEntry = new ZipEntry(entry.getKey());
+				byte[] data = entry.getValue();
+				if (stored.contains(entry.getKey())) {
+					CRC32 crc = new CRC32();
+					crc.update(data);
+					zipEntry.setMethod(ZipEntry.STORED);
+					zipEntry.setSize(data.length);
+					zipEntry.setCrc(crc.getValue());
+				}
+				out.putNextEntry(zipEntry);
+				if (data != null) {
+					out.write(data);
+				}
+				out.closeEntry();
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,115 @@
+package org.rr.commons.utils.zip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.rr.commons.mufs.ResourceHandlerFactory;
+import org.rr.commons.utils.compression.CompressedDataEntry;
+import org.rr.commons.utils.compression.zip.RandomAccessZipFile;
+import org.rr.commons.utils.compression.zip.ZipEntry;
+import org.rr.commons.utils.compression.zip.ZipUtils;
+
+public class ZipUtilsTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		entries.put("mimetype", "application/epub+zip".getBytes("UTF-8"));
+		entries.put("OEBPS/content.opf", "<package/>".getBytes("UTF-8"));
+		for (int i = 0; i < 3; i++) {
+			entries.put("OEBPS/chapter" + i + ".html", ZipTestUtils.createData(i, 100000 + i));
+		}
+		file = ZipTestUtils.createZipFile("ZipUtilsTest", ".epub", entries, "mimetype");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	public void testCopyAndReplace() throws IOException {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		entries.put("OEBPS/content.opf", "<package version=\"2.0\"/>".getBytes("UTF-8"));
+		entries.put("OEBPS/cover.jpg", ZipTestUtils.createData(7, 5000));
+
+		File copy = File.createTempFile("ZipUtilsTest", ".epub");
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			assertTrue(ZipUtils.copyAndReplace(ResourceHandlerFactory.getResourceHandler(file), out, entries));
+			FileUtils.writeByteArrayToFile(copy, out.toByteArray());
+
+			try (RandomAccessZipFile original = new RandomAccessZipFile(file); RandomAccessZipFile zipFile = new RandomAccessZipFile(copy)) {
+				List<ZipEntry> copiedEntries = zipFile.getEntries();
+				assertEquals(6, copiedEntries.size());
+				assertEquals("mimetype", copiedEntries.get(0).getName());
+				assertEquals(ZipEntry.STORED, copiedEntries.get(0).getMethod());
+				assertEquals("application/epub+zip", new String(read(zipFile, "mimetype"), "UTF-8"));
+				assertEquals("OEBPS/content.opf", copiedEntries.get(1).getName());
+				assertEquals("<package version=\"2.0\"/>", new String(read(zipFile, "OEBPS/content.opf"), "UTF-8"));
+				for (int i = 0; i < 3; i++) {
+					String name = "OEBPS/chapter" + i + ".html";
+					assertEquals(name, copiedEntries.get(i + 2).getName());
+					assertTrue(Arrays.equals(ZipTestUtils.createData(i, 100000 + i), read(zipFile, name)));
+					// compressed data and crc are copied and not compressed again
+					assertEquals(original.getEntry(name).getCrc(), zipFile.getEntry(name).getCrc());
+					assertEquals(original.getEntry(name).getCompressedSize(), zipFile.getEntry(name).getCompressedSize());
+				}
+				assertEquals("OEBPS/cover.jpg", copiedEntries.get(5).getName());
+				assertTrue(Arrays.equals(ZipTestUtils.createData(7, 5000), read(zipFile, "OEBPS/cover.jpg")));
+			}
+
+			// the copy must be readable by other zip implementations
+			try (java.util.zip.ZipFile zipFile = new java.util.zip.ZipFile(copy)) {
+				assertEquals(6, zipFile.size());
+				assertTrue(Arrays.equals(ZipTestUtils.createData(2, 100002), org.apache.commons.io.IOUtils.toByteArray(zipFile.getInputStream(zipFile.getEntry("OEBPS/chapter2.html")))));
+			}
+		} finally {
+			copy.delete();
+		}
+	}
+
+	public void testAdd() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CompressedDataEntry entry = new CompressedDataEntry("OEBPS/chapter1.html", null, ZipTestUtils.createData(9, 2000));
+		assertTrue(ZipUtils.add(new FileInputStream(file), out, entry));
+
+		CompressedDataEntry newEntry = new CompressedDataEntry("OEBPS/cover.jpg", null, ZipTestUtils.createData(7, 5000));
+		ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+		assertTrue(ZipUtils.add(new ByteArrayInputStream(out.toByteArray()), out2, newEntry));
+
+		File copy = File.createTempFile("ZipUtilsTest", ".epub");
+		try {
+			FileUtils.writeByteArrayToFile(copy, out2.toByteArray());
+			try (RandomAccessZipFile original = new RandomAccessZipFile(file); RandomAccessZipFile zipFile = new RandomAccessZipFile(copy)) {
+				List<ZipEntry> copiedEntries = zipFile.getEntries();
+				assertEquals(6, copiedEntries.size());
+				assertEquals(ZipEntry.STORED, zipFile.getEntry("mimetype").getMethod());
+				assertEquals("application/epub+zip", new String(read(zipFile, "mimetype"), "UTF-8"));
+				assertTrue(Arrays.equals(ZipTestUtils.createData(9, 2000), read(zipFile, "OEBPS/chapter1.html")));
+				assertTrue(Arrays.equals(ZipTestUtils.createData(2, 100002), read(zipFile, "OEBPS/chapter2.html")));
+				// the compressed data of the other entries has been copied
+				assertEquals(original.getEntry("OEBPS/chapter2.html").getCompressedSize(), zipFile.getEntry("OEBPS/chapter2.html").getCompressedSize());
+				assertEquals("OEBPS/cover.jpg", copiedEntries.get(5).getName());
+				assertTrue(Arrays.equals(ZipTestUtils.createData(7, 5000), read(zipFile, "OEBPS/cover.jpg")));
+			}
+		} finally {
+			copy.delete();
+		}
+	}
+
+	private static byte[] read(RandomAccessZipFile zipFile, String name) throws IOException {
+		return zipFile.getBytes(zipFile.getEntry(name));
+	}
+}
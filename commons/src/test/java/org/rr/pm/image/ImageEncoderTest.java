@@ -0,0 +1,85 @@
+package org.rr.pm.image;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+
+import junit.framework.TestCase;
+
+public class ImageEncoderTest extends TestCase {
+
+	private static BufferedImage createImage(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setPaint(new GradientPaint(0, 0, Color.RED, width, height, Color.BLUE));
+		g.fillRect(0, 0, width, height);
+		g.dispose();
+		return image;
+	}
+
+	private static String getLumaSamplingFactor(byte[] jpeg) throws IOException {
+		ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(jpeg));
+		ImageReader reader = ImageIO.getImageReaders(in).next();
+		try {
+			reader.setInput(in);
+			IIOMetadataNode tree = (IIOMetadataNode) reader.getImageMetadata(0).getAsTree("javax_imageio_jpeg_image_1.0");
+			IIOMetadataNode component = (IIOMetadataNode) tree.getElementsByTagName("componentSpec").item(0);
+			return component.getAttribute("HsamplingFactor") + "x" + component.getAttribute("VsamplingFactor");
+		} finally {
+			reader.dispose();
+			in.close();
+		}
+	}
+
+	public void testEncodeJpeg() throws IOException {
+		BufferedImage image = createImage(300, 400);
+		byte[] jpeg = ImageEncoder.encode(image, "image/jpg");
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpeg));
+		assertEquals(300, decoded.getWidth());
+		assertEquals(400, decoded.getHeight());
+
+		// the pooled writer and buffer must give the same result
+		assertTrue(Arrays.equals(jpeg, ImageEncoder.encode(image, "image/jpeg")));
+		assertTrue(Arrays.equals(jpeg, ImageEncoder.encode(image, "image/jpeg", ImageEncoder.DEFAULT_JPEG_QUALITY, true)));
+		assertTrue(Arrays.equals(jpeg, ImageUtils.getImageBytes(image, "image/jpeg")));
+	}
+
+	public void testQuality() throws IOException {
+		BufferedImage image = createImage(300, 400);
+		byte[] low = ImageEncoder.encode(image, "image/jpeg", 0.2f, true);
+		byte[] high = ImageEncoder.encode(image, "image/jpeg", 0.95f, true);
+		assertTrue(low.length < high.length);
+		assertNotNull(ImageIO.read(new ByteArrayInputStream(low)));
+	}
+
+	public void testChromaSubsampling() throws IOException {
+		BufferedImage image = createImage(300, 400);
+		assertEquals("2x2", getLumaSamplingFactor(ImageEncoder.encode(image, "image/jpeg", 0.9f, true)));
+		assertEquals("1x1", getLumaSamplingFactor(ImageEncoder.encode(image, "image/jpeg", 0.9f, false)));
+	}
+
+	public void testEncodeOtherFormats() throws IOException {
+		BufferedImage image = createImage(30, 40);
+		byte[] png = ImageEncoder.encode(image, "image/png");
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+		assertEquals(image.getRGB(10, 10), decoded.getRGB(10, 10));
+
+		// large images must not break the following encodings
+		assertNotNull(ImageEncoder.encode(createImage(3000, 3000), "image/png"));
+		assertTrue(Arrays.equals(png, ImageEncoder.encode(image, "image/png")));
+		// the quality is only used for lossy formats
+		assertTrue(Arrays.equals(png, ImageEncoder.encode(image, "image/png", 0.2f, true)));
+
+		assertNull(ImageEncoder.encode(image, "image/unknown"));
+		assertNull(ImageEncoder.encode(null, "image/jpeg"));
+	}
+}
@@ -0,0 +1,148 @@
+package org.rr.pm.image;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+import org.rr.commons.mufs.ResourceHandlerFactory;
+
+public class ImageInfoTest extends TestCase {
+
+	static byte[] createJpeg(int width, int height) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics g = image.getGraphics();
+		g.setColor(Color.BLUE);
+		g.fillRect(0, 0, width / 2, height / 2);
+		g.dispose();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpeg", out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Inserts an APP1 segment with exif data containing the given thumbnail behind the SOI marker of the given jpeg.
+	 */
+	static byte[] addExifThumbnail(byte[] jpeg, byte[] thumbnail, boolean littleEndian) {
+		ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+		tiff.write(littleEndian ? 'I' : 'M');
+		tiff.write(littleEndian ? 'I' : 'M');
+		write16(tiff, 42, littleEndian);
+		write32(tiff, 8, littleEndian); // IFD0
+		write16(tiff, 0, littleEndian); // no IFD0 entries
+		write32(tiff, 14, littleEndian); // IFD1
+		write16(tiff, 3, littleEndian);
+		writeEntry(tiff, 0x0103, 3, 6, littleEndian); // jpeg compression
+		writeEntry(tiff, 0x0201, 4, 14 + 2 + 3 * 12 + 4, littleEndian);
+		writeEntry(tiff, 0x0202, 4, thumbnail.length, littleEndian);
+		write32(tiff, 0, littleEndian);
+		tiff.write(thumbnail, 0, thumbnail.length);
+
+		ByteArrayOutputStream app1 = new ByteArrayOutputStream();
+		app1.write(new byte[] {'E', 'x', 'i', 'f', 0, 0}, 0, 6);
+		app1.write(tiff.toByteArray(), 0, tiff.size());
+		return insertSegment(jpeg, 2, 0xe1, app1.toByteArray());
+	}
+
+	/**
+	 * Inserts a JFIF extension APP0 segment containing the given thumbnail behind the JFIF APP0 segment of the given jpeg.
+	 */
+	private static byte[] addJfxxThumbnail(byte[] jpeg, byte[] thumbnail) {
+		ByteArrayOutputStream app0 = new ByteArrayOutputStream();
+		app0.write(new byte[] {'J', 'F', 'X', 'X', 0, 0x10}, 0, 6);
+		app0.write(thumbnail, 0, thumbnail.length);
+		int jfifEnd = 4 + ((jpeg[4] & 0xff) << 8 | (jpeg[5] & 0xff));
+		return insertSegment(jpeg, jfifEnd, 0xe0, app0.toByteArray());
+	}
+
+	private static byte[] insertSegment(byte[] jpeg, int offset, int marker, byte[] data) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(jpeg, 0, offset);
+		out.write(0xff);
+		out.write(marker);
+		write16(out, data.length + 2, false);
+		out.write(data, 0, data.length);
+		out.write(jpeg, offset, jpeg.length - offset);
+		return out.toByteArray();
+	}
+
+	private static ImageInfo readThumbnail(String name, byte[] jpeg) {
+		ImageInfo imageInfo = new ImageInfo(ResourceHandlerFactory.getVirtualResourceHandler(name, jpeg));
+		assertNull(imageInfo.getEmbeddedThumbnail());
+		imageInfo.setReadEmbeddedThumbnail(true);
+		assertTrue(imageInfo.check());
+		return imageInfo;
+	}
+
+	private static void writeEntry(ByteArrayOutputStream out, int tag, int type, int value, boolean littleEndian) {
+		write16(out, tag, littleEndian);
+		write16(out, type, littleEndian);
+		write32(out, 1, littleEndian);
+		if(type == 3) {
+			write16(out, value, littleEndian);
+			write16(out, 0, littleEndian);
+		} else {
+			write32(out, value, littleEndian);
+		}
+	}
+
+	private static void write16(ByteArrayOutputStream out, int value, boolean littleEndian) {
+		if(littleEndian) {
+			out.write(value);
+			out.write(value >> 8);
+		} else {
+			out.write(value >> 8);
+			out.write(value);
+		}
+	}
+
+	private static void write32(ByteArrayOutputStream out, int value, boolean littleEndian) {
+		if(littleEndian) {
+			write16(out, value, true);
+			write16(out, value >>> 16, true);
+		} else {
+			write16(out, value >>> 16, false);
+			write16(out, value, false);
+		}
+	}
+
+	public void testExifThumbnail() throws IOException {
+		byte[] thumbnail = createJpeg(120, 160);
+		for (boolean littleEndian : new boolean[] {true, false}) {
+			byte[] jpeg = addExifThumbnail(createJpeg(600, 800), thumbnail, littleEndian);
+			ImageInfo imageInfo = readThumbnail("exif.jpg", jpeg);
+			assertEquals(600, imageInfo.getWidth());
+			assertEquals(800, imageInfo.getHeight());
+			assertTrue(Arrays.equals(thumbnail, imageInfo.getEmbeddedThumbnail()));
+		}
+	}
+
+	public void testJfxxThumbnail() throws IOException {
+		byte[] thumbnail = createJpeg(120, 160);
+		ImageInfo imageInfo = readThumbnail("jfxx.jpg", addJfxxThumbnail(createJpeg(600, 800), thumbnail));
+		assertEquals(600, imageInfo.getWidth());
+		assertEquals(800, imageInfo.getHeight());
+		assertTrue(Arrays.equals(thumbnail, imageInfo.getEmbeddedThumbnail()));
+	}
+
+	public void testSkipOtherApp1Segments() throws IOException {
+		byte[] thumbnail = createJpeg(120, 160);
+		byte[] jpeg = addExifThumbnail(createJpeg(600, 800), thumbnail, false);
+		byte[] xmp = "http://ns.adobe.com/xap/1.0/\0<x:xmpmeta/>".getBytes("ISO-8859-1");
+		ImageInfo imageInfo = readThumbnail("xmp.jpg", insertSegment(jpeg, 2, 0xe1, xmp));
+		assertEquals(600, imageInfo.getWidth());
+		assertTrue(Arrays.equals(thumbnail, imageInfo.getEmbeddedThumbnail()));
+	}
+
+	public void testNoThumbnail() throws IOException {
+		ImageInfo imageInfo = readThumbnail("plain.jpg", createJpeg(600, 800));
+		assertEquals(600, imageInfo.getWidth());
+		assertNull(imageInfo.getEmbeddedThumbnail());
+	}
+}
@@ -0,0 +1,133 @@
+package org.rr.pm.image;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import junit.framework.TestCase;
+
+public class ImageUtilsTest extends TestCase {
+
+	private static BufferedImage createImage(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics g = image.getGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		g.setColor(Color.RED);
+		g.fillRect(width / 4, height / 4, width / 2, height / 2);
+		g.dispose();
+		return image;
+	}
+
+	private static BufferedImage convert(BufferedImage image, int type) {
+		BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), type);
+		Graphics g = result.getGraphics();
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return result;
+	}
+
+	private static byte[] encode(BufferedImage image, String format, boolean progressive) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MemoryCacheImageOutputStream imageOut = new MemoryCacheImageOutputStream(out);
+		try {
+			writer.setOutput(imageOut);
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			if(progressive) {
+				param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+			}
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			imageOut.close();
+			writer.dispose();
+		}
+		return out.toByteArray();
+	}
+
+	public void testSubsampling() {
+		assertEquals(1, ImageUtils.getSubsampling(100, 150, new Dimension(100, 150)));
+		assertEquals(1, ImageUtils.getSubsampling(300, 450, new Dimension(100, 150)));
+		assertEquals(45, ImageUtils.getSubsampling(6000, 9000, new Dimension(0, 100)));
+		assertEquals(30, ImageUtils.getSubsampling(6000, 9000, new Dimension(100, 0)));
+		assertEquals(1, ImageUtils.getSubsampling(6000, 9000, new Dimension(0, 0)));
+	}
+
+	public void testDecodeJpeg() throws IOException {
+		byte[] jpeg = encode(createImage(2000, 3000), "jpeg", false);
+		BufferedImage image = ImageUtils.decodeImage(new ByteArrayInputStream(jpeg), new Dimension(0, 100));
+		assertEquals(134, image.getWidth());
+		assertEquals(200, image.getHeight());
+	}
+
+	public void testDecodeProgressiveJpeg() throws IOException {
+		byte[] jpeg = encode(createImage(2000, 3000), "jpeg", true);
+		BufferedImage image = ImageUtils.decodeImage(new ByteArrayInputStream(jpeg), new Dimension(100, 100));
+		assertEquals(200, image.getWidth());
+		assertEquals(300, image.getHeight());
+	}
+
+	public void testDecodePng() throws IOException {
+		byte[] png = encode(createImage(1000, 1000), "png", false);
+		BufferedImage image = ImageUtils.decodeImage(new ByteArrayInputStream(png), new Dimension(100, 100));
+		assertEquals(200, image.getWidth());
+		assertEquals(Color.RED.getRGB(), image.getRGB(100, 100));
+
+		image = ImageUtils.decodeImage(new ByteArrayInputStream(png), null);
+		assertEquals(1000, image.getWidth());
+	}
+
+	public void testDecodeNoImage() throws IOException {
+		assertNull(ImageUtils.decodeImage(new ByteArrayInputStream(new byte[] {1, 2, 3, 4}), new Dimension(100, 100)));
+	}
+
+	public void testCrop() {
+		int[] types = new int[] {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_INT_ARGB_PRE};
+		for (int type : types) {
+			BufferedImage image = convert(createImage(200, 300), type);
+			BufferedImage croped = ImageUtils.crop(image);
+			assertEquals(97, croped.getWidth());
+			assertEquals(147, croped.getHeight());
+			assertEquals(image.getRGB(51, 76), croped.getRGB(0, 0));
+
+			// the crop result is a view which could be croped again
+			BufferedImage frame = convert(createImage(200, 300), type).getSubimage(10, 20, 180, 260);
+			croped = ImageUtils.crop(frame);
+			assertEquals(97, croped.getWidth());
+			assertEquals(147, croped.getHeight());
+		}
+	}
+
+	public void testCropTolerance() {
+		BufferedImage image = createImage(200, 300);
+		// less than 5% of the pixels in a line are ignored
+		image.setRGB(10, 10, Color.BLACK.getRGB());
+		image.setRGB(11, 10, Color.BLACK.getRGB());
+		BufferedImage croped = ImageUtils.crop(image);
+		assertEquals(97, croped.getWidth());
+		assertEquals(147, croped.getHeight());
+	}
+
+	public void testNoCrop() {
+		BufferedImage white = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+		white.getGraphics().fillRect(0, 0, 100, 100);
+		assertSame(white, ImageUtils.crop(white));
+
+		BufferedImage black = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+		assertSame(black, ImageUtils.crop(black));
+
+		BufferedImage small = createImage(20, 20);
+		assertSame(small, ImageUtils.crop(small));
+		assertNull(ImageUtils.crop(null));
+	}
+}
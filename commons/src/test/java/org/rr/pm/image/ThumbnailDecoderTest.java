@@ -0,0 +1,42 @@
+package org.rr.pm.image;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.rr.commons.mufs.ResourceHandlerFactory;
+
+public class ThumbnailDecoderTest extends TestCase {
+
+	private static IImageProvider createImageProvider(byte[] jpeg) {
+		return new DefaultImageProvider(ResourceHandlerFactory.getVirtualResourceHandler("image.jpg", jpeg), "image/jpeg");
+	}
+
+	public void testEmbeddedThumbnail() throws IOException {
+		byte[] jpeg = ImageInfoTest.addExifThumbnail(ImageInfoTest.createJpeg(600, 800), ImageInfoTest.createJpeg(120, 160), false);
+		long embeddedThumbnailCount = ThumbnailDecoder.getEmbeddedThumbnailCount();
+		BufferedImage image = ThumbnailDecoder.decode(createImageProvider(jpeg), new Dimension(90, 120));
+		assertEquals(120, image.getWidth());
+		assertEquals(160, image.getHeight());
+		assertEquals(embeddedThumbnailCount + 1, ThumbnailDecoder.getEmbeddedThumbnailCount());
+	}
+
+	public void testThumbnailTooSmall() throws IOException {
+		byte[] jpeg = ImageInfoTest.addExifThumbnail(ImageInfoTest.createJpeg(600, 800), ImageInfoTest.createJpeg(120, 160), false);
+		assertNull(ThumbnailDecoder.getEmbeddedThumbnail(createImageProvider(jpeg), new Dimension(300, 400)));
+	}
+
+	public void testOtherAspectRatio() throws IOException {
+		// a 4:3 preview of a 3:4 image is padded with black bars and must not be used
+		byte[] jpeg = ImageInfoTest.addExifThumbnail(ImageInfoTest.createJpeg(600, 800), ImageInfoTest.createJpeg(160, 120), false);
+		assertNull(ThumbnailDecoder.getEmbeddedThumbnail(createImageProvider(jpeg), new Dimension(90, 120)));
+
+		long decodedImageCount = ThumbnailDecoder.getDecodedImageCount();
+		BufferedImage image = ThumbnailDecoder.decode(createImageProvider(jpeg), new Dimension(90, 120));
+		assertTrue(image.getWidth() >= 90 && image.getWidth() != 160);
+		assertEquals(0.75, (double) image.getWidth() / image.getHeight(), 0.01);
+		assertEquals(decodedImageCount + 1, ThumbnailDecoder.getDecodedImageCount());
+	}
+}
@@ -14,9 +14,8 @@ import nl.siegmann.epublib.domain.Resource;
 import nl.siegmann.epublib.service.MediatypeService;
 import nl.siegmann.epublib.util.IOUtil;
 
-import org.rr.commons.utils.compression.truezip.TrueZipUtils;
-import org.rr.commons.utils.compression.truezip.ZipEntry;
-import org.rr.commons.utils.compression.truezip.ZipOutputStream;
+import org.rr.commons.utils.compression.zip.ParallelZipOutputStream;
+import org.rr.commons.utils.compression.zip.ZipEntry;
 import org.xmlpull.v1.XmlSerializer;
 
 /**
@@ -34,6 +33,10 @@ public class EpubWriter {
 	
 	private BookProcessor bookProcessor = BookProcessor.IDENTITY_BOOKPROCESSOR;
 
+	private String ncxId = "ncx";
+
+	private String ncxHref = "toc.ncx";
+
 	public EpubWriter() {
 		this(BookProcessor.IDENTITY_BOOKPROCESSOR);
 	}
@@ -46,7 +49,7 @@ public class EpubWriter {
 
 	public void write(Book book, OutputStream out) throws IOException {
 		book = processBook(book);
-		ZipOutputStream resultStream = TrueZipUtils.createZipOutputStream(out);
+		ParallelZipOutputStream resultStream = new ParallelZipOutputStream(out);
 		writeMimeType(resultStream);
 		writeContainer(resultStream);
 		initTOCResource(book);
@@ -55,6 +58,28 @@ public class EpubWriter {
 		resultStream.close();
 	}
 
+	/**
+	 * Writes only the package document (opf) of the given book. The table of contents is not created
+	 * again like {@link #write(Book, OutputStream)} does it, the manifest refers to the existing toc resource
+	 * of the book. This can be used if only the metadata of an existing epub has been changed.
+	 *
+	 * @param book The book which must have a toc resource.
+	 * @param out The target for the package document. The stream is not closed.
+	 * @throws IOException
+	 */
+	public void writePackageDocument(Book book, OutputStream out) throws IOException {
+		book = processBook(book);
+		Resource tocResource = book.getSpine().getTocResource();
+		if (tocResource == null) {
+			throw new IOException("The book has no table of contents resource.");
+		}
+		ncxId = tocResource.getId();
+		ncxHref = tocResource.getHref();
+		XmlSerializer xmlSerializer = EpubProcessorSupport.createXmlSerializer(out);
+		PackageDocumentWriter.write(this, xmlSerializer, book);
+		xmlSerializer.flush();
+	}
+
 	private Book processBook(Book book) {
 		if (bookProcessor != null) {
 			book = bookProcessor.processBook(book);
@@ -78,7 +103,7 @@ public class EpubWriter {
 	}
 	
 
-	private void writeResources(Book book, ZipOutputStream resultStream) throws IOException {
+	private void writeResources(Book book, ParallelZipOutputStream resultStream) throws IOException {
 		for(Resource resource: book.getResources().getAll()) {
 			writeResource(resource, resultStream);
 		}
@@ -87,7 +112,7 @@ public class EpubWriter {
 		}
 	}
 	
-	private void writeResource(Resource resource, ZipOutputStream resultStream) throws IOException {
+	private void writeResource(Resource resource, ParallelZipOutputStream resultStream) throws IOException {
 		writeResource(resource, resultStream, false);
 	}
 
@@ -98,7 +123,7 @@ public class EpubWriter {
 	 * @param resultStream
 	 * @throws IOException
 	 */
-	private void writeResource(Resource resource, ZipOutputStream resultStream, boolean unlisted)
+	private void writeResource(Resource resource, ParallelZipOutputStream resultStream, boolean unlisted)
 			throws IOException {
 		if(resource == null) {
 			return;
@@ -106,9 +131,9 @@ public class EpubWriter {
 		try {
 			if(unlisted) {
 				//unlisted ones are stored with full path
-				resultStream.putNextEntry(new ZipEntry(resource.getHref()));
+				resultStream.putNextEntry(new ZipEntry(resource.getHref(), null));
 			} else {
-				resultStream.putNextEntry(new ZipEntry("OEBPS/" + resource.getHref()));
+				resultStream.putNextEntry(new ZipEntry("OEBPS/" + resource.getHref(), null));
 			}
 			InputStream inputStream = resource.getInputStream();
 			IOUtil.copy(inputStream, resultStream);
@@ -119,8 +144,8 @@ public class EpubWriter {
 	}
 	
 
-	private void writePackageDocument(Book book, ZipOutputStream resultStream) throws IOException {
-		resultStream.putNextEntry(new ZipEntry("OEBPS/content.opf"));
+	private void writePackageDocument(Book book, ParallelZipOutputStream resultStream) throws IOException {
+		resultStream.putNextEntry(new ZipEntry("OEBPS/content.opf", null));
 		XmlSerializer xmlSerializer = EpubProcessorSupport.createXmlSerializer(resultStream);
 		PackageDocumentWriter.write(this, xmlSerializer, book);
 		xmlSerializer.flush();
@@ -134,8 +159,8 @@ public class EpubWriter {
 	 * @param resultStream
 	 * @throws IOException
 	 */
-	private void writeContainer(ZipOutputStream resultStream) throws IOException {
-		resultStream.putNextEntry(new ZipEntry("META-INF/container.xml"));
+	private void writeContainer(ParallelZipOutputStream resultStream) throws IOException {
+		resultStream.putNextEntry(new ZipEntry("META-INF/container.xml", null));
 		Writer out = new OutputStreamWriter(resultStream);
 		out.write("<?xml version=\"1.0\"?>\n");
 		out.write("<container version=\"1.0\" xmlns=\"urn:oasis:names:tc:opendocument:xmlns:container\">\n");
@@ -152,8 +177,8 @@ public class EpubWriter {
 	 * @param resultStream
 	 * @throws IOException
 	 */
-	private void writeMimeType(ZipOutputStream resultStream) throws IOException {
-		ZipEntry mimetypeZipEntry = new ZipEntry("mimetype");
+	private void writeMimeType(ParallelZipOutputStream resultStream) throws IOException {
+		ZipEntry mimetypeZipEntry = new ZipEntry("mimetype", null);
 		mimetypeZipEntry.setMethod(ZipEntry.STORED);
 		byte[] mimetypeBytes = MediatypeService.EPUB.getName().getBytes();
 		mimetypeZipEntry.setSize(mimetypeBytes.length);
@@ -163,11 +188,11 @@ public class EpubWriter {
 	}
 
 	String getNcxId() {
-		return "ncx";
+		return ncxId;
 	}
 	
 	String getNcxHref() {
-		return "toc.ncx";
+		return ncxHref;
 	}
 
 	String getNcxMediaType() {
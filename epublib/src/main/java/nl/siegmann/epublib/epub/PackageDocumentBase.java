@@ -68,11 +68,13 @@ public class PackageDocumentBase {
 		String version = "version";
 		String scheme = "scheme";
 		String property = "property";
+		String properties = "properties";
 	}
 	
 	protected interface OPFValues {
 		String meta_cover = "cover";
 		String reference_cover = "cover";
+		String manifest_cover_image = "cover-image";
 		String no = "no";
 		String generator = "generator";
 	}
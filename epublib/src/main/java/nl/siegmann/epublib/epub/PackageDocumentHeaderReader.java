@@ -0,0 +1,331 @@
+package nl.siegmann.epublib.epub;
+
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import nl.siegmann.epublib.Constants;
+import nl.siegmann.epublib.domain.Author;
+import nl.siegmann.epublib.domain.Date;
+import nl.siegmann.epublib.domain.Identifier;
+import nl.siegmann.epublib.domain.MediaType;
+import nl.siegmann.epublib.domain.Meta;
+import nl.siegmann.epublib.domain.Metadata;
+import nl.siegmann.epublib.service.MediatypeService;
+
+import org.rr.commons.utils.StringUtil;
+
+/**
+ * Reads the metadata and the cover image href from a package document with a streaming parser
+ * without creating a {@link nl.siegmann.epublib.domain.Book}. The metadata is read like the
+ * {@link PackageDocumentMetadataReader} does and the parsing stops after the manifest if the
+ * cover image is already known.
+ */
+public class PackageDocumentHeaderReader extends PackageDocumentBase {
+
+	private static final Logger log = Logger.getLogger(PackageDocumentHeaderReader.class.getName());
+
+	private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+	static {
+		xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	private final Metadata metadata = new Metadata();
+
+	private final List<Identifier> identifiers = new ArrayList<>();
+
+	private final List<Meta> otherMeta = new ArrayList<>();
+
+	private final Map<QName, String> otherProperties = new HashMap<>();
+
+	private final Map<String, String> mediaTypesByHref = new HashMap<>();
+
+	private final List<String> manifestHrefs = new ArrayList<>();
+
+	private final Set<String> coverHrefs = new LinkedHashSet<>();
+
+	private String bookIdId;
+
+	private String coverResourceId;
+
+	private String coverResourceHref;
+
+	private String coverImagePropertyHref;
+
+	private String guideCoverHref;
+
+	/**
+	 * Reads the package document from the given stream. The stream is not closed.
+	 */
+	public PackageDocumentHeaderReader(InputStream packageDocument) throws XMLStreamException {
+		metadata.setFormat(null); //no default format for ebpubs which did't define one.
+		XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(packageDocument);
+		try {
+			read(reader);
+		} finally {
+			reader.close();
+		}
+		metadata.setIdentifiers(identifiers);
+		metadata.setOtherMeta(otherMeta);
+		metadata.setOtherProperties(otherProperties);
+		collectCoverHrefs();
+	}
+
+	/**
+	 * Gets the metadata of the package document.
+	 */
+	public Metadata getMetadata() {
+		return metadata;
+	}
+
+	/**
+	 * Gets the hrefs of all manifest items in the order they are listed. The hrefs are relative to the package document.
+	 */
+	public List<String> getManifestHrefs() {
+		return manifestHrefs;
+	}
+
+	/**
+	 * Gets the hrefs of the images which are referenced as cover by the package document. The hrefs are
+	 * relative to the package document and are ordered by their relevance.
+	 */
+	public Set<String> getCoverImageHrefs() {
+		return coverHrefs;
+	}
+
+	private void read(XMLStreamReader reader) throws XMLStreamException {
+		boolean metadataRead = false;
+		int metadataDepth = -1;
+		int depth = 0;
+		while(reader.hasNext()) {
+			int event = reader.next();
+			if(event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				String namespace = reader.getNamespaceURI();
+				String name = reader.getLocalName();
+				if(NAMESPACE_OPF.equals(namespace)) {
+					if(OPFTags.packageTag.equals(name)) {
+						bookIdId = getAttribute(reader, OPFAttributes.uniqueIdentifier);
+					} else if(OPFTags.metadata.equals(name) && !metadataRead && metadataDepth == -1) {
+						metadataDepth = depth;
+					} else if(OPFTags.meta.equals(name) && metadataDepth != -1) {
+						readMeta(reader);
+						depth--;
+					} else if(OPFTags.item.equals(name)) {
+						readItem(reader);
+					} else if(OPFTags.reference.equals(name)) {
+						readReference(reader);
+					}
+				} else if(NAMESPACE_DUBLIN_CORE.equals(namespace) && metadataDepth != -1) {
+					readDublinCore(reader, name);
+					depth--;
+				}
+			} else if(event == XMLStreamConstants.END_ELEMENT) {
+				if(depth == metadataDepth) {
+					metadataRead = true;
+					metadataDepth = -1;
+				} else if(OPFTags.manifest.equals(reader.getLocalName()) && NAMESPACE_OPF.equals(reader.getNamespaceURI())
+						&& isCoverImageFound()) {
+					//the guide is only needed if the cover image is not referenced by the metadata or the manifest.
+					return;
+				}
+				depth--;
+			}
+		}
+	}
+
+	private void readDublinCore(XMLStreamReader reader, String name) throws XMLStreamException {
+		String role = reader.getAttributeValue(NAMESPACE_OPF, OPFAttributes.role);
+		String event = reader.getAttributeValue(NAMESPACE_OPF, OPFAttributes.event);
+		String scheme = reader.getAttributeValue(NAMESPACE_OPF, DCAttributes.scheme);
+		String id = reader.getAttributeValue(null, DCAttributes.id);
+		String text = readText(reader);
+
+		if(DCTags.title.equals(name)) {
+			metadata.addTitle(text);
+		} else if(DCTags.publisher.equals(name)) {
+			metadata.addPublisher(text);
+		} else if(DCTags.description.equals(name)) {
+			metadata.addDescription(text);
+		} else if(DCTags.rights.equals(name)) {
+			metadata.addRight(text);
+		} else if(DCTags.type.equals(name)) {
+			metadata.addType(text);
+		} else if(DCTags.subject.equals(name)) {
+			metadata.addSubject(text);
+		} else if(DCTags.creator.equals(name)) {
+			Author author = createAuthor(text, role);
+			if(author != null) {
+				metadata.addAuthor(author);
+			}
+		} else if(DCTags.contributor.equals(name)) {
+			Author author = createAuthor(text, role);
+			if(author != null) {
+				metadata.addContributor(author);
+			}
+		} else if(DCTags.date.equals(name)) {
+			try {
+				metadata.addDate(new Date(text, StringUtil.toString(event)));
+			} catch(IllegalArgumentException e) {
+				log.warning(e.getMessage());
+			}
+		} else if(DCTags.identifier.equals(name)) {
+			if(StringUtil.isNotEmpty(text)) {
+				Identifier identifier = new Identifier(StringUtil.toString(scheme), text);
+				if(StringUtil.isNotEmpty(bookIdId) && bookIdId.equals(id)) {
+					identifier.setBookId(true);
+				}
+				identifiers.add(identifier);
+			}
+		} else if(DCTags.language.equals(name)) {
+			if(metadata.getLanguage() == null) {
+				metadata.setLanguage(text);
+			}
+		}
+	}
+
+	private void readMeta(XMLStreamReader reader) throws XMLStreamException {
+		String name = reader.getAttributeValue(null, OPFAttributes.name);
+		String content = reader.getAttributeValue(null, OPFAttributes.content);
+		String property = reader.getAttributeValue(null, OPFAttributes.property);
+		String text = readText(reader);
+		if(name != null && content != null) {
+			otherMeta.add(new Meta(name, content));
+			if(coverResourceId == null && OPFValues.meta_cover.equalsIgnoreCase(name) && StringUtil.isNotEmpty(content)) {
+				coverResourceId = content;
+			}
+		}
+		if(property != null) { //<meta property="media:active-class">-epub-media-overlay-active</meta>
+			otherProperties.put(new QName(property), text);
+		}
+	}
+
+	private void readItem(XMLStreamReader reader) {
+		String id = getAttribute(reader, OPFAttributes.id);
+		String href = getAttribute(reader, OPFAttributes.href);
+		if(StringUtil.isEmpty(href)) {
+			return;
+		}
+		try {
+			href = URLDecoder.decode(href, Constants.ENCODING);
+		} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+			log.warning(e.getMessage());
+		}
+		manifestHrefs.add(href);
+		mediaTypesByHref.put(href, getAttribute(reader, OPFAttributes.media_type));
+		if(coverResourceHref == null && coverResourceId != null && coverResourceId.equalsIgnoreCase(id)) {
+			coverResourceHref = href;
+		}
+		String properties = getAttribute(reader, OPFAttributes.properties);
+		if(coverImagePropertyHref == null && properties != null && (" " + properties + " ").contains(" " + OPFValues.manifest_cover_image + " ")) {
+			coverImagePropertyHref = href;
+		}
+	}
+
+	private void readReference(XMLStreamReader reader) {
+		if(guideCoverHref == null && OPFValues.reference_cover.equalsIgnoreCase(reader.getAttributeValue(null, OPFAttributes.type))) {
+			String href = reader.getAttributeValue(null, OPFAttributes.href);
+			if(StringUtil.isNotEmpty(href)) {
+				guideCoverHref = href;
+			}
+		}
+	}
+
+	private boolean isCoverImageFound() {
+		return isImage(coverResourceHref) || isImage(coverImagePropertyHref);
+	}
+
+	private void collectCoverHrefs() {
+		if(coverResourceHref != null) {
+			coverHrefs.add(coverResourceHref);
+		} else if(coverResourceId != null) {
+			coverHrefs.add(coverResourceId); // maybe there was a cover href put in the cover id attribute
+		}
+		if(coverImagePropertyHref != null) {
+			coverHrefs.add(coverImagePropertyHref);
+		}
+		if(guideCoverHref != null) {
+			coverHrefs.add(guideCoverHref);
+		}
+
+		// only images could be used as cover image. The other hrefs are cover pages.
+		for(String href : new ArrayList<>(coverHrefs)) {
+			if(!isImage(href)) {
+				coverHrefs.remove(href);
+			}
+		}
+	}
+
+	/**
+	 * Tells if the given href is an image. The media type of the manifest is used and the file
+	 * extension if the href is not listed in the manifest.
+	 */
+	private boolean isImage(String href) {
+		if(href == null) {
+			return false;
+		}
+		MediaType mediaType = MediatypeService.getMediaTypeByName(mediaTypesByHref.get(href));
+		if(mediaType == null) {
+			mediaType = MediatypeService.determineMediaType(href);
+		}
+		return MediatypeService.isBitmapImage(mediaType);
+	}
+
+	private static String getAttribute(XMLStreamReader reader, String attribute) {
+		String result = reader.getAttributeValue(NAMESPACE_OPF, attribute);
+		if (StringUtil.isEmpty(result)) {
+			result = reader.getAttributeValue(null, attribute);
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the text children of the current element and moves the reader to the end of the element.
+	 */
+	private static String readText(XMLStreamReader reader) throws XMLStreamException {
+		StringBuilder result = new StringBuilder();
+		int depth = 1;
+		while(depth > 0) {
+			int event = reader.next();
+			if(event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if(event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			} else if(depth == 1 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE)) {
+				result.append(reader.getText());
+			}
+		}
+		return result.toString().trim();
+	}
+
+	private static Author createAuthor(String authorString, String role) {
+		if (StringUtil.isEmpty(authorString)) {
+			return null;
+		}
+		int spacePos = authorString.lastIndexOf(' ');
+		Author result;
+		if(spacePos < 0) {
+			result = new Author(authorString);
+		} else {
+			result = new Author(authorString.substring(0, spacePos), authorString.substring(spacePos + 1));
+		}
+		result.setRole(StringUtil.toString(role));
+		return result;
+	}
+}
@@ -0,0 +1,423 @@
+package org.rr.jeborker.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.rr.commons.log.LoggerFactory;
+import org.rr.commons.mufs.IResourceHandler;
+import org.rr.commons.mufs.ResourceHandlerUtils;
+import org.rr.commons.mufs.ResourceNameFilter;
+import org.rr.jeborker.Jeboorker;
+import org.rr.jeborker.app.preferences.APreferenceStore;
+import org.rr.jeborker.app.preferences.PreferenceStoreFactory;
+import org.rr.jeborker.db.DefaultDBManager;
+import org.rr.jeborker.db.WriteBehindBuffer;
+import org.rr.jeborker.db.item.EbookPropertyItem;
+import org.rr.jeborker.gui.action.ActionUtils;
+
+/**
+ * Staged import engine which reads all ebook files below a base path into the database.
+ * The work is split into a directory walk, a format detection, a pool of metadata extraction
+ * workers and a single database writer. All stages are connected with bounded queues, so a
+ * fast stage blocks until the following one catches up.
+ */
+public class EbookImportPipeline {
+
+	/**
+	 * Callback which does the ebook specific work of the pipeline.
+	 */
+	public interface ImportHandler {
+
+		/**
+		 * Creates or refreshes the {@link EbookPropertyItem}s for the given resource. This method
+		 * is invoked concurrently by the metadata extraction workers.
+		 * @param resource The supported ebook resource to be processed.
+		 * @return The items to be stored. An empty list if nothing has changed. Never <code>null</code>.
+		 */
+		List<EbookPropertyItem> process(IResourceHandler resource) throws Exception;
+
+		/**
+		 * Invoked by the writer stage after the given items have been stored to the database.
+		 * @param items The items which have just been stored.
+		 */
+		void stored(List<EbookPropertyItem> items);
+	}
+
+	/**
+	 * Throughput counter of a single pipeline stage.
+	 */
+	public static class StageStatistics {
+
+		private final String name;
+
+		private final AtomicLong count = new AtomicLong();
+
+		private final AtomicLong busyNanos = new AtomicLong();
+
+		private StageStatistics(String name) {
+			this.name = name;
+		}
+
+		private void add(long items, long startNanos) {
+			count.addAndGet(items);
+			busyNanos.addAndGet(System.nanoTime() - startNanos);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return The number of items which have passed this stage.
+		 */
+		public long getCount() {
+			return count.get();
+		}
+
+		/**
+		 * @return The summed up time in milliseconds all threads of this stage were busy.
+		 */
+		public long getBusyMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(busyNanos.get());
+		}
+
+		/**
+		 * @return The number of items per second processed by one thread of this stage.
+		 */
+		public double getThroughput() {
+			long busy = busyNanos.get();
+			return busy > 0 ? count.get() * 1000000000d / busy : 0d;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d items in %d ms (%.1f/s)", name, getCount(), getBusyMillis(), getThroughput());
+		}
+	}
+
+	private static final int QUEUE_CAPACITY_PER_WORKER = 16;
+
+	private static final int WRITER_BATCH_SIZE = 100;
+
+	private static final long POLL_MILLIS = 100;
+
+	/** Time in milliseconds the writer collects items before they are flushed to the database. */
+	private static final long FLUSH_MILLIS = 1000;
+
+	private final ImportHandler handler;
+
+	private final int parallelism;
+
+	private final StageStatistics walkStatistics = new StageStatistics("walk");
+
+	private final StageStatistics detectStatistics = new StageStatistics("detect");
+
+	private final StageStatistics extractStatistics = new StageStatistics("extract");
+
+	private final StageStatistics writeStatistics = new StageStatistics("write");
+
+	private final Set<String> pathElements = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final AtomicInteger processedCount = new AtomicInteger();
+
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+
+	/**
+	 * Creates a new pipeline using the configured {@link PreferenceStoreFactory.PREFERENCE_KEYS#IMPORT_PARALLELISM}.
+	 * @param handler The handler which does the ebook specific work.
+	 */
+	public EbookImportPipeline(ImportHandler handler) {
+		this(handler, getConfiguredParallelism());
+	}
+
+	/**
+	 * Creates a new pipeline.
+	 * @param handler The handler which does the ebook specific work.
+	 * @param parallelism The number of metadata extraction workers.
+	 */
+	public EbookImportPipeline(ImportHandler handler, int parallelism) {
+		this.handler = handler;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Get the number of metadata extraction workers from the preferences.
+	 */
+	public static int getConfiguredParallelism() {
+		APreferenceStore preferenceStore = PreferenceStoreFactory.getPreferenceStore(PreferenceStoreFactory.PREFERENCE_KEYS.IMPORT_PARALLELISM);
+		String value = preferenceStore.getEntryAsString(PreferenceStoreFactory.PREFERENCE_KEYS.IMPORT_PARALLELISM);
+		return Math.max(1, NumberUtils.toInt(value, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Runs all stages for the given base folder and blocks until the last item is written.
+	 * @param baseFolder The folder where the ebook search should be started.
+	 * @return The number of successfully processed ebook files.
+	 */
+	public int run(final IResourceHandler baseFolder) {
+		final int capacity = parallelism * QUEUE_CAPACITY_PER_WORKER;
+		final BlockingQueue<IResourceHandler> files = new ArrayBlockingQueue<>(capacity);
+		final BlockingQueue<IResourceHandler> ebooks = new ArrayBlockingQueue<>(capacity);
+		final BlockingQueue<EbookPropertyItem> items = new ArrayBlockingQueue<>(capacity);
+		final AtomicBoolean walkDone = new AtomicBoolean();
+		final AtomicBoolean detectDone = new AtomicBoolean();
+		final AtomicBoolean extractDone = new AtomicBoolean();
+		final AtomicInteger runningExtractors = new AtomicInteger(parallelism);
+		final CountDownLatch finished = new CountDownLatch(1);
+
+		Jeboorker.APPLICATION_THREAD_POOL.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					detect(files, walkDone, ebooks);
+				} finally {
+					detectDone.set(true);
+				}
+			}
+		});
+
+		for (int i = 0; i < parallelism; i++) {
+			Jeboorker.APPLICATION_THREAD_POOL.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						extract(ebooks, detectDone, items);
+					} finally {
+						if(runningExtractors.decrementAndGet() == 0) {
+							extractDone.set(true);
+						}
+					}
+				}
+			});
+		}
+
+		Jeboorker.APPLICATION_THREAD_POOL.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					write(items, extractDone);
+				} catch(RuntimeException | Error e) {
+					//stop the other stages which would wait for the writer otherwise.
+					cancelled.set(true);
+					throw e;
+				} finally {
+					finished.countDown();
+				}
+			}
+		});
+
+		try {
+			walk(baseFolder, files);
+		} finally {
+			walkDone.set(true);
+		}
+
+		try {
+			finished.await();
+		} catch (InterruptedException e) {
+			cancelled.set(true);
+			Thread.currentThread().interrupt();
+		}
+		LoggerFactory.getLogger(this).log(Level.INFO, "Import of " + baseFolder + " finished. " + getStatistics());
+		return processedCount.get();
+	}
+
+	/**
+	 * Stops all stages as soon as possible.
+	 */
+	public void cancel() {
+		cancelled.set(true);
+	}
+
+	/**
+	 * @return The parent folders of all successfully processed ebook files.
+	 */
+	public Set<String> getPathElements() {
+		return pathElements;
+	}
+
+	/**
+	 * @return The throughput counters of the walk, detect, extract and write stages.
+	 */
+	public List<StageStatistics> getStatistics() {
+		List<StageStatistics> result = new ArrayList<>(4);
+		result.add(walkStatistics);
+		result.add(detectStatistics);
+		result.add(extractStatistics);
+		result.add(writeStatistics);
+		return result;
+	}
+
+	/**
+	 * Walks the directory tree and feeds all file resources into the <code>files</code> queue.
+	 */
+	private void walk(final IResourceHandler baseFolder, final BlockingQueue<IResourceHandler> files) {
+		ResourceHandlerUtils.readAllFilesFromBasePath(baseFolder, new ResourceNameFilter() {
+
+			@Override
+			public boolean accept(IResourceHandler resource) {
+				long start = System.nanoTime();
+				if(!cancelled.get() && resource.isFileResource()) {
+					put(files, resource);
+					walkStatistics.add(1, start);
+				}
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Passes only these files from <code>files</code> to <code>ebooks</code> which are a supported ebook format.
+	 */
+	private void detect(BlockingQueue<IResourceHandler> files, AtomicBoolean walkDone, BlockingQueue<IResourceHandler> ebooks) {
+		IResourceHandler resource;
+		while((resource = take(files, walkDone)) != null) {
+			long start = System.nanoTime();
+			try {
+				if(ActionUtils.isSupportedEbookFormat(resource, true)) {
+					put(ebooks, resource);
+				}
+			} catch(Throwable e) {
+				LoggerFactory.getLogger(this).log(Level.SEVERE, "Failed detecting format of " + resource, e);
+			}
+			detectStatistics.add(1, start);
+		}
+	}
+
+	/**
+	 * Reads the metadata of all resources from <code>ebooks</code> and passes the resulting items to <code>items</code>.
+	 */
+	private void extract(BlockingQueue<IResourceHandler> ebooks, AtomicBoolean detectDone, BlockingQueue<EbookPropertyItem> items) {
+		IResourceHandler resource;
+		while((resource = take(ebooks, detectDone)) != null) {
+			long start = System.nanoTime();
+			try {
+				List<EbookPropertyItem> processed = handler.process(resource);
+				for (EbookPropertyItem item : processed) {
+					put(items, item);
+				}
+				pathElements.add(resource.getParentResource().toString());
+				processedCount.incrementAndGet();
+			} catch(Throwable e) {
+				LoggerFactory.getLogger(this).log(Level.SEVERE, "Failed adding resource " + resource, e);
+			}
+			extractStatistics.add(1, start);
+		}
+	}
+
+	/**
+	 * Stores the items from <code>items</code> to the database. The items are collected with a {@link WriteBehindBuffer}
+	 * which is flushed each {@link #FLUSH_MILLIS} and if all items are written.
+	 */
+	private void write(BlockingQueue<EbookPropertyItem> items, AtomicBoolean extractDone) {
+		final WriteBehindBuffer buffer = DefaultDBManager.getInstance().createWriteBehindBuffer();
+		final List<EbookPropertyItem> buffered = new ArrayList<>();
+		final List<EbookPropertyItem> batch = new ArrayList<>(WRITER_BATCH_SIZE);
+		long lastFlush = System.currentTimeMillis();
+		boolean done = false;
+		while(!done) {
+			done = cancelled.get() || extractDone.get();
+			EbookPropertyItem item = poll(items);
+			if(item != null) {
+				done = false;
+				long start = System.nanoTime();
+				batch.add(item);
+				items.drainTo(batch, WRITER_BATCH_SIZE - 1);
+				try {
+					buffer.storeObjects(batch);
+					buffered.addAll(batch);
+				} catch(Throwable e) {
+					//keep draining the queue, otherwise the extractors would block forever.
+					LoggerFactory.getLogger(this).log(Level.SEVERE, "Failed to store " + batch.size() + " items", e);
+				}
+				writeStatistics.add(batch.size(), start);
+				batch.clear();
+			}
+			if(!buffered.isEmpty() && (done || System.currentTimeMillis() - lastFlush >= FLUSH_MILLIS)) {
+				flush(buffer, buffered);
+				lastFlush = System.currentTimeMillis();
+			}
+		}
+	}
+
+	/**
+	 * Writes the buffered items and passes them to the {@link ImportHandler}.
+	 */
+	private void flush(WriteBehindBuffer buffer, List<EbookPropertyItem> buffered) {
+		long start = System.nanoTime();
+		try {
+			buffer.flush();
+			handler.stored(new ArrayList<>(buffered));
+		} catch(Throwable e) {
+			LoggerFactory.getLogger(this).log(Level.SEVERE, "Failed to store " + buffered.size() + " items", e);
+		}
+		writeStatistics.add(0, start);
+		buffered.clear();
+	}
+
+	/**
+	 * Blocks until the given element could be added to the queue. This is the backpressure
+	 * which prevents a fast stage from running away from a slow one.
+	 */
+	private <T> void put(BlockingQueue<T> queue, T element) {
+		try {
+			while(!cancelled.get() && !queue.offer(element, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+				// wait until the next stage has consumed something
+			}
+		} catch (InterruptedException e) {
+			cancelled.set(true);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits at most {@link #POLL_MILLIS} for the next element of the given queue.
+	 * @return The next element or <code>null</code> if no element is available.
+	 */
+	private <T> T poll(BlockingQueue<T> queue) {
+		try {
+			return queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			cancelled.set(true);
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	/**
+	 * Takes the next element from the given queue.
+	 * @return The next element or <code>null</code> if the upstream stage is done and the queue is drained.
+	 */
+	private <T> T take(BlockingQueue<T> queue, AtomicBoolean upstreamDone) {
+		try {
+			while(!cancelled.get()) {
+				boolean done = upstreamDone.get();
+				T element = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if(element != null) {
+					return element;
+				} else if(done) {
+					return null;
+				}
+			}
+		} catch (InterruptedException e) {
+			cancelled.set(true);
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+}
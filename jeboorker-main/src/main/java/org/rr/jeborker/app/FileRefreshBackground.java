@@ -1,14 +1,15 @@
 package org.rr.jeborker.app;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import org.rr.commons.log.LoggerFactory;
@@ -25,41 +26,121 @@ import org.rr.jeborker.gui.action.ActionFactory;
 import org.rr.jeborker.gui.action.ActionUtils;
 import org.rr.jeborker.gui.action.ApplicationAction;
 
+/**
+ * Checks the ebook files of the {@link EbookPropertyItem}s added with {@link #addEbook(EbookPropertyItem)} in the background
+ * and refreshes or removes these ones which have been changed or deleted. The items are queued by their file, so an item
+ * which is added several times is only checked once. Each item is checked after a short delay, so bursts of additions are
+ * coalesced, and an item which was checked recently is not checked again until {@link #RECHECK_MILLIS} have passed.
+ * Adding items never blocks, so it's safe to call it while rendering.
+ */
 public class FileRefreshBackground {
 
+	/** Time in milliseconds an added item waits before it's checked. */
+	private static final long COALESCE_MILLIS = 250;
+
+	/** Time in milliseconds a checked item will not be checked again unless it's explicitly reported as changed. */
+	private static final long RECHECK_MILLIS = 10000;
+
+	private static final int IDLE_MILLIS = 100;
+
+	private static final int WORKER_COUNT = 2;
+
 	private static FileRefreshBackground singleton;
 
-	private static final Set<EbookPropertyItem> items = Collections.synchronizedSet(new HashSet<EbookPropertyItem>());
+	private static final AtomicInteger isDisabled = new AtomicInteger();
+
+	private final ConcurrentHashMap<String, QueueEntry> queue = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<String, Long> checkedAt = new ConcurrentHashMap<>();
+
+	private final AtomicLong processedCount = new AtomicLong();
+
+	private final AtomicLong latencyNanos = new AtomicLong();
+
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
 
-	private static int isDisabled = 0;
-	
 	private FileRefreshBackground() {
 	}
-	
+
 	public static synchronized FileRefreshBackground getInstance() {
 		if (singleton == null) {
 			singleton = new FileRefreshBackground();
-			Jeboorker.APPLICATION_THREAD_POOL.submit(new Worker());
+			for (int i = 0; i < WORKER_COUNT; i++) {
+				Jeboorker.APPLICATION_THREAD_POOL.submit(singleton.new Worker());
+			}
 		}
 		return singleton;
 	}
 
+	/**
+	 * Queues the given item for a check. Nothing happens if the item is already queued or
+	 * was checked within the last {@link #RECHECK_MILLIS}.
+	 */
 	public void addEbook(EbookPropertyItem item) {
-		if(isDisabled == 0) {
-			synchronized (items) {
-				items.add(item);
+		if(isDisabled.get() == 0 && item != null && item.getFile() != null) {
+			Long lastCheck = checkedAt.get(item.getFile());
+			if(lastCheck == null || System.currentTimeMillis() - lastCheck.longValue() > RECHECK_MILLIS) {
+				enqueue(item);
 			}
 		}
 	}
-	
+
+	/**
+	 * Queues the given items which are known to be changed. These items are checked even if they have been checked recently.
+	 */
 	public void addEbooks(List<EbookPropertyItem> changedResources) {
-		if(isDisabled == 0 && !changedResources.isEmpty()) {
-			synchronized (items) {
-				items.addAll(changedResources);
+		if(isDisabled.get() == 0) {
+			for (EbookPropertyItem item : changedResources) {
+				if(item != null && item.getFile() != null) {
+					checkedAt.remove(item.getFile());
+					enqueue(item);
+				}
 			}
 		}
 	}
-	
+
+	private void enqueue(EbookPropertyItem item) {
+		queue.putIfAbsent(item.getFile(), new QueueEntry(item));
+	}
+
+	/**
+	 * @return The number of items waiting for being checked.
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * @return The number of items which have been checked.
+	 */
+	public long getProcessedCount() {
+		return processedCount.get();
+	}
+
+	/**
+	 * @return The average time in milliseconds between queuing an item and checking it.
+	 */
+	public double getAverageLatencyMillis() {
+		long count = processedCount.get();
+		return count > 0 ? latencyNanos.get() / 1000000d / count : 0d;
+	}
+
+	/**
+	 * @return The longest time in milliseconds between queuing an item and checking it.
+	 */
+	public long getMaxLatencyMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+	}
+
+	private void addLatency(long nanos) {
+		processedCount.incrementAndGet();
+		latencyNanos.addAndGet(nanos);
+		long max;
+		while((max = maxLatencyNanos.get()) < nanos && !maxLatencyNanos.compareAndSet(max, nanos)) {
+			// retry until the maximum is set or another thread has set a larger one
+		}
+	}
+
 	/**
 	 * Disabled the {@link FileRefreshBackground}. The {@link #addEbook(EbookPropertyItem)} method
 	 * did no longer add books if the {@link FileRefreshBackground} is set to disabled.
@@ -68,12 +149,12 @@ public class FileRefreshBackground {
 	 */
 	public static void setDisabled(boolean disabled) {
 		if(disabled) {
-			isDisabled ++;
+			isDisabled.incrementAndGet();
 		} else {
-			isDisabled --;
+			isDisabled.decrementAndGet();
 		}
 	}
-	
+
 	/**
 	 * Starts the given {@link Runnable} and takes sure that the background refresh is disabled while running.
 	 * @param run The {@link Runnable} to be started while no file refresh will be detected.
@@ -86,42 +167,73 @@ public class FileRefreshBackground {
 			setDisabled(false);
 		}
 	}
-	
+
 	/**
 	 * Tells if the background refresh is currently disabled or not.
 	 */
 	public static boolean isDisabled() {
-		return isDisabled != 0;
+		return isDisabled.get() != 0;
+	}
+
+	private static class QueueEntry {
+
+		private final EbookPropertyItem item;
+
+		private final long queuedAt = System.nanoTime();
+
+		private final long notBefore = System.currentTimeMillis() + COALESCE_MILLIS;
+
+		private QueueEntry(EbookPropertyItem item) {
+			this.item = item;
+		}
 	}
 
-	private static class Worker implements Runnable {
+	private class Worker implements Runnable {
 
 		@Override
 		public void run() {
 			while (true) {
-				while (!items.isEmpty() && isDisabled == 0) {
-					EbookPropertyItem ebookPropertyItem = null;
+				if(isDisabled.get() != 0 || !processDueItems()) {
+					pruneCheckedAt();
+					ReflectionUtils.sleepSilent(IDLE_MILLIS);
+				}
+			}
+		}
+
+		/**
+		 * Processes all queued items which are due. An item is taken from the queue by removing
+		 * it, so each item is processed by only one worker.
+		 * @return <code>true</code> if at least one item was processed.
+		 */
+		private boolean processDueItems() {
+			boolean processed = false;
+			long now = System.currentTimeMillis();
+			for (Iterator<Map.Entry<String, QueueEntry>> iterator = queue.entrySet().iterator(); iterator.hasNext() && isDisabled.get() == 0;) {
+				Map.Entry<String, QueueEntry> entry = iterator.next();
+				QueueEntry queueEntry = entry.getValue();
+				if(queueEntry.notBefore <= now && queue.remove(entry.getKey(), queueEntry)) {
+					addLatency(System.nanoTime() - queueEntry.queuedAt);
+					checkedAt.put(entry.getKey(), Long.valueOf(System.currentTimeMillis()));
 					try {
-						synchronized (items) {
-							List<EbookPropertyItem> processedItems = new ArrayList<>();
-							Iterator<EbookPropertyItem> itemsIter = items.iterator();
-							while(itemsIter.hasNext()) {
-								ebookPropertyItem = itemsIter.next();
-								if(ebookPropertyItem != null) {
-									this.processItem(ebookPropertyItem);
-									processedItems.add(ebookPropertyItem);
-								}
-							}
-							items.removeAll(processedItems);
-							items.remove(null);
-						}
+						processItem(queueEntry.item);
 					} catch(Exception e) {
-						LoggerFactory.log(Level.WARNING, this, "Failed to handle " + ebookPropertyItem + " in background process", e);
+						LoggerFactory.log(Level.WARNING, this, "Failed to handle " + queueEntry.item + " in background process", e);
 					}
+					processed = true;
+				}
+			}
+			return processed;
+		}
+
+		/**
+		 * Removes the check times which are too old to prevent a new check.
+		 */
+		private void pruneCheckedAt() {
+			long now = System.currentTimeMillis();
+			for (Iterator<Long> iterator = checkedAt.values().iterator(); iterator.hasNext();) {
+				if(now - iterator.next().longValue() > RECHECK_MILLIS) {
+					iterator.remove();
 				}
-				
-				// wait a moment before restart
-				ReflectionUtils.sleepSilent(1000);
 			}
 		}
 
@@ -3,42 +3,76 @@ package org.rr.jeborker.app;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
 
 import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.mufs.IResourceHandler;
 import org.rr.commons.mufs.ResourceHandlerFactory;
-import org.rr.commons.utils.ReflectionUtils;
 import org.rr.jeborker.Jeboorker;
 import org.rr.jeborker.app.preferences.PreferenceStoreFactory;
 import org.rr.jeborker.db.DefaultDBManager;
+import org.rr.jeborker.db.WriteBehindBuffer;
 import org.rr.jeborker.db.item.EbookPropertyItem;
 import org.rr.jeborker.db.item.EbookPropertyItemUtils;
 import org.rr.jeborker.gui.MainController;
 import org.rr.jeborker.gui.action.ActionUtils;
+import org.rr.jeborker.gui.model.EbookPropertyDBTableModel;
+import org.rr.jeborker.gui.model.ReloadableTableModel;
 
+/**
+ * Watches the base paths and all their sub folders for changes and keeps the catalog in sync.
+ * The events of each path are collected until the path was quiet for {@link #DEBOUNCE_MILLIS},
+ * so copying many files results in a few large batches. Events are resolved against an in memory
+ * index of the cataloged files. All inserts, updates and deletes are collected with a {@link WriteBehindBuffer}
+ * which is flushed each {@link #FLUSH_MILLIS} and if no more events are pending. The ui is refreshed once per flush.
+ */
 public class FileWatchService {
 
+	/** Time in milliseconds a path must be quiet before it's changes are applied. */
+	private static final long DEBOUNCE_MILLIS = 500;
+
+	/** Time in milliseconds changes are collected before they are flushed to the database. */
+	private static final long FLUSH_MILLIS = 2000;
+
+	/** Do not process items younger than this time in milliseconds since jeboorker has touched them. */
+	private static final long TOUCHED_MILLIS = 10000;
+
 	private static WatchService watchService;
 
-	private static final HashMap<String, WatchKey> items = new HashMap<String, WatchKey>();
+	private static final ConcurrentHashMap<String, WatchKey> items = new ConcurrentHashMap<>();
+
+	private static final Set<String> pathIndex = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private static volatile long pathIndexModificationCount = -1;
 
 	static {
 		try {
@@ -60,31 +94,33 @@ public class FileWatchService {
 	}
 
 	/**
-	 * Removes the given path from the watch
+	 * Removes the given path and all it's sub folders from the watch
 	 * @param path The path to be removed from watch.
 	 */
 	public static void removeWatchPath(String path) {
 		path = new File(path).getAbsolutePath();
-		WatchKey watchKey = items.remove(path);
-		if(watchKey != null) {
-			watchKey.cancel();
-			LoggerFactory.getLogger(FileWatchService.class).log(Level.INFO, "Removing " + path + " from watch service.");
+		String subPathPrefix = path + File.separator;
+		for (Iterator<Map.Entry<String, WatchKey>> iterator = items.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry<String, WatchKey> entry = iterator.next();
+			if(entry.getKey().equals(path) || entry.getKey().startsWith(subPathPrefix)) {
+				entry.getValue().cancel();
+				iterator.remove();
+			}
 		}
+		LoggerFactory.getLogger(FileWatchService.class).log(Level.INFO, "Removing " + path + " from watch service.");
 	}
 
 	/**
-	 * Adds the given folders to the watched ones.
+	 * Adds the given folders and all their sub folders to the watched ones.
 	 */
 	public static void addWatchPath(final Collection<String> p) {
 		LoggerFactory.getLogger(FileWatchService.class).log(Level.INFO, "Adding " + p.size() + " folders to watch service.");
 		for(String path : p) {
 			try {
 				path = new File(path).getAbsolutePath();
-				File pathFile = new File(path);
-				if(!isAlreadyWatched(path) && pathFile.isDirectory()) {
-					WatchKey watchKey = Paths.get(path).register(watchService, new Kind<?>[] { ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE });
-					items.put(path, watchKey);
-					LoggerFactory.getLogger(FileWatchService.class).log(Level.INFO, "Added " + path + " to watch service.");
+				if(!isAlreadyWatched(path) && new File(path).isDirectory()) {
+					int count = registerRecursive(Paths.get(path), null);
+					LoggerFactory.getLogger(FileWatchService.class).log(Level.INFO, "Added " + path + " with " + count + " folders to watch service.");
 				}
 			} catch (Exception e) {
 				LoggerFactory.getLogger(FileWatchService.class).log(Level.WARNING, "Failed to add path " + path + " to file watch service. Stopping to add watches.", e);
@@ -93,6 +129,43 @@ public class FileWatchService {
 		}
 	}
 
+	/**
+	 * Registers the given folder and all it's sub folders which are not already watched.
+	 * @param files Collects all files below the given folder. Can be <code>null</code>.
+	 * @return The number of newly registered folders.
+	 */
+	private static int registerRecursive(Path start, final Collection<String> files) throws IOException {
+		final int[] count = new int[1];
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				String path = dir.toAbsolutePath().toString();
+				if(!isAlreadyWatched(path)) {
+					WatchKey watchKey = dir.register(watchService, new Kind<?>[] { ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE });
+					items.put(path, watchKey);
+					count[0]++;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if(files != null && attrs.isRegularFile()) {
+					files.add(file.toAbsolutePath().toString());
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+				LoggerFactory.getLogger(FileWatchService.class).log(Level.INFO, "Failed to visit " + file, e);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return count[0];
+	}
+
 	/**
 	 * Shutdown the watch service. No file change is detected after shutting down the service.
 	 */
@@ -110,93 +183,247 @@ public class FileWatchService {
 		return items.containsKey(path);
 	}
 
+	/**
+	 * Reads the files of all cataloged ebooks if the database was changed since the index was read last time.
+	 */
+	private static void refreshPathIndex() {
+		DefaultDBManager db = DefaultDBManager.getInstance();
+		long modificationCount = db.getModificationCount();
+		if(modificationCount != pathIndexModificationCount) {
+			List<String> files = db.getColumnValues(EbookPropertyItem.class, "file");
+			pathIndex.clear();
+			pathIndex.addAll(files);
+			pathIndexModificationCount = modificationCount;
+		}
+	}
+
 	private static class WatchFolderRunnable implements Runnable {
 
+		/** The paths with pending changes mapped to the time of their last event. */
+		private final Map<String, Long> pending = new LinkedHashMap<>();
+
+		/** The files added to the catalog since the last flush. */
+		private final Set<String> addedFiles = new LinkedHashSet<>();
+
+		/** The files removed from the catalog since the last flush. */
+		private final Set<String> deletedFiles = new LinkedHashSet<>();
+
+		/** The folders whose tree entries must be refreshed after the next flush. */
+		private final Set<IResourceHandler> changedFolders = new LinkedHashSet<>();
+
+		private WriteBehindBuffer buffer;
+
+		private boolean bufferedStores = false;
+
+		private boolean bufferedDeletes = false;
+
+		private long lastFlush = System.currentTimeMillis();
+
 		@Override
 		public void run() {
+			buffer = DefaultDBManager.getInstance().createWriteBehindBuffer();
 	        while (true) {
 	        	try {
-	        		WatchKey watchKey = watchService.take();
-
-	        		final List<EbookPropertyItem> changedEbooks = new ArrayList<>();
-	        		final List<IResourceHandler> addedResources = new ArrayList<>();
-		            for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
-		            	if(!FileRefreshBackground.isDisabled()) {
-			            	final Path fullPath = ((Path)watchKey.watchable()).resolve((Path)watchEvent.context());
-			            	final IResourceHandler resourceHandler = ResourceHandlerFactory.getResourceHandler(fullPath.toFile());
-	            			final List<EbookPropertyItem> ebookPropertyItemByResource = EbookPropertyItemUtils.getEbookPropertyItemByResource(resourceHandler);
-
-	            			if(ebookPropertyItemByResource.isEmpty() && watchEvent.kind() == ENTRY_CREATE) {
-	            				addedResources.add(resourceHandler);
-	            			} else if(watchEvent.kind() == ENTRY_DELETE || watchEvent.kind() == ENTRY_MODIFY) {
-	            				changedEbooks.addAll(ebookPropertyItemByResource);
-	            			}
-		            	}
-		            }
-		            watchKey.reset();
-
-					FileRefreshBackground.runWithDisabledRefresh(new Runnable() {
-
-						@Override
-						public void run() {
-							//seems the file may be not ready to read, wait...
-							ReflectionUtils.sleepSilent(500);
-
-				            transferDeleteAndRefresh(changedEbooks);
-				            transferNewEbookFiles(addedResources);
-						}
-					});
+	        		if(pending.isEmpty()) {
+	        			// write the changes before waiting for the next event
+	        			flush();
+	        		}
+	        		WatchKey watchKey = pending.isEmpty() ? watchService.take() : watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+	        		while(watchKey != null) {
+	        			collectEvents(watchKey);
+	        			watchKey = watchService.poll();
+	        		}
+
+	        		final List<String> quietPaths = takeQuietPaths();
+	        		if(!quietPaths.isEmpty()) {
+	        			FileRefreshBackground.runWithDisabledRefresh(new Runnable() {
+
+	        				@Override
+	        				public void run() {
+	        					applyChanges(quietPaths);
+	        				}
+	        			});
+	        		}
+	        		if(System.currentTimeMillis() - lastFlush >= FLUSH_MILLIS) {
+	        			flush();
+	        		}
+	        	} catch(InterruptedException e) {
+	        		LoggerFactory.getLogger(FileWatchService.class).log(Level.WARNING, "WatchFolderRunnable interrupted", e);
+	        		return;
 	        	} catch(Exception e) {
 	        		LoggerFactory.getLogger(FileWatchService.class).log(Level.WARNING, "WatchFolderRunnable", e);
 	        	}
 	        }
 		}
 
-		private void transferNewEbookFiles(final List<IResourceHandler> addedResources) {
-			for (IResourceHandler resource : addedResources) {
-				if(EbookPropertyItemUtils.getEbookPropertyItemByResource(resource).isEmpty()) {
-					IResourceHandler basePathForFile = PreferenceStoreFactory.getPreferenceStore(PreferenceStoreFactory.DB_STORE).getBasePath().getBasePathForFile(resource);
-					if( basePathForFile != null && resource.exists() && ActionUtils.isSupportedEbookFormat(resource, true) ) {
-						final EbookPropertyItem item = EbookPropertyItemUtils.createEbookPropertyItem(resource, basePathForFile);
-						DefaultDBManager.getInstance().storeObject(item);
-						ActionUtils.addAndStoreEbookPropertyItem(item);
-						MainController.getController().getMainTreeHandler().refreshFileSystemTreeEntry(basePathForFile);
-						LoggerFactory.getLogger().log(Level.INFO, "add " + resource);
+		/**
+		 * Adds the paths of all events of the given key to the pending ones. New folders are watched
+		 * immediately and the files which are already inside them are added to the pending paths.
+		 */
+		private void collectEvents(WatchKey watchKey) {
+			final long now = System.currentTimeMillis();
+			final Path watchedPath = (Path) watchKey.watchable();
+			for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+				if(watchEvent.kind() == OVERFLOW || FileRefreshBackground.isDisabled()) {
+					continue;
+				}
+				final Path fullPath = watchedPath.resolve((Path) watchEvent.context()).toAbsolutePath();
+				final String path = fullPath.toString();
+				if(watchEvent.kind() == ENTRY_CREATE && Files.isDirectory(fullPath)) {
+					List<String> files = new ArrayList<>();
+					try {
+						registerRecursive(fullPath, files);
+					} catch (IOException e) {
+						LoggerFactory.getLogger(FileWatchService.class).log(Level.WARNING, "Failed to add path " + path + " to file watch service.", e);
 					}
+					for (String file : files) {
+						pending.put(file, now);
+					}
+				} else if(watchEvent.kind() == ENTRY_DELETE && isAlreadyWatched(path)) {
+					removeWatchPath(path);
+					refreshPathIndex();
+					applyToPathIndex();
+					String subPathPrefix = path + File.separator;
+					for (String file : pathIndex) {
+						if(file.startsWith(subPathPrefix)) {
+							pending.put(file, now);
+						}
+					}
+				} else {
+					pending.put(path, now);
 				}
 			}
+			if(!watchKey.reset()) {
+				items.remove(watchedPath.toAbsolutePath().toString());
+			}
 		}
 
-		private void transferDeleteAndRefresh(final List<EbookPropertyItem> ebooks) {
-			final MainController controller = MainController.getController();
-			for(final EbookPropertyItem item : ebooks) {
-				//do not process items younger than 10 seconds since jeboorker has touched them.
-				if(isTimeLeft(item, 10000)) {
-					final IResourceHandler resourceHandler = item.getResourceHandler();
-					if(!resourceHandler.exists()) {
-						//remove
-						SwingUtilities.invokeLater(new Runnable() {
-
-							@Override
-							public void run() {
-								boolean removed = controller.removeEbookPropertyItem(item);
-								controller.getMainTreeHandler().refreshFileSystemTreeEntry(item.getResourceHandler());
-								if(!removed) {
-									DefaultDBManager.getInstance().deleteObject(item);
+		/**
+		 * Removes and returns all pending paths without an event for at least {@link #DEBOUNCE_MILLIS}.
+		 */
+		private List<String> takeQuietPaths() {
+			final long now = System.currentTimeMillis();
+			final List<String> result = new ArrayList<>();
+			for (Iterator<Map.Entry<String, Long>> iterator = pending.entrySet().iterator(); iterator.hasNext();) {
+				Map.Entry<String, Long> entry = iterator.next();
+				if(now - entry.getValue().longValue() >= DEBOUNCE_MILLIS) {
+					result.add(entry.getKey());
+					iterator.remove();
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Resolves the given paths against the path index and adds the resulting changes to the {@link WriteBehindBuffer}.
+		 */
+		private void applyChanges(List<String> paths) {
+			refreshPathIndex();
+			applyToPathIndex();
+
+			final DefaultDBManager db = DefaultDBManager.getInstance();
+			final List<EbookPropertyItem> storeItems = new ArrayList<>();
+			final List<EbookPropertyItem> addedItems = new ArrayList<>();
+			final List<EbookPropertyItem> deletedItems = new ArrayList<>();
+			for (String path : paths) {
+				final IResourceHandler resource = ResourceHandlerFactory.getResourceHandler(new File(path));
+				try {
+					if(pathIndex.contains(resource.toString())) {
+						if(!resource.exists()) {
+							deletedItems.add(EbookPropertyItemUtils.createBasicEbookPropertyItem(resource));
+							changedFolders.add(resource.getParentResource());
+							LoggerFactory.getLogger().log(Level.INFO, "remove " + resource);
+						} else {
+							for (EbookPropertyItem item : db.getObject(EbookPropertyItem.class, "file", resource.toString())) {
+								if(isTimeLeft(item, TOUCHED_MILLIS)) {
+									EbookPropertyItemUtils.refreshEbookPropertyItem(item, resource, true);
+									storeItems.add(item);
+									LoggerFactory.getLogger().log(Level.INFO, "refresh " + resource);
 								}
-								LoggerFactory.getLogger().log(Level.INFO, "remove " + resourceHandler + " " + removed);
 							}
-						});
-					} else {
-						//refresh
-						EbookPropertyItemUtils.refreshEbookPropertyItem(item, resourceHandler, true);
-						DefaultDBManager.getInstance().updateObject(item);
-						LoggerFactory.getLogger().log(Level.INFO, "refresh " + resourceHandler);
+						}
+					} else if(resource.exists() && resource.isFileResource()) {
+						IResourceHandler basePathForFile = PreferenceStoreFactory.getPreferenceStore(PreferenceStoreFactory.DB_STORE).getBasePath().getBasePathForFile(resource);
+						if(basePathForFile != null && ActionUtils.isSupportedEbookFormat(resource, true)) {
+							EbookPropertyItem item = EbookPropertyItemUtils.createEbookPropertyItem(resource, basePathForFile);
+							storeItems.add(item);
+							addedItems.add(item);
+							changedFolders.add(resource.getParentResource());
+							LoggerFactory.getLogger().log(Level.INFO, "add " + resource);
+						}
 					}
-
-					FileRefreshBackground.getInstance().addEbooks(ebooks);
+				} catch(Exception e) {
+					LoggerFactory.getLogger(FileWatchService.class).log(Level.WARNING, "Failed to handle change of " + path, e);
 				}
 			}
+
+			buffer.storeObjects(storeItems);
+			buffer.deleteObjects(deletedItems);
+			bufferedStores |= !storeItems.isEmpty();
+			bufferedDeletes |= !deletedItems.isEmpty();
+			for (EbookPropertyItem item : addedItems) {
+				addedFiles.add(item.getFile());
+				deletedFiles.remove(item.getFile());
+			}
+			for (EbookPropertyItem item : deletedItems) {
+				deletedFiles.add(item.getFile());
+				addedFiles.remove(item.getFile());
+			}
+			applyToPathIndex();
+		}
+
+		/**
+		 * Writes the buffered changes to the database and refreshes the view.
+		 */
+		private void flush() {
+			lastFlush = System.currentTimeMillis();
+			if(!bufferedStores && !bufferedDeletes) {
+				return;
+			}
+			// only the own writes are applied to the index, so writes from other threads force a rereading of the index.
+			final DefaultDBManager db = DefaultDBManager.getInstance();
+			final long modificationCount = db.getModificationCount();
+			final boolean pathIndexInSync = modificationCount == pathIndexModificationCount;
+			buffer.flush();
+			if(pathIndexInSync) {
+				pathIndexModificationCount = modificationCount + (bufferedStores ? 1 : 0) + (bufferedDeletes ? 1 : 0);
+			}
+			addedFiles.clear();
+			deletedFiles.clear();
+			bufferedStores = false;
+			bufferedDeletes = false;
+
+			refreshView(new ArrayList<>(changedFolders));
+			changedFolders.clear();
+		}
+
+		/**
+		 * Applies the buffered changes to the path index, which does not contain them after it was reread.
+		 */
+		private void applyToPathIndex() {
+			pathIndex.addAll(addedFiles);
+			pathIndex.removeAll(deletedFiles);
+		}
+
+		/**
+		 * Reloads the main table and the tree entries of the given folders with one event dispatch thread invocation.
+		 */
+		private void refreshView(final Collection<IResourceHandler> changedFolders) {
+			SwingUtilities.invokeLater(new Runnable() {
+
+				@Override
+				public void run() {
+					final MainController controller = MainController.getController();
+					final ReloadableTableModel model = controller.getModel();
+					if(model instanceof EbookPropertyDBTableModel) {
+						((EbookPropertyDBTableModel) model).setDirty();
+						((EbookPropertyDBTableModel) model).fireTableChanged(new TableModelEvent(model));
+					}
+					for (IResourceHandler folder : changedFolders) {
+						controller.getMainTreeHandler().refreshFileSystemTreeEntry(folder);
+					}
+				}
+			});
 		}
 
 		private boolean isTimeLeft(EbookPropertyItem item, long time) {
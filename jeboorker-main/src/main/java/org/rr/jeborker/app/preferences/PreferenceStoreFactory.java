@@ -97,6 +97,22 @@ public class PreferenceStoreFactory {
 				return DB_STORE;
 			}
 		},
+		IMPORT_PARALLELISM {
+			@Override
+			public String getKey() {
+				return "ImportParallelism";
+			}
+
+			@Override
+			public String getDefaultValue() {
+				return String.valueOf(Runtime.getRuntime().availableProcessors());
+			}
+
+			@Override
+			public int getDefaultType() {
+				return DB_STORE;
+			}
+		},
 		LOOK_AND_FEEL {
 			
 			private final String INIT_DEFAULT_VALUE = com.alee.laf.WebLookAndFeel.class.getName();
@@ -4,13 +4,15 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.io.FilenameUtils;
 import org.rr.commons.mufs.IResourceHandler;
 import org.rr.commons.mufs.MimeUtils;
 import org.rr.commons.mufs.ResourceHandlerFactory;
-import org.rr.commons.utils.compression.CompressedDataEntry;
+import org.rr.commons.utils.compression.CompressedEntryVisitor;
+import org.rr.commons.utils.compression.CompressionUtils;
 import org.rr.jeborker.app.preferences.APreferenceStore;
 import org.rr.jeborker.app.preferences.PreferenceStoreFactory;
 import org.rr.jeborker.gui.ConverterPreferenceController;
@@ -37,12 +39,24 @@ public abstract class AArchiveToArchiveConverter implements IEBookConverter {
 	
 	@Override
 	public IResourceHandler convert() throws IOException {
-		ConverterPreferenceController converterPreferenceController = getConverterPreferenceController();
+		final ConverterPreferenceController converterPreferenceController = getConverterPreferenceController();
 		
 		if(converterPreferenceController.isConfirmed()) {
 			try {
-				List<CompressedDataEntry> sourceFiles = extractArchive(archiveResource);
-				return convertAndWriteToTargetArchive(converterPreferenceController, sourceFiles);
+				final IResourceHandler targetArchiveResource = ResourceHandlerFactory.getUniqueResourceHandler(archiveResource, getTargetArchiveExtension());
+				openTargetArchive(targetArchiveResource);
+				try {
+					CompressionUtils.forEachEntry(archiveResource, null, new CompressedEntryVisitor() {
+						
+						@Override
+						public void visit(String name, byte[] data, int length) throws IOException {
+							convertAndWriteToTargetArchive(converterPreferenceController, targetArchiveResource, name, data, length);
+						}
+					});
+				} finally {
+					closeTargetArchive();
+				}
+				return targetArchiveResource;
 			} finally {
 				preferenceStore.addGenericEntryAsNumber(IMAGE_QUALITY_KEY, getImageQuality());
 			}
@@ -51,37 +65,47 @@ public abstract class AArchiveToArchiveConverter implements IEBookConverter {
 		return null;
 	}
 	
-	protected IResourceHandler convertAndWriteToTargetArchive(ConverterPreferenceController converterPreferenceController,
-			List<CompressedDataEntry> sourceFiles) throws IOException {
-		IResourceHandler targetArchiveResource = ResourceHandlerFactory.getUniqueResourceHandler(archiveResource, getTargetArchiveExtension());
-		for (CompressedDataEntry sourceFile : sourceFiles) {
-			byte[] bytes = sourceFile.getBytes();
-			if(ConverterUtils.isImageFileName(sourceFile.getName())) {
-				BufferedImage image = getBufferedImageFromArchive(new ByteArrayInputStream(bytes));
-				List<BufferedImage> modifiedImages = ConverterUtils.processImageModifications(image, getImageQuality(), converterPreferenceController);
-				for (int i = 0; i < modifiedImages.size(); i++) {
-					BufferedImage modifiedImage = modifiedImages.get(i);
-					String targetMime = MimeUtils.getImageMimeFromFileName(sourceFile.getName(), "image/" + FilenameUtils.getExtension(sourceFile.getName()));
-					byte[] imageBytes = ImageUtils.getImageBytes(modifiedImage, targetMime);
-					if(modifiedImages.size() > 1) {
-						addToArchive(targetArchiveResource, sourceFile, i, imageBytes);
-					} else {
-						addToArchive(targetArchiveResource, sourceFile, imageBytes);						
-					}
+	/**
+	 * Converts one entry of the source archive and adds it to the target archive.
+	 * @param data The entry data which is only valid until this method returns.
+	 */
+	protected void convertAndWriteToTargetArchive(ConverterPreferenceController converterPreferenceController,
+			IResourceHandler targetArchiveResource, String sourceFileName, byte[] data, int length) throws IOException {
+		if(ConverterUtils.isImageFileName(sourceFileName)) {
+			BufferedImage image = getBufferedImageFromArchive(new ByteArrayInputStream(data, 0, length));
+			List<BufferedImage> modifiedImages = ConverterUtils.processImageModifications(image, getImageQuality(), converterPreferenceController);
+			for (int i = 0; i < modifiedImages.size(); i++) {
+				BufferedImage modifiedImage = modifiedImages.get(i);
+				String targetMime = MimeUtils.getImageMimeFromFileName(sourceFileName, "image/" + FilenameUtils.getExtension(sourceFileName));
+				byte[] imageBytes = ImageUtils.getImageBytes(modifiedImage, targetMime);
+				if(modifiedImages.size() > 1) {
+					addToArchive(targetArchiveResource, sourceFileName, i, imageBytes);
+				} else {
+					addToArchive(targetArchiveResource, sourceFileName, imageBytes);
 				}
-			} else {
-				addToArchive(targetArchiveResource, sourceFile, bytes);
 			}
+		} else {
+			addToArchive(targetArchiveResource, sourceFileName, Arrays.copyOf(data, length));
 		}
-		return targetArchiveResource;
-			
 	}
 
 	protected abstract String getTargetArchiveExtension();
 
-	protected abstract void addToArchive(IResourceHandler targetCbzResource, CompressedDataEntry sourceFile, byte[] imageBytes);
+	/**
+	 * Invoked before the first entry is added to the target archive.
+	 */
+	protected void openTargetArchive(IResourceHandler targetArchiveResource) throws IOException {
+	}
+
+	/**
+	 * Invoked after all entries are added to the target archive or if the conversion has failed.
+	 */
+	protected void closeTargetArchive() throws IOException {
+	}
+
+	protected abstract void addToArchive(IResourceHandler targetCbzResource, String sourceFileName, byte[] imageBytes) throws IOException;
 
-	protected abstract void addToArchive(IResourceHandler targetCbzResource, CompressedDataEntry sourceFile, int i, byte[] imageBytes);
+	protected abstract void addToArchive(IResourceHandler targetCbzResource, String sourceFileName, int i, byte[] imageBytes) throws IOException;
 	
 	protected String injectCounterToFileName(String fileName, int count) {
 		return FilenameUtils.getBaseName(fileName) + "_" + count + "." + FilenameUtils.getExtension(fileName);
@@ -126,6 +150,4 @@ public abstract class AArchiveToArchiveConverter implements IEBookConverter {
   	IImageProvider imageProvider = ImageProviderFactory.getImageProvider(ResourceHandlerFactory.getResourceHandler(compressionEntryStream));
   	return imageProvider.getImage();
   }
-
-	protected abstract List<CompressedDataEntry> extractArchive(IResourceHandler cbzResource);
 }
@@ -0,0 +1,87 @@
+package org.rr.jeborker.converter;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+
+import org.rr.commons.log.LoggerFactory;
+import org.rr.commons.mufs.IResourceHandler;
+import org.rr.commons.utils.compression.CompressionUtils;
+import org.rr.commons.utils.compression.zip.ParallelZipOutputStream;
+import org.rr.commons.utils.compression.zip.ZipEntry;
+import org.rr.jeborker.app.JeboorkerConstants;
+import org.rr.jeborker.app.JeboorkerConstants.SUPPORTED_MIMES;
+
+/**
+ * Converts archives to cbz. The target cbz is written with one stream and the entries are compressed in parallel.
+ */
+public abstract class AArchiveToCbzConverter extends AArchiveToArchiveConverter {
+
+	private ParallelZipOutputStream cbzOut;
+
+	private final Set<String> entryNames = new HashSet<>();
+
+	public AArchiveToCbzConverter(IResourceHandler archiveResource) {
+		super(archiveResource);
+	}
+
+	@Override
+	protected void openTargetArchive(IResourceHandler targetCbzResource) throws IOException {
+		entryNames.clear();
+		cbzOut = new ParallelZipOutputStream(targetCbzResource.getContentOutputStream(false));
+	}
+
+	@Override
+	protected void closeTargetArchive() throws IOException {
+		if(cbzOut != null) {
+			try {
+				cbzOut.close();
+			} finally {
+				cbzOut = null;
+			}
+		}
+	}
+
+	@Override
+	protected void addToArchive(IResourceHandler targetCbzResource, String sourceFileName, byte[] imageBytes) throws IOException {
+		addEntry(sourceFileName, imageBytes);
+	}
+
+	@Override
+	protected void addToArchive(IResourceHandler targetCbzResource, String sourceFileName, int i, byte[] imageBytes) throws IOException {
+		addEntry(injectCounterToFileName(sourceFileName, i), imageBytes);
+	}
+
+	private void addEntry(String name, byte[] data) throws IOException {
+		if(!entryNames.add(name)) {
+			LoggerFactory.log(Level.WARNING, this, "Skipped duplicate entry " + name);
+			return;
+		}
+		cbzOut.putNextEntry(createEntry(name));
+		cbzOut.write(data);
+		cbzOut.closeEntry();
+	}
+
+	/**
+	 * Creates the cbz entry for the given name. Already compressed images are stored. The size and crc of
+	 * stored entries are calculated by the {@link ParallelZipOutputStream}.
+	 */
+	private static ZipEntry createEntry(String name) {
+		ZipEntry entry = new ZipEntry(name, null);
+		if(CompressionUtils.isStoreOnlyFile(name)) {
+			entry.setMethod(ZipEntry.STORED);
+		}
+		return entry;
+	}
+
+	@Override
+	protected String getTargetArchiveExtension() {
+		return SUPPORTED_MIMES.MIME_CBZ.getName();
+	}
+
+	@Override
+	public SUPPORTED_MIMES getConversionTargetType() {
+		return JeboorkerConstants.SUPPORTED_MIMES.MIME_CBZ;
+	}
+}
@@ -1,13 +1,9 @@
 package org.rr.jeborker.converter;
 
 import java.io.ByteArrayInputStream;
-import java.util.List;
 
 import org.rr.commons.mufs.IResourceHandler;
-import org.rr.commons.utils.compression.CompressedDataEntry;
-import org.rr.commons.utils.compression.FileEntryFilter;
 import org.rr.commons.utils.compression.rar.RarUtils;
-import org.rr.commons.utils.compression.truezip.TrueZipUtils;
 import org.rr.jeborker.app.JeboorkerConstants;
 import org.rr.jeborker.app.JeboorkerConstants.SUPPORTED_MIMES;
 
@@ -18,13 +14,13 @@ public class CbzToCbrConverter extends AArchiveToArchiveConverter {
 	}
 	
 	@Override
-	protected void addToArchive(IResourceHandler targetCbzResource, CompressedDataEntry sourceFile, byte[] imageBytes) {
-		RarUtils.add(targetCbzResource, sourceFile.getName(), new ByteArrayInputStream(imageBytes));
+	protected void addToArchive(IResourceHandler targetCbzResource, String sourceFileName, byte[] imageBytes) {
+		RarUtils.add(targetCbzResource, sourceFileName, new ByteArrayInputStream(imageBytes));
 	}
 
 	@Override
-	protected void addToArchive(IResourceHandler targetCbzResource, CompressedDataEntry sourceFile, int i, byte[] imageBytes) {
-		RarUtils.add(targetCbzResource, injectCounterToFileName(sourceFile.getName(), i), new ByteArrayInputStream(imageBytes));
+	protected void addToArchive(IResourceHandler targetCbzResource, String sourceFileName, int i, byte[] imageBytes) {
+		RarUtils.add(targetCbzResource, injectCounterToFileName(sourceFileName, i), new ByteArrayInputStream(imageBytes));
 	}
 	
 	@Override
@@ -32,11 +28,6 @@ public class CbzToCbrConverter extends AArchiveToArchiveConverter {
 		return SUPPORTED_MIMES.MIME_CBR.getName();
 	}
 
-	@Override
-	protected List<CompressedDataEntry> extractArchive(IResourceHandler cbzResource) {
-		return TrueZipUtils.extract(cbzResource, (FileEntryFilter) null);
-	}
-
 	@Override
 	public SUPPORTED_MIMES getConversionSourceType() {
 		return JeboorkerConstants.SUPPORTED_MIMES.MIME_CBZ;
@@ -1,24 +1,38 @@
 package org.rr.jeborker.converter;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 
 import org.apache.commons.lang.StringUtils;
+import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.mufs.IResourceHandler;
 import org.rr.commons.mufs.MimeUtils;
 import org.rr.commons.mufs.ResourceHandlerFactory;
 import org.rr.commons.mufs.ResourceHandlerUtils;
-import org.rr.commons.utils.compression.truezip.TrueZipUtils;
+import org.rr.commons.utils.compression.CompressionUtils;
+import org.rr.commons.utils.compression.zip.ParallelZipOutputStream;
+import org.rr.commons.utils.compression.zip.ZipEntry;
+import org.rr.jeborker.Jeboorker;
 import org.rr.jeborker.app.JeboorkerConstants;
 import org.rr.jeborker.app.JeboorkerConstants.SUPPORTED_MIMES;
 import org.rr.jeborker.app.preferences.APreferenceStore;
 import org.rr.jeborker.app.preferences.PreferenceStoreFactory;
 import org.rr.jeborker.gui.ConverterPreferenceController;
 import org.rr.jeborker.gui.MainController;
+import org.rr.jeborker.gui.MainMonitor;
+import org.rr.jeborker.metadata.pdf.PDFUtils;
 import org.rr.pm.image.ImageUtils;
 
 import com.jmupdf.interfaces.Page;
@@ -31,6 +45,11 @@ public class PdfToCBZConverter implements IEBookConverter {
 	
 	private static String IMAGE_QUALITY_KEY = PdfToCBZConverter.class.getName() + "." + IMAGE_QUALITY_LABEL;
 	
+	/** Number of rendered pages for each worker which could wait to be written to the cbz. */
+	private static final int PAGES_IN_FLIGHT_PER_WORKER = 2;
+	
+	private static final long WAIT_MILLIS = 100;
+	
 	private APreferenceStore preferenceStore = PreferenceStoreFactory.getPreferenceStore(PreferenceStoreFactory.DB_STORE);
 
 	private IResourceHandler pdfResource;
@@ -48,7 +67,7 @@ public class PdfToCBZConverter implements IEBookConverter {
 	 * @return The rendered pdf data or <code>null</code> if the pdf could not be rendered.
 	 * @throws IOException
 	 */
-	private List<byte[]> renderPage(ConverterPreferenceController converterPreferenceDialog, com.jmupdf.pdf.PdfDocument doc, int pageNumber) throws Exception {
+	private List<byte[]> renderPage(ConverterPreferenceController converterPreferenceDialog, int imageQuality, com.jmupdf.pdf.PdfDocument doc, int pageNumber) throws Exception {
 		PagePixels pp = null;
 		Page page = null;
 		PageRect bb = null;
@@ -61,7 +80,7 @@ public class PdfToCBZConverter implements IEBookConverter {
 			pp.getOptions().setZoom(1.5f);
 			pp.drawPage(null, bb.getX0(), bb.getY0(), bb.getX1(), bb.getY1());
 			BufferedImage image = pp.getImage();
-			List<BufferedImage> processImageModifications = ConverterUtils.processImageModifications(image, getImageQuality(), converterPreferenceDialog);
+			List<BufferedImage> processImageModifications = ConverterUtils.processImageModifications(image, imageQuality, converterPreferenceDialog);
 			List<byte[]> result = new ArrayList<byte[]>(processImageModifications.size());
 			for(BufferedImage processedImage : processImageModifications) {
 				byte[] imageBytes = ImageUtils.getImageBytes(processedImage, MimeUtils.MIME_JPEG);
@@ -81,30 +100,13 @@ public class PdfToCBZConverter implements IEBookConverter {
 		if(converterPreferenceDialog.isConfirmed()) {
 			IResourceHandler targetCbzResource = ResourceHandlerFactory.getUniqueResourceHandler(pdfResource, "cbz");
 			
-			com.jmupdf.pdf.PdfDocument doc = null;
 			try {
-				doc = new com.jmupdf.pdf.PdfDocument(pdfResource.getContent());
-				int pageCount = doc.getPageCount();
-				for(int pageNumber = 0, additional = 0; pageNumber < pageCount; pageNumber++) {
-					List<byte[]> renderedPages = renderPage(converterPreferenceDialog, doc, pageNumber + 1);
-					for(int i = 0; i < renderedPages.size(); i++) {
-						if(i > 0) {
-							additional++;
-						}
-						byte[] renderedPage = renderedPages.get(i);
-						TrueZipUtils.add(targetCbzResource, getFileName(pageNumber + additional, pageCount), new ByteArrayInputStream(renderedPage));
-					}
-				}
+				convertPages(converterPreferenceDialog, targetCbzResource);
 			} catch(IOException e) { 
 				 throw e;
 			} catch(Exception e) {
 				throw new IOException("Failed to convert PDF " + pdfResource.getName(), e);
-			} finally {
-				if (doc != null) {
-					doc.dispose();
-					doc = null;
-				}
-			}	
+			}
 			
 			ConverterUtils.transferMetadata(pdfResource, targetCbzResource);
 			preferenceStore.addGenericEntryAsNumber(IMAGE_QUALITY_KEY, getImageQuality());
@@ -113,6 +115,119 @@ public class PdfToCBZConverter implements IEBookConverter {
 		return null;
 	}
 
+	/**
+	 * Renders all pages with one worker per processor, each having it's own document. The pages are written
+	 * to the target cbz in page order by the calling thread. Workers wait if too many rendered pages are not
+	 * written yet, so the memory used for the rendered pages is limited.
+	 */
+	private void convertPages(final ConverterPreferenceController converterPreferenceDialog, final IResourceHandler targetCbzResource) throws Exception {
+		final com.jmupdf.pdf.PdfDocument firstDoc = PDFUtils.openDocument(pdfResource);
+		final int pageCount;
+		try {
+			pageCount = firstDoc.getPageCount();
+		} catch(RuntimeException e) {
+			firstDoc.dispose();
+			throw e;
+		}
+		final int imageQuality = getImageQuality();
+		final int workerCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), pageCount));
+		final Semaphore pagesInFlight = new Semaphore(workerCount * PAGES_IN_FLIGHT_PER_WORKER);
+		final AtomicInteger nextPage = new AtomicInteger();
+		final AtomicBoolean stopped = new AtomicBoolean();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final Map<Integer, List<byte[]>> renderedPages = new HashMap<>();
+
+		final List<Future<?>> workers = new ArrayList<>(workerCount);
+		for(int i = 0; i < workerCount; i++) {
+			final boolean first = i == 0;
+			workers.add(Jeboorker.APPLICATION_THREAD_POOL.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					com.jmupdf.pdf.PdfDocument doc = first ? firstDoc : null;
+					try {
+						if(doc == null) {
+							doc = PDFUtils.openDocument(pdfResource);
+						}
+						while(!stopped.get()) {
+							pagesInFlight.acquire();
+							int pageNumber = nextPage.getAndIncrement();
+							if(stopped.get() || pageNumber >= pageCount) {
+								break;
+							}
+							List<byte[]> pages = renderPage(converterPreferenceDialog, imageQuality, doc, pageNumber + 1);
+							synchronized(renderedPages) {
+								renderedPages.put(pageNumber, pages);
+								renderedPages.notifyAll();
+							}
+						}
+					} catch(Throwable e) {
+						failure.compareAndSet(null, e);
+						stopped.set(true);
+						synchronized(renderedPages) {
+							renderedPages.notifyAll();
+						}
+					} finally {
+						if(doc != null) {
+							doc.dispose();
+						}
+					}
+				}
+			}));
+		}
+
+		try (ParallelZipOutputStream cbzOut = new ParallelZipOutputStream(targetCbzResource.getContentOutputStream(false))) {
+			final MainMonitor progressMonitor = MainController.getController().getProgressMonitor();
+			for(int pageNumber = 0, additional = 0; pageNumber < pageCount; pageNumber++) {
+				List<byte[]> renderedPage = takeRenderedPage(renderedPages, pageNumber, failure);
+				pagesInFlight.release();
+				for(int i = 0; i < renderedPage.size(); i++) {
+					if(i > 0) {
+						additional++;
+					}
+					ZipEntry entry = new ZipEntry(getFileName(pageNumber + additional, pageCount), null);
+					if(CompressionUtils.isStoreOnlyFile(entry.getName())) {
+						entry.setMethod(ZipEntry.STORED); //size and crc are calculated by the ParallelZipOutputStream
+					}
+					cbzOut.putNextEntry(entry);
+					cbzOut.write(renderedPage.get(i));
+					cbzOut.closeEntry();
+				}
+				progressMonitor.setProgress(pageNumber + 1, pageCount);
+			}
+		} finally {
+			//wake up the workers waiting for a free slot and wait until all documents are disposed.
+			stopped.set(true);
+			pagesInFlight.release(workerCount);
+			for(Future<?> worker : workers) {
+				try {
+					worker.get();
+				} catch(ExecutionException e) {
+					LoggerFactory.getLogger(this).log(Level.WARNING, "Failed to render PDF " + pdfResource.getName(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until the page with the given number is rendered and removes it from the rendered pages.
+	 * @throws Exception The failure of a worker if the page could not be rendered.
+	 */
+	private List<byte[]> takeRenderedPage(Map<Integer, List<byte[]>> renderedPages, int pageNumber, AtomicReference<Throwable> failure) throws Exception {
+		synchronized(renderedPages) {
+			while(!renderedPages.containsKey(pageNumber)) {
+				Throwable t = failure.get();
+				if(t instanceof Exception) {
+					throw (Exception) t;
+				} else if(t != null) {
+					throw (Error) t;
+				}
+				renderedPages.wait(WAIT_MILLIS);
+			}
+			return renderedPages.remove(pageNumber);
+		}
+	}
+
 	@Override
 	public SUPPORTED_MIMES getConversionSourceType() {
 		return JeboorkerConstants.SUPPORTED_MIMES.MIME_PDF;
@@ -3,29 +3,44 @@ package org.rr.jeborker.db;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
+import javax.swing.SwingUtilities;
+
 import org.rr.commons.collection.ICloseableList;
 import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.utils.ReflectionUtils;
-import org.rr.commons.utils.StringUtil;
 import org.rr.jeborker.db.item.EbookPropertyItem;
 import org.rr.jeborker.db.item.EbookPropertyItemUtils;
 import org.rr.jeborker.db.item.PreferenceItem;
 
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.dao.GenericRawResults;
 import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.stmt.PreparedQuery;
 import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.SelectArg;
 import com.j256.ormlite.stmt.Where;
 
 /**
  * The {@link DefaultDBManager} provides methods for handle database connections and it's content.
+ * Read operations are not locked and run in parallel on the pooled connections. All write operations
+ * are serialized with a single writer lock.
  *
  * @param <T>
  */
@@ -33,10 +48,31 @@ public abstract class DefaultDBManager {
 
 	private static DefaultDBManager manager;
 
+	/**
+	 * The default number of objects written by the batch methods before a commit happens.
+	 */
+	public static final int DEFAULT_BATCH_COMMIT_INTERVAL = 500;
+
 	protected static final Class<?>[] KNOWN_CLASSES = new Class<?>[] { EbookPropertyItem.class, PreferenceItem.class };
 
 	private JdbcPooledConnectionSource connection;
 
+	private int batchCommitInterval = DEFAULT_BATCH_COMMIT_INTERVAL;
+
+	private final Set<WriteBehindBuffer> writeBehindBuffers = Collections.newSetFromMap(new WeakHashMap<WriteBehindBuffer, Boolean>());
+
+	private final ConcurrentHashMap<Class<?>, Dao<?, ?>> daoCache = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<String, PreparedLookup<?>> lookupCache = new ConcurrentHashMap<>();
+
+	private final ReentrantLock writeLock = new ReentrantLock();
+
+	private final LockStatistics writeLockStatistics = new LockStatistics("write lock");
+
+	private final AtomicLong modificationCount = new AtomicLong();
+
+	private final LockStatistics eventDispatchThreadWriteLockStatistics = new LockStatistics("write lock on event dispatch thread");
+
 	/**
 	 * Gets a shared {@link ConfigManager} instance.
 	 *
@@ -71,14 +107,113 @@ public abstract class DefaultDBManager {
 	}
 
 	/**
-	 * Closes and shutdown all database connections previously opened.
+	 * Flushes all {@link WriteBehindBuffer}s, closes and shutdown all database connections previously opened.
 	 */
-	public synchronized void shutdown() {
+	public void shutdown() {
+		final List<WriteBehindBuffer> buffers;
+		synchronized (writeBehindBuffers) {
+			buffers = new ArrayList<>(writeBehindBuffers);
+		}
+		for (WriteBehindBuffer buffer : buffers) {
+			buffer.flush();
+		}
+		lockWrite();
 		try {
+			lookupCache.clear();
+			daoCache.clear();
 			connection.close();
+			LoggerFactory.log(Level.INFO, this, writeLockStatistics + ", " + eventDispatchThreadWriteLockStatistics);
 		} catch (IOException e) {
 			LoggerFactory.log(Level.SEVERE, this, "shutdown database has failed", e);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Acquires the writer lock and records the time waited for it.
+	 */
+	private void lockWrite() {
+		long start = System.nanoTime();
+		writeLock.lock();
+		modificationCount.incrementAndGet();
+		long waited = System.nanoTime() - start;
+		writeLockStatistics.add(waited);
+		if(SwingUtilities.isEventDispatchThread()) {
+			eventDispatchThreadWriteLockStatistics.add(waited);
+		}
+	}
+
+	/**
+	 * Runs the given {@link Runnable} while the writer lock is held. Only the write operations
+	 * invoked by the {@link Runnable} are counted as modifications.
+	 */
+	void runWithWriteLock(Runnable runnable) {
+		writeLock.lock();
+		try {
+			runnable.run();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of write operations since the database was opened. Can be used to find out
+	 *  if the database has been changed since a previous invocation.
+	 */
+	public long getModificationCount() {
+		return modificationCount.get();
+	}
+
+	/**
+	 * @return The wait time statistics of all write operations.
+	 */
+	public LockStatistics getWriteLockStatistics() {
+		return writeLockStatistics;
+	}
+
+	/**
+	 * @return The wait time statistics of these write operations which are invoked from the event dispatch thread.
+	 */
+	public LockStatistics getEventDispatchThreadWriteLockStatistics() {
+		return eventDispatchThreadWriteLockStatistics;
+	}
+
+	/**
+	 * Get the {@link Dao} for the given entity class. The {@link Dao} is created once and
+	 * reused for all further invocations.
+	 * @param cls The entity class.
+	 * @return The desired {@link Dao} instance. Never returns <code>null</code>.
+	 * @throws SQLException if the {@link Dao} could not be created.
+	 */
+	protected <T, ID> Dao<T, ID> getDao(Class<?> cls) throws SQLException {
+		Dao<?, ?> dao = daoCache.get(cls);
+		if(dao == null) {
+			dao = DaoManager.createDao(connection, cls);
+			Dao<?, ?> existing = daoCache.putIfAbsent(cls, dao);
+			if(existing != null) {
+				dao = existing;
+			}
 		}
+		return (Dao<T, ID>) dao;
+	}
+
+	/**
+	 * Get the {@link PreparedLookup} for the given entity class and field. The lookup is
+	 * prepared once and reused for all further invocations.
+	 */
+	private <T> PreparedLookup<T> getPreparedLookup(Class<T> cls, String field) throws SQLException {
+		String key = cls.getName() + '#' + field;
+		PreparedLookup<?> lookup = lookupCache.get(key);
+		if(lookup == null) {
+			Dao<T, ?> dao = getDao(cls);
+			lookup = new PreparedLookup<T>(dao, field);
+			PreparedLookup<?> existing = lookupCache.putIfAbsent(key, lookup);
+			if(existing != null) {
+				lookup = existing;
+			}
+		}
+		return (PreparedLookup<T>) lookup;
 	}
 
 	/**
@@ -86,10 +221,10 @@ public abstract class DefaultDBManager {
 	 * @return a new {@link QueryBuilder} instance for the given class. Never returns <code>null</code>
 	 * @throws RuntimeException if an SQL error occurs.
 	 */
-	public synchronized <T> QueryBuilder<T, T> getQueryBuilder(Class<T> cls) {
+	public <T> QueryBuilder<T, T> getQueryBuilder(Class<T> cls) {
 		Dao<T, T> createDao;
 		try {
-			createDao = DaoManager.createDao(connection, cls);
+			createDao = getDao(cls);
 			QueryBuilder<T, T> queryBuilder = createDao.queryBuilder();
 			return queryBuilder;
 		} catch (SQLException e) {
@@ -97,25 +232,179 @@ public abstract class DefaultDBManager {
 		}
 	}
 
-	public synchronized IDBObject storeObject(final IDBObject item) {
+	/**
+	 * Stores the given object.
+	 *
+	 * @param item The object to be stored.
+	 * @return The given object.
+	 * @throws IllegalStateException if the given object was read with a projection and not reloaded before.
+	 * @see #reload(IDBObject)
+	 */
+	public IDBObject storeObject(final IDBObject item) {
+		checkNotPartial(item);
+		lockWrite();
 		try {
-			Dao<IDBObject, ?> createDao = (Dao<IDBObject, ?>) DaoManager.createDao(connection, item.getClass());
+			Dao<IDBObject, ?> createDao = getDao(item.getClass());
 			createDao.createOrUpdate(item);
 		} catch (Exception e) {
 			LoggerFactory.log(Level.SEVERE, this, "Failed to store object " + item, e);
+		} finally {
+			writeLock.unlock();
 		}
 		return item;
 	}
 
+	/**
+	 * Stores all given objects. The objects are written with one transaction for each
+	 * {@link #getBatchCommitInterval()} objects.
+	 *
+	 * @param items The objects to be stored.
+	 * @return <code>true</code> if all objects are stored and <code>false</code> otherwise.
+	 * @throws IllegalStateException if one of the given objects was read with a projection and not reloaded before.
+	 *    None of the objects is stored in this case.
+	 */
+	public boolean storeObjects(final Collection<? extends IDBObject> items) {
+		for (IDBObject item : items) {
+			checkNotPartial(item);
+		}
+		return callBatchTasks(items, new BatchTask() {
+
+			@Override
+			public void run(Dao<IDBObject, ?> dao, IDBObject item) throws SQLException {
+				dao.createOrUpdate(item);
+			}
+		});
+	}
+
+	/**
+	 * Deletes all given objects and the cover thumbnails of these ones which are {@link EbookPropertyItem}s.
+	 *
+	 * @param items The objects to be deleted.
+	 * @return <code>true</code> if all objects are deleted and <code>false</code> otherwise.
+	 * @see #deleteObjects(Collection, boolean)
+	 */
+	public boolean deleteObjects(final Collection<? extends IDBObject> items) {
+		return deleteObjects(items, true);
+	}
+
+	/**
+	 * Deletes all given objects. The objects are deleted with one transaction for each
+	 * {@link #getBatchCommitInterval()} objects.
+	 *
+	 * @param items The objects to be deleted.
+	 * @param deleteCover <code>true</code> if the cover thumbnails of the given {@link EbookPropertyItem}s should also be deleted.
+	 * @return <code>true</code> if all objects are deleted and <code>false</code> otherwise.
+	 */
+	public boolean deleteObjects(final Collection<? extends IDBObject> items, final boolean deleteCover) {
+		boolean success = callBatchTasks(items, new BatchTask() {
+
+			@Override
+			public void run(Dao<IDBObject, ?> dao, IDBObject item) throws SQLException {
+				dao.delete(item);
+			}
+		});
+
+		if(deleteCover) {
+			for (IDBObject item : items) {
+				if (item instanceof EbookPropertyItem) {
+					try {
+						EbookPropertyItemUtils.deleteCoverThumbnail(((EbookPropertyItem) item).getResourceHandler());
+					} catch (Exception e) {
+						LoggerFactory.getLogger(this).log(Level.WARNING, "failed to delete cover of " + item, e);
+					}
+				}
+			}
+		}
+		return success;
+	}
+
+	/**
+	 * Runs the given task for each of the given items. The items are grouped by their class and each group is processed
+	 * with {@link Dao#callBatchTasks(Callable)} which pins a dedicated connection with disabled auto commit.
+	 * A commit happens after each {@link #getBatchCommitInterval()} items.
+	 */
+	private boolean callBatchTasks(final Collection<? extends IDBObject> items, final BatchTask task) {
+		if(items == null || items.isEmpty()) {
+			return true;
+		}
+
+		final Map<Class<?>, List<IDBObject>> itemsByClass = new LinkedHashMap<>();
+		for (IDBObject item : items) {
+			List<IDBObject> classItems = itemsByClass.get(item.getClass());
+			if(classItems == null) {
+				itemsByClass.put(item.getClass(), classItems = new ArrayList<>());
+			}
+			classItems.add(item);
+		}
+
+		boolean success = true;
+		lockWrite();
+		try {
+			for (Map.Entry<Class<?>, List<IDBObject>> entry : itemsByClass.entrySet()) {
+				final List<IDBObject> classItems = entry.getValue();
+				try {
+					final Dao<IDBObject, ?> dao = getDao(entry.getKey());
+					for (int i = 0; i < classItems.size(); i += batchCommitInterval) {
+						final List<IDBObject> chunk = classItems.subList(i, Math.min(i + batchCommitInterval, classItems.size()));
+						dao.callBatchTasks(new Callable<Void>() {
+
+							@Override
+							public Void call() throws Exception {
+								for (IDBObject item : chunk) {
+									task.run(dao, item);
+								}
+								return null;
+							}
+						});
+					}
+				} catch (Exception e) {
+					LoggerFactory.log(Level.SEVERE, this, "Failed to process " + classItems.size() + " objects of " + entry.getKey(), e);
+					success = false;
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+		return success;
+	}
+
+	/**
+	 * @return The number of objects written by the batch methods before a commit happens.
+	 */
+	public int getBatchCommitInterval() {
+		return batchCommitInterval;
+	}
+
+	/**
+	 * Sets the number of objects written by the batch methods before a commit happens.
+	 * @param batchCommitInterval The new commit interval. Values smaller than one are treated as one.
+	 */
+	public void setBatchCommitInterval(int batchCommitInterval) {
+		this.batchCommitInterval = Math.max(1, batchCommitInterval);
+	}
+
+	/**
+	 * Creates a new {@link WriteBehindBuffer} which collects objects to be written later with
+	 * the batch methods. Each background writer should use it's own buffer, so it knows which objects
+	 * are written with a flush. All buffers are flushed automatically if the database is shut down.
+	 */
+	public WriteBehindBuffer createWriteBehindBuffer() {
+		WriteBehindBuffer buffer = new WriteBehindBuffer(this);
+		synchronized (writeBehindBuffers) {
+			writeBehindBuffers.add(buffer);
+		}
+		return buffer;
+	}
+
 	/**
 	 * Gets simply all items from the database which matches to the given class type.
 	 *
 	 * @param cls The class type of the pojos to be fetched
 	 * @return A Iterable which provides the data. Never returns <code>null</code>.
 	 */
-	public synchronized <T> Collection<T> getItems(Class<T> cls) {
+	public <T> Collection<T> getItems(Class<T> cls) {
 		try {
-			Dao<IDBObject, T> createDao = (Dao<IDBObject, T>) DaoManager.createDao(connection, cls);
+			Dao<IDBObject, T> createDao = getDao(cls);
 			List<T> queryForAll = (List<T>) createDao.queryForAll();
 			return queryForAll;
 		} catch (Exception e) {
@@ -124,16 +413,42 @@ public abstract class DefaultDBManager {
 		}
 	}
 
+	/**
+	 * Reads the values of one column for all entities of the given class type without creating the entities.
+	 *
+	 * @param cls The entity class type.
+	 * @param field The name of the field which values should be fetched.
+	 * @return The values of the column. Never returns <code>null</code>.
+	 */
+	public List<String> getColumnValues(Class<?> cls, String field) {
+		try {
+			Dao<?, ?> dao = getDao(cls);
+			GenericRawResults<String[]> results = dao.queryRaw(dao.queryBuilder().selectColumns(field).prepareStatementString());
+			try {
+				List<String> values = new ArrayList<>();
+				for (String[] row : results) {
+					values.add(row[0]);
+				}
+				return values;
+			} finally {
+				results.close();
+			}
+		} catch (Exception e) {
+			LoggerFactory.log(Level.SEVERE, this, "Failed to query " + field + " of " + cls, e);
+			return Collections.emptyList();
+		}
+	}
+
 	/**
 	 * Gets simply all items from the database which matches to the given class type.
 	 *
 	 * @param cls The class type of the pojos to be fetched
 	 * @return A Iterable which provides the data. Never returns <code>null</code>.
 	 */
-	public synchronized <T> List<T> getItems(final Class<T> cls, Where<T, T> where, final List<Field> orderFields,
+	public <T> List<T> getItems(final Class<T> cls, Where<T, T> where, final List<Field> orderFields,
 			final OrderDirection orderDirection) {
 		try {
-			Dao<T, T> createDao = DaoManager.createDao(connection, cls);
+			Dao<T, T> createDao = getDao(cls);
 			QueryBuilder<T, T> queryBuilder = createDao.queryBuilder();
 			if(where != null && !DBUtils.isEmpty(where)) {
 				queryBuilder.setWhere(where);
@@ -154,8 +469,19 @@ public abstract class DefaultDBManager {
 		}
 	}
 
+	public <T> ICloseableList<T> queryFullTextSearch(Class<T> cls, Where<T, T> where, List<String> keywords, List<Field> orderFields,
+			OrderDirection orderDirection) {
+		return queryFullTextSearch(cls, where, keywords, orderFields, orderDirection, null);
+	}
+
+	/**
+	 * Queries the entities matching the given condition and keywords.
+	 *
+	 * @param projectionFields The fields to be read. The order fields and the id are always read. All other fields are left empty
+	 *            and the resulting {@link IProjectableDBObject}s are marked as partial. Use <code>null</code> for reading all fields.
+	 */
 	public abstract <T> ICloseableList<T> queryFullTextSearch(Class<T> cls, Where<T, T> where, List<String> keywords, List<Field> orderFields,
-			OrderDirection orderDirection);
+			OrderDirection orderDirection, List<Field> projectionFields);
 
 	/**
 	 * Updates the given item.
@@ -163,7 +489,7 @@ public abstract class DefaultDBManager {
 	 * @param item
 	 *            {@link IDBObject} instance to be updated.
 	 */
-	public synchronized IDBObject updateObject(final IDBObject item) {
+	public IDBObject updateObject(final IDBObject item) {
 		// store the bytes before deleting
 		final HashMap<Field, byte[]> data = new HashMap<Field, byte[]>();
 
@@ -195,20 +521,16 @@ public abstract class DefaultDBManager {
 	 *            The condition value.
 	 * @return A list with all results.
 	 */
-	public synchronized <T> List<T> getObject(Class<T> class1, final String field, final String value) {
+	public <T> List<T> getObject(Class<T> class1, final String field, final String value) {
 		try {
-			Dao<T, T> createDao = DaoManager.createDao(connection, class1);
-			QueryBuilder<T, T> queryBuilder = createDao.queryBuilder();
-			queryBuilder.where().eq(field, StringUtil.escapeSql(value));
-			List<T> query = createDao.query(queryBuilder.prepare());
-			return query;
+			return getPreparedLookup(class1, field).query(value);
 		} catch(Exception e) {
 			LoggerFactory.getLogger(this).log(Level.WARNING, "getObject for " + class1 + " and field=" + field + " and value=" + value + " failed.", e);
 			return Collections.emptyList();
 		}
 	}
 
-	public synchronized boolean deleteObject(IDBObject item) {
+	public boolean deleteObject(IDBObject item) {
 		return deleteObject(item, true);
 	}
 
@@ -219,9 +541,10 @@ public abstract class DefaultDBManager {
 	 *            The item to be deleted.
 	 * @return
 	 */
-	public synchronized boolean deleteObject(IDBObject item, boolean deleteCover) {
+	public boolean deleteObject(IDBObject item, boolean deleteCover) {
+		lockWrite();
 		try {
-			Dao<IDBObject, ?> createDao = (Dao<IDBObject, ?>) DaoManager.createDao(connection, item.getClass());
+			Dao<IDBObject, ?> createDao = getDao(item.getClass());
 			createDao.delete(item);
 
 			if (item instanceof EbookPropertyItem) {
@@ -230,6 +553,8 @@ public abstract class DefaultDBManager {
 		} catch (Exception e) {
 			LoggerFactory.getLogger(this).log(Level.WARNING, "failed to delete " + item, e);
 			return false;
+		} finally {
+			writeLock.unlock();
 		}
 		return true;
 	}
@@ -253,12 +578,79 @@ public abstract class DefaultDBManager {
 	public IDBObject reload(IDBObject item) {
 		if (item != null) {
 			try {
-				Dao<IDBObject, ?> createDao = (Dao<IDBObject, ?>) DaoManager.createDao(connection, item.getClass());
+				Dao<IDBObject, ?> createDao = getDao(item.getClass());
 				createDao.refresh(item);
+				if(item instanceof IProjectableDBObject) {
+					((IProjectableDBObject) item).setPartial(false);
+				}
 			} catch(Exception e) {
 				LoggerFactory.getLogger(this).log(Level.WARNING, "failed to load " + item, e);
 			}
 		}
 		return item;
 	}
+
+	/**
+	 * Partial objects miss the columns which are not part of the projection and have their text columns cut.
+	 * Storing them would overwrite the complete row with these values.
+	 */
+	static void checkNotPartial(IDBObject item) {
+		if(isPartial(item)) {
+			throw new IllegalStateException("Partial object " + item + " must be reloaded before it can be stored.");
+		}
+	}
+
+	private static boolean isPartial(IDBObject item) {
+		return item instanceof IProjectableDBObject && ((IProjectableDBObject) item).isPartial();
+	}
+
+	private interface BatchTask {
+
+		void run(Dao<IDBObject, ?> dao, IDBObject item) throws SQLException;
+	}
+
+	/**
+	 * A prepared query which looks up the entities of one class by the value of a single field.
+	 * Each concurrent reader gets it's own prepared statement from a small pool, so readers
+	 * never wait for each other.
+	 */
+	private static class PreparedLookup<T> {
+
+		private final Dao<T, ?> dao;
+
+		private final String field;
+
+		private final ConcurrentLinkedQueue<LookupStatement<T>> statements = new ConcurrentLinkedQueue<>();
+
+		PreparedLookup(Dao<T, ?> dao, String field) {
+			this.dao = dao;
+			this.field = field;
+		}
+
+		List<T> query(String value) throws SQLException {
+			LookupStatement<T> statement = statements.poll();
+			if(statement == null) {
+				statement = new LookupStatement<T>(dao, field);
+			}
+			try {
+				statement.value.setValue(value);
+				return dao.query(statement.query);
+			} finally {
+				statements.offer(statement);
+			}
+		}
+	}
+
+	private static class LookupStatement<T> {
+
+		private final SelectArg value = new SelectArg();
+
+		private final PreparedQuery<T> query;
+
+		LookupStatement(Dao<T, ?> dao, String field) throws SQLException {
+			QueryBuilder<T, ?> queryBuilder = dao.queryBuilder();
+			queryBuilder.where().eq(field, value);
+			this.query = queryBuilder.prepare();
+		}
+	}
 }
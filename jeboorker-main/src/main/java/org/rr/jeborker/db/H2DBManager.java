@@ -6,36 +6,28 @@ import static org.rr.jeborker.app.preferences.PreferenceStoreFactory.PREFERENCE_
 import java.lang.reflect.Field;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 
-import org.h2.jdbc.JdbcResultSet;
-import org.h2.result.LocalResult;
 import org.rr.commons.collection.ICloseableList;
 import org.rr.commons.collection.IteratorList;
 import org.rr.commons.log.LoggerFactory;
-import org.rr.commons.utils.ReflectionFailureException;
-import org.rr.commons.utils.ReflectionUtils;
 import org.rr.commons.utils.StringUtil;
 import org.rr.jeborker.Jeboorker;
 import org.rr.jeborker.app.preferences.APreferenceStore;
 import org.rr.jeborker.app.preferences.PreferenceStoreFactory;
 
-import com.j256.ormlite.dao.BaseDaoImpl;
 import com.j256.ormlite.dao.Dao;
-import com.j256.ormlite.dao.DaoManager;
-import com.j256.ormlite.dao.GenericRawResults;
-import com.j256.ormlite.jdbc.JdbcDatabaseResults;
 import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
-import com.j256.ormlite.stmt.RawRowMapperImpl;
 import com.j256.ormlite.stmt.Where;
 import com.j256.ormlite.support.DatabaseConnection;
-import com.j256.ormlite.table.TableInfo;
 import com.j256.ormlite.table.TableUtils;
 
 class H2DBManager extends DefaultDBManager {
 
+	/** Maximum length of text columns read with a projection. */
+	private static final int PROJECTION_TEXT_LENGTH = 1024;
+
 	protected JdbcPooledConnectionSource initDatabase() {
 		PreferenceStoreFactory.getPreferenceStore(PreferenceStoreFactory.SYSTEM_STORE);
 		String configPath = APreferenceStore.getConfigDirectory();
@@ -109,65 +101,38 @@ class H2DBManager extends DefaultDBManager {
 		}
 	}
 
-	public synchronized <T> ICloseableList<T> queryFullTextSearch(Class<T> cls, Where<T, T> where, List<String> keywords, List<Field> orderFields,
-			OrderDirection orderDirection) {
+	public <T> ICloseableList<T> queryFullTextSearch(Class<T> cls, Where<T, T> where, List<String> keywords, List<Field> orderFields,
+			OrderDirection orderDirection, List<Field> projectionFields) {
 		try {
-			StringBuilder sql = new StringBuilder();
+			StringBuilder from = new StringBuilder();
+			StringBuilder condition = new StringBuilder();
 			String tableName = cls.getSimpleName().toUpperCase();
-			sql.append("SELECT A.* FROM ").append(tableName).append(" A ");
+			from.append("FROM ").append(tableName).append(" A ");
 
-			boolean searchTableAppended = appendFulltextQueryTable(keywords, tableName, sql);
+			boolean searchTableAppended = appendFulltextQueryTable(keywords, tableName, from);
 			if (searchTableAppended) {
-				sql.append(" WHERE A.FILE = B.KEYS AND ");
-				boolean queryConditionAppended = appendFulltextQueryCondition(keywords, tableName, sql);
+				condition.append(" A.FILE = B.KEYS AND ");
+				boolean queryConditionAppended = appendFulltextQueryCondition(keywords, tableName, condition);
 				if(queryConditionAppended) {
-					sql.append(" AND ");
+					condition.append(" AND ");
 				}
-			} else {
-				sql.append(" WHERE ");
 			}
 			try {
-				sql.append(where.getStatement()).append(' ');
+				condition.append(where.getStatement()).append(' ');
 			} catch(IllegalStateException e) {
-				sql.append("true = true ");
+				condition.append("true = true ");
 				LoggerFactory.getLogger().log(Level.INFO, "No Where clause", e);
 			}
-			appendOrderFields(orderFields, orderDirection, sql);
-
-			String sqlString = sql.toString();
-
-			Dao<T, T> createDao = DaoManager.createDao(getConnectionPool(), cls);
-			GenericRawResults<T> queryRaw = createDao.queryRaw(sqlString, new RawRowMapperImpl<T, T>(new TableInfo<T, T>(getConnectionPool(),
-					(BaseDaoImpl<T, T>) createDao, cls)), new String[0]);
 
-			Iterator<T> iterator = queryRaw.closeableIterator();
-			int rowCount = getRowCount(iterator);
-
-			return new IteratorList<T>(iterator, rowCount);
+			Dao<T, T> dao = getDao(cls);
+			return new KeysetPagedList<T>(dao, cls, from.toString(), condition.toString(), orderFields, orderDirection, projectionFields,
+					PROJECTION_TEXT_LENGTH);
 		} catch (Exception e) {
 			LoggerFactory.log(Level.SEVERE, this, "Failed to execute query", e);
 			return new IteratorList<T>(new ArrayList<T>(0).iterator(), 0);
 		}
 	}
 
-	private <T> int getRowCount(Iterator<T> iterator) throws ReflectionFailureException {
-		JdbcDatabaseResults results = (JdbcDatabaseResults) ReflectionUtils.getFieldValue(iterator, "results", false);
-		JdbcResultSet resultSet = (JdbcResultSet) ReflectionUtils.getFieldValue(results, "resultSet", false);
-		LocalResult localResult = (LocalResult) ReflectionUtils.getFieldValue(resultSet, "result", false);
-		return localResult.getRowCount();
-	}
-
-	private void appendOrderFields(List<Field> orderFields, OrderDirection orderDirection, StringBuilder sql) {
-		if (!orderFields.isEmpty()) {
-			sql.append("ORDER BY ");
-			for (Field orderField : orderFields) {
-				sql.append("A.").append(orderField.getName()).append(" ").append(orderDirection.getDirectionString()).append(", ");
-			}
-			sql.setLength(sql.length() - 2);
-		}
-		sql.append(' ');
-	}
-
 	private boolean appendFulltextQueryTable(List<String> keywords, String tableName, StringBuilder sql) {
 		if (!keywords.isEmpty()) {
 			sql.append(", (");
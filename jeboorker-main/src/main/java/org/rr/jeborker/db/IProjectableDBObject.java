@@ -0,0 +1,17 @@
+package org.rr.jeborker.db;
+
+/**
+ * Implemented by pojos which can be read with only a part of their fields from the database.
+ * A partial object must be reloaded with {@link DefaultDBManager#reload(IDBObject)} before
+ * it can be stored.
+ */
+public interface IProjectableDBObject extends IDBObject {
+
+	/**
+	 * @return <code>true</code> if only a part of the fields was read from the database and <code>false</code> otherwise.
+	 */
+	public boolean isPartial();
+
+	public void setPartial(boolean partial);
+
+}
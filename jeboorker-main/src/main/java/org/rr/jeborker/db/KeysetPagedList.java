@@ -0,0 +1,369 @@
+package org.rr.jeborker.db;
+
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.rr.commons.collection.PagedList;
+import org.rr.commons.log.LoggerFactory;
+import org.rr.commons.utils.ReflectionUtils;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.RawRowMapper;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.stmt.StatementBuilder.StatementType;
+import com.j256.ormlite.support.CompiledStatement;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.support.DatabaseResults;
+import com.j256.ormlite.table.DatabaseTableConfig;
+
+/**
+ * {@link PagedList} implementation which reads the result of a query page by page. The pages
+ * following an already fetched page are read with a keyset condition on the order columns,
+ * so H2 did not have to skip all preceding rows. Only pages which are not reached by
+ * scrolling are read with an offset.<br>
+ * If projection fields are given, only these columns and the order columns are selected and
+ * the resulting rows are marked as partial.<br>
+ * The position of an element is determined by counting the rows ordered before it's key.
+ */
+class KeysetPagedList<T> extends PagedList<T> {
+
+	private static final int PAGE_SIZE = 100;
+
+	private static final int MAX_PAGES = 10;
+
+	private final Dao<T, T> dao;
+
+	private final Class<T> cls;
+
+	private final String tableName;
+
+	private final String from;
+
+	private final String where;
+
+	private final List<Field> keyFields;
+
+	private final FieldType[] keyFieldTypes;
+
+	private final OrderDirection orderDirection;
+
+	private final String selectColumns;
+
+	private final RawRowMapper<T> rowMapper;
+
+	/**
+	 * @param dao The {@link Dao} which is used to execute the queries and map the rows.
+	 * @param cls The entity class.
+	 * @param from The from part of the query including the <code>FROM</code> keyword. The entity table must have the alias <code>A</code>.
+	 * @param where The condition of the query without the <code>WHERE</code> keyword.
+	 * @param orderFields The fields to be used for ordering the result.
+	 * @param orderDirection The direction for all order fields.
+	 * @param projectionFields The fields to be read or <code>null</code> for reading all fields.
+	 * @param maxTextLength The maximum length of projected text columns which are not used for ordering.
+	 */
+	KeysetPagedList(Dao<T, T> dao, Class<T> cls, String from, String where, List<Field> orderFields, OrderDirection orderDirection,
+			List<Field> projectionFields, int maxTextLength) throws SQLException {
+		super(PAGE_SIZE, MAX_PAGES);
+		this.dao = dao;
+		this.cls = cls;
+		this.tableName = DatabaseTableConfig.extractTableName(cls);
+		this.from = from;
+		this.where = where;
+		this.orderDirection = orderDirection;
+		this.keyFields = createKeyFields(cls, orderFields);
+		this.keyFieldTypes = createKeyFieldTypes(dao.getConnectionSource(), tableName, cls, keyFields);
+		if(projectionFields != null) {
+			this.selectColumns = createSelectColumns(projectionFields, maxTextLength);
+			this.rowMapper = createPartialRowMapper(dao.getRawRowMapper());
+		} else {
+			this.selectColumns = "A.*";
+			this.rowMapper = dao.getRawRowMapper();
+		}
+	}
+
+	/**
+	 * Appends the id field to the order fields, so the key of each row is unique.
+	 */
+	private static List<Field> createKeyFields(Class<?> cls, List<Field> orderFields) {
+		List<Field> result = new ArrayList<>(orderFields);
+		for (Field field : ReflectionUtils.getFieldsByAnnotation(DatabaseField.class, cls)) {
+			if(field.getAnnotation(DatabaseField.class).id() && !result.contains(field)) {
+				result.add(field);
+			}
+		}
+		for (Field field : result) {
+			field.setAccessible(true);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the ORMLite field types of the key fields, which are needed to bind the key values
+	 * of a page with the sql type of their column.
+	 */
+	private static FieldType[] createKeyFieldTypes(ConnectionSource connectionSource, String tableName, Class<?> cls, List<Field> keyFields)
+			throws SQLException {
+		FieldType[] result = new FieldType[keyFields.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = FieldType.createFieldType(connectionSource, tableName, keyFields.get(i), cls);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the select list for the given projection fields and all key fields. Text columns which are not
+	 * part of the key are cut to <code>maxTextLength</code> characters.
+	 */
+	private String createSelectColumns(List<Field> projectionFields, int maxTextLength) {
+		StringBuilder result = new StringBuilder();
+		List<Field> fields = new ArrayList<>(keyFields);
+		for (Field field : projectionFields) {
+			if(!fields.contains(field)) {
+				fields.add(field);
+			}
+		}
+		for (Field field : fields) {
+			if(result.length() > 0) {
+				result.append(", ");
+			}
+			if(field.getType() == String.class && !keyFields.contains(field)) {
+				result.append("LEFT(A.").append(field.getName()).append(", ").append(maxTextLength).append(") ").append(field.getName());
+			} else {
+				result.append("A.").append(field.getName());
+			}
+		}
+		return result.toString();
+	}
+
+	private static <T> RawRowMapper<T> createPartialRowMapper(final RawRowMapper<T> mapper) {
+		return new RawRowMapper<T>() {
+
+			@Override
+			public T mapRow(String[] columnNames, String[] resultColumns) throws SQLException {
+				T row = mapper.mapRow(columnNames, resultColumns);
+				if(row instanceof IProjectableDBObject) {
+					((IProjectableDBObject) row).setPartial(true);
+				}
+				return row;
+			}
+		};
+	}
+
+	@Override
+	protected int fetchSize() {
+		String sql = "SELECT COUNT(*) " + from + " WHERE " + where;
+		try {
+			return (int) dao.queryRawValue(sql);
+		} catch (Exception e) {
+			LoggerFactory.log(Level.SEVERE, this, "Failed to execute query " + sql, e);
+			return 0;
+		}
+	}
+
+	@Override
+	protected List<T> fetchPage(int offset, int limit, Object previousPageKey) {
+		final StringBuilder sql = new StringBuilder();
+		final List<Object[]> arguments = new ArrayList<>();
+		sql.append("SELECT ").append(selectColumns).append(' ').append(from).append(" WHERE ").append(where);
+		if(previousPageKey != null) {
+			sql.append(" AND (");
+			appendKeysetCondition((Object[]) previousPageKey, orderDirection.isAscending(), sql, arguments);
+			sql.append(')');
+		}
+		appendOrder(sql);
+		sql.append(" LIMIT ").append(limit);
+		if(previousPageKey == null) {
+			sql.append(" OFFSET ").append(offset);
+		}
+
+		try {
+			return query(sql.toString(), arguments);
+		} catch (Exception e) {
+			LoggerFactory.log(Level.SEVERE, this, "Failed to execute query " + sql, e);
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * Counts the rows ordered before the key of the given element, which is the index of the element
+	 * if it is part of this list. Only the page containing that index is fetched for verifying it.
+	 */
+	@Override
+	public int indexOf(Object o) {
+		if(!cls.isInstance(o)) {
+			return -1;
+		}
+		final StringBuilder sql = new StringBuilder();
+		final List<Object[]> arguments = new ArrayList<>();
+		sql.append("SELECT COUNT(*) ").append(from).append(" WHERE ").append(where).append(" AND (");
+		appendKeysetCondition((Object[]) createPageKey(cls.cast(o)), !orderDirection.isAscending(), sql, arguments);
+		sql.append(')');
+
+		try {
+			int index = (int) queryCount(sql.toString(), arguments);
+			if(index < size() && o.equals(get(index))) {
+				return index;
+			}
+		} catch (Exception e) {
+			LoggerFactory.log(Level.SEVERE, this, "Failed to execute query " + sql, e);
+		}
+		return -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return indexOf(o);
+	}
+
+	/**
+	 * Executes the given query with typed arguments. The raw query methods of the {@link Dao} only support
+	 * string arguments, which H2 would have to convert for comparing them with the key columns.
+	 * @param arguments The arguments, each as pair of the {@link FieldType} of the column and the value.
+	 */
+	private List<T> query(String sql, List<Object[]> arguments) throws SQLException {
+		ConnectionSource connectionSource = dao.getConnectionSource();
+		DatabaseConnection connection = connectionSource.getReadOnlyConnection(tableName);
+		try {
+			CompiledStatement statement = compileStatement(connection, sql, arguments);
+			try {
+				DatabaseResults results = statement.runQuery(null);
+				try {
+					List<T> rows = new ArrayList<>();
+					String[] columnNames = results.getColumnNames();
+					for (boolean hasRow = results.first(); hasRow; hasRow = results.next()) {
+						String[] values = new String[columnNames.length];
+						for (int i = 0; i < values.length; i++) {
+							values[i] = results.getString(i);
+						}
+						rows.add(rowMapper.mapRow(columnNames, values));
+					}
+					return rows;
+				} finally {
+					results.closeQuietly();
+				}
+			} finally {
+				statement.closeQuietly();
+			}
+		} finally {
+			connectionSource.releaseConnection(connection);
+		}
+	}
+
+	/**
+	 * Executes the given count query with typed arguments.
+	 * @see #query(String, List)
+	 */
+	private long queryCount(String sql, List<Object[]> arguments) throws SQLException {
+		ConnectionSource connectionSource = dao.getConnectionSource();
+		DatabaseConnection connection = connectionSource.getReadOnlyConnection(tableName);
+		try {
+			CompiledStatement statement = compileStatement(connection, sql, arguments);
+			try {
+				DatabaseResults results = statement.runQuery(null);
+				try {
+					return results.first() ? results.getLong(0) : 0;
+				} finally {
+					results.closeQuietly();
+				}
+			} finally {
+				statement.closeQuietly();
+			}
+		} finally {
+			connectionSource.releaseConnection(connection);
+		}
+	}
+
+	private static CompiledStatement compileStatement(DatabaseConnection connection, String sql, List<Object[]> arguments) throws SQLException {
+		CompiledStatement statement = connection.compileStatement(sql, StatementType.SELECT, new FieldType[0],
+				DatabaseConnection.DEFAULT_RESULT_FLAGS, false);
+		for (int i = 0; i < arguments.size(); i++) {
+			FieldType fieldType = (FieldType) arguments.get(i)[0];
+			statement.setObject(i, fieldType.convertJavaFieldToSqlArgValue(arguments.get(i)[1]), fieldType.getSqlType());
+		}
+		return statement;
+	}
+
+	@Override
+	protected Object createPageKey(T lastElement) {
+		Object[] key = new Object[keyFields.size()];
+		for (int i = 0; i < key.length; i++) {
+			try {
+				key[i] = keyFields.get(i).get(lastElement);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException("Failed to read " + keyFields.get(i), e);
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Appends the order by part. <code>NULL</code> values are explicitly sorted low, which is
+	 * also the H2 default, because the keyset condition must know where they are placed.
+	 */
+	private void appendOrder(StringBuilder sql) {
+		sql.append(" ORDER BY ");
+		for (int i = 0; i < keyFields.size(); i++) {
+			if(i > 0) {
+				sql.append(", ");
+			}
+			sql.append("A.").append(keyFields.get(i).getName()).append(' ').append(orderDirection.getDirectionString());
+			sql.append(orderDirection.isAscending() ? " NULLS FIRST" : " NULLS LAST");
+		}
+	}
+
+	/**
+	 * Appends the condition which matches all rows following the row with the given key in the given direction.
+	 * For the key columns <code>c1, c2, c3</code> and ascending direction this is
+	 * <code>c1 &gt; v1 OR (c1 = v1 AND c2 &gt; v2) OR (c1 = v1 AND c2 = v2 AND c3 &gt; v3)</code>.
+	 * The rows ordered before the key are matched by passing the opposite of the order direction.
+	 */
+	private void appendKeysetCondition(Object[] key, boolean ascending, StringBuilder sql, List<Object[]> arguments) {
+		for (int i = 0; i < key.length; i++) {
+			if(i > 0) {
+				sql.append(" OR ");
+			}
+			sql.append('(');
+			for (int j = 0; j < i; j++) {
+				appendEquals(j, key[j], sql, arguments);
+				sql.append(" AND ");
+			}
+			appendFollowing(i, key[i], ascending, sql, arguments);
+			sql.append(')');
+		}
+	}
+
+	private void appendEquals(int keyIndex, Object value, StringBuilder sql, List<Object[]> arguments) {
+		String column = keyFields.get(keyIndex).getName();
+		if(value == null) {
+			sql.append("A.").append(column).append(" IS NULL");
+		} else {
+			sql.append("A.").append(column).append(" = ?");
+			arguments.add(new Object[] {keyFieldTypes[keyIndex], value});
+		}
+	}
+
+	private void appendFollowing(int keyIndex, Object value, boolean ascending, StringBuilder sql, List<Object[]> arguments) {
+		String column = keyFields.get(keyIndex).getName();
+		if(ascending) {
+			if(value == null) {
+				sql.append("A.").append(column).append(" IS NOT NULL");
+			} else {
+				sql.append("A.").append(column).append(" > ?");
+				arguments.add(new Object[] {keyFieldTypes[keyIndex], value});
+			}
+		} else {
+			if(value == null) {
+				sql.append("FALSE");
+			} else {
+				sql.append("(A.").append(column).append(" < ? OR A.").append(column).append(" IS NULL)");
+				arguments.add(new Object[] {keyFieldTypes[keyIndex], value});
+			}
+		}
+	}
+}
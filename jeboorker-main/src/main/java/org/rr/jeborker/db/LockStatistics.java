@@ -0,0 +1,74 @@
+package org.rr.jeborker.db;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the time threads have been waiting for a lock.
+ */
+public class LockStatistics {
+
+	private final String name;
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong waitNanos = new AtomicLong();
+
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	LockStatistics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Records one lock acquisition.
+	 * @param nanos The time in nanoseconds the thread has been waiting for the lock.
+	 */
+	void add(long nanos) {
+		count.incrementAndGet();
+		waitNanos.addAndGet(nanos);
+		long max;
+		while((max = maxWaitNanos.get()) < nanos && !maxWaitNanos.compareAndSet(max, nanos)) {
+			// retry until the maximum is set or another thread has set a larger one
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The number of lock acquisitions.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return The summed up time in milliseconds all threads have been waiting for the lock.
+	 */
+	public long getTotalWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+	}
+
+	/**
+	 * @return The longest time in milliseconds a thread has been waiting for the lock.
+	 */
+	public long getMaxWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+	}
+
+	/**
+	 * @return The average time in milliseconds a thread has been waiting for the lock.
+	 */
+	public double getAverageWaitMillis() {
+		long c = count.get();
+		return c > 0 ? waitNanos.get() / 1000000d / c : 0d;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d locks, %d ms total wait, %.2f ms average wait, %d ms max wait", name, getCount(), getTotalWaitMillis(),
+				getAverageWaitMillis(), getMaxWaitMillis());
+	}
+}
@@ -0,0 +1,130 @@
+package org.rr.jeborker.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Collects objects to be stored or deleted and writes them with the batch methods of the
+ * {@link DefaultDBManager} if {@link #flush()} is invoked. The buffer is bounded, the thread
+ * which adds an object while the buffer holds {@link DefaultDBManager#getBatchCommitInterval()}
+ * objects flushes it before the object is added.<br>
+ * Buffered objects are not visible to queries until they are flushed, so only background writers
+ * which flush periodically should use the buffer.
+ * @see DefaultDBManager#createWriteBehindBuffer()
+ */
+public class WriteBehindBuffer {
+
+	private final DefaultDBManager db;
+
+	private LinkedHashSet<IDBObject> pendingStores = new LinkedHashSet<>();
+
+	private LinkedHashSet<IDBObject> pendingDeletes = new LinkedHashSet<>();
+
+	WriteBehindBuffer(DefaultDBManager db) {
+		this.db = db;
+	}
+
+	/**
+	 * Adds the given object to be stored with the next flush. A previously added
+	 * delete for the same object is discarded.
+	 * @param item The object to be stored.
+	 * @throws IllegalStateException if the given object was read with a projection and not reloaded before.
+	 */
+	public void storeObject(IDBObject item) {
+		storeObjects(Collections.singletonList(item));
+	}
+
+	/**
+	 * Adds the given objects to be stored with the next flush.
+	 * @param items The objects to be stored.
+	 * @throws IllegalStateException if one of the given objects was read with a projection and not reloaded before.
+	 *    None of the objects is added in this case.
+	 * @see #storeObject(IDBObject)
+	 */
+	public void storeObjects(Collection<? extends IDBObject> items) {
+		for (IDBObject item : items) {
+			DefaultDBManager.checkNotPartial(item);
+		}
+		for (IDBObject item : items) {
+			waitForSpace();
+			synchronized (this) {
+				pendingDeletes.remove(item);
+				pendingStores.remove(item);
+				pendingStores.add(item);
+			}
+		}
+	}
+
+	/**
+	 * Adds the given object to be deleted with the next flush. A previously added
+	 * store for the same object is discarded.
+	 * @param item The object to be deleted.
+	 */
+	public void deleteObject(IDBObject item) {
+		deleteObjects(Collections.singletonList(item));
+	}
+
+	/**
+	 * Adds the given objects to be deleted with the next flush.
+	 * @param items The objects to be deleted.
+	 * @see #deleteObject(IDBObject)
+	 */
+	public void deleteObjects(Collection<? extends IDBObject> items) {
+		for (IDBObject item : items) {
+			waitForSpace();
+			synchronized (this) {
+				pendingStores.remove(item);
+				pendingDeletes.add(item);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of objects which are waiting for the next flush.
+	 */
+	public synchronized int size() {
+		return pendingStores.size() + pendingDeletes.size();
+	}
+
+	/**
+	 * Writes all pending objects to the database. The objects are taken from the buffer and written
+	 * while the writer lock of the {@link DefaultDBManager} is held, so concurrent flushes and other
+	 * writes could not overtake them.
+	 * @return <code>true</code> if all objects are written and <code>false</code> otherwise.
+	 */
+	public boolean flush() {
+		final boolean[] success = new boolean[] {true};
+		db.runWithWriteLock(new Runnable() {
+
+			@Override
+			public void run() {
+				final List<IDBObject> stores;
+				final List<IDBObject> deletes;
+				synchronized (WriteBehindBuffer.this) {
+					if(pendingStores.isEmpty() && pendingDeletes.isEmpty()) {
+						return;
+					}
+					stores = new ArrayList<>(pendingStores);
+					deletes = new ArrayList<>(pendingDeletes);
+					pendingStores = new LinkedHashSet<>();
+					pendingDeletes = new LinkedHashSet<>();
+				}
+				success[0] &= db.deleteObjects(deletes);
+				success[0] &= db.storeObjects(stores);
+			}
+		});
+		return success[0];
+	}
+
+	/**
+	 * Flushes the buffer if it is full.
+	 */
+	private void waitForSpace() {
+		if(size() >= db.getBatchCommitInterval()) {
+			flush();
+		}
+	}
+}
@@ -19,12 +19,13 @@ import org.rr.commons.utils.ReflectionFailureException;
 import org.rr.commons.utils.ReflectionUtils;
 import org.rr.commons.utils.StringUtil;
 import org.rr.jeborker.db.IDBObject;
+import org.rr.jeborker.db.IProjectableDBObject;
 
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
 
 @DatabaseTable(daoClass = EbookPropertyItemDaoImpl.class)
-public class EbookPropertyItem implements IDBObject, Serializable {
+public class EbookPropertyItem implements IProjectableDBObject, Serializable {
 	
 	private static final long serialVersionUID = -4301328577306625467L;
 	
@@ -194,6 +195,11 @@ public class EbookPropertyItem implements IDBObject, Serializable {
 	@DatabaseField(index = true)
 	private long timestamp = 0l;
 	
+	/**
+	 * Tells if only the columns needed for the list view have been read from the database.
+	 */
+	private transient boolean partial = false;
+	
 	public EbookPropertyItem() {
 		super();
 	}
@@ -468,4 +474,14 @@ public class EbookPropertyItem implements IDBObject, Serializable {
 	public void setTimestamp(long timestamp) {
 		this.timestamp = timestamp;
 	}
+
+	@Override
+	public boolean isPartial() {
+		return partial;
+	}
+
+	@Override
+	public void setPartial(boolean partial) {
+		this.partial = partial;
+	}
 }
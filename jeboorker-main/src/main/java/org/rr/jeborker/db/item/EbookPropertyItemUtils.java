@@ -1,5 +1,6 @@
 package org.rr.jeborker.db.item;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -11,8 +12,9 @@ import java.util.List;
 import java.util.UUID;
 import java.util.logging.Level;
 
-import org.apache.jempbox.xmp.Thumbnail;
+import org.apache.commons.io.FileUtils;
 import org.rr.commons.collection.TransformValueList;
+import org.rr.commons.io.PackedDataStore;
 import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.mufs.IResourceHandler;
 import org.rr.commons.mufs.MimeUtils;
@@ -23,27 +25,26 @@ import org.rr.jeborker.app.preferences.APreferenceStore;
 import org.rr.jeborker.app.preferences.PreferenceStoreFactory;
 import org.rr.jeborker.db.DefaultDBManager;
 import org.rr.jeborker.gui.MainController;
+import org.rr.jeborker.gui.cell.CoverThumbnailCache;
 import org.rr.jeborker.metadata.IMetadataReader;
 import org.rr.jeborker.metadata.MetadataHandlerFactory;
 import org.rr.jeborker.metadata.MetadataProperty;
 import org.rr.pm.image.IImageProvider;
 import org.rr.pm.image.ImageProviderFactory;
 import org.rr.pm.image.ImageUtils;
+import org.rr.pm.image.ThumbnailDecoder;
 
 public class EbookPropertyItemUtils {
 
 	private static final String ALL_BOOK_PATH_COLLECTION = "allBookPathCollection";
+
+	/** Height of the cover thumbnails stored for each ebook. */
+	private static final int THUMBNAIL_HEIGHT = 100;
+
+	/** Folder of the thumbnail files used by previous versions. They're migrated into the {@link #thumbnailStore}. */
 	private static final String thumbnailFolder = APreferenceStore.getConfigDirectory() + "thumbs/";
-	static {
-		IResourceHandler thumbnailFolderResource = ResourceHandlerFactory.getResourceHandler(thumbnailFolder);
-		if(!thumbnailFolderResource.exists()) {
-			try {
-				thumbnailFolderResource.mkdirs();
-			} catch (IOException e) {
-				LoggerFactory.getLogger().log(Level.SEVERE, "Could not create thumbnail folder " + thumbnailFolder, e);
-			}
-		}
-	}
+	private static final String thumbnailStoreFolder = APreferenceStore.getConfigDirectory() + "thumbnails/";
+	private static PackedDataStore thumbnailStore;
 
 	/**
 	 * Reloads the given item from the database.
@@ -55,6 +56,19 @@ public class EbookPropertyItemUtils {
 		return refreshed;
 	}
 
+	/**
+	 * Reads all fields of the given item from the database if it was read with a projection before.
+	 * @param item Item to be completed.
+	 * @return The given item.
+	 * @see EbookPropertyItem#isPartial()
+	 */
+	public static EbookPropertyItem hydrateEbookPropertyItem(EbookPropertyItem item) {
+		if(item != null && item.isPartial()) {
+			DefaultDBManager.getInstance().reload(item);
+		}
+		return item;
+	}
+
 	/**
 	 * Get the {@link EbookPropertyItem}s for the given {@link IResourceHandler}.
 	 * @param resourceLoader The {@link IResourceHandler} instance where the {@link EbookPropertyItem} should be fetched from the database.
@@ -111,16 +125,18 @@ public class EbookPropertyItemUtils {
 	}
 
 	/**
-	 * Refreshed the data of the given {@link EbookPropertyItem} by rereading it's metadata.
+	 * Refreshed the data of the given {@link EbookPropertyItem} by rereading it's metadata. A partial item
+	 * is completed from the database before, so it can be stored afterwards.
 	 * @param item The item to be refreshed.
 	 * @param resource The resource file for the {@link EbookPropertyItem}. it's optional and can be null.
 	 */
 	public static void refreshEbookPropertyItem(final EbookPropertyItem item, IResourceHandler resource, boolean refreshCover) {
+		hydrateEbookPropertyItem(item);
 		if(resource == null) {
 			resource = ResourceHandlerFactory.getResourceHandler(item.getFile());
 		}
 
-		IMetadataReader reader = MetadataHandlerFactory.getReader(resource);
+		IMetadataReader reader = MetadataHandlerFactory.getHeaderReader(resource);
 		if(reader != null) {
 			final List<MetadataProperty> metadataProperties = reader.readMetadata();
 			reader.fillEbookPropertyItem(metadataProperties, item);
@@ -159,7 +175,7 @@ public class EbookPropertyItemUtils {
 			if(imageData != null && imageData.length > 0) {
 				IImageProvider imageProvider = ImageProviderFactory.getImageProvider(ResourceHandlerFactory.getVirtualResourceHandler(UUID.randomUUID().toString(), imageData));
 				if(imageProvider != null) {
-					BufferedImage thumbnailImage = ImageUtils.scaleToHeight(imageProvider.getImage(), 100);
+					BufferedImage thumbnailImage = ImageUtils.scaleToHeight(ThumbnailDecoder.decode(imageProvider, new Dimension(0, THUMBNAIL_HEIGHT)), THUMBNAIL_HEIGHT);
 
 					//much faster cropping the thumbnail than the original sized cover image.
 					BufferedImage cropedImage = ImageUtils.crop(thumbnailImage);
@@ -181,16 +197,88 @@ public class EbookPropertyItemUtils {
 		}
 	}
 
+	/**
+	 * Get the store containing the cover thumbnails of all ebooks. The store is opened with the first invocation.
+	 */
+	private static synchronized PackedDataStore getThumbnailStore() throws IOException {
+		if(thumbnailStore == null) {
+			thumbnailStore = new PackedDataStore(new File(thumbnailStoreFolder));
+		}
+		return thumbnailStore;
+	}
+
+	/**
+	 * Moves the thumbnail files of previous versions into the thumbnail store. The thumbnail files are named with
+	 * a hash of the ebook path, so only the thumbnails of the ebooks in the database could be migrated. Thumbnails
+	 * which are already in the store are newer and not replaced. The thumbnail folder is deleted if all thumbnails
+	 * are migrated, so this method should be invoked in the background each time the application starts.
+	 */
+	public static void migrateThumbnailFolder() {
+		final File folder = new File(thumbnailFolder);
+		if(folder.isDirectory()) {
+			try {
+				final PackedDataStore store = getThumbnailStore();
+				LoggerFactory.getLogger().log(Level.INFO, "Migrating thumbnails from " + folder + " to " + store.getFolder());
+				final List<String> files = DefaultDBManager.getInstance().getColumnValues(EbookPropertyItem.class, "file");
+				int count = 0;
+				for (String file : files) {
+					final String key = ResourceHandlerFactory.getResourceHandler(file).toString();
+					final File thumbnail = new File(folder, UUID.nameUUIDFromBytes(key.getBytes()) + ".jpg");
+					if(thumbnail.isFile() && !store.contains(key)) {
+						store.put(key, FileUtils.readFileToByteArray(thumbnail));
+						count++;
+					}
+				}
+				store.flush();
+				FileUtils.deleteDirectory(folder);
+				LoggerFactory.getLogger().log(Level.INFO, count + " thumbnails migrated.");
+			} catch(IOException e) {
+				LoggerFactory.getLogger().log(Level.WARNING, "Failed to migrate thumbnails from " + folder, e);
+			}
+		}
+	}
+
+	/**
+	 * Writes and closes the thumbnail store. Should be invoked before the application terminates.
+	 */
+	public static synchronized void closeThumbnailStore() {
+		if(thumbnailStore != null) {
+			try {
+				if(thumbnailStore.isCompactionNeeded()) {
+					thumbnailStore.compact();
+				}
+				thumbnailStore.close();
+			} catch (IOException e) {
+				LoggerFactory.getLogger().log(Level.WARNING, "Failed to close thumbnail store " + thumbnailStore.getFolder(), e);
+			}
+			thumbnailStore = null;
+		}
+	}
+
 	/**
 	 * Deletes the cover thumbnail for the given ebook {@link IResourceHandler}.
 	 * @param ebookResource The ebook where the cover thumbnail should be deleted for.
 	 * @throws IOException
 	 */
 	public static void deleteCoverThumbnail(final IResourceHandler ebookResource) throws IOException {
-		IResourceHandler thumbnailResourceLoader = getCoverThumbnailResourceHandler(ebookResource);
-		if(thumbnailResourceLoader.exists()) {
-			thumbnailResourceLoader.delete();
+		getThumbnailStore().delete(ebookResource.toString());
+		CoverThumbnailCache.getInstance().invalidate(ebookResource);
+	}
+
+	/**
+	 * Deletes the cover thumbnails of all ebooks below the given base path.
+	 * @param basePath The base path where the cover thumbnails should be deleted for.
+	 * @return The number of deleted thumbnails.
+	 * @throws IOException
+	 */
+	public static int deleteCoverThumbnails(final String basePath) throws IOException {
+		final String prefix = basePath.endsWith(File.separator) ? basePath : basePath + File.separator;
+		final PackedDataStore store = getThumbnailStore();
+		final int count = store.deleteByPrefix(prefix);
+		if(store.isCompactionNeeded()) {
+			store.compact();
 		}
+		return count;
 	}
 
 	/**
@@ -201,8 +289,8 @@ public class EbookPropertyItemUtils {
 	 */
 	private static void setCoverThumbnail(byte[] thumbnailData, IResourceHandler ebookResource) throws IOException {
 		if(thumbnailData != null && thumbnailData.length != 0) {
-			IResourceHandler thumbnailResourceLoader = getCoverThumbnailResourceHandler(ebookResource);
-			thumbnailResourceLoader.setContent(thumbnailData);
+			getThumbnailStore().put(ebookResource.toString(), thumbnailData);
+			CoverThumbnailCache.getInstance().invalidate(ebookResource);
 		}
 	}
 
@@ -212,41 +300,14 @@ public class EbookPropertyItemUtils {
 	 * @return The desired cover thumbnail bytes or <code>null</code> if no cover is stored for the given ebook {@link IResourceHandler}.
 	 */
 	public static byte[] getCoverThumbnailBytes(final IResourceHandler ebookResource) {
-		IResourceHandler coverThumbnail = getCoverThumbnail(ebookResource);
-		if(coverThumbnail != null) {
-			try {
-				return coverThumbnail.getContent();
-			} catch (IOException e) {
-				LoggerFactory.getLogger().log(Level.WARNING, "Failed to load cover thumbnail for " + ebookResource.getName(), e);
-			}
-		}
-		return null;
-	}
-
-	/**
-	 * Get the cover thumbnail {@link IResourceHandler} for the given ebook {@link IResourceHandler}.
-	 * @param ebookResource The ebook {@link IResourceHandler} where the {@link Thumbnail} should be fetched for.
-	 * @return The desired {@link IResourceHandler} instance for the cover thumbnail. Returns <code>null</code> if
-	 *   no cover is stored for the given ebook {@link IResourceHandler}.
-	 */
-	private static IResourceHandler getCoverThumbnail(final IResourceHandler ebookResource) {
-		IResourceHandler coverThumbnailResourceHandler = getCoverThumbnailResourceHandler(ebookResource);
-		if(coverThumbnailResourceHandler.exists()) {
-			return coverThumbnailResourceHandler;
+		try {
+			return getThumbnailStore().get(ebookResource.toString());
+		} catch (IOException e) {
+			LoggerFactory.getLogger().log(Level.WARNING, "Failed to load cover thumbnail for " + ebookResource.getName(), e);
 		}
 		return null;
 	}
 
-	/**
-	 * Get the {@link IResourceHandler} pointing to the cover thumbnail for the given ebook {@link IResourceHandler}.
-	 * @param ebookResource The ebook {@link IResourceHandler} where the cover thumbnail {@link IResourceHandler} should be fetched for.
-	 * @return The desired cover thumbnail {@link IResourceHandler} instance.
-	 */
-	private static IResourceHandler getCoverThumbnailResourceHandler(IResourceHandler ebookResource) {
-		String thumbnail = thumbnailFolder + UUID.nameUUIDFromBytes(ebookResource.toString().getBytes()) + ".jpg";
-		return ResourceHandlerFactory.getResourceHandler(thumbnail);
-	}
-
 	/**
 	 * Renames the cover thumbnail for the given source resource to one which matches to the given target {@link IResourceHandler}.
 	 * This always happens if the file name changes.
@@ -254,15 +315,11 @@ public class EbookPropertyItemUtils {
 	 * @param target The target {@link IResourceHandler} for the cover thumbnail.
 	 */
 	public static void renameCoverThumbnail(IResourceHandler source, IResourceHandler target) {
-		IResourceHandler sourceThumbnailResourceHandler = getCoverThumbnailResourceHandler(source);
-		if(sourceThumbnailResourceHandler.exists()) {
-			IResourceHandler targetThumbnailResourceHandler = getCoverThumbnailResourceHandler(target);
-			try {
-				sourceThumbnailResourceHandler.moveTo(targetThumbnailResourceHandler, true);
-			} catch (IOException e) {
-				LoggerFactory.getLogger().log(Level.WARNING,
-						String.format("Failed to rename thumbnail from %s to %s", sourceThumbnailResourceHandler, targetThumbnailResourceHandler), e);
-			}
+		try {
+			getThumbnailStore().rename(source.toString(), target.toString());
+			CoverThumbnailCache.getInstance().invalidate(target);
+		} catch (IOException e) {
+			LoggerFactory.getLogger().log(Level.WARNING, String.format("Failed to rename thumbnail from %s to %s", source, target), e);
 		}
 	}
 
@@ -26,6 +26,7 @@ import org.rr.commons.swing.SwingUtils;
 import org.rr.commons.swing.dialogs.JDirectoryChooser;
 import org.rr.commons.utils.CommonUtils;
 import org.rr.commons.utils.StringUtil;
+import org.rr.jeborker.Jeboorker;
 import org.rr.jeborker.app.BasePathList;
 import org.rr.jeborker.app.FileWatchService;
 import org.rr.jeborker.app.preferences.APreferenceStore;
@@ -170,6 +171,14 @@ public class MainController {
 		BasePathList basePath = preferenceStore.getBasePath();
 		FileWatchService.addWatchPath(basePath);
 		FileWatchService.addWatchPath(EbookPropertyItemUtils.fetchPathElements());
+
+		Jeboorker.APPLICATION_THREAD_POOL.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				EbookPropertyItemUtils.migrateThumbnailFolder();
+			}
+		});
 	}
 
 	/**
@@ -10,6 +10,7 @@ import javax.swing.table.TableModel;
 
 import org.rr.commons.swing.components.JRTable;
 import org.rr.jeborker.db.item.EbookPropertyItem;
+import org.rr.jeborker.db.item.EbookPropertyItemUtils;
 import org.rr.jeborker.gui.model.EbookPropertyDBTableModel;
 import org.rr.jeborker.gui.model.ReloadableTableModel;
 
@@ -141,7 +142,7 @@ public class MainViewEbookTableComponentHandler {
 		final ArrayList<EbookPropertyItem> result = new ArrayList<>(selectedRows.length);
 		for (int i = 0; i < selectedRows.length; i++) {
 			EbookPropertyItem valueAt = (EbookPropertyItem) getModel().getValueAt(selectedRows[i], 0);
-			result.add(valueAt);
+			result.add(EbookPropertyItemUtils.hydrateEbookPropertyItem(valueAt));
 		}
 
 		return result;
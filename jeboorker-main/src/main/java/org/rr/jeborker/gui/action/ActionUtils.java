@@ -56,6 +56,7 @@ public class ActionUtils {
 	static void quit() {
 		MainController.getController().dispose();
 		FileWatchService.shutdownWatchService();
+		EbookPropertyItemUtils.closeThumbnailStore();
 		try {
 			DefaultDBManager.getInstance().shutdown();
 		} catch(Exception e1) {
@@ -104,6 +105,7 @@ public class ActionUtils {
 			ActionUtils.removeEbookPropertyItem(item);
 			return;
 		} else {
+			EbookPropertyItemUtils.hydrateEbookPropertyItem(item);
 			EbookPropertyItemUtils.refreshEbookPropertyItem(item, refreshResourceHandler, true);
 			DefaultDBManager.getInstance().updateObject(item);
 
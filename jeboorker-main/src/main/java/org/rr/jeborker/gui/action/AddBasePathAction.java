@@ -2,7 +2,7 @@ package org.rr.jeborker.gui.action;
 
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
@@ -13,9 +13,8 @@ import javax.swing.Action;
 import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.mufs.IResourceHandler;
 import org.rr.commons.mufs.ResourceHandlerFactory;
-import org.rr.commons.mufs.ResourceHandlerUtils;
-import org.rr.commons.mufs.ResourceNameFilter;
 import org.rr.commons.swing.SwingUtils;
+import org.rr.jeborker.app.EbookImportPipeline;
 import org.rr.jeborker.app.preferences.APreferenceStore;
 import org.rr.jeborker.app.preferences.PreferenceStoreFactory;
 import org.rr.jeborker.db.item.EbookPropertyItem;
@@ -121,25 +120,24 @@ class AddBasePathAction extends AbstractAction {
 	 * @param baseFolder The folder where the ebook search should be started.
 	 */
 	static int readEbookFilesToDB(final IResourceHandler baseFolder) {
-		final HashSet<String> path = new HashSet<>();
-		int count = ResourceHandlerUtils.readAllFilesFromBasePath(baseFolder, new ResourceNameFilter() {
-			
+		final EbookImportPipeline pipeline = new EbookImportPipeline(new EbookImportPipeline.ImportHandler() {
+
+			@Override
+			public List<EbookPropertyItem> process(IResourceHandler resource) throws Exception {
+				return Collections.singletonList(EbookPropertyItemUtils.createEbookPropertyItem(resource, baseFolder));
+			}
+
 			@Override
-			public boolean accept(IResourceHandler resource) {
-				if(resource.isFileResource() && ActionUtils.isSupportedEbookFormat(resource, true)) {
-					try {
-						final EbookPropertyItem item = EbookPropertyItemUtils.createEbookPropertyItem(resource, baseFolder);
-						ActionUtils.addAndStoreEbookPropertyItem(item);
-						path.add(resource.getParentResource().toString());
-						return true;
-					} catch(Throwable e) {
-						LoggerFactory.getLogger(this).log(Level.SEVERE, "Failed adding resource " + resource, e);
-					}
+			public void stored(List<EbookPropertyItem> items) {
+				for (EbookPropertyItem item : items) {
+					ActionUtils.addEbookPropertyItem(item, -1);
 				}
-				return false;
+				EbookPropertyItem lastItem = items.get(items.size() - 1);
+				MainController.getController().getProgressMonitor().setMessage(Bundle.getFormattedString("AddBasePathAction.add", lastItem.getFileName()));
 			}
 		});
-		EbookPropertyItemUtils.storePathElements(path);
+		int count = pipeline.run(baseFolder);
+		EbookPropertyItemUtils.storePathElements(pipeline.getPathElements());
 		return count;
 	}
 
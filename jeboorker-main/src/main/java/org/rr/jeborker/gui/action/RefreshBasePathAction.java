@@ -3,7 +3,7 @@ package org.rr.jeborker.gui.action;
 import java.awt.event.ActionEvent;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 
@@ -13,8 +13,7 @@ import javax.swing.Action;
 import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.mufs.IResourceHandler;
 import org.rr.commons.mufs.ResourceHandlerFactory;
-import org.rr.commons.mufs.ResourceHandlerUtils;
-import org.rr.commons.mufs.ResourceNameFilter;
+import org.rr.jeborker.app.EbookImportPipeline;
 import org.rr.jeborker.app.preferences.APreferenceStore;
 import org.rr.jeborker.app.preferences.PreferenceStoreFactory;
 import org.rr.jeborker.db.DefaultDBManager;
@@ -94,12 +93,14 @@ class RefreshBasePathAction extends AbstractAction {
 	private static void removeDeletedFiles(final IResourceHandler basePath) {
 		final DefaultDBManager db = DefaultDBManager.getInstance();
 		final ArrayList<EbookPropertyItem> itemsToTest = RemoveBasePathAction.getItemsByBasePath(basePath.toString());
+		final List<EbookPropertyItem> itemsToDelete = new ArrayList<>();
 		for(EbookPropertyItem item : itemsToTest) {
 			final IResourceHandler itemResourceHandler = item.getResourceHandler();
 			if(!itemResourceHandler.exists()) {
-				db.deleteObject(item);
+				itemsToDelete.add(item);
 			}
 		}
+		db.deleteObjects(itemsToDelete);
 	}
 	
 	/**
@@ -107,41 +108,35 @@ class RefreshBasePathAction extends AbstractAction {
 	 * @param basePath The folder where the ebook search should be started.
 	 */
 	private void refreshEbookFiles(final IResourceHandler basePath) {
-		final DefaultDBManager db = DefaultDBManager.getInstance();
-		final HashSet<String> path = new HashSet<>();
 		final Collection<String> oldPathElements = EbookPropertyItemUtils.fetchPathElements();
-		ResourceHandlerUtils.readAllFilesFromBasePath(basePath, new ResourceNameFilter() {
-			
+		final EbookImportPipeline pipeline = new EbookImportPipeline(new EbookImportPipeline.ImportHandler() {
+
 			@Override
-			public boolean accept(IResourceHandler resourceLoader) {
-				if(resourceLoader.isFileResource() && ActionUtils.isSupportedEbookFormat(resourceLoader, true)) {
-					try {
-						List<EbookPropertyItem> ebookPropertyItems = EbookPropertyItemUtils.getEbookPropertyItemByResource(resourceLoader);
-						if(!ebookPropertyItems.isEmpty()) {
-							for(EbookPropertyItem item : ebookPropertyItems) {
-								long fileTimeStamp = resourceLoader.getModifiedAt().getTime();
-								if(item.getTimestamp() == 0 || item.getTimestamp() != fileTimeStamp) {
-									//file has changed
-									EbookPropertyItemUtils.refreshEbookPropertyItem(item, resourceLoader, true);
-									db.updateObject(item);
-								}
-							}
-						} else {
-							//new ebook
-							final EbookPropertyItem item = EbookPropertyItemUtils.createEbookPropertyItem(resourceLoader, basePath);
-							db.storeObject(item);
+			public List<EbookPropertyItem> process(IResourceHandler resourceLoader) throws Exception {
+				List<EbookPropertyItem> ebookPropertyItems = EbookPropertyItemUtils.getEbookPropertyItemByResource(resourceLoader);
+				if(!ebookPropertyItems.isEmpty()) {
+					List<EbookPropertyItem> changedItems = new ArrayList<>(ebookPropertyItems.size());
+					for(EbookPropertyItem item : ebookPropertyItems) {
+						long fileTimeStamp = resourceLoader.getModifiedAt().getTime();
+						if(item.getTimestamp() == 0 || item.getTimestamp() != fileTimeStamp) {
+							//file has changed
+							EbookPropertyItemUtils.refreshEbookPropertyItem(item, resourceLoader, true);
+							changedItems.add(item);
 						}
-						path.add(resourceLoader.getParentResource().toString());
-						return true;
-					} catch(Throwable e) {
-						LoggerFactory.getLogger(this).log(Level.SEVERE, "Failed adding resource " + resourceLoader, e);
 					}
+					return changedItems;
 				}
-				return false;
+				//new ebook
+				return Collections.singletonList(EbookPropertyItemUtils.createEbookPropertyItem(resourceLoader, basePath));
+			}
+
+			@Override
+			public void stored(List<EbookPropertyItem> items) {
 			}
 		});
-		EbookPropertyItemUtils.storePathElements(path);
-		reloadBasePathTree(path, oldPathElements);
+		pipeline.run(basePath);
+		EbookPropertyItemUtils.storePathElements(pipeline.getPathElements());
+		reloadBasePathTree(pipeline.getPathElements(), oldPathElements);
 	}
 
 	/**
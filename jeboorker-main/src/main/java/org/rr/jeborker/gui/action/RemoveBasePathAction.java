@@ -17,6 +17,7 @@ import org.rr.jeborker.app.preferences.APreferenceStore;
 import org.rr.jeborker.app.preferences.PreferenceStoreFactory;
 import org.rr.jeborker.db.DefaultDBManager;
 import org.rr.jeborker.db.item.EbookPropertyItem;
+import org.rr.jeborker.db.item.EbookPropertyItemUtils;
 import org.rr.jeborker.gui.MainController;
 import org.rr.jeborker.gui.MainMenuBarController;
 import org.rr.jeborker.gui.MainMonitor;
@@ -69,6 +70,7 @@ class RemoveBasePathAction extends AbstractAction {
 			try {
 				ArrayList<EbookPropertyItem> itemsToRemove = getItemsByBasePath(path);
 				removeAllEbookPropertyItems(itemsToRemove);
+				EbookPropertyItemUtils.deleteCoverThumbnails(path);
 			} catch(Exception ex) {
 				LoggerFactory.logWarning(RemoveBasePathAction.class, "Error while removing ebooks from catalog", ex);
 			}
@@ -106,7 +108,7 @@ class RemoveBasePathAction extends AbstractAction {
 	}
 	
 	/**
-	 * Deletes the given items from the database and the view.
+	 * Deletes the given items from the database and the view. The cover thumbnails are not deleted.
 	 * @param items The items to be deleted.
 	 */
 	static void removeAllEbookPropertyItems(final List<EbookPropertyItem> items) {
@@ -115,9 +117,7 @@ class RemoveBasePathAction extends AbstractAction {
 		
 		progressMonitor.setMessage(Bundle.getString("RemoveBasePathAction.deletingMany"));
 		
-		for(EbookPropertyItem item : items) {
-			DefaultDBManager.getInstance().deleteObject(item);
-		}
+		DefaultDBManager.getInstance().deleteObjects(items, false);
 		SwingUtilities.invokeLater(new Runnable() {
 			
 			@Override
@@ -0,0 +1,264 @@
+package org.rr.jeborker.gui.cell;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.ImageIcon;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+
+import org.apache.commons.io.FilenameUtils;
+import org.rr.commons.log.LoggerFactory;
+import org.rr.commons.mufs.IResourceHandler;
+import org.rr.commons.mufs.ResourceHandlerFactory;
+import org.rr.jeborker.db.item.EbookPropertyItem;
+import org.rr.jeborker.db.item.EbookPropertyItemUtils;
+import org.rr.pm.image.IImageProvider;
+import org.rr.pm.image.ImageProviderFactory;
+import org.rr.pm.image.ImageUtils;
+
+/**
+ * Provides the scaled cover thumbnails shown by the {@link EbookTableCellRenderer}. The thumbnails are
+ * read and scaled by background workers and the ready to paint images are kept in memory until the
+ * size limit of the cache is reached. Thumbnails are identified by the ebook file and it's timestamp,
+ * so a changed ebook gets a new thumbnail. A cover which is changed without changing the timestamp
+ * must be {@link #invalidate(IResourceHandler) invalidated}.<br>
+ * As long as a thumbnail is not loaded, a placeholder is returned and the visible part of the table is
+ * repainted when the thumbnail gets ready. The most recently requested thumbnails are loaded first.
+ */
+public class CoverThumbnailCache {
+
+	/** Maximum memory used by the cached thumbnail images. */
+	private static final long MAX_CACHE_BYTES = 32L * 1024L * 1024L;
+
+	/** Memory accounted for an ebook without thumbnail. */
+	private static final long EMPTY_ENTRY_BYTES = 64;
+
+	private static final int WORKER_COUNT = 2;
+
+	/** Maximum number of waiting load requests. The oldest ones are dropped if more are requested. */
+	private static final int MAX_PENDING = 256;
+
+	private static final CoverThumbnailCache INSTANCE = new CoverThumbnailCache();
+
+	/** Marks ebooks which have no thumbnail. */
+	private static final ImageIcon NO_THUMBNAIL = new ImageIcon();
+
+	private final LinkedHashMap<String, ImageIcon> thumbnails = new LinkedHashMap<>(256, 0.75f, true);
+
+	private long cachedBytes = 0;
+
+	/** Keys of the thumbnails currently loaded. Rows could be moved while loading, so they're not remembered. */
+	private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final LinkedBlockingDeque<Runnable> workQueue = new LinkedBlockingDeque<Runnable>() {
+
+		private static final long serialVersionUID = -1493211734521830422L;
+
+		@Override
+		public boolean offer(Runnable e) {
+			return offerFirst(e);
+		}
+	};
+
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 60L, TimeUnit.SECONDS, workQueue,
+			new ThreadFactory() {
+
+				private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "CoverThumbnailLoader-" + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			});
+
+	private CoverThumbnailCache() {
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	public static CoverThumbnailCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Get the thumbnail for the given item. If the thumbnail is not loaded, it will be loaded in the
+	 * background and the visible part of the table is repainted when it's ready.
+	 * @param table The table which shows the item.
+	 * @param item The item which thumbnail should be fetched.
+	 * @param dimension The dimension of the thumbnail.
+	 * @param placeholder The icon to be returned if the thumbnail is not loaded yet.
+	 * @return The thumbnail, the placeholder or <code>null</code> if the item has no thumbnail.
+	 */
+	ImageIcon getThumbnail(JTable table, EbookPropertyItem item, Dimension dimension, ImageIcon placeholder) {
+		final String key = createKey(item, dimension);
+		final ImageIcon thumbnail = get(key);
+		if(thumbnail == NO_THUMBNAIL) {
+			return null;
+		} else if(thumbnail != null) {
+			return thumbnail;
+		}
+		load(key, table, item, dimension);
+		return placeholder;
+	}
+
+	/**
+	 * Loads the thumbnail for the given item in the background if it's not already cached.
+	 */
+	void prefetch(JTable table, EbookPropertyItem item, Dimension dimension) {
+		final String key = createKey(item, dimension);
+		if(get(key) == null) {
+			load(key, table, item, dimension);
+		}
+	}
+
+	/**
+	 * Removes the thumbnails of the given ebook in all sizes, so they're loaded again the next time
+	 * they're requested. Must be invoked if the cover thumbnail of the ebook is changed.
+	 */
+	public synchronized void invalidate(IResourceHandler ebookResource) {
+		final String prefix = getFileKey(ebookResource.toString()) + '|';
+		for (Iterator<Map.Entry<String, ImageIcon>> iterator = thumbnails.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry<String, ImageIcon> entry = iterator.next();
+			if(entry.getKey().startsWith(prefix)) {
+				cachedBytes -= getBytes(entry.getValue());
+				iterator.remove();
+			}
+		}
+		for (Iterator<String> iterator = pending.iterator(); iterator.hasNext();) {
+			if(iterator.next().startsWith(prefix)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return The number of cached thumbnails.
+	 */
+	synchronized int size() {
+		return thumbnails.size();
+	}
+
+	/**
+	 * Removes all cached thumbnails.
+	 */
+	synchronized void clear() {
+		thumbnails.clear();
+		cachedBytes = 0;
+	}
+
+	private static String createKey(EbookPropertyItem item, Dimension dimension) {
+		return getFileKey(item.getFile()) + '|' + item.getTimestamp() + '|' + dimension.width + 'x' + dimension.height;
+	}
+
+	private static String getFileKey(String file) {
+		return FilenameUtils.separatorsToUnix(file);
+	}
+
+	private synchronized ImageIcon get(String key) {
+		return thumbnails.get(key);
+	}
+
+	private synchronized void put(String key, ImageIcon thumbnail) {
+		ImageIcon old = thumbnails.put(key, thumbnail);
+		if(old != null) {
+			cachedBytes -= getBytes(old);
+		}
+		cachedBytes += getBytes(thumbnail);
+
+		Iterator<ImageIcon> eldest = thumbnails.values().iterator();
+		while(cachedBytes > MAX_CACHE_BYTES && eldest.hasNext()) {
+			ImageIcon evicted = eldest.next();
+			if(evicted != thumbnail) {
+				cachedBytes -= getBytes(evicted);
+				eldest.remove();
+			}
+		}
+	}
+
+	private static long getBytes(ImageIcon thumbnail) {
+		if(thumbnail == NO_THUMBNAIL) {
+			return EMPTY_ENTRY_BYTES;
+		}
+		return (long) thumbnail.getIconWidth() * thumbnail.getIconHeight() * 4;
+	}
+
+	private void load(String key, JTable table, EbookPropertyItem item, Dimension dimension) {
+		if(pending.add(key)) {
+			executor.execute(new LoadTask(key, table, item.getResourceHandler(), new Dimension(dimension)));
+
+			while(workQueue.size() > MAX_PENDING) {
+				Runnable dropped = workQueue.pollLast();
+				if(dropped instanceof LoadTask) {
+					pending.remove(((LoadTask) dropped).key);
+				}
+			}
+		}
+	}
+
+	private class LoadTask implements Runnable {
+
+		private final String key;
+
+		private final JTable table;
+
+		private final IResourceHandler ebookResource;
+
+		private final Dimension dimension;
+
+		LoadTask(String key, JTable table, IResourceHandler ebookResource, Dimension dimension) {
+			this.key = key;
+			this.table = table;
+			this.ebookResource = ebookResource;
+			this.dimension = dimension;
+		}
+
+		@Override
+		public void run() {
+			ImageIcon thumbnail = NO_THUMBNAIL;
+			try {
+				thumbnail = loadThumbnail();
+			} catch (Exception e) {
+				LoggerFactory.logInfo(this, "Could not render thumbnail for " + ebookResource, e);
+			}
+
+			// the thumbnail is dropped if it was invalidated while loading.
+			if(pending.remove(key)) {
+				put(key, thumbnail);
+				SwingUtilities.invokeLater(new Runnable() {
+
+					@Override
+					public void run() {
+						table.repaint(table.getVisibleRect());
+					}
+				});
+			}
+		}
+
+		private ImageIcon loadThumbnail() {
+			final byte[] coverThumbnail = EbookPropertyItemUtils.getCoverThumbnailBytes(ebookResource);
+			if(coverThumbnail != null && coverThumbnail.length > 0) {
+				final IResourceHandler virtualImageResourceLoader = ResourceHandlerFactory.getVirtualResourceHandler("TableCellRendererImageData", coverThumbnail);
+				final IImageProvider imageProvider = ImageProviderFactory.getImageProvider(virtualImageResourceLoader);
+				final BufferedImage image = imageProvider != null ? imageProvider.getImage(dimension) : null;
+				if(image != null) {
+					return new ImageIcon(ImageUtils.scaleToMatch(image, dimension, false));
+				}
+			}
+			return NO_THUMBNAIL;
+		}
+	}
+}
@@ -10,6 +10,7 @@ import javax.swing.event.CellEditorListener;
 import javax.swing.table.TableCellEditor;
 
 import org.rr.jeborker.db.item.EbookPropertyItem;
+import org.rr.jeborker.db.item.EbookPropertyItemUtils;
 import org.rr.jeborker.gui.MainController;
 import org.rr.jeborker.gui.cell.EbookTableCellRenderer.RendererComponent;
 
@@ -75,7 +76,7 @@ public class EbookTableCellEditor implements TableCellEditor, Serializable {
 
 	@Override
 	public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
-		this.value = (EbookPropertyItem) value;
+		this.value = EbookPropertyItemUtils.hydrateEbookPropertyItem((EbookPropertyItem) value);
 		tableCellComponent = renderer.getTableCellComponent(table, value, true, true, row, column);
 		if(editListener != null) {
 			editListener.editingStarted();
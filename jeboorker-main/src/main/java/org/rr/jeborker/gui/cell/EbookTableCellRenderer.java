@@ -9,6 +9,8 @@ import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
@@ -35,13 +37,10 @@ import javax.swing.table.TableCellRenderer;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.jsoup.Jsoup;
 import org.jsoup.safety.Whitelist;
-import org.rr.commons.collection.VolatileHashMap;
 import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.mufs.IResourceHandler;
-import org.rr.commons.mufs.ResourceHandlerFactory;
 import org.rr.commons.swing.SwingUtils;
 import org.rr.commons.swing.components.StarRater;
-import org.rr.commons.utils.CommonUtils;
 import org.rr.commons.utils.HTMLEntityConverter;
 import org.rr.commons.utils.ListUtils;
 import org.rr.commons.utils.ReflectionFailureException;
@@ -54,11 +53,7 @@ import org.rr.jeborker.app.preferences.APreferenceStore;
 import org.rr.jeborker.app.preferences.PreferenceStoreFactory;
 import org.rr.jeborker.db.IDBObject;
 import org.rr.jeborker.db.item.EbookPropertyItem;
-import org.rr.jeborker.db.item.EbookPropertyItemUtils;
 import org.rr.jeborker.gui.MainController;
-import org.rr.pm.image.IImageProvider;
-import org.rr.pm.image.ImageProviderFactory;
-import org.rr.pm.image.ImageUtils;
 
 public class EbookTableCellRenderer implements TableCellRenderer, Serializable  {
 
@@ -235,12 +230,19 @@ public class EbookTableCellRenderer implements TableCellRenderer, Serializable
 		}
 	}
 	
-	private static final VolatileHashMap<String, ImageIcon> thumbnailCache = new VolatileHashMap<String, ImageIcon>(20, 20);
+	/** Number of rows above and below the visible area which thumbnails are loaded in advance. */
+	private static final int PREFETCH_ROWS = 10;
 	
 	private final APreferenceStore preferenceStore = PreferenceStoreFactory.getPreferenceStore(PreferenceStoreFactory.DB_STORE);
 	
 	private Dimension thumbnailDimension;
 	
+	private ImageIcon placeholderIcon;
+	
+	private int prefetchedFirstRow = -1;
+	
+	private int prefetchedLastRow = -1;
+	
 	private final MouseListener popupMouseListener;
 	
 	private boolean singletonComponent = false;
@@ -388,7 +390,8 @@ public class EbookTableCellRenderer implements TableCellRenderer, Serializable
 	}
 
 	/**
-	 * Gets the thumbnail image to be displayed in the renderer.
+	 * Gets the thumbnail image to be displayed in the renderer. The thumbnail is loaded in the background
+	 * if it's not cached and a placeholder is returned in the meantime.
 	 * @param table The JTable instance.
 	 * @param item The item to be rendered.
 	 * @return The thumbnail image to be displayed in the renderer.
@@ -398,33 +401,51 @@ public class EbookTableCellRenderer implements TableCellRenderer, Serializable
 			return null;
 		}
 		
-		byte[] coverThumbnail = EbookPropertyItemUtils.getCoverThumbnailBytes(item.getResourceHandler());
-		if(item != null && coverThumbnail != null && coverThumbnail.length > 0) {
-			final String coverThumbnailCRC32 = String.valueOf(CommonUtils.calculateCrc(coverThumbnail));
-			if(thumbnailCache.containsKey(coverThumbnailCRC32)) {
-				return thumbnailCache.get(coverThumbnailCRC32);
-			}
-			
-			try {
-				final byte[] coverData = coverThumbnail;
-				if(coverData != null) {
-					final IResourceHandler virtualImageResourceLoader = ResourceHandlerFactory.getVirtualResourceHandler("TableCellRendererImageData", coverData);
-					final IImageProvider imageProvider = ImageProviderFactory.getImageProvider(virtualImageResourceLoader);
-					final BufferedImage image = imageProvider.getImage();
-					if(image != null) {
-						BufferedImage scaleToMatch = ImageUtils.scaleToMatch(imageProvider.getImage(), getThumbnailDimension(table), false);
-						ImageIcon imageIcon = new ImageIcon(scaleToMatch);
-						thumbnailCache.put(coverThumbnailCRC32, imageIcon);
-						return imageIcon;
-					} else {
-						return null;
-					}
-				}
-			} catch (Exception e) {
-				LoggerFactory.logInfo(this, "Could not render thumbnail", e);
+		final Dimension dimension = getThumbnailDimension(table);
+		final ImageIcon thumbnail = CoverThumbnailCache.getInstance().getThumbnail(table, item, dimension, getPlaceholderIcon(dimension));
+		prefetchImageIconCovers(table, dimension);
+		return thumbnail;
+	}
+	
+	/**
+	 * Loads the thumbnails of the rows just outside the visible area of the table, so they are
+	 * ready if the table is scrolled.
+	 */
+	private void prefetchImageIconCovers(final JTable table, final Dimension dimension) {
+		final Rectangle visibleRect = table.getVisibleRect();
+		final int firstVisibleRow = table.rowAtPoint(visibleRect.getLocation());
+		final int lastVisibleRow = table.rowAtPoint(new Point(visibleRect.x, visibleRect.y + visibleRect.height - 1));
+		if(firstVisibleRow < 0 || (firstVisibleRow == prefetchedFirstRow && lastVisibleRow == prefetchedLastRow)) {
+			return;
+		}
+		prefetchedFirstRow = firstVisibleRow;
+		prefetchedLastRow = lastVisibleRow;
+		
+		final int rowCount = table.getRowCount();
+		final int lastRow = lastVisibleRow >= 0 ? lastVisibleRow : rowCount - 1;
+		for (int i = 1; i <= PREFETCH_ROWS; i++) {
+			prefetchImageIconCover(table, lastRow + i, rowCount, dimension);
+			prefetchImageIconCover(table, firstVisibleRow - i, rowCount, dimension);
+		}
+	}
+	
+	private void prefetchImageIconCover(final JTable table, final int row, final int rowCount, final Dimension dimension) {
+		if(row >= 0 && row < rowCount) {
+			Object value = table.getValueAt(row, 0);
+			if(value instanceof EbookPropertyItem) {
+				CoverThumbnailCache.getInstance().prefetch(table, (EbookPropertyItem) value, dimension);
 			}
 		}
-		return null;
+	}
+	
+	/**
+	 * Gets the empty icon which is shown as long as a thumbnail is loaded.
+	 */
+	private ImageIcon getPlaceholderIcon(final Dimension dimension) {
+		if(placeholderIcon == null) {
+			placeholderIcon = new ImageIcon(new BufferedImage(dimension.width, dimension.height, BufferedImage.TYPE_INT_ARGB));
+		}
+		return placeholderIcon;
 	}
 	
 	/**
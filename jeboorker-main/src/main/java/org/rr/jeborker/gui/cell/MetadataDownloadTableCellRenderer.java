@@ -281,9 +281,9 @@ public class MetadataDownloadTableCellRenderer extends JPanel implements TableCe
 				if (coverData != null) {
 					final IResourceHandler virtualImageResourceLoader = ResourceHandlerFactory.getVirtualResourceHandler("TableCellRendererImageData", coverData);
 					final IImageProvider imageProvider = ImageProviderFactory.getImageProvider(virtualImageResourceLoader);
-					final BufferedImage image = imageProvider.getImage();
+					final BufferedImage image = imageProvider.getImage(dim);
 					if(image != null) {
-						BufferedImage croped = ImageUtils.crop(imageProvider.getImage());
+						BufferedImage croped = ImageUtils.crop(image);
 						BufferedImage scaleToMatch = ImageUtils.scaleToMatch(croped, dim, true);
 						ImageIcon imageIcon = new ImageIcon(scaleToMatch);
 						thumbnailCache.put(coverThumbnailCRC32, imageIcon);
@@ -59,6 +59,10 @@ public class EbookPropertyDBTableModel extends AbstractEbookPropertyTableModel {
 		
 	};
 	
+	/** The fields needed for rendering a row. All other fields are read when the item is requested with {@link #getEbookPropertyItemAt(int)}. */
+	private static final List<String> LIST_VIEW_FIELDS = Arrays.asList("file", "fileName", "basePath", "mimeType", "title", "author", "description",
+			"seriesName", "seriesIndex", "rating", "timestamp");
+
 	/** List of listeners */
 	private EventListenerList listenerList = new EventListenerList();
 
@@ -139,6 +143,11 @@ public class EbookPropertyDBTableModel extends AbstractEbookPropertyTableModel {
 		}
 	}
 
+	/**
+	 * Gets the value used for rendering the given row. The {@link EbookPropertyItem} is possibly partial and
+	 * must be completed with {@link EbookPropertyItemUtils#hydrateEbookPropertyItem(EbookPropertyItem)} before it
+	 * gets modified or stored. Use {@link #getEbookPropertyItemAt(int)} for getting the complete item.
+	 */
 	@Override
 	public Object getValueAt(int rowIndex, int columnIndex) {
 		List<EbookPropertyItem> ebookItems = this.getEbookItems();
@@ -164,13 +173,13 @@ public class EbookPropertyDBTableModel extends AbstractEbookPropertyTableModel {
 	}
 	
 	/**
-	 * Gets the {@link EbookPropertyItem} displayed in the given row.
+	 * Gets the {@link EbookPropertyItem} displayed in the given row with all it's fields read from the database.
 	 * @return The desired {@link EbookPropertyItem} or possibly <code>null</code>.
 	 */
 	public EbookPropertyItem getEbookPropertyItemAt(int rowIndex) {
 		final List<EbookPropertyItem> ebookItems = this.getEbookItems();
 		try {
-			return ebookItems.get(rowIndex);
+			return EbookPropertyItemUtils.hydrateEbookPropertyItem(ebookItems.get(rowIndex));
 		} catch(IndexOutOfBoundsException ex) {
 			LoggerFactory.logInfo(this, EMPTY, ex);
 			return null;
@@ -199,20 +208,15 @@ public class EbookPropertyDBTableModel extends AbstractEbookPropertyTableModel {
 		}
 	}
 	
+	/**
+	 * Searches the row of the given item. The position is queried with the sort key of the item,
+	 * so the item must have the sort values which are stored in the database.
+	 */
 	public int searchRow(EbookPropertyItem item) {
 		if(item == null) {
 			return -1;
 		}
-		
-		final List<EbookPropertyItem> ebookItems = this.getEbookItems();
-		for(int i = 0; i < ebookItems.size(); i++) {
-			EbookPropertyItem ebookPropertyItem = ebookItems.get(i);
-			if(ebookPropertyItem.equals(item)) {
-				return i;
-			}
-		}
-		
-		return -1;
+		return this.getEbookItems().indexOf(item);
 	}
 
 	@Override
@@ -312,7 +316,7 @@ public class EbookPropertyDBTableModel extends AbstractEbookPropertyTableModel {
 			Where<EbookPropertyItem, EbookPropertyItem> whereConditions = prepareQuery();
 			List<String> keywords = prepareKeywords();
 			ICloseableList<EbookPropertyItem> items = DefaultDBManager.getInstance().queryFullTextSearch(EbookPropertyItem.class, whereConditions,
-					keywords, getOrderByColumns(), getOrderDirection());
+					keywords, getOrderByColumns(), getOrderDirection(), getListViewFields());
 			clearVolatileConditions();
 
 			if (this.dbItems != null) {
@@ -325,6 +329,18 @@ public class EbookPropertyDBTableModel extends AbstractEbookPropertyTableModel {
 		return this.allItems;
 	}
 
+	private static List<Field> getListViewFields() {
+		List<Field> result = new ArrayList<>(LIST_VIEW_FIELDS.size());
+		for (String fieldName : LIST_VIEW_FIELDS) {
+			try {
+				result.add(EbookPropertyItem.class.getDeclaredField(fieldName));
+			} catch (NoSuchFieldException e) {
+				throw new RuntimeException("No field named " + fieldName, e);
+			}
+		}
+		return result;
+	}
+
 	private List<String> prepareKeywords() {
 		ArrayList<String> result = new ArrayList<>();
 		for (EbookPropertyDBTableModelQuery whereCondition : whereConditions) {
@@ -0,0 +1,87 @@
+package org.rr.jeborker.metadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import nl.siegmann.epublib.epub.PackageDocumentHeaderReader;
+
+import org.apache.commons.io.FilenameUtils;
+import org.rr.commons.log.LoggerFactory;
+import org.rr.commons.mufs.IResourceHandler;
+import org.rr.commons.utils.compression.CompressedDataEntry;
+import org.rr.commons.utils.compression.zip.ZipUtils;
+
+/**
+ * Reads the epub metadata without creating a {@link nl.siegmann.epublib.domain.Book}. Only the
+ * container.xml, the opf file and the cover image are extracted from the epub. This reader is used
+ * for refreshing the ebook catalog. The {@link EPubLibMetadataReader} is still used for editing
+ * the metadata.
+ */
+class EPubHeaderMetadataReader extends EPubLibMetadataReader {
+
+	EPubHeaderMetadataReader(IResourceHandler ebookResourceHandler) {
+		super(ebookResourceHandler);
+	}
+
+	@Override
+	public List<MetadataProperty> readMetadata() {
+		final IResourceHandler ebookResourceHandler = getEbookResource().get(0);
+
+		try {
+			final String opfFile = getOpfFile(ebookResourceHandler);
+			final byte[] opfData = opfFile != null ? getContainerOPF(ebookResourceHandler) : null;
+			if(opfData != null) {
+				final PackageDocumentHeaderReader packageDocument = new PackageDocumentHeaderReader(new ByteArrayInputStream(opfData));
+				final byte[] coverData = readCover(ebookResourceHandler, opfFile, packageDocument);
+				return createMetadataList(packageDocument.getMetadata(), coverData);
+			}
+		} catch (Throwable e) {
+			LoggerFactory.logInfo(getClass(), "Could not read metadata header for epub " + ebookResourceHandler, e);
+		} finally {
+			ebookResourceHandler.dispose();
+		}
+
+		// fall back to the complete epub reader
+		return super.readMetadata();
+	}
+
+	/**
+	 * Extracts the cover image referenced by the package document. If the package document did not
+	 * reference a cover image, a manifest image with cover in it's name is used.
+	 * @return The cover image bytes or <code>null</code> if no cover could be found.
+	 */
+	private byte[] readCover(final IResourceHandler ebookResourceHandler, final String opfFile, final PackageDocumentHeaderReader packageDocument) throws IOException {
+		final String opfPath = opfFile.substring(0, opfFile.lastIndexOf('/') + 1);
+		for(String href : packageDocument.getCoverImageHrefs()) {
+			byte[] data = extract(ebookResourceHandler, opfPath, href);
+			if(data != null) {
+				return data;
+			}
+		}
+
+		for(String href : packageDocument.getManifestHrefs()) {
+			if(isCoverImageName(href)) {
+				byte[] data = extract(ebookResourceHandler, opfPath, href);
+				if(data != null) {
+					return data;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static byte[] extract(final IResourceHandler ebookResourceHandler, final String opfPath, final String href) throws IOException {
+		final String entry = FilenameUtils.normalize(opfPath + href, true);
+		if(entry != null) {
+			final CompressedDataEntry compressedDataEntry = ZipUtils.extract(ebookResourceHandler, entry);
+			if(compressedDataEntry != null) {
+				final byte[] data = compressedDataEntry.getBytes();
+				if(data != null && data.length > 0) {
+					return data;
+				}
+			}
+		}
+		return null;
+	}
+}
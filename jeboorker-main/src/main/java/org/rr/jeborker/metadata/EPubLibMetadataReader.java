@@ -42,7 +42,15 @@ class EPubLibMetadataReader extends AEpubMetadataHandler implements IMetadataRea
 			final Book epub = readBook(ebookResourceHandler.getContentInputStream(), ebookResourceHandler, true);
 			final Metadata metadata = epub.getMetadata();
 
-			final List<MetadataProperty> metadataList = this.createMetadataList(epub, metadata);
+			final Resource coverImage = epub.getCoverImage();
+			final byte[] coverData;
+			if(coverImage != null) {
+				coverData = coverImage.getData();
+			} else {
+				coverData = searchCoverImage(epub);
+			}
+
+			final List<MetadataProperty> metadataList = this.createMetadataList(metadata, coverData);
 			return metadataList;
 		} catch (Throwable e) {
 			LoggerFactory.logWarning(getClass(), "Could not read metadata for epub " + ebookResourceHandler, e);
@@ -55,10 +63,10 @@ class EPubLibMetadataReader extends AEpubMetadataHandler implements IMetadataRea
 	/**
 	 * Read all metadata entries from the given {@link Metadata} instance into {@link EpubLibMetadataProperty}.
 	 * @param metadata The metadata instance where the entries read from.
+	 * @param coverData The cover image bytes or <code>null</code> if the epub has no cover.
 	 * @return All available metadata from teh given {@link Metadata} instance.
-	 * @throws IOException
 	 */
-	private List<MetadataProperty> createMetadataList(final Book epub, final Metadata metadata) throws IOException {
+	protected List<MetadataProperty> createMetadataList(final Metadata metadata, final byte[] coverData) {
 		final ArrayList<MetadataProperty> result = new ArrayList<MetadataProperty>() {
 
 			@Override
@@ -182,14 +190,7 @@ class EPubLibMetadataReader extends AEpubMetadataHandler implements IMetadataRea
 			result.add(new EpubLibMetadataProperty<Void>(EPUB_METADATA_TYPES.LANGUAGE.getName(), language, null));
 		}
 
-		final Resource coverImage = epub.getCoverImage();
-		final byte[] data;
-		if(coverImage != null) {
-			data = coverImage.getData();
-		} else {
-			data = searchCoverImage(epub);
-		}
-		result.add(new EpubLibMetadataProperty<Void>(EPUB_METADATA_TYPES.COVER.getName(), data, null));
+		result.add(new EpubLibMetadataProperty<Void>(EPUB_METADATA_TYPES.COVER.getName(), coverData, null));
 
 		return new ArrayList<MetadataProperty>(result);
 	}
@@ -202,7 +203,7 @@ class EPubLibMetadataReader extends AEpubMetadataHandler implements IMetadataRea
 		Resources resources = epub.getResources();
 		Collection<String> allHrefs = resources.getAllHrefs();
 		for(String href : allHrefs) {
-			if(new File(href).getName().toLowerCase().contains("cover") && (href.endsWith(".jpg") || href.endsWith(".jpeg"))) {
+			if(isCoverImageName(href)) {
 				Resource resourcerByHref = resources.getByHref(href);
 				if(resourcerByHref != null) {
 					try {
@@ -220,6 +221,13 @@ class EPubLibMetadataReader extends AEpubMetadataHandler implements IMetadataRea
 		return null;
 	}
 
+	/**
+	 * Tells if the given href looks like the file name of a cover image.
+	 */
+	protected static boolean isCoverImageName(String href) {
+		return new File(href).getName().toLowerCase().contains("cover") && (href.endsWith(".jpg") || href.endsWith(".jpeg"));
+	}
+
 	@Override
 	public void fillEbookPropertyItem(final List<MetadataProperty> metadataProperties, final EbookPropertyItem item) {
 		item.clearMetadata();
@@ -3,12 +3,17 @@ package org.rr.jeborker.metadata;
 import static org.rr.commons.utils.StringUtil.EMPTY;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 import javax.swing.JOptionPane;
@@ -28,7 +33,9 @@ import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.mufs.IResourceHandler;
 import org.rr.commons.mufs.ResourceHandlerFactory;
 import org.rr.commons.utils.Base64;
+import org.rr.commons.utils.compression.ArchiveIndexCache;
 import org.rr.commons.utils.compression.truezip.TrueZipUtils;
+import org.rr.commons.utils.compression.zip.ZipUtils;
 import org.rr.jeborker.app.FileRefreshBackground;
 import org.rr.jeborker.gui.MainController;
 import org.rr.pm.image.IImageProvider;
@@ -37,6 +44,9 @@ import org.rr.pm.image.ImageUtils;
 
 class EPubLibMetadataWriter extends AEpubMetadataHandler implements IMetadataWriter {
 
+	/** Resources with new data which must be written to the epub in addition to the package document. */
+	private final List<Resource> changedResources = new ArrayList<>();
+
 	public EPubLibMetadataWriter(IResourceHandler ebookResourceHandler) {
 		super(ebookResourceHandler);
 	}
@@ -46,7 +56,9 @@ class EPubLibMetadataWriter extends AEpubMetadataHandler implements IMetadataWri
 		final IResourceHandler ebookResourceHandler = getEbookResource().get(0);
 		
 		try {
-			boolean lazy = ebookResourceHandler.size() > 10000000; //10MB
+			//resources are not needed if the unchanged entries are copied from the local file
+			boolean lazy = ArchiveIndexCache.getCacheableFile(ebookResourceHandler) != null || ebookResourceHandler.size() > 10000000; //10MB
+			changedResources.clear();
 			final Book epub = readBook(ebookResourceHandler.getContentInputStream(), ebookResourceHandler, lazy);
 			setMetadata(epub, props);
 			
@@ -145,9 +157,11 @@ class EPubLibMetadataWriter extends AEpubMetadataHandler implements IMetadataWri
 	private void writeBook(final Book epub, final IResourceHandler ebookResourceHandler) throws IOException {
 		FileRefreshBackground.setDisabled(true);
 		try {
-			final EpubWriter writer = new EpubWriter();
 			final IResourceHandler temporaryResourceLoader = ResourceHandlerFactory.getUniqueResourceHandler(ebookResourceHandler, "tmp");
-			writer.write(epub, temporaryResourceLoader.getContentOutputStream(false));
+			if(!writeChangedEntries(epub, ebookResourceHandler, temporaryResourceLoader)) {
+				final EpubWriter writer = new EpubWriter();
+				writer.write(epub, temporaryResourceLoader.getContentOutputStream(false));
+			}
 			if(temporaryResourceLoader.size() > 0) {
 				temporaryResourceLoader.moveTo(ebookResourceHandler, true);
 			} else {
@@ -158,6 +172,38 @@ class EPubLibMetadataWriter extends AEpubMetadataHandler implements IMetadataWri
 		}
 	}
 	
+	/**
+	 * Copies the epub and writes only the package document and the changed resources to the copy. All other
+	 * zip entries like the stored mimetype are copied with their compressed data, so they are not inflated and
+	 * deflated again. The table of contents is kept as it is.
+	 * @return <code>true</code> if the copy was written or <code>false</code> if the whole epub must be written.
+	 */
+	private boolean writeChangedEntries(final Book epub, final IResourceHandler ebookResourceHandler, final IResourceHandler targetResourceHandler) {
+		final Resource opfResource = epub.getOpfResource();
+		if(opfResource == null || epub.getSpine().getTocResource() == null) {
+			return false;
+		}
+
+		try {
+			final String opfHref = opfResource.getHref();
+			final String opfPath = opfHref.substring(0, opfHref.lastIndexOf('/') + 1);
+			final Map<String, byte[]> entries = new LinkedHashMap<>();
+			final ByteArrayOutputStream opfData = new ByteArrayOutputStream();
+			new EpubWriter().writePackageDocument(epub, opfData);
+			entries.put(opfHref, opfData.toByteArray());
+			for(Resource resource : changedResources) {
+				entries.put(opfPath + resource.getHref(), resource.getData());
+			}
+
+			try(OutputStream out = targetResourceHandler.getContentOutputStream(false)) {
+				return ZipUtils.copyAndReplace(ebookResourceHandler, out, entries);
+			}
+		} catch (Exception e) {
+			LoggerFactory.logInfo(this, "Could not copy the unchanged entries of " + ebookResourceHandler + ", writing the whole epub.", e);
+			return false;
+		}
+	}
+
 	private void setCover(final Book epub, final EpubLibMetadataProperty<?> meta, final byte[] cover) {
 		try {
 			if(meta.getHint(MetadataProperty.HINTS.COVER_FROM_EBOOK_FILE_NAME) != null) {
@@ -212,6 +258,7 @@ class EPubLibMetadataWriter extends AEpubMetadataHandler implements IMetadataWri
 		newCoverImage.setHref(coverFilePath);
 		newCoverImage.setId("cover");
 		epub.setCoverImage(newCoverImage);
+		changedResources.add(newCoverImage);
 	}
 
 	private void replaceOldCover(final Book epub, final byte[] cover, final Resource oldCoverImage) throws IOException {
@@ -221,6 +268,7 @@ class EPubLibMetadataWriter extends AEpubMetadataHandler implements IMetadataWri
 		final byte[] imageBytes = ImageUtils.getImageBytes(coverImageProvider.getImage(), targetConversionMime);
 		oldCoverImage.setData(imageBytes);
 		epub.setCoverImage(oldCoverImage);
+		changedResources.add(oldCoverImage);
 	}
 
 	private void changeExistingCover(final Book epub, final EpubLibMetadataProperty<?> meta) {
@@ -243,6 +291,7 @@ class EPubLibMetadataWriter extends AEpubMetadataHandler implements IMetadataWri
 			}
 			unlistedCoverImage.setHref(href);
 			epub.setCoverImage(unlistedCoverImage);
+			changedResources.add(unlistedCoverImage);
 		} else {
 			while(coverName.indexOf('/') != -1) {
 				coverName = coverName.substring(coverName.indexOf('/') + 1);
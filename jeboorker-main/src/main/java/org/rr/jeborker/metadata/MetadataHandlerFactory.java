@@ -83,6 +83,20 @@ public class MetadataHandlerFactory {
 		return latestReader = new EmptyMetadataReader(resource);
 	}
 	
+	/**
+	 * Get a meta data reader for the given {@link IResourceHandler} which only reads the data needed to refresh
+	 * the ebook catalog. The returned reader is not cached because it should not be used for editing the metadata.
+	 * @param resource The resource for which a meta data reader should be fetched for.
+	 * @return The desired {@link IMetadataReader} instance.
+	 */
+	public static IMetadataReader getHeaderReader(final IResourceHandler resource) {
+		final String mimeType = resource.getMimeType(true);
+		if (mimeType != null && mimeType.equals(MIME_EPUB.getMime())) {
+			return new EPubHeaderMetadataReader(resource);
+		}
+		return getReader(resource);
+	}
+	
 	/**
 	 * Get a meta data writer for the given {@link IResourceHandler}.
 	 * @param resources The resources for which a meta data writer should be fetched for.
@@ -2,15 +2,19 @@ package org.rr.jeborker.metadata;
 
 import static org.rr.commons.utils.StringUtil.EMPTY;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.mufs.IResourceHandler;
 import org.rr.commons.utils.DateConversionUtils;
 import org.rr.commons.utils.StringUtil;
+import org.rr.commons.utils.mobi.MobiHeader;
 import org.rr.jeborker.db.item.EbookPropertyItem;
 import org.rr.mobi4java.EXTHRecord;
 import org.rr.mobi4java.EXTHRecord.RECORD_TYPE;
@@ -27,6 +31,25 @@ import org.rr.mobi4java.exth.StringRecordDelegate;
 
 public class MobiMetadataReader extends AMetadataHandler implements IMetadataReader {
 
+	/** The EXTH record type names with the delegate records and the property names used by the {@link MobiDocument} based reader. */
+	private static final Map<RECORD_TYPE, String> DELEGATE_TYPES = new EnumMap<>(RECORD_TYPE.class);
+
+	static {
+		DELEGATE_TYPES.put(RECORD_TYPE.AUTHOR, COMMON_METADATA_TYPES.AUTHOR.getName());
+		DELEGATE_TYPES.put(RECORD_TYPE.PUBLISHER, "publisher");
+		DELEGATE_TYPES.put(RECORD_TYPE.IMPRINT, "imprint");
+		DELEGATE_TYPES.put(RECORD_TYPE.DESCRIPTION, COMMON_METADATA_TYPES.DESCRIPTION.getName());
+		DELEGATE_TYPES.put(RECORD_TYPE.ISBN, COMMON_METADATA_TYPES.ISBN.getName());
+		DELEGATE_TYPES.put(RECORD_TYPE.SUBJECT, COMMON_METADATA_TYPES.GENRE.getName());
+		DELEGATE_TYPES.put(RECORD_TYPE.PUBLISHING_DATE, "publishingdate");
+		DELEGATE_TYPES.put(RECORD_TYPE.REVIEW, "review");
+		DELEGATE_TYPES.put(RECORD_TYPE.CONTRIBUTOR, "contributor");
+		DELEGATE_TYPES.put(RECORD_TYPE.RIGHTS, "rights");
+		DELEGATE_TYPES.put(RECORD_TYPE.SOURCE, "source");
+		DELEGATE_TYPES.put(RECORD_TYPE.ASIN, "asin");
+		DELEGATE_TYPES.put(RECORD_TYPE.LANGUAGE, COMMON_METADATA_TYPES.LANGUAGE.getName());
+	}
+
 	private IResourceHandler ebookResource;
 	
 	private String characterEncoding;
@@ -42,6 +65,14 @@ public class MobiMetadataReader extends AMetadataHandler implements IMetadataRea
 
 	@Override
 	public List<MetadataProperty> readMetadata() {
+		if(ebookResource.isFileResource()) {
+			try {
+				return readMetadata(MobiHeader.read(ebookResource.toFile()));
+			} catch (Exception e) {
+				LoggerFactory.logInfo(getClass(), "Could not read mobi header for " + ebookResource, e);
+			}
+		}
+
 		try {
 			ArrayList<MetadataProperty> result = new ArrayList<>();
 			MobiDocument mobiDoc = new MobiReader().read(ebookResource.getContentInputStream());
@@ -85,8 +116,59 @@ public class MobiMetadataReader extends AMetadataHandler implements IMetadataRea
 		return new ArrayList<MetadataProperty>(0);
 	}
 	
+	/**
+	 * Reads the metadata from the given {@link MobiHeader} which did not read the text records of the book.
+	 * The properties are created in the same order the {@link MobiDocument} based reader creates them.
+	 */
+	private List<MetadataProperty> readMetadata(MobiHeader header) throws IOException {
+		ArrayList<MetadataProperty> result = new ArrayList<>();
+		characterEncoding = header.getCharacterEncoding();
+
+		String fullName = header.getFullName();
+		if (StringUtil.isNotBlank(fullName)) {
+			result.add(new MetadataProperty("title", fullName));
+		}
+
+		List<EXTHRecord> exthRecords = header.getEXTHRecords();
+		for (Map.Entry<RECORD_TYPE, String> delegateType : DELEGATE_TYPES.entrySet()) {
+			for (EXTHRecord exthRecord : exthRecords) {
+				if(delegateType.getKey() == exthRecord.getRecordType()) {
+					result.add(new MobiMetadataProperty(createRecordDelegate(exthRecord), delegateType.getValue(), characterEncoding));
+					if(exthRecord.getRecordType() == RECORD_TYPE.LANGUAGE) {
+						break; // the language is a single value
+					}
+				}
+			}
+		}
+		applyAllNonDelegateMetadata(exthRecords, result);
+
+		byte[] cover = header.getCover();
+		if(cover != null) {
+			result.add(new MetadataProperty(COMMON_METADATA_TYPES.COVER.getName(), cover));
+		}
+		return result;
+	}
+
+	private static RecordDelegate createRecordDelegate(EXTHRecord exthRecord) {
+		switch (exthRecord.getRecordType()) {
+		case ISBN:
+			return new ISBNRecordDelegate(exthRecord);
+		case PUBLISHING_DATE:
+			return new DateRecordDelegate(exthRecord);
+		case ASIN:
+			return new ASINRecordDelegate(exthRecord);
+		case LANGUAGE:
+			return new LanguageRecordDelegate(exthRecord);
+		default:
+			return new StringRecordDelegate(exthRecord);
+		}
+	}
+
 	private void applyAllNonDelegateMetadata(MobiDocument mobiDoc, ArrayList<MetadataProperty> metadataProperties) {
-		List<EXTHRecord> exthRecords = mobiDoc.getMetaData().getEXTHRecords();
+		applyAllNonDelegateMetadata(mobiDoc.getMetaData().getEXTHRecords(), metadataProperties);
+	}
+
+	private void applyAllNonDelegateMetadata(List<EXTHRecord> exthRecords, ArrayList<MetadataProperty> metadataProperties) {
 		for (EXTHRecord exthRecord : exthRecords) {
 			boolean found = false;
 			for (MetadataProperty metadataProperty : metadataProperties) {
@@ -3,14 +3,17 @@ package org.rr.jeborker.metadata;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.rr.commons.log.LoggerFactory;
 import org.rr.commons.mufs.IResourceHandler;
 import org.rr.commons.mufs.ResourceHandlerFactory;
 import org.rr.commons.utils.StringUtil;
+import org.rr.commons.utils.mobi.MobiHeader;
 import org.rr.jeborker.app.FileRefreshBackground;
 import org.rr.jeborker.metadata.IMetadataReader.COMMON_METADATA_TYPES;
+import org.rr.mobi4java.EXTHRecord;
 import org.rr.mobi4java.MobiDocument;
 import org.rr.mobi4java.MobiMetaData;
 import org.rr.mobi4java.MobiReader;
@@ -28,6 +31,10 @@ public class MobiMetadataWriter implements IMetadataWriter {
 	public void writeMetadata(List<MetadataProperty> props) {
 		try {
 			FileRefreshBackground.setDisabled(true);
+			if(ebookResource.isFileResource() && writeHeader(props)) {
+				return;
+			}
+
 			MobiDocument mobiDoc = new MobiReader().read(ebookResource.getContentInputStream());
 			MobiMetaData metaData = mobiDoc.getMetaData();
 			metaData.removeAllEXTHRecords();
@@ -56,6 +63,54 @@ public class MobiMetadataWriter implements IMetadataWriter {
 		}
 	}
 
+	/**
+	 * Writes the metadata by rewriting the EXTH records with the {@link MobiHeader}. The text records are copied
+	 * without reading them with the {@link MobiReader}.
+	 * @return <code>true</code> if the metadata was written and <code>false</code> if the {@link MobiWriter} must be used.
+	 */
+	private boolean writeHeader(List<MetadataProperty> props) {
+		final MobiHeader header;
+		try {
+			header = MobiHeader.read(ebookResource.toFile());
+		} catch (IOException e) {
+			LoggerFactory.logInfo(this, "Could not read mobi header for " + ebookResource, e);
+			return false;
+		}
+
+		String fullName = null;
+		byte[] cover = null;
+		final List<EXTHRecord> records = new ArrayList<>(props.size());
+		for (MetadataProperty prop : props) {
+			if (StringUtil.equalsIgnoreCase(prop.getName(), "title")) {
+				fullName = prop.getValueAsString();
+			} else if (StringUtil.equals(prop.getName(), COMMON_METADATA_TYPES.COVER.getName())) {
+				cover = (byte[]) prop.getValues().get(0);
+			} else if(prop instanceof MobiMetadataProperty) {
+				records.add(((MobiMetadataProperty)prop).getExthRecord());
+			} else {
+				LoggerFactory.logWarning(this.getClass(), "Unkown property " + prop.getName() + " in " + ebookResource);
+			}
+		}
+		if(!header.isWritable(cover)) {
+			return false;
+		}
+
+		IResourceHandler temporaryResourceLoader = ResourceHandlerFactory.getUniqueResourceHandler(ebookResource, "tmp");
+		try {
+			try (OutputStream out = temporaryResourceLoader.getContentOutputStream(false);) {
+				header.write(out, fullName, records, cover);
+			}
+			if (temporaryResourceLoader.size() > 0) {
+				temporaryResourceLoader.moveTo(ebookResource, true);
+				return true;
+			}
+		} catch (IOException e) {
+			LoggerFactory.logInfo(this, "Could not write mobi header for " + ebookResource, e);
+		}
+		try {temporaryResourceLoader.delete();} catch(Exception e) {}
+		return false;
+	}
+
 	protected void writeBook(MobiDocument mobiDoc) throws IOException {
 		IResourceHandler temporaryResourceLoader = ResourceHandlerFactory.getUniqueResourceHandler(ebookResource, "tmp");
 		try (OutputStream out = temporaryResourceLoader.getContentOutputStream(false);) {
@@ -2,9 +2,14 @@ package org.rr.jeborker.metadata.comicbook;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.rr.commons.mufs.IResourceHandler;
+import org.rr.commons.utils.compression.CompressedEntryVisitor;
+import org.rr.commons.utils.compression.CompressionUtils;
+import org.rr.commons.utils.compression.FileEntryFilter;
 
 abstract class AArchiveHandler implements IArchiveHandler {
 	
@@ -23,8 +28,38 @@ abstract class AArchiveHandler implements IArchiveHandler {
 	@Override
 	public abstract byte[] getArchiveEntry(String archiveEntry) throws IOException;
 	
+	/**
+	 * Lists the archive entries and reads the ComicInfo.xml with one pass over the archive.
+	 */
 	@Override
-	public abstract void readArchive() throws IOException;
+	public void readArchive() throws IOException {
+		archiveEntries.clear();
+		comicInfoXmlContent = null;
+		comicInfoXmlFilePath = null;
+		CompressionUtils.forEachEntry(resource, new FileEntryFilter() {
+
+			@Override
+			public boolean accept(String entry, byte[] rawEntry) {
+				if(entry.toLowerCase().endsWith("comicinfo.xml")) {
+					return comicInfoXmlFilePath == null;
+				} else {
+					archiveEntries.add(entry);
+				}
+				return false;
+			}
+		}, new CompressedEntryVisitor() {
+
+			@Override
+			public void visit(String name, byte[] data, int length) {
+				if(comicInfoXmlFilePath == null) {
+					comicInfoXmlContent = Arrays.copyOf(data, length);
+					comicInfoXmlFilePath = name;
+				}
+			}
+		});
+
+		Collections.sort(archiveEntries);
+	}
 
 	@Override
 	public String getComicXmlFilename() {
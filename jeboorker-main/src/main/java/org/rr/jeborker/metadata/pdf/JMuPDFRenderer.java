@@ -36,8 +36,7 @@ class JMuPDFRenderer extends PDFRenderer {
 		Page page = null;
 		PageRect bb = null;
 		try {
-			byte[] pdfdata = getResourceHandler().getContent();
-			doc = new com.jmupdf.pdf.PdfDocument(pdfdata);
+			doc = PDFUtils.openDocument(getResourceHandler());
 
 			page = doc.getPage(pageNumber);
 			
@@ -48,7 +47,7 @@ class JMuPDFRenderer extends PDFRenderer {
 			BufferedImage image = pp.getImage();
 			return image;
 		} catch (IOException e) {
-			e.printStackTrace();
+			LoggerFactory.getLogger().log(Level.INFO, "Failed to read pdf " + getResourceHandler() , e);
 		} catch (DocException e) {
 			LoggerFactory.getLogger().log(Level.INFO, "Failed to render image for " + getResourceHandler() , e);
 		} catch (DocSecurityException e) {
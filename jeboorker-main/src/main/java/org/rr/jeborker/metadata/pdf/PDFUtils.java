@@ -20,6 +20,8 @@ import com.itextpdf.text.pdf.PdfImportedPage;
 import com.itextpdf.text.pdf.PdfReader;
 import com.itextpdf.text.pdf.PdfWriter;
 import com.itextpdf.text.pdf.RandomAccessFileOrArray;
+import com.jmupdf.exceptions.DocException;
+import com.jmupdf.exceptions.DocSecurityException;
 
 public class PDFUtils {
 
@@ -39,6 +41,20 @@ public class PDFUtils {
 		return new PDFReaderDelegate(rafPdfIn, file, fileChannelI);
 	}
 
+	/**
+	 * Opens the given pdf for rendering with jmupdf. Local files are opened by their path, so the pdf is read
+	 * by mupdf from the file. Other resources are loaded into memory, which jmupdf writes to a temporary file.
+	 * 
+	 * @param pdfResource The pdf to be opened.
+	 * @return The opened document which must be disposed after use.
+	 */
+	public static com.jmupdf.pdf.PdfDocument openDocument(IResourceHandler pdfResource) throws IOException, DocException, DocSecurityException {
+		if(pdfResource.getType() == IResourceHandler.RESOURCE_HANDLER_USER_TYPES.FILESYSTEM && pdfResource.isFileResource()) {
+			return new com.jmupdf.pdf.PdfDocument(pdfResource.toFile().getAbsolutePath());
+		}
+		return new com.jmupdf.pdf.PdfDocument(pdfResource.getContent());
+	}
+
 	private static class PDFReaderDelegate extends PdfReader {
 
 		private FileChannel fileChannelI;